@@ -0,0 +1,264 @@
+package com.checkout.payment.gateway;
+
+import com.checkout.payment.gateway.client.StubBankServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from launching the gateway in a fresh process to its first successful
+ * {@code POST /payments}, against a stub bank, in each startup {@code mode}:
+ * <ul>
+ *   <li>{@code jar}: the packaged jar with default properties, every bean created eagerly;</li>
+ *   <li>{@code lazy}: the same jar with the {@code prod} profile, so lazy initialization;</li>
+ *   <li>{@code aot}: {@code lazy} plus {@code -Dspring.aot.enabled=true}, which needs the jar
+ *   built with {@code mvn -Dprod package};</li>
+ *   <li>{@code cds}: {@code aot} from the unpacked jar with a class data sharing archive, trained
+ *   once per trial by a run that takes one payment;</li>
+ *   <li>{@code native}: the GraalVM image from {@code mvn -Dprod -Pnative native:compile}.</li>
+ * </ul>
+ * The jar is {@code target/payment-gateway-challenge-java-0.0.1-SNAPSHOT.jar} unless the
+ * {@code startup.jar} system property says otherwise. The secondary metric is the resident set
+ * size of the process once it has answered that first payment. Each run's output is kept in
+ * {@code target/startup-<mode>.log}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+  private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(1);
+  private static final String MAIN_CLASS = PaymentGatewayApplication.class.getName();
+  private static final String PAYMENT = """
+      {"card_number":"2222405343248113","expiry_month":"12","expiry_year":"2030",\
+      "currency":"GBP","amount":100,"cvv":"123"}""";
+
+  @Param({"jar", "lazy", "aot", "cds", "native"})
+  public String mode;
+
+  private final Path target = Path.of("target");
+  private final HttpClient client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(1))
+      .build();
+  private StubBankServer bank;
+  private Path jar;
+  private Path archive;
+  private Process application;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long rssMb;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    bank = new StubBankServer();
+    jar = Path.of(System.getProperty("startup.jar",
+        "target/payment-gateway-challenge-java-0.0.1-SNAPSHOT.jar"));
+    if ("native".equals(mode)) {
+      requireFile(target.resolve("payment-gateway-challenge-java"),
+          "mvn -Dprod -Pnative native:compile -DskipTests");
+    } else {
+      requireFile(jar, "mvn -Dprod package -DskipTests");
+    }
+    if ("cds".equals(mode)) {
+      Path exploded = target.resolve("startup-cds");
+      unpack(jar, exploded);
+      archive = exploded.resolve("application.jsa");
+      Files.deleteIfExists(archive);
+      // The archive is written when the training run exits, which a SIGTERM lets it do.
+      int port = freePort();
+      Process training = launch(List.of("-XX:ArchiveClassesAtExit=" + archive), port);
+      try {
+        awaitFirstPayment(training, port);
+      } finally {
+        training.destroy();
+        training.waitFor();
+      }
+      requireFile(archive, "a training run that exits cleanly");
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void stop() throws InterruptedException {
+    if (application != null) {
+      application.destroy();
+      if (!application.waitFor(30, TimeUnit.SECONDS)) {
+        application.destroyForcibly().waitFor();
+      }
+      application = null;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    bank.close();
+  }
+
+  @Benchmark
+  public void firstPayment(Footprint footprint) throws Exception {
+    int port = freePort();
+    application = launch(
+        archive == null ? List.of() : List.of("-XX:SharedArchiveFile=" + archive), port);
+    awaitFirstPayment(application, port);
+    footprint.rssMb = residentSetMb(application.pid());
+  }
+
+  private Process launch(List<String> jvmOptions, int port) throws IOException {
+    List<String> command = new ArrayList<>();
+    switch (mode) {
+      case "native" -> command.add(target.resolve("payment-gateway-challenge-java").toString());
+      case "cds" -> {
+        command.add(java());
+        command.addAll(jvmOptions);
+        command.add("-Dspring.aot.enabled=true");
+        command.add("-cp");
+        command.add(classpath(target.resolve("startup-cds")));
+        command.add(MAIN_CLASS);
+      }
+      default -> {
+        command.add(java());
+        command.addAll(jvmOptions);
+        if ("aot".equals(mode)) {
+          command.add("-Dspring.aot.enabled=true");
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+      }
+    }
+    if (!"jar".equals(mode)) {
+      command.add("--spring.profiles.active=prod");
+    }
+    command.add("--server.port=" + port);
+    command.add("--bank.simulator.url=" + bank.url());
+    command.add("--logging.level.root=WARN");
+    return new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(target.resolve("startup-" + mode + ".log").toFile())
+        .start();
+  }
+
+  private void awaitFirstPayment(Process process, int port) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/payments"))
+        .header("Content-Type", "application/json")
+        .timeout(Duration.ofSeconds(5))
+        .POST(BodyPublishers.ofString(PAYMENT))
+        .build();
+    long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException("The gateway exited with " + process.exitValue()
+            + ", see target/startup-" + mode + ".log");
+      }
+      try {
+        if (client.send(request, BodyHandlers.discarding()).statusCode() == 201) {
+          return;
+        }
+      } catch (IOException notListeningYet) {
+        // Retried below until the server is up.
+      }
+      Thread.sleep(5);
+    }
+    throw new IllegalStateException("No payment within " + STARTUP_TIMEOUT);
+  }
+
+  private static long residentSetMb(long pid) throws IOException {
+    try (Stream<String> lines = Files.lines(Path.of("/proc", Long.toString(pid), "status"))) {
+      return lines.filter(line -> line.startsWith("VmRSS:"))
+          .map(line -> line.replaceAll("\\D", ""))
+          .mapToLong(kilobytes -> Long.parseLong(kilobytes) / 1024)
+          .findFirst()
+          .orElse(-1);
+    }
+  }
+
+  /**
+   * A class data sharing archive only covers classes loaded from plain jars and directories, and
+   * must be used with the classpath it was created with, so the fat jar is unpacked and its
+   * libraries listed in a fixed order.
+   */
+  private static void unpack(Path jar, Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      try (Stream<Path> stale = Files.walk(directory)) {
+        for (Path file : stale.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(file);
+        }
+      }
+    }
+    try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(jar))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        Path file = directory.resolve(entry.getName()).normalize();
+        if (!file.startsWith(directory)) {
+          throw new IOException("Entry outside the jar: " + entry.getName());
+        }
+        if (entry.isDirectory()) {
+          Files.createDirectories(file);
+        } else {
+          Files.createDirectories(file.getParent());
+          Files.copy(zip, file);
+        }
+      }
+    }
+  }
+
+  private static String classpath(Path directory) throws IOException {
+    List<String> entries = new ArrayList<>();
+    entries.add(directory.resolve("BOOT-INF/classes").toString());
+    try (Stream<Path> libraries = Files.list(directory.resolve("BOOT-INF/lib"))) {
+      libraries.map(Path::toString).sorted().forEach(entries::add);
+    }
+    return String.join(File.pathSeparator, entries);
+  }
+
+  private static String java() {
+    return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void requireFile(Path file, String buildWith) {
+    if (!Files.isRegularFile(file)) {
+      throw new IllegalStateException(file + " is missing, build it with " + buildWith);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Latency against throughput for micro-batching. {@code callers} closed-loop callers each send
+ * their next payment as soon as the previous one is answered, until {@code REQUESTS} payments have
+ * been made against a stub bank answering after {@code bankLatencyMs}. {@code batching} is
+ * {@code off} or {@code <maxBatchSize>/<window>}. The secondary metrics are the achieved
+ * throughput and the p50/p99 latency per payment; plotting them across {@code callers} gives one
+ * curve per batching setting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(1)
+public class BankBatchingBenchmark {
+
+  private static final int REQUESTS = 10_000;
+
+  @Param({"off", "8/1ms", "32/1ms", "32/5ms"})
+  public String batching;
+
+  @Param({"8", "64", "256"})
+  public int callers;
+
+  @Param({"2"})
+  public int bankLatencyMs;
+
+  private StubBankServer bank;
+  private BankClient bankClient;
+  private BankRequestBatcher batcher;
+  private BankRequest request;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Curve {
+
+    public long paymentsPerSecond;
+    public long p50Micros;
+    public long p99Micros;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    bank = new StubBankServer();
+    bank.setDelay(() -> Duration.ofMillis(bankLatencyMs));
+    bankClient = new BankClient(new RestTemplate(), HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(30),
+        new BankCircuitBreaker(1.0, 100, 100, Duration.ofSeconds(1), 1),
+        new AdaptiveConcurrencyLimiter(1024, 1024, 1024, 0.9, Duration.ofMinutes(1)),
+        BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+        new PaymentMetrics(new SimpleMeterRegistry()));
+    if (!"off".equals(batching)) {
+      String[] setting = batching.split("/");
+      batcher = new BankRequestBatcher(bankClient, Integer.parseInt(setting[0]),
+          DurationStyle.detectAndParse(setting[1]));
+    }
+
+    request = new BankRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (batcher != null) {
+      batcher.close();
+    }
+    bank.close();
+  }
+
+  @Benchmark
+  public void payments(Curve curve) throws InterruptedException {
+    long[] latencies = new long[REQUESTS];
+    AtomicInteger issued = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(callers);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < callers; i++) {
+      sendNext(issued, latencies, done);
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    curve.paymentsPerSecond = REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    curve.p50Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS / 2]);
+    curve.p99Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 99 / 100]);
+  }
+
+  private void sendNext(AtomicInteger issued, long[] latencies, CountDownLatch done) {
+    int i = issued.getAndIncrement();
+    if (i >= REQUESTS) {
+      done.countDown();
+      return;
+    }
+    long start = System.nanoTime();
+    send().thenRun(() -> {
+      latencies[i] = System.nanoTime() - start;
+      sendNext(issued, latencies, done);
+    });
+  }
+
+  private CompletableFuture<BankResponse> send() {
+    return batcher == null ? bankClient.processPaymentAsync(request) : batcher.submit(request);
+  }
+}
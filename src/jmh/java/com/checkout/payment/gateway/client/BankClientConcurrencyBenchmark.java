@@ -0,0 +1,107 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Drives {@value #IN_FLIGHT} bank calls at once against a stub bank that answers after
+ * {@code bankLatencyMs}. {@code async} keeps them all in flight on the non-blocking client;
+ * {@code blocking} runs them on a pool the size of Tomcat's default thread pool. The score is the
+ * time per payment, so throughput is its inverse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BankClientConcurrencyBenchmark {
+
+  static final int IN_FLIGHT = 10_000;
+  private static final int TOMCAT_MAX_THREADS = 200;
+
+  @Param({"200"})
+  public int bankLatencyMs;
+
+  private StubBankServer bank;
+  private BankClient bankClient;
+  private ExecutorService blockingPool;
+  private BankRequest request;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    bank = new StubBankServer();
+    bank.setDelay(() -> Duration.ofMillis(bankLatencyMs));
+    HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    bankClient = new BankClient(new RestTemplate(), httpClient,
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(30),
+        new BankCircuitBreaker(1.0, 100, 100, Duration.ofSeconds(1), 1),
+        new AdaptiveConcurrencyLimiter(IN_FLIGHT, IN_FLIGHT, IN_FLIGHT, 0.9,
+            Duration.ofMinutes(1)),
+        BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+        new PaymentMetrics(new SimpleMeterRegistry()));
+    blockingPool = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+
+    request = new BankRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    blockingPool.shutdownNow();
+    bank.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public void async() {
+    CompletableFuture<?>[] responses = new CompletableFuture<?>[IN_FLIGHT];
+    for (int i = 0; i < IN_FLIGHT; i++) {
+      responses[i] = bankClient.processPaymentAsync(request);
+    }
+    CompletableFuture.allOf(responses).join();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public void blocking() {
+    CompletableFuture<?>[] responses = new CompletableFuture<?>[IN_FLIGHT];
+    for (int i = 0; i < IN_FLIGHT; i++) {
+      responses[i] = CompletableFuture.supplyAsync(
+          () -> bankClient.processPayment(request), blockingPool);
+    }
+    CompletableFuture.allOf(responses).join();
+    BankResponse last = (BankResponse) responses[IN_FLIGHT - 1].join();
+    if (!last.isAuthorized()) {
+      throw new IllegalStateException("Unexpected bank response " + last);
+    }
+  }
+}
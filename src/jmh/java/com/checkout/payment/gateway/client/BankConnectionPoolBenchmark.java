@@ -0,0 +1,113 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.configuration.ApplicationConfiguration;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Blocking bank calls from 4 request threads (override with {@code -t}) through the previous
+ * {@code HttpURLConnection} factory ({@code simple}) and the pooled Apache client built by
+ * {@link ApplicationConfiguration} ({@code pooled}). Sample mode reports p50/p99 per call.
+ * {@code bankUrl} is either {@code stub} for the in-process bank or the Mountebank imposter, e.g.
+ * {@code -p bankUrl=http://localhost:8080} after {@code docker-compose up}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class BankConnectionPoolBenchmark {
+
+  @Param({"simple", "pooled"})
+  public String factory;
+
+  @Param({"stub"})
+  public String bankUrl;
+
+  private StubBankServer bank;
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient connectionPool;
+  private BankClient bankClient;
+  private BankRequest request;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    String url = bankUrl;
+    if ("stub".equals(bankUrl)) {
+      bank = new StubBankServer();
+      url = bank.url();
+    }
+
+    Duration timeout = Duration.ofSeconds(10);
+    RestTemplate restTemplate;
+    if ("pooled".equals(factory)) {
+      ApplicationConfiguration configuration = new ApplicationConfiguration();
+      connectionManager = configuration.bankConnectionManager(timeout, timeout, 200, 200,
+          Duration.ofMinutes(5), Duration.ofSeconds(2));
+      connectionPool = configuration.bankConnectionPool(connectionManager, Duration.ofSeconds(2),
+          Duration.ofSeconds(30));
+      restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(connectionPool));
+    } else {
+      SimpleClientHttpRequestFactory simple = new SimpleClientHttpRequestFactory();
+      simple.setConnectTimeout((int) timeout.toMillis());
+      simple.setReadTimeout((int) timeout.toMillis());
+      restTemplate = new RestTemplate(simple);
+    }
+    bankClient = new BankClient(restTemplate, HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), url, timeout,
+        new BankCircuitBreaker(1.0, 100, 100, Duration.ofSeconds(1), 1),
+        new AdaptiveConcurrencyLimiter(200, 200, 200, 0.9, Duration.ofMinutes(1)),
+        BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+        new PaymentMetrics(new SimpleMeterRegistry()));
+
+    request = new BankRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    if (connectionPool != null) {
+      connectionPool.close();
+      connectionManager.close();
+    }
+    if (bank != null) {
+      bank.close();
+    }
+  }
+
+  @Benchmark
+  public BankResponse processPayment() {
+    return bankClient.processPayment(request);
+  }
+}
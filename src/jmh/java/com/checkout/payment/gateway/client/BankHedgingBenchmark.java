@@ -0,0 +1,140 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Tail latency of bank calls with and without hedging, against a stub bank that answers most
+ * calls in 1-4ms but {@code slowPercent} of them in 100-300ms. {@code callers} closed-loop callers
+ * make {@code REQUESTS} idempotent calls between them. {@code hedging} is {@code off} or the
+ * latency percentile a call waits before it is hedged; the warmup iteration fills the latency
+ * window. The secondary metrics are the p50, p99 and p99.9 latency and the hedges sent per
+ * thousand calls, which is the extra load put on the bank.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(1)
+public class BankHedgingBenchmark {
+
+  private static final int REQUESTS = 5_000;
+
+  @Param({"off", "0.95"})
+  public String hedging;
+
+  @Param({"16"})
+  public int callers;
+
+  @Param({"3"})
+  public int slowPercent;
+
+  private StubBankServer bank;
+  private SimpleMeterRegistry registry;
+  private BankClient bankClient;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Tail {
+
+    public long p50Micros;
+    public long p99Micros;
+    public long p999Micros;
+    public long hedgesPerThousand;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    bank = new StubBankServer();
+    bank.setDelay(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      return random.nextInt(100) < slowPercent
+          ? Duration.ofMillis(random.nextInt(100, 300))
+          : Duration.ofMillis(random.nextInt(1, 5));
+    });
+    registry = new SimpleMeterRegistry();
+    BankHedgingPolicy hedgingPolicy = "off".equals(hedging)
+        ? BankHedgingPolicy.disabled()
+        : new BankHedgingPolicy(Double.parseDouble(hedging), Duration.ofMillis(1), 1024);
+    bankClient = new BankClient(new RestTemplate(), HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(30),
+        new BankCircuitBreaker(1.0, 100, 100, Duration.ofSeconds(1), 1),
+        new AdaptiveConcurrencyLimiter(1024, 1024, 1024, 0.9, Duration.ofMinutes(1)),
+        BankRetryPolicy.none(), hedgingPolicy, true, new PaymentMetrics(registry));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    bank.close();
+  }
+
+  @Benchmark
+  public void calls(Tail tail) throws InterruptedException {
+    double hedgesBefore = registry.get(PaymentMetrics.BANK_HEDGES).counter().count();
+    long[] latencies = new long[REQUESTS];
+    AtomicInteger issued = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(callers);
+    for (int i = 0; i < callers; i++) {
+      sendNext(issued, latencies, done);
+    }
+    done.await();
+
+    Arrays.sort(latencies);
+    tail.p50Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS / 2]);
+    tail.p99Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 99 / 100]);
+    tail.p999Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 999 / 1000]);
+    double hedges = registry.get(PaymentMetrics.BANK_HEDGES).counter().count() - hedgesBefore;
+    tail.hedgesPerThousand = Math.round(hedges * 1000 / REQUESTS);
+  }
+
+  private void sendNext(AtomicInteger issued, long[] latencies, CountDownLatch done) {
+    int i = issued.getAndIncrement();
+    if (i >= REQUESTS) {
+      done.countDown();
+      return;
+    }
+    long start = System.nanoTime();
+    bankClient.processPaymentAsync(request(), Deadline.after(Duration.ofSeconds(5)))
+        .thenRun(() -> {
+          latencies[i] = System.nanoTime() - start;
+          sendNext(issued, latencies, done);
+        });
+  }
+
+  private static BankRequest request() {
+    BankRequest request = new BankRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+    request.setIdempotencyKey(UUID.randomUUID().toString());
+    return request;
+  }
+}
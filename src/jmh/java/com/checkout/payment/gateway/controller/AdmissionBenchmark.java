@@ -0,0 +1,66 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.controller.AdmissionQueue.Priority;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What {@link PaymentAdmissionFilter} adds to each request, from 8 threads: a permit from the
+ * {@link MerchantRateLimiter} with {@code merchants} merchants already holding a bucket and
+ * random merchants asking, and a slot from the {@link AdmissionQueue} while it has room. The
+ * rate is set so that nobody is refused, which is the cost every admitted request pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AdmissionBenchmark {
+
+  @Param({"1000", "1000000", "4000000"})
+  public int merchants;
+
+  private MerchantRateLimiter rateLimiter;
+  private AdmissionQueue admissionQueue;
+  private String[] merchantIds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    rateLimiter = new MerchantRateLimiter(1e9, 1_000_000, merchants, Duration.ofHours(1));
+    admissionQueue = new AdmissionQueue(1_000, Duration.ofMillis(100));
+    merchantIds = new String[merchants];
+    for (int i = 0; i < merchants; i++) {
+      merchantIds[i] = "merchant-" + i;
+      rateLimiter.tryAcquire(merchantIds[i]);
+    }
+  }
+
+  @Benchmark
+  public long rateLimit() {
+    return rateLimiter.tryAcquire(
+        merchantIds[ThreadLocalRandom.current().nextInt(merchantIds.length)]);
+  }
+
+  @Benchmark
+  public boolean admit() {
+    boolean admitted = admissionQueue.acquire(Priority.NORMAL);
+    admissionQueue.release();
+    return admitted;
+  }
+}
@@ -0,0 +1,162 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.PaymentGatewayApplication;
+import com.checkout.payment.gateway.client.StubBankServer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The whole application over HTTP in each runtime {@code mode}: {@code servlet} (Tomcat, a thread
+ * per request) or {@code reactive} (the {@code reactive} profile, Netty and {@code WebClient}).
+ * {@code connections} closed-loop clients each post their next payment as soon as the previous one
+ * is answered, until {@code REQUESTS} payments have been made against a stub bank answering after
+ * {@code bankLatencyMs}. The secondary metrics are the achieved throughput, the p50/p99 latency,
+ * the failed payments and the peak number of live threads during the run. With {@code -prof gc},
+ * the allocation per run divided by {@code REQUESTS} is the memory churned per payment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(1)
+public class PaymentApiLoadBenchmark {
+
+  private static final int REQUESTS = 20_000;
+  private static final String PAYMENT = """
+      {"card_number":"2222405343248113","expiry_month":"12","expiry_year":"2030",\
+      "currency":"GBP","amount":100,"cvv":"123"}""";
+
+  @Param({"servlet", "reactive"})
+  public String mode;
+
+  @Param({"64", "512"})
+  public int connections;
+
+  @Param({"20"})
+  public int bankLatencyMs;
+
+  private StubBankServer bank;
+  private ConfigurableApplicationContext application;
+  private HttpClient client;
+  private HttpRequest request;
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Load {
+
+    public long paymentsPerSecond;
+    public long p50Micros;
+    public long p99Micros;
+    public long peakThreads;
+    public long failed;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    bank = new StubBankServer();
+    bank.setDelay(() -> Duration.ofMillis(bankLatencyMs));
+    SpringApplicationBuilder builder =
+        new SpringApplicationBuilder(PaymentGatewayApplication.class);
+    if ("reactive".equals(mode)) {
+      builder.profiles("reactive");
+    }
+    // Arguments rather than builder properties, which application.properties would override.
+    application = builder.run(
+        "--server.port=0",
+        "--bank.simulator.url=" + bank.url(),
+        "--bank.client.pool.max-total=1024",
+        "--bank.client.pool.max-per-route=1024",
+        "--bank.client.limiter.initial-limit=1024",
+        "--bank.client.limiter.max-limit=1024",
+        "--bank.client.limiter.latency-threshold=1m",
+        "--logging.level.root=WARN",
+        "--logging.level.payments.events=OFF");
+    int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+
+    // A small fixed pool, so the peak thread count is the server's and not the load generator's.
+    client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .executor(Executors.newFixedThreadPool(2))
+        .build();
+    request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payments"))
+        .header("Content-Type", "application/json")
+        .POST(BodyPublishers.ofString(PAYMENT))
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.close();
+    bank.close();
+  }
+
+  @Benchmark
+  public void payments(Load load) throws InterruptedException {
+    long[] latencies = new long[REQUESTS];
+    AtomicInteger issued = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(connections);
+    AtomicInteger failed = new AtomicInteger();
+    threads.resetPeakThreadCount();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < connections; i++) {
+      sendNext(issued, latencies, failed, done);
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    load.paymentsPerSecond = REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    load.p50Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS / 2]);
+    load.p99Micros = TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 99 / 100]);
+    load.peakThreads = threads.getPeakThreadCount();
+    load.failed = failed.get();
+  }
+
+  private void sendNext(AtomicInteger issued, long[] latencies, AtomicInteger failed,
+      CountDownLatch done) {
+    int i = issued.getAndIncrement();
+    if (i >= REQUESTS) {
+      done.countDown();
+      return;
+    }
+    long start = System.nanoTime();
+    client.sendAsync(request, BodyHandlers.discarding()).whenComplete((response, e) -> {
+      if (e != null || response.statusCode() != 201) {
+        failed.incrementAndGet();
+      }
+      latencies[i] = System.nanoTime() - start;
+      sendNext(issued, latencies, failed, done);
+    });
+  }
+}
@@ -0,0 +1,159 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.client.AdaptiveConcurrencyLimiter;
+import com.checkout.payment.gateway.client.BankCircuitBreaker;
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankHedgingPolicy;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.BankRetryPolicy;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PaymentView;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.service.CardVault;
+import com.checkout.payment.gateway.service.IdempotencyCache;
+import com.checkout.payment.gateway.service.PaymentEngine;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentJsonCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * One {@code POST /payments} from request body to stored payment, read as a
+ * {@link PostPaymentRequest} by Jackson and as a {@link PaymentView} by
+ * {@link PaymentViewConverter}. Both go through the real {@link BankClient} on a
+ * {@link RestTemplate} whose bank answers in memory, and the store keeps nothing, so the two
+ * differ only in how the body is decoded and the bank's body encoded. Run with the gc profiler
+ * and compare {@code gc.alloc.rate.norm}, the bytes allocated per payment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentDecodingBenchmark {
+
+  private static final byte[] BODY = """
+      {
+        "card_number": "2222405343248113",
+        "expiry_month": "12",
+        "expiry_year": "2030",
+        "currency": "GBP",
+        "amount": 100,
+        "cvv": "123"
+      }
+      """.getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] BANK_ANSWER =
+      "{\"authorized\":true,\"authorization_code\":\"0bb07405\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private MappingJackson2HttpMessageConverter jsonConverter;
+  private PaymentViewConverter viewConverter;
+  private PaymentGatewayService service;
+
+  @Setup
+  public void setUp() {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    PaymentMetrics metrics = new PaymentMetrics(new SimpleMeterRegistry());
+    jsonConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+    viewConverter = new PaymentViewConverter(objectMapper, metrics, 16 * 1024);
+
+    RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+      MockClientHttpResponse answer = new MockClientHttpResponse(BANK_ANSWER, HttpStatus.OK);
+      answer.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+      MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+      request.setResponse(answer);
+      return request;
+    });
+    BankClient bankClient = new BankClient(restTemplate, null, objectMapper, "http://localhost",
+        Duration.ofSeconds(10),
+        new BankCircuitBreaker(0.5, 20, 10, Duration.ofSeconds(5), 3),
+        new AdaptiveConcurrencyLimiter(10, 1, 10, 0.9, Duration.ofSeconds(1)),
+        BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false, metrics);
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    service = new PaymentGatewayService(
+        new PaymentsRepository(new DiscardingStore(), null, null), bankClient,
+        new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class), metrics,
+        new PaymentJsonCache(objectMapper, 1), beans.getBeanProvider(PaymentEngine.class),
+        beans.getBeanProvider(CardVault.class));
+  }
+
+  @Benchmark
+  public PaymentResponse jackson() throws IOException {
+    PostPaymentRequest request = (PostPaymentRequest) jsonConverter.read(
+        PostPaymentRequest.class, body());
+    return service.processPayment(request, null, Deadline.none());
+  }
+
+  @Benchmark
+  public PaymentResponse view() throws IOException {
+    PaymentView payment = viewConverter.read(PaymentView.class, body());
+    try {
+      return service.processPayment(payment, null, Deadline.none());
+    } finally {
+      payment.clear();
+    }
+  }
+
+  private static MockHttpInputMessage body() {
+    MockHttpInputMessage body = new MockHttpInputMessage(BODY);
+    body.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    return body;
+  }
+
+  private static class DiscardingStore implements PaymentStore {
+
+    @Override
+    public boolean put(PaymentResponse payment) {
+      return true;
+    }
+
+    @Override
+    public PaymentResponse get(UUID id) {
+      return null;
+    }
+
+    @Override
+    public boolean remove(UUID id) {
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return 0;
+    }
+
+    @Override
+    public void forEach(Consumer<PaymentResponse> action) {
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.checkout.payment.gateway.exception;
+
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.ErrorResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.StorageMode;
+import com.checkout.payment.gateway.service.CardVault;
+import com.checkout.payment.gateway.service.IdempotencyCache;
+import com.checkout.payment.gateway.service.PaymentEngine;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentJsonCache;
+import com.checkout.payment.gateway.validator.LegacyRequestValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Throughput of a flood of invalid requests (a CVV that is too short, so every field is checked)
+ * from validation to response body. {@code exceptionChain} is the previous path: the validator
+ * throws {@link IllegalArgumentException}, the service wraps it in a new
+ * {@link BadRequestException} and the handler serializes a fresh {@link ErrorResponse}.
+ * {@code sharedRejection} is {@link PaymentGatewayService} throwing the shared
+ * {@link PaymentRejectedException} and {@link CommonExceptionHandler} returning its pre-serialized
+ * body. Client-error logging is off in both, so only the rejection itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentRejectionBenchmark {
+
+  private PostPaymentRequest invalid;
+  private ObjectMapper objectMapper;
+  private PaymentGatewayService service;
+  private CommonExceptionHandler handler;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    invalid = new PostPaymentRequest();
+    invalid.setCardNumber("2222405343248113");
+    invalid.setExpiryMonth("12");
+    invalid.setExpiryYear("2030");
+    invalid.setCurrency("GBP");
+    invalid.setAmount(100);
+    invalid.setCvv("12");
+
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    PaymentMetrics metrics = new PaymentMetrics(new SimpleMeterRegistry());
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    service = new PaymentGatewayService(
+        new PaymentsRepository(StorageMode.HEAP.create(1, 16), null, null),
+        null, new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class), metrics,
+        new PaymentJsonCache(objectMapper, 1), beans.getBeanProvider(PaymentEngine.class),
+        beans.getBeanProvider(CardVault.class));
+    handler = new CommonExceptionHandler(metrics, objectMapper, 0);
+  }
+
+  @Benchmark
+  public byte[] exceptionChain() throws JsonProcessingException {
+    try {
+      UUID.randomUUID();
+      try {
+        LegacyRequestValidator.validateRequest(invalid);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException("Validation failed: " + e.getMessage());
+      }
+      throw new IllegalStateException("Request was expected to be invalid");
+    } catch (BadRequestException e) {
+      ResponseEntity<ErrorResponse> response = new ResponseEntity<>(
+          new ErrorResponse(e.getMessage()), HttpStatus.BAD_REQUEST);
+      return objectMapper.writeValueAsBytes(response.getBody());
+    }
+  }
+
+  @Benchmark
+  public byte[] sharedRejection() {
+    try {
+      service.processPayment(invalid);
+      throw new IllegalStateException("Request was expected to be invalid");
+    } catch (PaymentRejectedException e) {
+      return handler.handlePaymentRejectedException(e).getBody();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.checkout.payment.gateway.metrics;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.metrics.PaymentMetrics.Stage;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the instrumentation a single payment records: {@code payment} is the five stage timers,
+ * one outcome and one bank status, as the service does them, against {@code baseline} which only
+ * reads the clock as often, twice per stage. {@code percentiles} toggles the client-side
+ * percentiles configured in {@code application.properties}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentMetricsBenchmark {
+
+  private static final Stage[] STAGES = Stage.values();
+
+  @Param({"false", "true"})
+  public boolean percentiles;
+
+  private PaymentMetrics metrics;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    if (percentiles) {
+      registry.config().meterFilter(new MeterFilter() {
+        @Override
+        public DistributionStatisticConfig configure(Meter.Id id,
+            DistributionStatisticConfig config) {
+          return DistributionStatisticConfig.builder()
+              .percentiles(0.5, 0.95, 0.99)
+              .build()
+              .merge(config);
+        }
+      });
+    }
+    metrics = new PaymentMetrics(registry);
+  }
+
+  @Benchmark
+  public long baseline() {
+    long sum = 0;
+    for (int i = 0; i < STAGES.length; i++) {
+      sum += System.nanoTime() - System.nanoTime();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public void payment() {
+    for (Stage stage : STAGES) {
+      metrics.record(stage, System.nanoTime());
+    }
+    metrics.recordOutcome(PaymentStatus.AUTHORIZED);
+    metrics.recordBankResponse(200);
+  }
+}
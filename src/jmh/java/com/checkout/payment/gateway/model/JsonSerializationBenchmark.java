@@ -0,0 +1,101 @@
+package com.checkout.payment.gateway.model;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Jackson work per payment with the mapper Spring MVC uses: reading the merchant's
+ * {@link PostPaymentRequest}, writing the {@link BankRequest} and reading the bank's answer, and
+ * writing the {@link PaymentResponse} back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  private ObjectReader postPaymentRequestReader;
+  private ObjectReader bankResponseReader;
+  private ObjectWriter bankRequestWriter;
+  private ObjectWriter paymentResponseWriter;
+
+  private byte[] postPaymentRequestJson;
+  private byte[] bankResponseJson;
+  private BankRequest bankRequest;
+  private PaymentResponse paymentResponse;
+
+  @Setup
+  public void setUp() throws IOException {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    postPaymentRequestReader = objectMapper.readerFor(PostPaymentRequest.class);
+    bankResponseReader = objectMapper.readerFor(BankResponse.class);
+    bankRequestWriter = objectMapper.writerFor(BankRequest.class);
+    paymentResponseWriter = objectMapper.writerFor(PaymentResponse.class);
+
+    postPaymentRequestJson = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """.getBytes();
+    bankResponseJson = "{\"authorized\":true,\"authorization_code\":\"0bb07405\"}".getBytes();
+
+    bankRequest = new BankRequest();
+    bankRequest.setCardNumber("2222405343248113");
+    bankRequest.setExpiryDate("12/2030");
+    bankRequest.setCurrency("GBP");
+    bankRequest.setAmount(100);
+    bankRequest.setCvv("123");
+
+    paymentResponse = new PaymentResponse();
+    paymentResponse.setId(UUID.randomUUID());
+    paymentResponse.setStatus(PaymentStatus.AUTHORIZED);
+    paymentResponse.setCardNumberLastFour("8113");
+    paymentResponse.setExpiryMonth("12");
+    paymentResponse.setExpiryYear("2030");
+    paymentResponse.setCurrency("GBP");
+    paymentResponse.setAmount(100);
+  }
+
+  @Benchmark
+  public PostPaymentRequest readPostPaymentRequest() throws IOException {
+    return postPaymentRequestReader.readValue(postPaymentRequestJson);
+  }
+
+  @Benchmark
+  public byte[] writeBankRequest() throws IOException {
+    return bankRequestWriter.writeValueAsBytes(bankRequest);
+  }
+
+  @Benchmark
+  public BankResponse readBankResponse() throws IOException {
+    return bankResponseReader.readValue(bankResponseJson);
+  }
+
+  @Benchmark
+  public byte[] writePaymentResponse() throws IOException {
+    return paymentResponseWriter.writeValueAsBytes(paymentResponse);
+  }
+}
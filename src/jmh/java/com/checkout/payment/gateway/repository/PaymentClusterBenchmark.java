@@ -0,0 +1,129 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Three {@link PaymentCluster} nodes on localhost, each with a heap store, replicating to one
+ * owner. {@code replicationLag} adds a payment on node 0 that node 1 owns and waits until node 1
+ * holds it, with replication batches closed after {@code batchIntervalMicros}. {@code remoteGet}
+ * reads on node 2 payments held only by node 1, which is a lookup over the network, and
+ * {@code localGet} reads them on node 1 for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentClusterBenchmark {
+
+  private static final int NODES = 3;
+  private static final int STORED = 10_000;
+
+  @Param({"0", "1000"})
+  public int batchIntervalMicros;
+
+  private final List<PaymentCluster> clusters = new ArrayList<>();
+  private final List<PaymentsRepository> repositories = new ArrayList<>();
+  private UUID[] remoteIds;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (int i = 0; i < NODES; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        addresses.add(new InetSocketAddress("localhost", socket.getLocalPort()));
+      }
+    }
+    for (int i = 0; i < NODES; i++) {
+      PaymentCluster cluster = new PaymentCluster(addresses, i, 1, 256,
+          Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(batchIntervalMicros)), 65536,
+          Duration.ofMillis(100), Duration.ofMillis(50),
+          "payment-cluster-benchmark".getBytes(StandardCharsets.US_ASCII));
+      clusters.add(cluster);
+      repositories.add(new PaymentsRepository(
+          StorageMode.HEAP.create(16, STORED * 4), null, cluster));
+    }
+    remoteIds = new UUID[STORED];
+    for (int i = 0; i < STORED; i++) {
+      PaymentResponse payment = payment(i, ownedBy(1));
+      repositories.get(1).add(payment);
+      remoteIds[i] = payment.getId();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    clusters.forEach(PaymentCluster::close);
+  }
+
+  @Benchmark
+  public PaymentResponse replicationLag() {
+    PaymentResponse payment = payment(ThreadLocalRandom.current().nextInt(STORED), ownedBy(1));
+    repositories.get(0).add(payment);
+    PaymentsRepository owner = repositories.get(1);
+    PaymentResponse replica;
+    while ((replica = owner.getLocal(payment.getId())) == null) {
+      Thread.onSpinWait();
+    }
+    return replica;
+  }
+
+  @Benchmark
+  public PaymentResponse remoteGet() {
+    return repositories.get(2).get(remoteIds[ThreadLocalRandom.current().nextInt(STORED)])
+        .orElseThrow();
+  }
+
+  @Benchmark
+  public PaymentResponse localGet() {
+    return repositories.get(1).get(remoteIds[ThreadLocalRandom.current().nextInt(STORED)])
+        .orElseThrow();
+  }
+
+  private UUID ownedBy(int node) {
+    UUID id = UUID.randomUUID();
+    while (clusters.get(0).owners(id)[0] != node) {
+      id = UUID.randomUUID();
+    }
+    return id;
+  }
+
+  private static PaymentResponse payment(int i, UUID id) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(id);
+    payment.setStatus(i % 2 == 0 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(i + 1);
+    payment.setCreatedAt(Instant.now());
+    return payment;
+  }
+}
@@ -0,0 +1,90 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency added to a repository write by the journal. {@code journal=none} is the plain in-memory
+ * store; the other modes wait for the group commit covering each record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(16)
+public class PaymentJournalAppendBenchmark {
+
+  @Param({"none", "1ms", "2ms", "5ms"})
+  public String journal;
+
+  @Param({"256"})
+  public int flushBatchSize;
+
+  private Path directory;
+  private PaymentJournal paymentJournal;
+  private PaymentStore store;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    PaymentStore memory = new PackedPaymentStore(16, 1 << 22);
+    if (journal.equals("none")) {
+      store = memory;
+      return;
+    }
+    directory = Files.createTempDirectory("payment-journal-bench");
+    paymentJournal = new PaymentJournal(directory, 64 << 20,
+        Duration.ofMillis(Long.parseLong(journal.replace("ms", ""))), flushBatchSize, true,
+        Duration.ofHours(1), 0.5);
+    store = new JournaledPaymentStore(memory, paymentJournal);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (paymentJournal == null) {
+      return;
+    }
+    paymentJournal.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public void add() {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(PaymentStatus.AUTHORIZED);
+    payment.setCardNumberLastFour("4242");
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(100);
+    store.put(payment);
+  }
+}
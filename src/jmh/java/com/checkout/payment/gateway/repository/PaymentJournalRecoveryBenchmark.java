@@ -0,0 +1,87 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to replay a journal of {@code payments} records into an empty store on startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PaymentJournalRecoveryBenchmark {
+
+  @Param({"10000000"})
+  public int payments;
+
+  @Param({"PACKED"})
+  public StorageMode storage;
+
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void writeJournal() throws IOException {
+    directory = Files.createTempDirectory("payment-journal-recovery");
+    try (PaymentJournal journal = journal()) {
+      journal.open(new PackedPaymentStore(1, 16));
+      PaymentResponse payment = new PaymentResponse();
+      payment.setStatus(PaymentStatus.AUTHORIZED);
+      payment.setCardNumberLastFour("4242");
+      payment.setExpiryMonth("12");
+      payment.setExpiryYear("2030");
+      payment.setCurrency("GBP");
+      for (int i = 0; i < payments; i++) {
+        payment.setId(UUID.randomUUID());
+        payment.setAmount(i + 1);
+        journal.append(payment);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteJournal() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public PaymentStore recover() {
+    PaymentStore store = storage.create(16, payments);
+    try (PaymentJournal journal = journal()) {
+      journal.open(store);
+    }
+    return store;
+  }
+
+  private PaymentJournal journal() {
+    return new PaymentJournal(directory, 64 << 20, Duration.ofMillis(5), 4096, false,
+        Duration.ofHours(1), 0.5);
+  }
+}
@@ -0,0 +1,114 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentPage;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of {@link PaymentsRepository#find(PaymentQuery)} over 10M {@code PACKED} payments
+ * created evenly over 30 days, with random statuses (30% declined), currencies and card last
+ * fours. Each query asks for the first page of 50. {@code fullScan} answers "declined GBP for
+ * card 4242 in the last hour" by visiting every stored payment, which is what a query cost before
+ * the indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PaymentQueryBenchmark {
+
+  private static final Instant NOW = Instant.parse("2024-02-01T00:00:00Z");
+  private static final Duration SPAN = Duration.ofDays(30);
+
+  @Param({"10000000"})
+  public int payments;
+
+  private PaymentsRepository repository;
+  private PaymentStore store;
+  private PaymentQuery byCard;
+  private PaymentQuery declinedGbpCardLastHour;
+  private PaymentQuery declinedLastHour;
+  private PaymentQuery lastHour;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    store = StorageMode.PACKED.create(16, payments);
+    repository = new PaymentsRepository(store, null, null);
+    SplittableRandom random = new SplittableRandom(42);
+    long start = NOW.minus(SPAN).toEpochMilli();
+    CurrencyCodes[] currencies = CurrencyCodes.values();
+    for (int i = 0; i < payments; i++) {
+      PaymentResponse payment = new PaymentResponse();
+      payment.setId(new UUID(random.nextLong(), random.nextLong()));
+      payment.setStatus(random.nextInt(10) < 3 ? PaymentStatus.DECLINED : PaymentStatus.AUTHORIZED);
+      payment.setCardNumberLastFour(String.format("%04d", random.nextInt(10_000)));
+      payment.setExpiryMonth("12");
+      payment.setExpiryYear("2030");
+      payment.setCurrency(currencies[random.nextInt(currencies.length)].name());
+      payment.setAmount(1 + random.nextInt(100_000));
+      payment.setCreatedAt(Instant.ofEpochMilli(start + SPAN.toMillis() * i / payments));
+      repository.add(payment);
+    }
+
+    Instant hourAgo = NOW.minus(Duration.ofHours(1));
+    byCard = new PaymentQuery(null, null, 4242, null, null, null, 50);
+    declinedGbpCardLastHour = new PaymentQuery(PaymentStatus.DECLINED, CurrencyCodes.GBP, 4242,
+        hourAgo, null, null, 50);
+    declinedLastHour = new PaymentQuery(PaymentStatus.DECLINED, null, null, hourAgo, null, null,
+        50);
+    lastHour = new PaymentQuery(null, null, null, hourAgo, null, null, 50);
+  }
+
+  @Benchmark
+  public PaymentPage cardLastFour() {
+    return repository.find(byCard);
+  }
+
+  @Benchmark
+  public PaymentPage declinedGbpCardLastHour() {
+    return repository.find(declinedGbpCardLastHour);
+  }
+
+  @Benchmark
+  public PaymentPage declinedLastHour() {
+    return repository.find(declinedLastHour);
+  }
+
+  @Benchmark
+  public PaymentPage createdLastHour() {
+    return repository.find(lastHour);
+  }
+
+  @Benchmark
+  public List<PaymentResponse> fullScan() {
+    List<PaymentResponse> matches = new ArrayList<>();
+    store.forEach(payment -> {
+      if (declinedGbpCardLastHour.matches(payment)) {
+        matches.add(payment);
+      }
+    });
+    return matches;
+  }
+}
@@ -0,0 +1,92 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills a store with {@code payments} records and reports the retained heap per payment as the
+ * {@code retainedBytesPerPayment} secondary metric. The primary score is the fill time. With
+ * {@code indexed} the payments are added through {@link PaymentsRepository}, so the secondary
+ * indexes are counted too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PaymentStoreFootprintBenchmark {
+
+  @Param({"HEAP", "PACKED"})
+  public StorageMode storage;
+
+  @Param({"1000000"})
+  public int payments;
+
+  @Param({"false", "true"})
+  public boolean indexed;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long retainedBytesPerPayment;
+  }
+
+  @Benchmark
+  public Object fill(Footprint footprint) {
+    long before = usedHeapAfterGc();
+    PaymentStore store = storage.create(16, payments);
+    PaymentsRepository repository = indexed ? new PaymentsRepository(store, null, null) : null;
+    for (int i = 0; i < payments; i++) {
+      if (indexed) {
+        repository.add(payment(i));
+      } else {
+        store.put(payment(i));
+      }
+    }
+    long after = usedHeapAfterGc();
+    footprint.retainedBytesPerPayment = (after - before) / payments;
+    return indexed ? repository : store;
+  }
+
+  private static PaymentResponse payment(int i) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus((i & 1) == 0 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth(String.format("%02d", i % 12 + 1));
+    payment.setExpiryYear(String.valueOf(2027 + i % 5));
+    payment.setCurrency(i % 3 == 0 ? "GBP" : "USD");
+    payment.setAmount(i + 1);
+    payment.setCreatedAt(Instant.ofEpochMilli(1_700_000_000_000L + i));
+    return payment;
+  }
+
+  private static long usedHeapAfterGc() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
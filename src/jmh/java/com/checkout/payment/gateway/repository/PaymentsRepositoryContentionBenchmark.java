@@ -0,0 +1,93 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PaymentsRepository} add and get under contention: three threads reading existing payments
+ * while one keeps adding new ones, for each storage mode. Payments are generated up front so the
+ * score is the repository alone.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PaymentsRepositoryContentionBenchmark {
+
+  private static final int STORED = 100_000;
+  private static final int PENDING = 1 << 20;
+
+  @Param({"HEAP", "PACKED"})
+  public StorageMode storage;
+
+  private PaymentsRepository repository;
+  private UUID[] storedIds;
+  private PaymentResponse[] pending;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    repository = new PaymentsRepository(storage.create(16, STORED + PENDING), null, null);
+    storedIds = new UUID[STORED];
+    for (int i = 0; i < STORED; i++) {
+      PaymentResponse payment = payment(i);
+      repository.add(payment);
+      storedIds[i] = payment.getId();
+    }
+    pending = new PaymentResponse[PENDING];
+    for (int i = 0; i < PENDING; i++) {
+      pending[i] = payment(i);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Writer {
+
+    int next;
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(3)
+  public Optional<PaymentResponse> get() {
+    return repository.get(storedIds[ThreadLocalRandom.current().nextInt(STORED)]);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public void add(Writer writer) {
+    repository.add(pending[writer.next++ & (PENDING - 1)]);
+  }
+
+  private static PaymentResponse payment(int i) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus((i & 1) == 0 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth(String.format("%02d", i % 12 + 1));
+    payment.setExpiryYear(String.valueOf(2027 + i % 5));
+    payment.setCurrency(i % 3 == 0 ? "GBP" : "USD");
+    payment.setAmount(i + 1);
+    return payment;
+  }
+}
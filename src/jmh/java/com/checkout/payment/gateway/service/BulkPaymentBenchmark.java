@@ -0,0 +1,279 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankHedgingPolicy;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.BankRetryPolicy;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.exception.PaymentGatewayException;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.BulkPaymentResult;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * A 1M-item upload through {@link BulkPaymentService} with an instant bank and a store that keeps
+ * nothing, so the score is parsing, validation, mapping and writing results. The upload is
+ * generated as it is read and the response is counted and dropped, so neither sits in memory.
+ * {@code streamNdjson} and {@code streamArray} are the two upload formats; {@code bufferedArray}
+ * is the obvious alternative, reading the whole array into a list and writing one result list.
+ * The secondary metrics are items per second and the peak old generation during the run; the
+ * fork's heap is capped at 1 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class BulkPaymentBenchmark {
+
+  private static final byte[] PAYMENT = """
+      {"card_number":"2222405343248113","expiry_month":"12","expiry_year":"2030",\
+      "currency":"GBP","amount":100,"cvv":"123"}""".getBytes(StandardCharsets.UTF_8);
+
+  @Param({"1000000"})
+  public int items;
+
+  private ObjectMapper objectMapper;
+  private PaymentGatewayService paymentGatewayService;
+  private BulkPaymentService bulkPaymentService;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Upload {
+
+    public long itemsPerSecond;
+    public long oldGenPeakMb;
+    public long responseMb;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    BankResponse authorized = new BankResponse();
+    authorized.setAuthorized(true);
+    authorized.setHttpStatusCode(200);
+    PaymentMetrics metrics = new PaymentMetrics(new SimpleMeterRegistry());
+    BankClient bankClient = new BankClient(null, null, null, "http://localhost", Duration.ZERO,
+        null, null, BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false, metrics) {
+      @Override
+      public BankResponse processPayment(BankRequest bankRequest, Deadline deadline) {
+        return authorized;
+      }
+
+      @Override
+      public CompletableFuture<BankResponse> processPaymentAsync(BankRequest bankRequest,
+          Deadline deadline) {
+        return CompletableFuture.completedFuture(authorized);
+      }
+    };
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    paymentGatewayService = new PaymentGatewayService(
+        new PaymentsRepository(new DiscardingStore(), null, null), bankClient,
+        new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class), metrics,
+        new PaymentJsonCache(objectMapper, 1), beans.getBeanProvider(PaymentEngine.class),
+        beans.getBeanProvider(CardVault.class));
+    bulkPaymentService = new BulkPaymentService(paymentGatewayService, metrics, objectMapper, 16);
+  }
+
+  @Benchmark
+  public void streamNdjson(Upload upload) throws IOException {
+    run(upload, false, out -> bulkPaymentService.process(new UploadStream(items, false), out));
+  }
+
+  @Benchmark
+  public void streamArray(Upload upload) throws IOException {
+    run(upload, true, out -> bulkPaymentService.process(new UploadStream(items, true), out));
+  }
+
+  @Benchmark
+  public void bufferedArray(Upload upload) throws IOException {
+    run(upload, true, out -> {
+      List<PostPaymentRequest> requests = objectMapper.readValue(new UploadStream(items, true),
+          new TypeReference<>() {
+          });
+      List<BulkPaymentResult> results = new ArrayList<>(requests.size());
+      for (int i = 0; i < requests.size(); i++) {
+        try {
+          results.add(BulkPaymentResult.processed(i,
+              paymentGatewayService.processPayment(requests.get(i))));
+        } catch (PaymentGatewayException e) {
+          results.add(BulkPaymentResult.failed(i, e.getStatusCode(), e.getMessage()));
+        }
+      }
+      objectMapper.writeValue(out, results);
+    });
+  }
+
+  private interface Body {
+
+    void write(OutputStream out) throws IOException;
+  }
+
+  private void run(Upload upload, boolean array, Body body) throws IOException {
+    List<MemoryPoolMXBean> oldGen = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .filter(pool -> pool.getName().contains("Old") || pool.getName().contains("Tenured"))
+        .toList();
+    System.gc();
+    oldGen.forEach(MemoryPoolMXBean::resetPeakUsage);
+    CountingStream out = new CountingStream();
+
+    long start = System.nanoTime();
+    body.write(out);
+    long elapsed = System.nanoTime() - start;
+
+    upload.itemsPerSecond = items * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    upload.oldGenPeakMb = oldGen.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum()
+        >> 20;
+    upload.responseMb = out.count >> 20;
+  }
+
+  /**
+   * {@code count} copies of {@link #PAYMENT}, as NDJSON or a JSON array, made up as they are read.
+   */
+  private static class UploadStream extends InputStream {
+
+    private static final byte[] NONE = {};
+    private static final byte[] OPEN = {'['};
+    private static final byte[] CLOSE = {']'};
+    private static final byte[] COMMA = {','};
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final int count;
+    private final boolean array;
+    private int item = -1;
+    private int position;
+
+    UploadStream(int count, boolean array) {
+      this.count = count;
+      this.array = array;
+    }
+
+    @Override
+    public int read() {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      int read = 0;
+      while (read < len) {
+        byte[] segment = segment();
+        if (segment == null) {
+          break;
+        }
+        int n = Math.min(len - read, segment.length - position);
+        System.arraycopy(segment, position, b, off + read, n);
+        position += n;
+        read += n;
+        if (position == segment.length) {
+          position = 0;
+          item++;
+        }
+      }
+      return read == 0 && len > 0 ? -1 : read;
+    }
+
+    /**
+     * Segments alternate between a delimiter and a payment: odd steps are payments.
+     */
+    private byte[] segment() {
+      int step = item + 1;
+      if (step > 2 * count) {
+        return null;
+      }
+      if (step % 2 == 1) {
+        return PAYMENT;
+      }
+      if (step == 0) {
+        return array ? OPEN : NONE;
+      }
+      if (step == 2 * count) {
+        return array ? CLOSE : NEWLINE;
+      }
+      return array ? COMMA : NEWLINE;
+    }
+  }
+
+  private static class CountingStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  private static class DiscardingStore implements PaymentStore {
+
+    @Override
+    public boolean put(PaymentResponse payment) {
+      return true;
+    }
+
+    @Override
+    public PaymentResponse get(UUID id) {
+      return null;
+    }
+
+    @Override
+    public boolean remove(UUID id) {
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return 0;
+    }
+
+    @Override
+    public void forEach(Consumer<PaymentResponse> action) {
+    }
+  }
+}
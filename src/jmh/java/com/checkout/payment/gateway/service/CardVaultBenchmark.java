@@ -0,0 +1,124 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.service.CardVault.CardToken;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link CardVault} from 4 threads, with a cache of {@code CACHE_SIZE} cards.
+ * {@code tokenize} draws from {@code cards} cards with Zipf exponent {@code skew}: 0 is every card
+ * equally likely, around 1 is the reuse seen from repeat customers. {@code detokenize} decrypts
+ * the card numbers carried by tokens of the most popular cards. The cache hit rate of each
+ * iteration is printed after it, so the score can be read against how often tokenize found the
+ * card already encrypted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CardVaultBenchmark {
+
+  private static final int CACHE_SIZE = 100_000;
+  private static final int HOT_CARDS = 10_000;
+  private static final int DRAWS = 1 << 20;
+
+  @Param({"10000", "1000000"})
+  public int cards;
+
+  @Param({"0", "1.1"})
+  public double skew;
+
+  private CardVault vault;
+  private String[] cardNumbers;
+  private byte[][] hotCardNumbers;
+  private int[] draws;
+  private CacheStats iterationStart;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int next = ThreadLocalRandom.current().nextInt(DRAWS);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    vault = new CardVault(CardVault.randomKey(), CACHE_SIZE, Duration.ofHours(1),
+        new SimpleMeterRegistry());
+    cardNumbers = new String[cards];
+    for (int i = 0; i < cards; i++) {
+      cardNumbers[i] = String.format("4%015d", i);
+    }
+    hotCardNumbers = new byte[Math.min(cards, HOT_CARDS)][];
+    for (int i = 0; i < hotCardNumbers.length; i++) {
+      hotCardNumbers[i] = vault.tokenize(cardNumbers[i]).cardNumber();
+    }
+    draws = zipf(cards, skew, DRAWS);
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    iterationStart = vault.stats();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    System.out.printf("%ncard-vault hit rate: %.3f%n",
+        vault.stats().minus(iterationStart).hitRate());
+  }
+
+  @Benchmark
+  public CardToken tokenize(Cursor cursor) {
+    int i = cursor.next++ & (DRAWS - 1);
+    return vault.tokenize(cardNumbers[draws[i]]);
+  }
+
+  @Benchmark
+  public byte[] detokenize(Cursor cursor) {
+    int i = cursor.next++ & (DRAWS - 1);
+    byte[] pan = vault.decrypt(hotCardNumbers[draws[i] % hotCardNumbers.length]);
+    Arrays.fill(pan, (byte) 0);
+    return pan;
+  }
+
+  /**
+   * {@code n} card indexes in {@code [0, cards)}, index {@code k} drawn with weight
+   * {@code 1 / (k + 1)^skew}.
+   */
+  private static int[] zipf(int cards, double skew, int n) {
+    double[] cumulative = new double[cards];
+    double total = 0;
+    for (int k = 0; k < cards; k++) {
+      total += 1 / Math.pow(k + 1, skew);
+      cumulative[k] = total;
+    }
+    SplittableRandom random = new SplittableRandom(42);
+    int[] draws = new int[n];
+    for (int i = 0; i < n; i++) {
+      int k = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+      draws[i] = Math.min(k < 0 ? -k - 1 : k, cards - 1);
+    }
+    return draws;
+  }
+}
@@ -0,0 +1,70 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills the idempotency cache with {@code keys} UUID keys and reports the retained heap per entry
+ * as {@code retainedBytesPerEntry}. Payments are created before the first measurement, so the
+ * figure is the cache's own overhead: key, cache node, fingerprint and completed future.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IdempotencyCacheFootprintBenchmark {
+
+  @Param({"1000000", "4000000"})
+  public int keys;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long retainedBytesPerEntry;
+  }
+
+  @Benchmark
+  public IdempotencyCache fill(Footprint footprint) {
+    PaymentResponse payment = IdempotencyCacheHitBenchmark.payment(1);
+    long before = usedHeapAfterGc();
+    IdempotencyCache cache = new IdempotencyCache(keys, Duration.ofHours(24));
+    for (int i = 0; i < keys; i++) {
+      cache.getOrProcess(new IdempotencyKey("merchant", UUID.randomUUID().toString()),
+          IdempotencyCacheHitBenchmark.fingerprint(cache),
+          () -> CompletableFuture.completedFuture(payment));
+    }
+    long after = usedHeapAfterGc();
+    footprint.retainedBytesPerEntry = (after - before) / keys;
+    return cache;
+  }
+
+  private static long usedHeapAfterGc() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,82 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a retried request whose {@code Idempotency-Key} is already cached, with
+ * {@code keys} completed payments held and random keys looked up from 4 threads. The request's
+ * fingerprint is taken as part of each lookup, as the service does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IdempotencyCacheHitBenchmark {
+
+  private static final Supplier<CompletableFuture<PaymentResponse>> UNEXPECTED_MISS = () -> {
+    throw new IllegalStateException("Cache miss");
+  };
+
+  @Param({"1000000"})
+  public int keys;
+
+  private IdempotencyCache cache;
+  private IdempotencyKey[] cachedKeys;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    cache = new IdempotencyCache(keys, Duration.ofHours(24));
+    cachedKeys = new IdempotencyKey[keys];
+    for (int i = 0; i < keys; i++) {
+      cachedKeys[i] = new IdempotencyKey("merchant", UUID.randomUUID().toString());
+      PaymentResponse payment = payment(i);
+      cache.getOrProcess(cachedKeys[i], fingerprint(cache),
+          () -> CompletableFuture.completedFuture(payment));
+    }
+  }
+
+  @Benchmark
+  public PaymentResponse hit() {
+    IdempotencyKey key = cachedKeys[ThreadLocalRandom.current().nextInt(cachedKeys.length)];
+    return cache.getOrProcess(key, fingerprint(cache), UNEXPECTED_MISS).join();
+  }
+
+  static byte[] fingerprint(IdempotencyCache cache) {
+    return cache.fingerprint(100, "2222405343248877", "12", "2030", "GBP", "123");
+  }
+
+  static PaymentResponse payment(int i) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus((i & 1) == 0 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth(String.format("%02d", i % 12 + 1));
+    payment.setExpiryYear(String.valueOf(2027 + i % 5));
+    payment.setCurrency(i % 3 == 0 ? "GBP" : "USD");
+    payment.setAmount(i + 1);
+    return payment;
+  }
+}
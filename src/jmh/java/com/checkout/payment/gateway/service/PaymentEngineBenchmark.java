@@ -0,0 +1,183 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankHedgingPolicy;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.BankRetryPolicy;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Throughput of {@link PaymentGatewayService#processPaymentAsync(PostPaymentRequest)} with the
+ * {@link PaymentEngine} off and with {@code shards} shards. {@code PRODUCERS} threads submit
+ * {@code REQUESTS} payments spread over {@code CARDS} cards, each keeping up to
+ * {@code IN_FLIGHT} outstanding; the bank answers after {@code bankLatencyMicros}, or at once for
+ * zero, and the store keeps nothing, so the score is the service and the engine. The secondary
+ * metric is payments per second.
+ *
+ * <p>The core count is the machine's, so it is varied from outside, e.g.
+ * {@code taskset -c 0-3 mvn ...} together with
+ * {@code -Djmh.args="-jvmArgsAppend -XX:ActiveProcessorCount=4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(1)
+public class PaymentEngineBenchmark {
+
+  private static final int REQUESTS = 500_000;
+  private static final int CARDS = 10_000;
+  private static final int PRODUCERS = 4;
+  private static final int IN_FLIGHT = 64;
+
+  @Param({"off", "1", "2", "4", "8"})
+  public String shards;
+
+  @Param({"0", "1000"})
+  public int bankLatencyMicros;
+
+  private PaymentEngine engine;
+  private PaymentGatewayService service;
+  private PostPaymentRequest[] requests;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Throughput {
+
+    public long paymentsPerSecond;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    PaymentMetrics metrics = new PaymentMetrics(new SimpleMeterRegistry());
+    BankResponse authorized = new BankResponse();
+    authorized.setAuthorized(true);
+    authorized.setHttpStatusCode(200);
+    Executor bank = CompletableFuture.delayedExecutor(bankLatencyMicros, TimeUnit.MICROSECONDS,
+        Runnable::run);
+    BankClient bankClient = new BankClient(null, null, null, "http://localhost", Duration.ZERO,
+        null, null, BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false, metrics) {
+      @Override
+      public CompletableFuture<BankResponse> processPaymentAsync(BankRequest bankRequest,
+          Deadline deadline) {
+        return bankLatencyMicros == 0 ? CompletableFuture.completedFuture(authorized)
+            : CompletableFuture.supplyAsync(() -> authorized, bank);
+      }
+    };
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    if (!"off".equals(shards)) {
+      engine = new PaymentEngine(Integer.parseInt(shards), 1024, 0, Duration.ZERO);
+      beans.addBean("paymentEngine", engine);
+    }
+    service = new PaymentGatewayService(
+        new PaymentsRepository(new DiscardingStore(), null, null), bankClient,
+        new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class), metrics,
+        new PaymentJsonCache(Jackson2ObjectMapperBuilder.json().build(), 1),
+        beans.getBeanProvider(PaymentEngine.class), beans.getBeanProvider(CardVault.class));
+
+    requests = new PostPaymentRequest[CARDS];
+    for (int i = 0; i < CARDS; i++) {
+      PostPaymentRequest request = new PostPaymentRequest();
+      request.setCardNumber(String.valueOf(2222_4053_4324_0000L + i));
+      request.setExpiryMonth("12");
+      request.setExpiryYear("2030");
+      request.setCurrency("GBP");
+      request.setAmount(100);
+      request.setCvv("123");
+      requests[i] = request;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (engine != null) {
+      engine.close();
+    }
+  }
+
+  @Benchmark
+  public void payments(Throughput throughput) throws InterruptedException {
+    Thread[] producers = new Thread[PRODUCERS];
+    long start = System.nanoTime();
+    for (int p = 0; p < PRODUCERS; p++) {
+      int producer = p;
+      producers[p] = new Thread(() -> produce(producer));
+      producers[p].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    long elapsed = System.nanoTime() - start;
+    throughput.paymentsPerSecond = REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  private void produce(int producer) {
+    Semaphore inFlight = new Semaphore(IN_FLIGHT);
+    for (int i = producer; i < REQUESTS; i += PRODUCERS) {
+      inFlight.acquireUninterruptibly();
+      service.processPaymentAsync(requests[i % CARDS])
+          .whenComplete((response, e) -> inFlight.release());
+    }
+    inFlight.acquireUninterruptibly(IN_FLIGHT);
+  }
+
+  private static class DiscardingStore implements PaymentStore {
+
+    @Override
+    public boolean put(PaymentResponse payment) {
+      return true;
+    }
+
+    @Override
+    public PaymentResponse get(UUID id) {
+      return null;
+    }
+
+    @Override
+    public boolean remove(UUID id) {
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return 0;
+    }
+
+    @Override
+    public void forEach(Consumer<PaymentResponse> action) {
+    }
+  }
+}
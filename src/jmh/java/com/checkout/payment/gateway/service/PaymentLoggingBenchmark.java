@@ -0,0 +1,166 @@
+package com.checkout.payment.gateway.service;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankHedgingPolicy;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.BankRetryPolicy;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.logging.PaymentEvents;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Payment throughput through {@link PaymentGatewayService} with an instant bank and a store that
+ * keeps nothing, so the score is validation, mapping, metrics and logging. {@code logging} is
+ * {@code off} ({@code payments.events} switched off), {@code sync} (events written to a file on
+ * the request thread) or {@code async} (the same file behind an {@link AsyncAppender}, as in
+ * {@code logback-spring.xml}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentLoggingBenchmark {
+
+  @Param({"off", "sync", "async"})
+  public String logging;
+
+  private PaymentGatewayService service;
+  private PostPaymentRequest request;
+  private Appender<ILoggingEvent> appender;
+
+  @Setup
+  public void setUp() {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    context.reset();
+    appender = "async".equals(logging) ? async(context, file(context)) : file(context);
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.setLevel(Level.INFO);
+    root.addAppender(appender);
+    context.getLogger(PaymentEvents.LOGGER)
+        .setLevel("off".equals(logging) ? Level.OFF : Level.INFO);
+
+    BankResponse authorized = new BankResponse();
+    authorized.setAuthorized(true);
+    authorized.setHttpStatusCode(200);
+    PaymentMetrics metrics = new PaymentMetrics(new SimpleMeterRegistry());
+    BankClient bankClient = new BankClient(null, null, null, "http://localhost", Duration.ZERO,
+        null, null, BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false, metrics) {
+      @Override
+      public BankResponse processPayment(BankRequest bankRequest, Deadline deadline) {
+        PaymentEvents.bankResponded(200, true, 0);
+        return authorized;
+      }
+    };
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    service = new PaymentGatewayService(new PaymentsRepository(new DiscardingStore(), null, null),
+        bankClient, new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class), metrics,
+        new PaymentJsonCache(Jackson2ObjectMapperBuilder.json().build(), 1),
+        beans.getBeanProvider(PaymentEngine.class), beans.getBeanProvider(CardVault.class));
+
+    request = new PostPaymentRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryMonth("12");
+    request.setExpiryYear("2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+  }
+
+  @TearDown
+  public void tearDown() {
+    appender.stop();
+  }
+
+  @Benchmark
+  public PaymentResponse processPayment() {
+    return service.processPayment(request);
+  }
+
+  private static FileAppender<ILoggingEvent> file(LoggerContext context) {
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(context);
+    encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%15.15t] %-40.40logger{39} : %m%n");
+    encoder.start();
+    FileAppender<ILoggingEvent> file = new FileAppender<>();
+    file.setContext(context);
+    file.setFile("target/jmh-payment-logging.log");
+    file.setAppend(false);
+    file.setEncoder(encoder);
+    file.start();
+    return file;
+  }
+
+  private static AsyncAppender async(LoggerContext context, Appender<ILoggingEvent> delegate) {
+    AsyncAppender async = new AsyncAppender();
+    async.setContext(context);
+    async.setQueueSize(8192);
+    async.setNeverBlock(false);
+    async.addAppender(delegate);
+    async.start();
+    return async;
+  }
+
+  private static class DiscardingStore implements PaymentStore {
+
+    @Override
+    public boolean put(PaymentResponse payment) {
+      return true;
+    }
+
+    @Override
+    public PaymentResponse get(UUID id) {
+      return null;
+    }
+
+    @Override
+    public boolean remove(UUID id) {
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return 0;
+    }
+
+    @Override
+    public void forEach(Consumer<PaymentResponse> action) {
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The two mapping steps of a payment: the merchant request to the bank request, and the bank
+ * answer to the stored {@link PaymentResponse}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentMappingBenchmark {
+
+  private PostPaymentRequest request;
+  private BankResponse bankResponse;
+  private UUID paymentId;
+
+  @Setup
+  public void setUp() {
+    request = new PostPaymentRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryMonth("12");
+    request.setExpiryYear("2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+
+    bankResponse = new BankResponse();
+    bankResponse.setAuthorized(true);
+    bankResponse.setHttpStatusCode(200);
+
+    paymentId = UUID.randomUUID();
+  }
+
+  @Benchmark
+  public BankRequest populateBankRequest() {
+    return PaymentGatewayService.populateBankRequest(request);
+  }
+
+  @Benchmark
+  public PaymentResponse populatePaymentResponse() {
+    return PaymentGatewayService.populatePaymentResponse(paymentId, bankResponse, request);
+  }
+}
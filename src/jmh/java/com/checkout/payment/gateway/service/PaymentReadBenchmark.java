@@ -0,0 +1,88 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.StorageMode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * {@code GET /payment/{id}} below the HTTP layer, for random reads over {@code STORED} payments.
+ * {@code serializeEachRead} is the previous path, a repository lookup and a Jackson serialization
+ * per read. {@code cachedBytes} reads the bytes from {@link PaymentJsonCache}, and
+ * {@code notModified} is a poll whose {@code If-None-Match} matches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentReadBenchmark {
+
+  private static final int STORED = 100_000;
+
+  private ObjectMapper objectMapper;
+  private PaymentsRepository repository;
+  private PaymentGatewayService service;
+  private UUID[] ids;
+  private String[] etags;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    repository = new PaymentsRepository(StorageMode.HEAP.create(16, STORED), null, null);
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    service = new PaymentGatewayService(repository, null,
+        new IdempotencyCache(1, Duration.ofMinutes(1)),
+        beans.getBeanProvider(BankRequestBatcher.class),
+        new PaymentMetrics(new SimpleMeterRegistry()), new PaymentJsonCache(objectMapper, STORED),
+        beans.getBeanProvider(PaymentEngine.class), beans.getBeanProvider(CardVault.class));
+
+    ids = new UUID[STORED];
+    etags = new String[STORED];
+    for (int i = 0; i < STORED; i++) {
+      PaymentResponse payment = IdempotencyCacheHitBenchmark.payment(i);
+      repository.add(payment);
+      ids[i] = payment.getId();
+      etags[i] = service.getSerializedPayment(ids[i]).etag();
+    }
+  }
+
+  @Benchmark
+  public byte[] serializeEachRead() throws JsonProcessingException {
+    UUID id = ids[ThreadLocalRandom.current().nextInt(STORED)];
+    return objectMapper.writeValueAsBytes(repository.get(id).orElseThrow());
+  }
+
+  @Benchmark
+  public byte[] cachedBytes() {
+    return service.getSerializedPayment(ids[ThreadLocalRandom.current().nextInt(STORED)]).json();
+  }
+
+  @Benchmark
+  public boolean notModified() {
+    int i = ThreadLocalRandom.current().nextInt(STORED);
+    return service.getSerializedPayment(ids[i]).etag().equals(etags[i]);
+  }
+}
@@ -0,0 +1,115 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.StorageMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * A soak of the heap store under a constant {@code rate} of new payments for {@code seconds},
+ * with {@link PaymentRetention} bounding it to {@code maxEntries} ({@code 0} is unbounded). The
+ * live heap after a full GC is sampled every 10 seconds, and the secondary metrics are the first
+ * sample, the last one and the largest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PaymentRetentionSoakBenchmark {
+
+  private static final long SAMPLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Param({"0", "1000000"})
+  public int maxEntries;
+
+  @Param({"100000"})
+  public int rate;
+
+  @Param({"60"})
+  public int seconds;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Heap {
+
+    public long firstLiveHeapMb;
+    public long lastLiveHeapMb;
+    public long peakLiveHeapMb;
+    public long retained;
+  }
+
+  @Benchmark
+  public PaymentsRepository soak(Heap heap) {
+    PaymentsRepository repository = new PaymentsRepository(StorageMode.HEAP.create(16, 65_536),
+        null, null);
+    PaymentJsonCache jsonCache = new PaymentJsonCache(Jackson2ObjectMapperBuilder.json().build(),
+        1);
+    try (PaymentRetention retention = new PaymentRetention(repository, jsonCache, null,
+        new SimpleMeterRegistry(), maxEntries, Duration.ZERO, Duration.ofMillis(10), 10_000)) {
+      int perTick = (int) (rate * TICK_NANOS / TimeUnit.SECONDS.toNanos(1));
+      long start = System.nanoTime();
+      long end = start + TimeUnit.SECONDS.toNanos(seconds);
+      long nextTick = start;
+      long nextSample = start + SAMPLE_NANOS;
+      while (nextTick < end) {
+        for (int i = 0; i < perTick; i++) {
+          repository.add(payment());
+        }
+        nextTick += TICK_NANOS;
+        if (nextTick >= nextSample) {
+          long liveMb = liveHeapMb();
+          heap.firstLiveHeapMb = heap.firstLiveHeapMb == 0 ? liveMb : heap.firstLiveHeapMb;
+          heap.lastLiveHeapMb = liveMb;
+          heap.peakLiveHeapMb = Math.max(heap.peakLiveHeapMb, liveMb);
+          nextSample += SAMPLE_NANOS;
+          nextTick = Math.max(nextTick, System.nanoTime());
+        }
+        LockSupport.parkNanos(nextTick - System.nanoTime());
+      }
+      heap.retained = repository.retained();
+    }
+    return repository;
+  }
+
+  private static PaymentResponse payment() {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(PaymentStatus.AUTHORIZED);
+    payment.setCardNumberLastFour("4242");
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(100);
+    payment.setCreatedAt(Instant.now());
+    return payment;
+  }
+
+  private static long liveHeapMb() {
+    for (int i = 0; i < 2; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20;
+  }
+}
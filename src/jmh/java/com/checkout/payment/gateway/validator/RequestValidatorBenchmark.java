@@ -0,0 +1,68 @@
+package com.checkout.payment.gateway.validator;
+
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link LegacyRequestValidator} against {@link RequestValidator} on a valid request and on
+ * requests failing at the first, a middle and the last field. Run with
+ * {@code -Djmh.args="-prof gc"} for bytes/op ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestValidatorBenchmark {
+
+  @Param({"valid", "cardNumber", "expiryInPast", "cvv"})
+  public String input;
+
+  private PostPaymentRequest request;
+
+  @Setup
+  public void setUp() {
+    request = new PostPaymentRequest();
+    request.setCardNumber("2222405343248113");
+    request.setExpiryMonth("12");
+    request.setExpiryYear("2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+    switch (input) {
+      case "cardNumber" -> request.setCardNumber("2222-4053-4324");
+      case "expiryInPast" -> request.setExpiryYear("2020");
+      case "cvv" -> request.setCvv("12");
+      default -> {
+      }
+    }
+  }
+
+  @Benchmark
+  public String legacy() {
+    try {
+      LegacyRequestValidator.validateRequest(request);
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Benchmark
+  public String current() {
+    ValidationError error = RequestValidator.validate(request);
+    return error == null ? null : error.getMessage();
+  }
+}
@@ -0,0 +1,85 @@
+package com.checkout.payment.gateway.client;
+
+import java.time.Duration;
+
+/**
+ * AIMD limit on concurrent bank calls. A call that completes within {@code latencyThreshold} while
+ * at least half the limit is in use raises the limit by {@code 1 / limit} (about one per round of
+ * calls); a failed or slow call multiplies it by {@code backoffRatio}. Calls beyond the limit are
+ * refused straight away, so a degrading bank sheds load instead of queueing request threads.
+ *
+ * <p>Callers must pair every granted {@link #tryAcquire()} with exactly one of
+ * {@link #onSuccess(long)}, {@link #onFailure()} or {@link #onIgnore()}.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final long latencyThresholdNanos;
+
+  private double limit;
+  private int inFlight;
+  private long rejected;
+
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+      double backoffRatio, Duration latencyThreshold) {
+    if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Backoff ratio must be in (0, 1)");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.latencyThresholdNanos = latencyThreshold.toNanos();
+    this.limit = initialLimit;
+  }
+
+  public synchronized boolean tryAcquire() {
+    if (inFlight >= (int) limit) {
+      rejected++;
+      return false;
+    }
+    inFlight++;
+    return true;
+  }
+
+  public synchronized void onSuccess(long latencyNanos) {
+    int inUse = inFlight--;
+    if (latencyNanos > latencyThresholdNanos) {
+      backOff();
+    } else if (inUse * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  public synchronized void onFailure() {
+    inFlight--;
+    backOff();
+  }
+
+  /**
+   * Gives back a granted slot for a call that never reached the bank.
+   */
+  public synchronized void onIgnore() {
+    inFlight--;
+  }
+
+  public synchronized int limit() {
+    return (int) limit;
+  }
+
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  public synchronized long rejectedCount() {
+    return rejected;
+  }
+
+  private void backOff() {
+    limit = Math.max(minLimit, limit * backoffRatio);
+  }
+}
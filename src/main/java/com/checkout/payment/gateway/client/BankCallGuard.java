@@ -0,0 +1,63 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.model.BankResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission and accounting shared by {@link BankClient} and {@link ReactiveBankClient}: a call
+ * must get a slot from the concurrency limit and then a permit from the circuit breaker, and every
+ * admitted call is reported back to both exactly once.
+ */
+class BankCallGuard {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BankCallGuard.class);
+
+  private final BankCircuitBreaker circuitBreaker;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+  BankCallGuard(BankCircuitBreaker circuitBreaker, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.circuitBreaker = circuitBreaker;
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  boolean admit() {
+    if (!concurrencyLimiter.tryAcquire()) {
+      LOG.debug("Bank concurrency limit {} reached, refusing call", concurrencyLimiter.limit());
+      return false;
+    }
+    if (!circuitBreaker.tryAcquire()) {
+      concurrencyLimiter.onIgnore();
+      LOG.debug("Bank circuit breaker is {}, refusing call", circuitBreaker.state());
+      return false;
+    }
+    return true;
+  }
+
+  void complete(long startNanos, boolean bankFailed) {
+    if (bankFailed) {
+      circuitBreaker.onFailure();
+      concurrencyLimiter.onFailure();
+    } else {
+      circuitBreaker.onSuccess();
+      concurrencyLimiter.onSuccess(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Releases an admitted call that ended without an answer either way, such as a cancelled one.
+   */
+  void ignore() {
+    circuitBreaker.onIgnore();
+    concurrencyLimiter.onIgnore();
+  }
+
+  static BankResponse unavailable() {
+    BankResponse errorResponse = new BankResponse();
+
+    errorResponse.setHttpStatusCode(503);
+    errorResponse.setAuthorized(false);
+
+    return errorResponse;
+  }
+}
@@ -0,0 +1,55 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.client.BankCircuitBreaker.State;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Locale;
+
+/**
+ * Publishes the circuit breaker as {@code bank.client.circuit.state} gauges (1 for the current
+ * {@code state} tag, 0 otherwise), the adaptive limit and in-flight calls as
+ * {@code bank.client.concurrency.*}, and refused calls as {@code bank.client.rejected} by
+ * {@code reason}.
+ */
+public class BankCallGuardMetrics implements MeterBinder {
+
+  static final String CIRCUIT_STATE = "bank.client.circuit.state";
+  static final String CONCURRENCY_LIMIT = "bank.client.concurrency.limit";
+  static final String IN_FLIGHT = "bank.client.concurrency.in.flight";
+  static final String REJECTED = "bank.client.rejected";
+
+  private final BankCircuitBreaker circuitBreaker;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+  public BankCallGuardMetrics(BankCircuitBreaker circuitBreaker,
+      AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.circuitBreaker = circuitBreaker;
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (State state : State.values()) {
+      Gauge.builder(CIRCUIT_STATE, circuitBreaker, breaker -> breaker.state() == state ? 1 : 0)
+          .tag("state", state.name().toLowerCase(Locale.ROOT))
+          .description("Whether the bank circuit breaker is in this state")
+          .register(registry);
+    }
+    Gauge.builder(CONCURRENCY_LIMIT, concurrencyLimiter, AdaptiveConcurrencyLimiter::limit)
+        .description("Current adaptive limit on concurrent bank calls")
+        .register(registry);
+    Gauge.builder(IN_FLIGHT, concurrencyLimiter, AdaptiveConcurrencyLimiter::inFlight)
+        .description("Bank calls currently in flight")
+        .register(registry);
+    FunctionCounter.builder(REJECTED, circuitBreaker, BankCircuitBreaker::rejectedCount)
+        .tag("reason", "circuit_open")
+        .description("Bank calls refused without reaching the bank")
+        .register(registry);
+    FunctionCounter.builder(REJECTED, concurrencyLimiter, AdaptiveConcurrencyLimiter::rejectedCount)
+        .tag("reason", "concurrency_limit")
+        .description("Bank calls refused without reaching the bank")
+        .register(registry);
+  }
+}
@@ -0,0 +1,157 @@
+package com.checkout.payment.gateway.client;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-based circuit breaker for bank calls. While {@link State#CLOSED} the outcomes of the last
+ * {@code windowSize} calls are kept; once at least {@code minimumCalls} have completed and the
+ * failure rate reaches {@code failureRateThreshold} the circuit opens and calls are refused without
+ * touching the network. After {@code openDuration} it lets {@code halfOpenCalls} trial calls
+ * through: if they all succeed the circuit closes again, a single failure re-opens it.
+ *
+ * <p>Callers must pair every granted {@link #tryAcquire()} with exactly one of
+ * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnore()}.
+ */
+public class BankCircuitBreaker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BankCircuitBreaker.class);
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final double failureRateThreshold;
+  private final int minimumCalls;
+  private final long openDurationNanos;
+  private final int halfOpenCalls;
+  private final LongSupplier nanoClock;
+
+  private final boolean[] outcomes;
+  private int next;
+  private int recorded;
+  private int failures;
+
+  private volatile State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+  private long rejected;
+
+  public BankCircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls,
+      Duration openDuration, int halfOpenCalls) {
+    this(failureRateThreshold, windowSize, minimumCalls, openDuration, halfOpenCalls,
+        System::nanoTime);
+  }
+
+  BankCircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls,
+      Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+    if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+      throw new IllegalArgumentException("Failure rate threshold must be in (0, 1]");
+    }
+    if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+      throw new IllegalArgumentException(
+          "Window size, minimum calls and half-open calls must be positive and minimum calls "
+              + "must fit in the window");
+    }
+    this.failureRateThreshold = failureRateThreshold;
+    this.minimumCalls = minimumCalls;
+    this.openDurationNanos = openDuration.toNanos();
+    this.halfOpenCalls = halfOpenCalls;
+    this.nanoClock = nanoClock;
+    this.outcomes = new boolean[windowSize];
+  }
+
+  /**
+   * Returns whether a bank call may be made now.
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openDurationNanos) {
+      transitionTo(State.HALF_OPEN);
+      halfOpenPermits = halfOpenCalls;
+      halfOpenSuccesses = 0;
+    }
+    if (state == State.CLOSED) {
+      return true;
+    }
+    if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+      halfOpenPermits--;
+      return true;
+    }
+    rejected++;
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      if (++halfOpenSuccesses >= halfOpenCalls) {
+        resetWindow();
+        transitionTo(State.CLOSED);
+      }
+    } else if (state == State.CLOSED) {
+      record(false);
+    }
+  }
+
+  public synchronized void onFailure() {
+    if (state == State.HALF_OPEN) {
+      open();
+    } else if (state == State.CLOSED) {
+      record(true);
+      if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+        open();
+      }
+    }
+  }
+
+  /**
+   * Gives back a granted permission for a call that never reached the bank.
+   */
+  public synchronized void onIgnore() {
+    if (state == State.HALF_OPEN) {
+      halfOpenPermits++;
+    }
+  }
+
+  public State state() {
+    return state;
+  }
+
+  public synchronized long rejectedCount() {
+    return rejected;
+  }
+
+  private void record(boolean failed) {
+    if (recorded == outcomes.length) {
+      if (outcomes[next]) {
+        failures--;
+      }
+    } else {
+      recorded++;
+    }
+    outcomes[next] = failed;
+    if (failed) {
+      failures++;
+    }
+    next = (next + 1) % outcomes.length;
+  }
+
+  private void open() {
+    openedAt = nanoClock.getAsLong();
+    resetWindow();
+    transitionTo(State.OPEN);
+  }
+
+  private void resetWindow() {
+    next = 0;
+    recorded = 0;
+    failures = 0;
+  }
+
+  private void transitionTo(State newState) {
+    LOG.warn("Bank circuit breaker {} -> {}", state, newState);
+    state = newState;
+  }
+}
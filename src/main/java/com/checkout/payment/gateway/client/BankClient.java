@@ -1,8 +1,31 @@
 package com.checkout.payment.gateway.client;
 
+import com.checkout.payment.gateway.client.BankRetryPolicy.Outcome;
+import com.checkout.payment.gateway.logging.PaymentEvents;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
 import com.checkout.payment.gateway.model.BankRequest;
 import com.checkout.payment.gateway.model.BankResponse;
-import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,65 +40,357 @@ import org.springframework.web.client.RestTemplate;
 public class BankClient {
 
   public static final String PAYMENTS = "/payments";
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
   private static final Logger LOG = LoggerFactory.getLogger(BankClient.class);
 
+  private record Attempt(BankResponse response, Outcome outcome) {
+  }
+
+  /**
+   * An asynchronous attempt: the exchange, which is cancelled when another attempt wins, and its
+   * settled result.
+   */
+  private record Exchange(CompletableFuture<?> exchange, CompletableFuture<Attempt> attempt) {
+
+    static Exchange refused() {
+      return new Exchange(CompletableFuture.completedFuture(null),
+          CompletableFuture.completedFuture(
+              new Attempt(BankCallGuard.unavailable(), Outcome.REFUSED)));
+    }
+  }
+
   private final RestTemplate restTemplate;
-  private final String bankUrl;
+  private final HttpClient httpClient;
+  private final ObjectMapper objectMapper;
+  private final URI paymentsUri;
+  private final Duration readTimeout;
+  private final BankCallGuard guard;
+  private final BankRetryPolicy retryPolicy;
+  private final BankHedgingPolicy hedgingPolicy;
+  private final boolean idempotentKeys;
+  private final PaymentMetrics metrics;
 
-  public BankClient(RestTemplate restTemplate,
-      @Value("${bank.simulator.url:http://localhost:8080}") String bankUrl) {
+  /**
+   * With {@code idempotentKeys} off, the default, requests go to the bank without their
+   * {@code Idempotency-Key} and are treated as not idempotent: only attempts the bank cannot have
+   * acted on are retried, and nothing is hedged. Turn it on only for a bank that deduplicates on
+   * the key, or a timed-out payment may be charged twice.
+   */
+  public BankClient(RestTemplate restTemplate, HttpClient httpClient, ObjectMapper objectMapper,
+      @Value("${bank.simulator.url:http://localhost:8080}") String bankUrl,
+      @Value("${bank.client.read-timeout:10s}") Duration readTimeout,
+      BankCircuitBreaker circuitBreaker, AdaptiveConcurrencyLimiter concurrencyLimiter,
+      BankRetryPolicy retryPolicy, BankHedgingPolicy hedgingPolicy,
+      @Value("${bank.client.idempotent-keys:false}") boolean idempotentKeys,
+      PaymentMetrics metrics) {
     this.restTemplate = restTemplate;
-    this.bankUrl = bankUrl;
+    this.httpClient = httpClient;
+    this.objectMapper = objectMapper;
+    this.paymentsUri = URI.create(bankUrl + PAYMENTS);
+    this.readTimeout = readTimeout;
+    this.guard = new BankCallGuard(circuitBreaker, concurrencyLimiter);
+    this.retryPolicy = retryPolicy;
+    this.hedgingPolicy = hedgingPolicy;
+    this.idempotentKeys = idempotentKeys;
+    this.metrics = metrics;
   }
 
   public BankResponse processPayment(BankRequest request) {
-    String url = bankUrl + PAYMENTS;
+    return processPayment(request, Deadline.none());
+  }
+
+  /**
+   * Calls the bank on the calling thread, and again after a jittered backoff for as long as the
+   * {@link BankRetryPolicy} allows and {@code deadline} leaves time to wait. Each attempt's
+   * timeout is cut to what is left of the deadline. When the circuit breaker is open, the
+   * concurrency limit is reached or the deadline has passed the call is refused straight away
+   * with a 503 {@link BankResponse}.
+   */
+  public BankResponse processPayment(BankRequest request, Deadline deadline) {
+    boolean idempotent = idempotencyKey(request) != null;
+    for (int attempts = 1; ; attempts++) {
+      Attempt attempt = DeadlineRequestFactory.within(deadline, () -> attempt(request, deadline));
+      long backoffNanos = retryDelayNanos(attempts, attempt.outcome(), idempotent, deadline);
+      if (backoffNanos < 0) {
+        return attempt.response();
+      }
+      LockSupport.parkNanos(backoffNanos);
+    }
+  }
+
+  public CompletableFuture<BankResponse> processPaymentAsync(BankRequest request) {
+    return processPaymentAsync(request, Deadline.none());
+  }
+
+  /**
+   * Non-blocking variant of {@link #processPayment(BankRequest, Deadline)}. The returned future
+   * completes on the HTTP client's executor and never completes exceptionally: bank and
+   * connection failures are reported as a 503 {@link BankResponse}, as in the blocking path, and
+   * so are calls refused by the circuit breaker, concurrency limit or deadline.
+   *
+   * <p>An idempotent call that has not been answered after the {@link BankHedgingPolicy} delay is
+   * hedged with a second attempt. The first answer wins and the other exchange is cancelled; a
+   * failed attempt waits for the other one before the call is retried or fails.
+   */
+  public CompletableFuture<BankResponse> processPaymentAsync(BankRequest request,
+      Deadline deadline) {
+    byte[] body = request.getJson();
+    if (body == null) {
+      try {
+        body = objectMapper.writeValueAsBytes(request);
+      } catch (JsonProcessingException e) {
+        LOG.error("Unable to serialize bank request", e);
+        return CompletableFuture.completedFuture(BankCallGuard.unavailable());
+      }
+    }
+    AsyncCall call = new AsyncCall(body, idempotencyKey(request), deadline);
+    call.nextRound();
+    return call.result;
+  }
+
+  private Attempt attempt(BankRequest request, Deadline deadline) {
+    if (deadline.isExpired()) {
+      LOG.debug("Bank call deadline passed, not calling the bank");
+      return new Attempt(BankCallGuard.unavailable(), Outcome.REFUSED);
+    }
+    if (!guard.admit()) {
+      return new Attempt(BankCallGuard.unavailable(), Outcome.REFUSED);
+    }
+    long startNanos = System.nanoTime();
+    boolean bankFailed = true;
 
     HttpHeaders headers = new HttpHeaders();
     headers.setContentType(MediaType.APPLICATION_JSON);
-    HttpEntity<BankRequest> entity = new HttpEntity<>(request, headers);
-
-    LOG.info("Calling bank simulator at: {}", url);
+    String idempotencyKey = idempotencyKey(request);
+    if (idempotencyKey != null) {
+      headers.set(IDEMPOTENCY_KEY, idempotencyKey);
+    }
+    HttpEntity<?> entity = new HttpEntity<>(
+        request.getJson() == null ? request : request.getJson(), headers);
 
     try {
-      ResponseEntity<BankResponse> response = restTemplate.postForEntity(url, entity,
+      ResponseEntity<BankResponse> response = restTemplate.postForEntity(paymentsUri, entity,
           BankResponse.class);
       BankResponse bankResponse = response.getBody();
-
-      LOG.info("Bank response - Status: {}, Authorized: {}",
-          response.getStatusCode(),
-          bankResponse != null && bankResponse.isAuthorized());
+      metrics.recordBankResponse(response.getStatusCode().value());
+      PaymentEvents.bankResponded(response.getStatusCode().value(),
+          bankResponse != null && bankResponse.isAuthorized(), System.nanoTime() - startNanos);
 
       if (response.getStatusCode().is2xxSuccessful() && bankResponse != null) {
         bankResponse.setHttpStatusCode(response.getStatusCode().value());
+        hedgingPolicy.record(System.nanoTime() - startNanos);
       }
 
-      return bankResponse;
+      bankFailed = false;
+      return new Attempt(bankResponse, Outcome.ANSWERED);
     } catch (org.springframework.web.client.HttpServerErrorException.ServiceUnavailable e) {
-      LOG.error("Bank service unavailable (503)", e);
-      BankResponse errorResponse = new BankResponse();
+      LOG.error("Bank service unavailable (503)");
+      metrics.recordBankResponse(e.getStatusCode().value());
+      return new Attempt(BankCallGuard.unavailable(), Outcome.NOT_PROCESSED);
+    } catch (org.springframework.web.client.ResourceAccessException e) {
+      LOG.error("Unable to reach bank service (connection error): {}", e.getMessage());
+      metrics.recordBankResponse(0);
+      return new Attempt(BankCallGuard.unavailable(), outcomeOf(e.getCause()));
+    } catch (org.springframework.web.client.HttpClientErrorException e) {
+      LOG.error("Bank rejected the request ({})", e.getStatusCode());
+      metrics.recordBankResponse(e.getStatusCode().value());
+      bankFailed = false;
+      return new Attempt(BankCallGuard.unavailable(), Outcome.ANSWERED);
+    } catch (org.springframework.web.client.HttpStatusCodeException e) {
+      LOG.error("Unexpected bank response status {}", e.getStatusCode());
+      metrics.recordBankResponse(e.getStatusCode().value());
+      return new Attempt(BankCallGuard.unavailable(), Outcome.UNKNOWN);
+    } catch (Exception e) {
+      LOG.error("Unexpected error calling bank simulator", e);
+      return new Attempt(BankCallGuard.unavailable(), Outcome.UNKNOWN);
+    } finally {
+      guard.complete(startNanos, bankFailed);
+    }
+  }
 
-      errorResponse.setHttpStatusCode(503);
-      errorResponse.setAuthorized(false);
+  private Exchange attemptAsync(byte[] body, String idempotencyKey, Deadline deadline) {
+    if (deadline.isExpired()) {
+      LOG.debug("Bank call deadline passed, not calling the bank");
+      return Exchange.refused();
+    }
+    HttpRequest.Builder httpRequest = HttpRequest.newBuilder(paymentsUri)
+        .timeout(deadline.cap(readTimeout))
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .POST(BodyPublishers.ofByteArray(body));
+    if (idempotencyKey != null) {
+      httpRequest.header(IDEMPOTENCY_KEY, idempotencyKey);
+    }
+    if (!guard.admit()) {
+      return Exchange.refused();
+    }
 
-      return errorResponse;
-    } catch (org.springframework.web.client.ResourceAccessException e) {
+    long startNanos = System.nanoTime();
+    CompletableFuture<HttpResponse<byte[]>> exchange =
+        httpClient.sendAsync(httpRequest.build(), BodyHandlers.ofByteArray());
+    CompletableFuture<Attempt> attempt = exchange.handle((response, e) -> {
+      Throwable cause = e instanceof CompletionException && e.getCause() != null
+          ? e.getCause() : e;
+      if (cause instanceof CancellationException) {
+        guard.ignore();
+        return new Attempt(BankCallGuard.unavailable(), Outcome.REFUSED);
+      }
+      metrics.recordBankResponse(cause != null ? 0 : response.statusCode());
+      guard.complete(startNanos, cause != null || response.statusCode() >= 500);
+      if (cause != null) {
+        LOG.error("Unable to reach bank service (connection error): {}", cause.getMessage());
+        return new Attempt(BankCallGuard.unavailable(), outcomeOf(cause));
+      }
+      return toAttempt(response, startNanos);
+    });
+    return new Exchange(exchange, attempt);
+  }
+
+  private Attempt toAttempt(HttpResponse<byte[]> response, long startNanos) {
+    int statusCode = response.statusCode();
+    if (statusCode == 503) {
+      LOG.error("Bank service unavailable (503)");
+      return new Attempt(BankCallGuard.unavailable(), Outcome.NOT_PROCESSED);
+    }
+    if (statusCode < 200 || statusCode > 299) {
+      LOG.error("Unexpected bank response status {}", statusCode);
+      return new Attempt(BankCallGuard.unavailable(),
+          statusCode >= 500 ? Outcome.UNKNOWN : Outcome.ANSWERED);
+    }
 
-      LOG.error("Unable to reach bank service (connection error)", e);
-      BankResponse errorResponse = new BankResponse();
+    try {
+      BankResponse bankResponse = objectMapper.readValue(response.body(), BankResponse.class);
+      bankResponse.setHttpStatusCode(statusCode);
+      long latencyNanos = System.nanoTime() - startNanos;
+      hedgingPolicy.record(latencyNanos);
+      PaymentEvents.bankResponded(statusCode, bankResponse.isAuthorized(), latencyNanos);
+      return new Attempt(bankResponse, Outcome.ANSWERED);
+    } catch (IOException e) {
+      LOG.error("Unexpected error reading bank response", e);
+      return new Attempt(BankCallGuard.unavailable(), Outcome.UNKNOWN);
+    }
+  }
 
-      errorResponse.setHttpStatusCode(503);
-      errorResponse.setAuthorized(false);
+  /**
+   * The key the bank deduplicates {@code request} on, or {@code null} if it is not sent.
+   */
+  private String idempotencyKey(BankRequest request) {
+    return idempotentKeys ? request.getIdempotencyKey() : null;
+  }
 
-      return errorResponse;
-    } catch (Exception e) {
-      LOG.error("Unexpected error calling bank simulator", e);
-      BankResponse errorResponse = new BankResponse();
+  /**
+   * The backoff before retrying a call whose {@code attempts}-th attempt ended with
+   * {@code outcome}, or -1 if it is not retried.
+   */
+  private long retryDelayNanos(int attempts, Outcome outcome, boolean idempotent,
+      Deadline deadline) {
+    if (!retryPolicy.shouldRetry(attempts, outcome, idempotent)) {
+      return -1;
+    }
+    long backoffNanos = retryPolicy.backoffNanos(attempts);
+    if (backoffNanos >= deadline.remainingNanos()) {
+      return -1;
+    }
+    metrics.recordBankRetry();
+    return backoffNanos;
+  }
 
-      errorResponse.setHttpStatusCode(503);
-      errorResponse.setAuthorized(false);
+  /**
+   * Failures to connect, or to get a pooled connection, happen before the request is sent.
+   */
+  private static Outcome outcomeOf(Throwable failure) {
+    return failure instanceof ConnectException
+        || failure instanceof HttpConnectTimeoutException
+        || failure instanceof ConnectTimeoutException
+        || failure instanceof ConnectionRequestTimeoutException
+        ? Outcome.NOT_PROCESSED : Outcome.UNKNOWN;
+  }
 
-      return errorResponse;
+  /**
+   * One {@link #processPaymentAsync(BankRequest, Deadline)} call, made in rounds of one attempt
+   * plus an optional hedge, with a retry backoff between rounds. Hedges and retries are scheduled
+   * on the timer thread behind {@link CompletableFuture#delayedExecutor}, and only start an
+   * exchange there.
+   */
+  private final class AsyncCall {
+
+    private final byte[] body;
+    private final String idempotencyKey;
+    private final Deadline deadline;
+    private final CompletableFuture<BankResponse> result = new CompletableFuture<>();
+    private int rounds;
+
+    AsyncCall(byte[] body, String idempotencyKey, Deadline deadline) {
+      this.body = body;
+      this.idempotencyKey = idempotencyKey;
+      this.deadline = deadline;
+    }
+
+    void nextRound() {
+      rounds++;
+      Round round = new Round();
+      round.send(false);
+      long hedgeDelayNanos = idempotencyKey == null ? -1 : hedgingPolicy.delayNanos();
+      if (hedgeDelayNanos >= 0 && hedgeDelayNanos < deadline.remainingNanos()) {
+        CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS, Runnable::run)
+            .execute(() -> round.send(true));
+      }
+    }
+
+    void finished(Attempt attempt) {
+      long backoffNanos = retryDelayNanos(rounds, attempt.outcome(), idempotencyKey != null,
+          deadline);
+      if (backoffNanos < 0) {
+        result.complete(attempt.response());
+      } else {
+        CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS, Runnable::run)
+            .execute(this::nextRound);
+      }
+    }
+
+    private final class Round {
+
+      private final List<Exchange> exchanges = new ArrayList<>(2);
+      private int pending;
+      private boolean over;
+
+      void send(boolean hedge) {
+        Exchange exchange;
+        synchronized (this) {
+          if (over) {
+            return;
+          }
+          exchange = attemptAsync(body, idempotencyKey, deadline);
+          exchanges.add(exchange);
+          pending++;
+        }
+        if (hedge) {
+          metrics.recordBankHedge();
+        }
+        exchange.attempt().thenAccept(attempt -> completed(exchange, attempt, hedge));
+      }
+
+      private void completed(Exchange exchange, Attempt attempt, boolean hedge) {
+        List<Exchange> losers = new ArrayList<>(1);
+        synchronized (this) {
+          pending--;
+          if (over || attempt.outcome() != Outcome.ANSWERED && pending > 0) {
+            return;
+          }
+          over = true;
+          for (Exchange other : exchanges) {
+            if (other != exchange) {
+              losers.add(other);
+            }
+          }
+        }
+        for (Exchange loser : losers) {
+          loser.exchange().cancel(true);
+        }
+        if (hedge && attempt.outcome() == Outcome.ANSWERED) {
+          metrics.recordBankHedgeWon();
+        }
+        finished(attempt);
+      }
     }
   }
 }
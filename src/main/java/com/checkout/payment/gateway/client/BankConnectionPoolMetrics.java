@@ -0,0 +1,46 @@
+package com.checkout.payment.gateway.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.ToIntFunction;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+
+/**
+ * Publishes the bank connection pool as {@code bank.client.pool.connections} gauges tagged by
+ * {@code state} (leased, idle, pending) plus the configured {@code bank.client.pool.max}.
+ */
+public class BankConnectionPoolMetrics implements MeterBinder {
+
+  static final String CONNECTIONS = "bank.client.pool.connections";
+  static final String MAX = "bank.client.pool.max";
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  public BankConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+    this.connectionManager = connectionManager;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    connections(registry, "leased", "Connections currently carrying a bank call",
+        PoolStats::getLeased);
+    connections(registry, "idle", "Open keep-alive connections waiting for reuse",
+        PoolStats::getAvailable);
+    connections(registry, "pending", "Bank calls waiting for a connection",
+        PoolStats::getPending);
+    Gauge.builder(MAX, connectionManager, manager -> manager.getMaxTotal())
+        .description("Maximum connections the bank pool may open")
+        .register(registry);
+  }
+
+  private void connections(MeterRegistry registry, String state, String description,
+      ToIntFunction<PoolStats> stat) {
+    Gauge.builder(CONNECTIONS, connectionManager,
+            manager -> stat.applyAsInt(manager.getTotalStats()))
+        .tag("state", state)
+        .description(description)
+        .register(registry);
+  }
+}
@@ -0,0 +1,83 @@
+package com.checkout.payment.gateway.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Decides when a second, hedged request is sent for an idempotent bank call that has not
+ * answered yet. The delay is the {@code percentile} of the latencies of the last
+ * {@code window} answered attempts, and never less than {@code minDelay}, so only the slowest
+ * few percent of calls are hedged and the extra load on the bank stays about as small. No call is
+ * hedged until the window has filled once.
+ *
+ * <p>The percentile is recomputed from a sorted copy of the window every {@code window / 16}
+ * samples rather than on every call.
+ */
+public class BankHedgingPolicy {
+
+  private static final BankHedgingPolicy DISABLED = new BankHedgingPolicy();
+
+  private final boolean enabled;
+  private final double percentile;
+  private final long minDelayNanos;
+  private final long[] samples;
+  private final int refreshEvery;
+
+  private int next;
+  private long recorded;
+  private volatile long delayNanos = -1;
+
+  public BankHedgingPolicy(double percentile, Duration minDelay, int window) {
+    if (percentile <= 0 || percentile >= 1 || minDelay.isNegative() || window < 16) {
+      throw new IllegalArgumentException(
+          "Percentile must be in (0, 1), min delay not negative and window at least 16");
+    }
+    this.enabled = true;
+    this.percentile = percentile;
+    this.minDelayNanos = minDelay.toNanos();
+    this.samples = new long[window];
+    this.refreshEvery = window / 16;
+  }
+
+  private BankHedgingPolicy() {
+    this.enabled = false;
+    this.percentile = 0;
+    this.minDelayNanos = 0;
+    this.samples = new long[0];
+    this.refreshEvery = 0;
+  }
+
+  public static BankHedgingPolicy disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Adds the latency of an attempt the bank answered.
+   */
+  void record(long latencyNanos) {
+    if (!enabled) {
+      return;
+    }
+    long[] sorted = null;
+    synchronized (this) {
+      samples[next] = latencyNanos;
+      next = next + 1 == samples.length ? 0 : next + 1;
+      recorded++;
+      if (recorded >= samples.length && recorded % refreshEvery == 0) {
+        sorted = samples.clone();
+      }
+    }
+    if (sorted != null) {
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+      delayNanos = Math.max(sorted[rank], minDelayNanos);
+    }
+  }
+
+  /**
+   * Nanoseconds to wait for an answer before hedging, or -1 if calls are not hedged.
+   */
+  public long delayNanos() {
+    return delayNanos;
+  }
+}
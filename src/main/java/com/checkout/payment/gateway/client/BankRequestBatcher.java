@@ -0,0 +1,138 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Micro-batches concurrent bank calls. Requests are collected until {@code maxBatchSize} are
+ * waiting or {@code window} has passed since the first, then the whole batch is handed to
+ * {@link BankClient#processPaymentAsync(BankRequest, Deadline)} in one burst from the batcher
+ * thread. Each caller's future completes with its own response as soon as the bank answers it.
+ *
+ * <p>The bank has no batch endpoint, so a batch is still one HTTP request per payment. The burst
+ * shares warm pooled connections, and with {@code bank.client.http-version=HTTP_2} it is
+ * multiplexed over a single connection.
+ */
+public class BankRequestBatcher implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BankRequestBatcher.class);
+
+  private record Pending(BankRequest request, Deadline deadline,
+      CompletableFuture<BankResponse> response) {
+  }
+
+  private final BankClient bankClient;
+  private final int maxBatchSize;
+  private final long windowNanos;
+  private final ScheduledExecutorService dispatcher;
+  private final Object lock = new Object();
+
+  private List<Pending> batch;
+  private boolean closed;
+
+  public BankRequestBatcher(BankClient bankClient, int maxBatchSize, Duration window) {
+    if (maxBatchSize < 1 || window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("Batch size and window must be positive");
+    }
+    this.bankClient = bankClient;
+    this.maxBatchSize = maxBatchSize;
+    this.windowNanos = window.toNanos();
+    this.batch = new ArrayList<>(maxBatchSize);
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "bank-batcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public CompletableFuture<BankResponse> submit(BankRequest request) {
+    return submit(request, Deadline.none());
+  }
+
+  /**
+   * Queues {@code request} for the next batch. Like the client it wraps, the returned future never
+   * completes exceptionally; failures, including a client call that throws, are reported as a 503
+   * {@link BankResponse}. Time spent waiting for the batch counts against {@code deadline}, and a
+   * bounded deadline that passes without an answer completes the future with a 503 too, so a
+   * caller joining it waits no longer than the deadline. A request whose deadline passed while it
+   * waited for its batch is not sent.
+   */
+  public CompletableFuture<BankResponse> submit(BankRequest request, Deadline deadline) {
+    CompletableFuture<BankResponse> response = new CompletableFuture<>();
+    if (deadline.isBounded()) {
+      response.completeOnTimeout(BankCallGuard.unavailable(),
+          Math.max(deadline.remainingNanos(), 0), TimeUnit.NANOSECONDS);
+    }
+    Pending pending = new Pending(request, deadline, response);
+    List<Pending> full = null;
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("Bank request batcher is closed");
+      }
+      List<Pending> current = batch;
+      current.add(pending);
+      if (current.size() >= maxBatchSize) {
+        full = current;
+        batch = new ArrayList<>(maxBatchSize);
+      } else if (current.size() == 1) {
+        dispatcher.schedule(() -> dispatchIfCurrent(current), windowNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    if (full != null) {
+      List<Pending> ready = full;
+      dispatcher.execute(() -> dispatch(ready));
+    }
+    return pending.response();
+  }
+
+  /**
+   * Sends whatever is still waiting and stops accepting requests.
+   */
+  @Override
+  public void close() {
+    List<Pending> remaining;
+    synchronized (lock) {
+      closed = true;
+      remaining = batch;
+      batch = new ArrayList<>();
+    }
+    dispatch(remaining);
+    dispatcher.shutdown();
+  }
+
+  private void dispatchIfCurrent(List<Pending> expired) {
+    synchronized (lock) {
+      if (batch != expired) {
+        return;
+      }
+      batch = new ArrayList<>(maxBatchSize);
+    }
+    dispatch(expired);
+  }
+
+  private void dispatch(List<Pending> ready) {
+    for (Pending pending : ready) {
+      CompletableFuture<BankResponse> response = pending.response();
+      if (response.isDone()) {
+        continue;
+      }
+      try {
+        bankClient.processPaymentAsync(pending.request(), pending.deadline())
+            .whenComplete((bankResponse, e) -> response.complete(
+                e == null ? bankResponse : BankCallGuard.unavailable()));
+      } catch (RuntimeException | Error e) {
+        LOG.error("Bank call failed to start", e);
+        response.complete(BankCallGuard.unavailable());
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.checkout.payment.gateway.client;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When a failed bank call is made again, and how long to wait first. A call gets at most
+ * {@code maxAttempts} attempts, the n-th retry waiting a uniformly random time up to
+ * {@code initialBackoff * 2^(n-1)}, capped at {@code maxBackoff}, so callers that failed together
+ * do not come back together.
+ *
+ * <p>An attempt the bank cannot have acted on, a 503 or a connection that was never made, is
+ * retried for any call. One that may have reached the bank, such as a timeout, is only retried for
+ * an idempotent call, one that carries a key the bank deduplicates on.
+ */
+public class BankRetryPolicy {
+
+  /**
+   * How an attempt ended, as far as repeating it is concerned.
+   */
+  enum Outcome {
+    /** The bank gave an answer that another attempt would not change. */
+    ANSWERED,
+    /** The call guard refused the attempt, so the bank was not called. */
+    REFUSED,
+    /** The bank is known not to have processed the request. */
+    NOT_PROCESSED,
+    /** The request may or may not have been processed. */
+    UNKNOWN
+  }
+
+  private static final BankRetryPolicy NONE = new BankRetryPolicy(1, Duration.ZERO,
+      Duration.ZERO);
+
+  private final int maxAttempts;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+
+  public BankRetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+    if (maxAttempts < 1 || initialBackoff.isNegative()
+        || maxBackoff.compareTo(initialBackoff) < 0) {
+      throw new IllegalArgumentException(
+          "Max attempts must be positive and max backoff at least the initial backoff");
+    }
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffNanos = initialBackoff.toNanos();
+    this.maxBackoffNanos = maxBackoff.toNanos();
+  }
+
+  /**
+   * A single attempt per call.
+   */
+  public static BankRetryPolicy none() {
+    return NONE;
+  }
+
+  boolean shouldRetry(int attempts, Outcome outcome, boolean idempotent) {
+    if (attempts >= maxAttempts) {
+      return false;
+    }
+    return outcome == Outcome.NOT_PROCESSED || outcome == Outcome.UNKNOWN && idempotent;
+  }
+
+  /**
+   * The jittered wait before the retry that follows {@code attempts} failed attempts.
+   */
+  long backoffNanos(int attempts) {
+    long ceiling = initialBackoffNanos << Math.min(attempts - 1, 20);
+    if (ceiling <= 0 || ceiling > maxBackoffNanos) {
+      ceiling = maxBackoffNanos;
+    }
+    return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+}
@@ -0,0 +1,60 @@
+package com.checkout.payment.gateway.client;
+
+import java.time.Duration;
+
+/**
+ * The point in {@link System#nanoTime()} by which a bank call must have answered, set once when
+ * the payment request arrives and shared by every attempt made for it, so retries and hedges
+ * spend one budget instead of each getting a fresh timeout.
+ */
+public final class Deadline {
+
+  private static final Deadline NONE = new Deadline(0, false);
+
+  private final long expiresAtNanos;
+  private final boolean bounded;
+
+  private Deadline(long expiresAtNanos, boolean bounded) {
+    this.expiresAtNanos = expiresAtNanos;
+    this.bounded = bounded;
+  }
+
+  /**
+   * No budget beyond the client's own timeouts.
+   */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  public static Deadline after(Duration budget) {
+    return new Deadline(System.nanoTime() + budget.toNanos(), true);
+  }
+
+  public boolean isBounded() {
+    return bounded;
+  }
+
+  /**
+   * Nanoseconds left, which is zero or negative once the deadline has passed, and
+   * {@link Long#MAX_VALUE} when unbounded.
+   */
+  public long remainingNanos() {
+    return bounded ? expiresAtNanos - System.nanoTime() : Long.MAX_VALUE;
+  }
+
+  public boolean isExpired() {
+    return remainingNanos() <= 0;
+  }
+
+  /**
+   * The shorter of {@code timeout} and the time left, never less than a millisecond so it can
+   * still be handed to an HTTP client.
+   */
+  public Duration cap(Duration timeout) {
+    long remaining = remainingNanos();
+    if (remaining >= timeout.toNanos()) {
+      return timeout;
+    }
+    return Duration.ofNanos(Math.max(remaining, 1_000_000));
+  }
+}
@@ -0,0 +1,62 @@
+package com.checkout.payment.gateway.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Request factory for the pooled blocking client that shortens the pool acquire and response
+ * timeouts of an exchange to what is left of the {@link Deadline} it runs {@link #within}.
+ * {@code RestTemplate} has no per-call timeouts, so the deadline reaches the factory through the
+ * calling thread.
+ */
+public class DeadlineRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final Duration acquireTimeout;
+  private final Duration readTimeout;
+
+  public DeadlineRequestFactory(HttpClient httpClient, Duration acquireTimeout,
+      Duration readTimeout) {
+    super(httpClient);
+    this.acquireTimeout = acquireTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Runs {@code call} with the exchanges it makes on this thread bounded by {@code deadline}.
+   */
+  static <T> T within(Deadline deadline, Supplier<T> call) {
+    if (!deadline.isBounded()) {
+      return call.get();
+    }
+    CURRENT.set(deadline);
+    try {
+      return call.get();
+    } finally {
+      CURRENT.remove();
+    }
+  }
+
+  @Override
+  protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+    Deadline deadline = CURRENT.get();
+    if (deadline == null) {
+      return super.createHttpContext(httpMethod, uri);
+    }
+    HttpClientContext context = HttpClientContext.create();
+    context.setRequestConfig(RequestConfig.custom()
+        .setConnectionRequestTimeout(Timeout.of(deadline.cap(acquireTimeout)))
+        .setResponseTimeout(Timeout.of(deadline.cap(readTimeout)))
+        .build());
+    return context;
+  }
+}
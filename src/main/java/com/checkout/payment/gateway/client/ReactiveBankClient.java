@@ -0,0 +1,113 @@
+package com.checkout.payment.gateway.client;
+
+import com.checkout.payment.gateway.logging.PaymentEvents;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link BankClient} for the reactive runtime: the call is made with {@code bankWebClient} on the
+ * Netty event loop, so no thread waits for the bank. It is admitted and accounted through the
+ * same circuit breaker and concurrency limit, and failures are reported the same way, as a 503
+ * {@link BankResponse} rather than an error signal.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveBankClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReactiveBankClient.class);
+
+  private final WebClient webClient;
+  private final BankCallGuard guard;
+  private final PaymentMetrics metrics;
+
+  public ReactiveBankClient(WebClient bankWebClient, BankCircuitBreaker circuitBreaker,
+      AdaptiveConcurrencyLimiter concurrencyLimiter, PaymentMetrics metrics) {
+    this.webClient = bankWebClient;
+    this.guard = new BankCallGuard(circuitBreaker, concurrencyLimiter);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Admission is checked on subscription. An admitted call is settled with the guard exactly
+   * once: when the bank answers or the call fails, or as ignored when the subscriber cancels
+   * first. Non-2xx answers are refused with a 503 {@link BankResponse}, and only 5xx answers
+   * count as bank failures, as in the blocking client. A call that has not answered by
+   * {@code deadline} fails like any other, and one whose deadline has already passed is refused
+   * without calling the bank.
+   */
+  public Mono<BankResponse> processPayment(BankRequest request, Deadline deadline) {
+    return Mono.defer(() -> {
+      if (deadline.isExpired()) {
+        LOG.debug("Bank call deadline passed, not calling the bank");
+        return Mono.just(BankCallGuard.unavailable());
+      }
+      if (!guard.admit()) {
+        return Mono.just(BankCallGuard.unavailable());
+      }
+      long startNanos = System.nanoTime();
+      AtomicBoolean settled = new AtomicBoolean();
+      Mono<BankResponse> exchange = webClient.post()
+          .uri(BankClient.PAYMENTS)
+          .contentType(MediaType.APPLICATION_JSON)
+          .bodyValue(request.getJson() == null ? request : request.getJson())
+          .exchangeToMono(response -> toBankResponse(response, startNanos, settled))
+          .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty bank response")));
+      if (deadline.isBounded()) {
+        exchange = exchange.timeout(Duration.ofNanos(Math.max(deadline.remainingNanos(), 1)));
+      }
+      return exchange
+          .onErrorResume(e -> {
+            settle(settled, startNanos, true);
+            LOG.error("Unable to reach bank service (connection error): {}", e.getMessage());
+            metrics.recordBankResponse(0);
+            return Mono.just(BankCallGuard.unavailable());
+          })
+          .doOnCancel(() -> {
+            if (settled.compareAndSet(false, true)) {
+              guard.ignore();
+            }
+          });
+    });
+  }
+
+  private Mono<BankResponse> toBankResponse(ClientResponse response, long startNanos,
+      AtomicBoolean settled) {
+    int statusCode = response.statusCode().value();
+    metrics.recordBankResponse(statusCode);
+    if (!response.statusCode().is2xxSuccessful()) {
+      if (statusCode == 503) {
+        LOG.error("Bank service unavailable (503)");
+      } else {
+        LOG.error("Unexpected bank response status {}", statusCode);
+      }
+      settle(settled, startNanos, statusCode >= 500);
+      return response.releaseBody().then(Mono.fromSupplier(BankCallGuard::unavailable));
+    }
+    return response.bodyToMono(BankResponse.class)
+        .map(bankResponse -> {
+          settle(settled, startNanos, false);
+          bankResponse.setHttpStatusCode(statusCode);
+          PaymentEvents.bankResponded(statusCode, bankResponse.isAuthorized(),
+              System.nanoTime() - startNanos);
+          return bankResponse;
+        });
+  }
+
+  private void settle(AtomicBoolean settled, long startNanos, boolean bankFailed) {
+    if (settled.compareAndSet(false, true)) {
+      guard.complete(startNanos, bankFailed);
+    }
+  }
+}
@@ -1,19 +1,446 @@
 package com.checkout.payment.gateway.configuration;
 
+import com.checkout.payment.gateway.client.AdaptiveConcurrencyLimiter;
+import com.checkout.payment.gateway.client.BankCallGuardMetrics;
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankCircuitBreaker;
+import com.checkout.payment.gateway.client.BankConnectionPoolMetrics;
+import com.checkout.payment.gateway.client.BankHedgingPolicy;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.BankRetryPolicy;
+import com.checkout.payment.gateway.client.DeadlineRequestFactory;
+import com.checkout.payment.gateway.controller.AdmissionMetrics;
+import com.checkout.payment.gateway.controller.AdmissionQueue;
+import com.checkout.payment.gateway.controller.MerchantRateLimiter;
+import com.checkout.payment.gateway.controller.PaymentViewConverter;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.metrics.StageTimingJsonConverter;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.BulkPaymentResult;
+import com.checkout.payment.gateway.model.ErrorResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.ColdPaymentStore;
+import com.checkout.payment.gateway.repository.JournaledPaymentStore;
+import com.checkout.payment.gateway.repository.PaymentCluster;
+import com.checkout.payment.gateway.repository.PaymentJournal;
+import com.checkout.payment.gateway.repository.PaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.StorageMode;
+import com.checkout.payment.gateway.service.CardVault;
+import com.checkout.payment.gateway.service.PaymentEngine;
+import com.checkout.payment.gateway.service.PaymentJsonCache;
+import com.checkout.payment.gateway.service.PaymentRetention;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.channel.ChannelOption;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * Types Jackson reads and writes outside controller signatures are registered for reflection, so
+ * an AOT or native build binds them as the JVM does.
+ */
 @Configuration
+@RegisterReflectionForBinding({PostPaymentRequest.class, PaymentResponse.class,
+    BulkPaymentResult.class, ErrorResponse.class, BankRequest.class, BankResponse.class})
 public class ApplicationConfiguration {
 
+  /**
+   * Beans that recover state or start background work stay eager when
+   * {@code spring.main.lazy-initialization} is on, as in the {@code prod} profile: the journal is
+   * replayed, the cluster listens and retention sweeps from startup rather than on first use.
+   */
   @Bean
-  public RestTemplate restTemplate(RestTemplateBuilder builder) {
+  public static LazyInitializationExcludeFilter eagerPaymentBeans() {
+    return LazyInitializationExcludeFilter.forBeanTypes(PaymentStore.class,
+        PaymentsRepository.class, PaymentJournal.class, ColdPaymentStore.class,
+        PaymentCluster.class, PaymentRetention.class);
+  }
+
+  @Bean(destroyMethod = "close")
+  public PoolingHttpClientConnectionManager bankConnectionManager(
+      @Value("${bank.client.connect-timeout:10s}") Duration connectTimeout,
+      @Value("${bank.client.read-timeout:10s}") Duration readTimeout,
+      @Value("${bank.client.pool.max-total:200}") int maxTotal,
+      @Value("${bank.client.pool.max-per-route:200}") int maxPerRoute,
+      @Value("${bank.client.pool.time-to-live:5m}") Duration timeToLive,
+      @Value("${bank.client.pool.validate-after-inactivity:2s}") Duration validateAfterInactivity) {
+    return PoolingHttpClientConnectionManagerBuilder.create()
+        .setMaxConnTotal(maxTotal)
+        .setMaxConnPerRoute(maxPerRoute)
+        .setDefaultSocketConfig(SocketConfig.custom()
+            .setSoTimeout(Timeout.of(readTimeout))
+            .setSoKeepAlive(true)
+            .setTcpNoDelay(true)
+            .build())
+        .setDefaultConnectionConfig(ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.of(connectTimeout))
+            .setSocketTimeout(Timeout.of(readTimeout))
+            .setTimeToLive(TimeValue.of(timeToLive))
+            .setValidateAfterInactivity(TimeValue.of(validateAfterInactivity))
+            .build())
+        .build();
+  }
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient bankConnectionPool(
+      PoolingHttpClientConnectionManager bankConnectionManager,
+      @Value("${bank.client.pool.acquire-timeout:2s}") Duration acquireTimeout,
+      @Value("${bank.client.pool.idle-timeout:30s}") Duration idleTimeout) {
+    return HttpClients.custom()
+        .setConnectionManager(bankConnectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+            .build())
+        .evictExpiredConnections()
+        .evictIdleConnections(TimeValue.of(idleTimeout))
+        .disableAutomaticRetries()
+        .build();
+  }
+
+  /**
+   * Boot only provides a {@link RestTemplateBuilder} to servlet applications; the reactive runtime
+   * still builds the blocking {@link BankClient} and gets a plain one.
+   */
+  @Bean
+  public RestTemplate restTemplate(ObjectProvider<RestTemplateBuilder> builder,
+      CloseableHttpClient bankConnectionPool,
+      @Value("${bank.client.pool.acquire-timeout:2s}") Duration acquireTimeout,
+      @Value("${bank.client.read-timeout:10s}") Duration readTimeout) {
+    return builder.getIfAvailable(RestTemplateBuilder::new)
+        .requestFactory(() -> new DeadlineRequestFactory(bankConnectionPool, acquireTimeout,
+            readTimeout))
+        .build();
+  }
+
+  @Bean
+  public MeterBinder bankConnectionPoolMetrics(
+      PoolingHttpClientConnectionManager bankConnectionManager) {
+    return new BankConnectionPoolMetrics(bankConnectionManager);
+  }
+
+  @Bean
+  public BankCircuitBreaker bankCircuitBreaker(
+      @Value("${bank.client.circuit-breaker.failure-rate-threshold:0.5}") double failureRate,
+      @Value("${bank.client.circuit-breaker.window-size:20}") int windowSize,
+      @Value("${bank.client.circuit-breaker.minimum-calls:10}") int minimumCalls,
+      @Value("${bank.client.circuit-breaker.open-duration:5s}") Duration openDuration,
+      @Value("${bank.client.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+    return new BankCircuitBreaker(failureRate, windowSize, minimumCalls, openDuration,
+        halfOpenCalls);
+  }
+
+  @Bean
+  public AdaptiveConcurrencyLimiter bankConcurrencyLimiter(
+      @Value("${bank.client.limiter.initial-limit:20}") int initialLimit,
+      @Value("${bank.client.limiter.min-limit:2}") int minLimit,
+      @Value("${bank.client.limiter.max-limit:200}") int maxLimit,
+      @Value("${bank.client.limiter.backoff-ratio:0.9}") double backoffRatio,
+      @Value("${bank.client.limiter.latency-threshold:1s}") Duration latencyThreshold) {
+    return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+        latencyThreshold);
+  }
+
+  @Bean
+  public BankRetryPolicy bankRetryPolicy(
+      @Value("${bank.client.retry.max-attempts:3}") int maxAttempts,
+      @Value("${bank.client.retry.initial-backoff:50ms}") Duration initialBackoff,
+      @Value("${bank.client.retry.max-backoff:1s}") Duration maxBackoff) {
+    return new BankRetryPolicy(maxAttempts, initialBackoff, maxBackoff);
+  }
+
+  @Bean
+  public BankHedgingPolicy bankHedgingPolicy(
+      @Value("${bank.client.hedging.enabled:false}") boolean enabled,
+      @Value("${bank.client.hedging.percentile:0.95}") double percentile,
+      @Value("${bank.client.hedging.min-delay:10ms}") Duration minDelay,
+      @Value("${bank.client.hedging.window:1024}") int window) {
+    return enabled ? new BankHedgingPolicy(percentile, minDelay, window)
+        : BankHedgingPolicy.disabled();
+  }
+
+  @Bean
+  public MeterBinder bankCallGuardMetrics(BankCircuitBreaker bankCircuitBreaker,
+      AdaptiveConcurrencyLimiter bankConcurrencyLimiter) {
+    return new BankCallGuardMetrics(bankCircuitBreaker, bankConcurrencyLimiter);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "bank.client.batching.enabled", havingValue = "true")
+  public BankRequestBatcher bankRequestBatcher(BankClient bankClient,
+      @Value("${bank.client.batching.max-batch-size:32}") int maxBatchSize,
+      @Value("${bank.client.batching.window:2ms}") Duration window) {
+    return new BankRequestBatcher(bankClient, maxBatchSize, window);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "payments.engine.enabled", havingValue = "true")
+  public PaymentEngine paymentEngine(
+      @Value("${payments.engine.shards:4}") int shards,
+      @Value("${payments.engine.ring-size:1024}") int ringSize,
+      @Value("${payments.engine.velocity.max-payments:0}") int maxPaymentsPerCard,
+      @Value("${payments.engine.velocity.window:1m}") Duration velocityWindow) {
+    return new PaymentEngine(shards, ringSize, maxPaymentsPerCard, velocityWindow);
+  }
+
+  /**
+   * Without {@code payments.vault.key}, a base64 32-byte key, the vault makes up a key at startup
+   * and cards get new tokens after every restart.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "payments.vault.enabled", havingValue = "true")
+  public CardVault cardVault(MeterRegistry registry,
+      @Value("${payments.vault.key:}") String key,
+      @Value("${payments.vault.cache.maximum-size:100000}") long maximumSize,
+      @Value("${payments.vault.cache.expire-after-access:1h}") Duration expireAfterAccess) {
+    return new CardVault(key.isEmpty() ? CardVault.randomKey() : Base64.getDecoder().decode(key),
+        maximumSize, expireAfterAccess, registry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "payments.admission.enabled", havingValue = "true")
+  public MerchantRateLimiter merchantRateLimiter(
+      @Value("${payments.admission.rate-limit.permits-per-second:100}") double permitsPerSecond,
+      @Value("${payments.admission.rate-limit.burst:200}") int burst,
+      @Value("${payments.admission.rate-limit.maximum-merchants:1000000}") long maximumMerchants,
+      @Value("${payments.admission.rate-limit.idle-expiry:10m}") Duration idleExpiry) {
+    return new MerchantRateLimiter(permitsPerSecond, burst, maximumMerchants, idleExpiry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "payments.admission.enabled", havingValue = "true")
+  public AdmissionQueue admissionQueue(
+      @Value("${payments.admission.max-concurrent:200}") int maxConcurrent,
+      @Value("${payments.admission.max-wait:100ms}") Duration maxWait) {
+    return new AdmissionQueue(maxConcurrent, maxWait);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "payments.admission.enabled", havingValue = "true")
+  public MeterBinder admissionMetrics(MerchantRateLimiter merchantRateLimiter,
+      AdmissionQueue admissionQueue) {
+    return new AdmissionMetrics(merchantRateLimiter, admissionQueue);
+  }
+
+  @Bean
+  public HttpClient bankHttpClient(
+      @Value("${bank.client.connect-timeout:10s}") Duration connectTimeout,
+      @Value("${bank.client.http-version:HTTP_1_1}") HttpClient.Version httpVersion) {
+    return HttpClient.newBuilder()
+        .version(httpVersion)
+        .connectTimeout(connectTimeout)
+        .build();
+  }
+
+  /**
+   * Tomcat is on the classpath for the servlet runtime, and Boot would otherwise prefer it for a
+   * reactive application too.
+   */
+  @Bean
+  @ConditionalOnWebApplication(type = Type.REACTIVE)
+  public NettyReactiveWebServerFactory reactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Bean(destroyMethod = "dispose")
+  @ConditionalOnWebApplication(type = Type.REACTIVE)
+  public ConnectionProvider bankConnectionProvider(
+      @Value("${bank.client.pool.max-total:200}") int maxTotal,
+      @Value("${bank.client.pool.acquire-timeout:2s}") Duration acquireTimeout,
+      @Value("${bank.client.pool.idle-timeout:30s}") Duration idleTimeout,
+      @Value("${bank.client.pool.time-to-live:5m}") Duration timeToLive) {
+    return ConnectionProvider.builder("bank")
+        .maxConnections(maxTotal)
+        .pendingAcquireTimeout(acquireTimeout)
+        .maxIdleTime(idleTimeout)
+        .maxLifeTime(timeToLive)
+        .build();
+  }
+
+  @Bean
+  @ConditionalOnWebApplication(type = Type.REACTIVE)
+  public WebClient bankWebClient(WebClient.Builder builder,
+      ConnectionProvider bankConnectionProvider,
+      @Value("${bank.simulator.url:http://localhost:8080}") String bankUrl,
+      @Value("${bank.client.connect-timeout:10s}") Duration connectTimeout,
+      @Value("${bank.client.read-timeout:10s}") Duration readTimeout) {
+    reactor.netty.http.client.HttpClient httpClient = reactor.netty.http.client.HttpClient
+        .create(bankConnectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+        .option(ChannelOption.TCP_NODELAY, true)
+        .responseTimeout(readTimeout);
     return builder
-        .setConnectTimeout(Duration.ofMillis(10000))
-        .setReadTimeout(Duration.ofMillis(10000))
+        .baseUrl(bankUrl)
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
         .build();
   }
+
+  /**
+   * Ahead of the JSON converter, which would otherwise claim {@code PaymentView} bodies too.
+   */
+  @Bean
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public PaymentViewConverter paymentViewConverter(ObjectMapper objectMapper,
+      PaymentMetrics paymentMetrics,
+      @Value("${payments.request.max-size:16KB}") DataSize maxRequestSize) {
+    return new PaymentViewConverter(objectMapper, paymentMetrics,
+        (int) maxRequestSize.toBytes());
+  }
+
+  @Bean
+  public MappingJackson2HttpMessageConverter jsonConverter(ObjectMapper objectMapper,
+      PaymentMetrics paymentMetrics) {
+    return new StageTimingJsonConverter(objectMapper, paymentMetrics);
+  }
+
+  @Bean
+  public MeterBinder paymentsRepositoryMetrics(PaymentsRepository paymentsRepository) {
+    return registry -> Gauge.builder("payments.repository.size", paymentsRepository,
+            PaymentsRepository::size)
+        .description("Payments currently held in the repository")
+        .register(registry);
+  }
+
+  @Bean
+  public PaymentStore paymentStore(
+      @Value("${payments.repository.storage:heap}") StorageMode storageMode,
+      @Value("${payments.repository.shards:16}") int shardCount,
+      @Value("${payments.repository.capacity:65536}") int capacity,
+      ObjectProvider<PaymentJournal> journal) {
+    PaymentStore store = storageMode.create(shardCount, capacity);
+    PaymentJournal paymentJournal = journal.getIfAvailable();
+    return paymentJournal == null ? store : new JournaledPaymentStore(store, paymentJournal);
+  }
+
+  @Bean
+  public PaymentsRepository paymentsRepository(PaymentStore paymentStore,
+      ObjectProvider<ColdPaymentStore> coldStore, ObjectProvider<PaymentCluster> cluster) {
+    return new PaymentsRepository(paymentStore, coldStore.getIfAvailable(),
+        cluster.getIfAvailable());
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "payments.journal.enabled", havingValue = "true")
+  public PaymentJournal paymentJournal(
+      @Value("${payments.journal.directory:data/journal}") Path directory,
+      @Value("${payments.journal.segment-size:64MB}") DataSize segmentSize,
+      @Value("${payments.journal.flush-interval:2ms}") Duration flushInterval,
+      @Value("${payments.journal.flush-batch-size:256}") int flushBatchSize,
+      @Value("${payments.journal.await-flush:true}") boolean awaitFlush,
+      @Value("${payments.journal.compaction-interval:10m}") Duration compactionInterval,
+      @Value("${payments.journal.compaction-live-ratio:0.5}") double compactionLiveRatio,
+      ObjectProvider<ColdPaymentStore> coldStore) {
+    ColdPaymentStore archive = coldStore.getIfAvailable();
+    return new PaymentJournal(directory, (int) segmentSize.toBytes(), flushInterval,
+        flushBatchSize, awaitFlush, compactionInterval, compactionLiveRatio,
+        archive == null ? id -> false : archive::isDurable);
+  }
+
+  @Bean(destroyMethod = "close")
+  public PaymentRetention paymentRetention(PaymentsRepository paymentsRepository,
+      PaymentJsonCache paymentJsonCache, ObjectProvider<ColdPaymentStore> coldStore,
+      MeterRegistry registry,
+      @Value("${payments.retention.max-entries:0}") int maxEntries,
+      @Value("${payments.retention.max-age:0s}") Duration maxAge,
+      @Value("${payments.retention.sweep-interval:100ms}") Duration sweepInterval,
+      @Value("${payments.retention.sweep-batch:1000}") int sweepBatch) {
+    return new PaymentRetention(paymentsRepository, paymentJsonCache, coldStore.getIfAvailable(),
+        registry, maxEntries, maxAge, sweepInterval, sweepBatch);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "payments.retention.cold.enabled", havingValue = "true")
+  public ColdPaymentStore coldPaymentStore(
+      @Value("${payments.retention.cold.directory:data/cold}") Path directory,
+      @Value("${payments.retention.cold.segment-records:65536}") int segmentRecords,
+      @Value("${payments.retention.cold.flush-interval:1m}") Duration flushInterval) {
+    return new ColdPaymentStore(directory, segmentRecords, flushInterval);
+  }
+
+  /**
+   * {@code payments.cluster.nodes} lists every node as {@code host:port}, in the same order on
+   * each, and {@code payments.cluster.node-index} is this node's position in it. Every node is
+   * given the same {@code payments.cluster.secret}, a base64 key of at least 16 bytes.
+   */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "payments.cluster.enabled", havingValue = "true")
+  public PaymentCluster paymentCluster(
+      @Value("${payments.cluster.nodes}") List<String> nodes,
+      @Value("${payments.cluster.node-index}") int nodeIndex,
+      @Value("${payments.cluster.replication-factor:2}") int replicationFactor,
+      @Value("${payments.cluster.batch-size:256}") int batchSize,
+      @Value("${payments.cluster.batch-interval:2ms}") Duration batchInterval,
+      @Value("${payments.cluster.queue-capacity:65536}") int queueCapacity,
+      @Value("${payments.cluster.connect-timeout:100ms}") Duration connectTimeout,
+      @Value("${payments.cluster.read-timeout:50ms}") Duration readTimeout,
+      @Value("${payments.cluster.secret}") String secret) {
+    List<InetSocketAddress> addresses = nodes.stream()
+        .map(node -> {
+          int colon = node.lastIndexOf(':');
+          return new InetSocketAddress(node.substring(0, colon).trim(),
+              Integer.parseInt(node.substring(colon + 1).trim()));
+        })
+        .toList();
+    return new PaymentCluster(addresses, nodeIndex, replicationFactor, batchSize, batchInterval,
+        queueCapacity, connectTimeout, readTimeout, Base64.getDecoder().decode(secret));
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "payments.cluster.enabled", havingValue = "true")
+  public MeterBinder paymentClusterMetrics(PaymentCluster paymentCluster) {
+    return registry -> {
+      Gauge.builder("payments.cluster.backlog", paymentCluster, PaymentCluster::backlog)
+          .description("Payments waiting to be replicated to other nodes")
+          .register(registry);
+      FunctionCounter.builder("payments.cluster.received", paymentCluster,
+              PaymentCluster::receivedCount)
+          .description("Payments replicated to this node")
+          .register(registry);
+      FunctionCounter.builder("payments.cluster.dropped", paymentCluster,
+              PaymentCluster::droppedCount)
+          .description("Payments not replicated because a node's queue was full")
+          .register(registry);
+      FunctionCounter.builder("payments.cluster.remote.lookups", paymentCluster,
+              PaymentCluster::remoteLookupCount)
+          .description("Lookups sent to other nodes for payments not held here")
+          .register(registry);
+    };
+  }
 }
@@ -0,0 +1,48 @@
+package com.checkout.payment.gateway.controller;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes admitted and queued payment requests as {@code payments.admission.*} gauges, the
+ * merchants with a rate limit bucket, and refused requests as {@code payments.admission.rejected}
+ * by {@code reason}.
+ */
+public class AdmissionMetrics implements MeterBinder {
+
+  static final String IN_FLIGHT = "payments.admission.in.flight";
+  static final String QUEUED = "payments.admission.queued";
+  static final String MERCHANTS = "payments.admission.merchants";
+  static final String REJECTED = "payments.admission.rejected";
+
+  private final MerchantRateLimiter rateLimiter;
+  private final AdmissionQueue admissionQueue;
+
+  public AdmissionMetrics(MerchantRateLimiter rateLimiter, AdmissionQueue admissionQueue) {
+    this.rateLimiter = rateLimiter;
+    this.admissionQueue = admissionQueue;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder(IN_FLIGHT, admissionQueue, AdmissionQueue::inFlight)
+        .description("Payment requests currently admitted")
+        .register(registry);
+    Gauge.builder(QUEUED, admissionQueue, AdmissionQueue::queued)
+        .description("Payment requests waiting for admission")
+        .register(registry);
+    Gauge.builder(MERCHANTS, rateLimiter, MerchantRateLimiter::merchantCount)
+        .description("Merchants with a rate limit bucket")
+        .register(registry);
+    FunctionCounter.builder(REJECTED, rateLimiter, MerchantRateLimiter::rejectedCount)
+        .tag("reason", "rate_limit")
+        .description("Payment requests refused before their body was read")
+        .register(registry);
+    FunctionCounter.builder(REJECTED, admissionQueue, AdmissionQueue::timedOutCount)
+        .tag("reason", "busy")
+        .description("Payment requests refused before their body was read")
+        .register(registry);
+  }
+}
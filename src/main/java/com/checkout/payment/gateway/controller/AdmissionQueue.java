@@ -0,0 +1,162 @@
+package com.checkout.payment.gateway.controller;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits at most {@code maxConcurrent} payment requests at a time across all merchants. While
+ * there is room a request takes a slot with a single compare-and-set. Otherwise it queues behind
+ * requests of the same or higher {@link Priority} for up to {@code maxWait}, and a freed slot goes
+ * to the longest-waiting request of the highest priority. A request still queued after
+ * {@code maxWait} is refused.
+ *
+ * <p>Callers must pair every successful {@link #acquire(Priority)} with one {@link #release()}.
+ */
+public class AdmissionQueue {
+
+  public enum Priority {
+    HIGH, NORMAL, LOW
+  }
+
+  private static final class Waiter {
+
+    final Thread thread = Thread.currentThread();
+    volatile boolean admitted;
+  }
+
+  private final int maxConcurrent;
+  private final long maxWaitNanos;
+  private final AtomicInteger available;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final ArrayDeque<Waiter>[] queues;
+  private final LongAdder timedOut = new LongAdder();
+
+  @SuppressWarnings("unchecked")
+  public AdmissionQueue(int maxConcurrent, Duration maxWait) {
+    if (maxConcurrent < 1 || maxWait.isNegative()) {
+      throw new IllegalArgumentException(
+          "Concurrency must be at least 1 and wait must not be negative");
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.available = new AtomicInteger(maxConcurrent);
+    this.queues = new ArrayDeque[Priority.values().length];
+    for (int i = 0; i < queues.length; i++) {
+      queues[i] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Returns {@code true} once the request is admitted, or {@code false} if it was not admitted
+   * within the maximum wait or the thread was interrupted while waiting.
+   */
+  public boolean acquire(Priority priority) {
+    if (waiting.get() == 0 && tryTake()) {
+      return true;
+    }
+    Waiter waiter = new Waiter();
+    ArrayDeque<Waiter> queue = queues[priority.ordinal()];
+    lock.lock();
+    try {
+      waiting.incrementAndGet();
+      queue.addLast(waiter);
+      admitWaiters();
+    } finally {
+      lock.unlock();
+    }
+
+    long deadline = System.nanoTime() + maxWaitNanos;
+    boolean interrupted = false;
+    while (!waiter.admitted) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0 || interrupted) {
+        break;
+      }
+      LockSupport.parkNanos(this, remaining);
+      interrupted = Thread.interrupted();
+    }
+    if (waiter.admitted) {
+      restoreInterrupt(interrupted);
+      return true;
+    }
+    lock.lock();
+    try {
+      if (waiter.admitted) {
+        return true;
+      }
+      queue.remove(waiter);
+      waiting.decrementAndGet();
+    } finally {
+      lock.unlock();
+      restoreInterrupt(interrupted);
+    }
+    timedOut.increment();
+    return false;
+  }
+
+  public void release() {
+    available.incrementAndGet();
+    if (waiting.get() > 0) {
+      lock.lock();
+      try {
+        admitWaiters();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  public int inFlight() {
+    return maxConcurrent - available.get();
+  }
+
+  public int queued() {
+    return waiting.get();
+  }
+
+  public long timedOutCount() {
+    return timedOut.sum();
+  }
+
+  /**
+   * Hands free slots to queued requests, highest priority first. Both a queuing request and a
+   * releasing one call this after making their change visible, so a slot freed while a request
+   * queues is seen by one of them.
+   */
+  private void admitWaiters() {
+    for (ArrayDeque<Waiter> queue : queues) {
+      while (!queue.isEmpty()) {
+        if (!tryTake()) {
+          return;
+        }
+        Waiter waiter = queue.pollFirst();
+        waiting.decrementAndGet();
+        waiter.admitted = true;
+        LockSupport.unpark(waiter.thread);
+      }
+    }
+  }
+
+  private boolean tryTake() {
+    while (true) {
+      int free = available.get();
+      if (free <= 0) {
+        return false;
+      }
+      if (available.compareAndSet(free, free - 1)) {
+        return true;
+      }
+    }
+  }
+
+  private static void restoreInterrupt(boolean interrupted) {
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.model.PaymentView;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.service.IdempotencyKey;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentJsonCache.SerializedPayment;
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.Principal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Replaces {@link PaymentGatewayController} when {@code payments.async.enabled=true}. Payments are
+ * answered through servlet async processing, so the Tomcat thread is released while the bank call
+ * is in flight.
+ */
+@RestController("api")
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "payments.async.enabled", havingValue = "true")
+public class AsyncPaymentGatewayController {
+
+  private final PaymentGatewayService paymentGatewayService;
+  private final RequestDeadlines requestDeadlines;
+
+  public AsyncPaymentGatewayController(PaymentGatewayService paymentGatewayService,
+      RequestDeadlines requestDeadlines) {
+    this.paymentGatewayService = paymentGatewayService;
+    this.requestDeadlines = requestDeadlines;
+  }
+
+  /**
+   * Reads are never blocked on the bank, so this is the same as
+   * {@link PaymentGatewayController#getPostPaymentEventById(UUID)}.
+   */
+  @GetMapping("/payment/{id}")
+  public ResponseEntity<byte[]> getPostPaymentEventById(@PathVariable UUID id) {
+    SerializedPayment payment = paymentGatewayService.getSerializedPayment(id);
+    return ResponseEntity.ok()
+        .eTag(payment.etag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(payment.json());
+  }
+
+  @PostMapping("/payments")
+  public CompletableFuture<ResponseEntity<PaymentResponse>> processPayment(
+      @RequestBody PaymentView payment,
+      @RequestHeader(name = PaymentGatewayController.IDEMPOTENCY_KEY, required = false)
+      String idempotencyKey,
+      @RequestHeader(name = RequestDeadlines.REQUEST_TIMEOUT, required = false)
+      String requestTimeout, Principal principal, HttpServletRequest request) {
+    Deadline deadline = requestDeadlines.start(requestTimeout);
+    return paymentGatewayService.processPaymentAsync(payment,
+            IdempotencyKey.of(principal, request.getRemoteAddr(), idempotencyKey), deadline)
+        .thenApply(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
+  }
+}
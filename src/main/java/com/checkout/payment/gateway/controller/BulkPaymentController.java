@@ -0,0 +1,40 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.service.BulkPaymentService;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Bulk submission for merchants settling many payments at once. The upload is NDJSON or a JSON
+ * array of payment requests, and the response is NDJSON with one line per item, written while
+ * the upload is still being read.
+ */
+@RestController
+@ConditionalOnWebApplication(type = Type.SERVLET)
+public class BulkPaymentController {
+
+  private final BulkPaymentService bulkPaymentService;
+
+  public BulkPaymentController(BulkPaymentService bulkPaymentService) {
+    this.bulkPaymentService = bulkPaymentService;
+  }
+
+  /**
+   * Reads the body and writes the response directly, so neither is ever held in memory whole.
+   * The status is always 200; each line carries its own item's status.
+   */
+  @PostMapping(path = "/payments/bulk",
+      consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public void processPayments(InputStream body, HttpServletResponse response)
+      throws IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    bulkPaymentService.process(body, response.getOutputStream());
+  }
+}
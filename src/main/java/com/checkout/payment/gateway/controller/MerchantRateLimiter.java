@@ -0,0 +1,90 @@
+package com.checkout.payment.gateway.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per merchant, refilled at {@code permitsPerSecond} and holding up to
+ * {@code burst} permits. Each bucket is one {@link AtomicLong}, the time at which it would be full
+ * again (the generic cell rate algorithm), so taking a permit is a read and a compare-and-set on
+ * that merchant's bucket alone and merchants never contend with each other.
+ *
+ * <p>At most {@code maximumMerchants} buckets are kept, and a bucket unused for
+ * {@code idleExpiry} is dropped; a merchant coming back after that starts with a full bucket.
+ */
+public class MerchantRateLimiter {
+
+  private static final Function<String, AtomicLong> NEW_BUCKET = merchant -> new AtomicLong();
+
+  private final long emissionNanos;
+  private final long toleranceNanos;
+  private final LongSupplier nanoClock;
+  private final long origin;
+  private final Cache<String, AtomicLong> buckets;
+  private final LongAdder rejected = new LongAdder();
+
+  public MerchantRateLimiter(double permitsPerSecond, int burst, long maximumMerchants,
+      Duration idleExpiry) {
+    this(permitsPerSecond, burst, maximumMerchants, idleExpiry, System::nanoTime);
+  }
+
+  MerchantRateLimiter(double permitsPerSecond, int burst, long maximumMerchants,
+      Duration idleExpiry, LongSupplier nanoClock) {
+    if (permitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+    }
+    this.emissionNanos = Math.max(1, Math.round(1e9 / permitsPerSecond));
+    this.toleranceNanos = emissionNanos * (burst - 1);
+    this.nanoClock = nanoClock;
+    this.origin = nanoClock.getAsLong();
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maximumMerchants)
+        .expireAfterAccess(idleExpiry)
+        .build();
+  }
+
+  /**
+   * Takes a permit from {@code merchant}'s bucket. Returns 0 if one was taken, otherwise the
+   * nanoseconds until the bucket next has one.
+   */
+  public long tryAcquire(String merchant) {
+    AtomicLong bucket = buckets.get(merchant, NEW_BUCKET);
+    long now = nanoClock.getAsLong() - origin;
+    while (true) {
+      long full = bucket.get();
+      long start = Math.max(full, now);
+      long wait = start - now - toleranceNanos;
+      if (wait > 0) {
+        rejected.increment();
+        return wait;
+      }
+      if (bucket.compareAndSet(full, start + emissionNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Gives back a permit {@link #tryAcquire(String)} took for a request that was then refused
+   * anyway. A bucket never holds more than {@code burst} permits, refund or not.
+   */
+  public void refund(String merchant) {
+    AtomicLong bucket = buckets.getIfPresent(merchant);
+    if (bucket != null) {
+      bucket.addAndGet(-emissionNanos);
+    }
+  }
+
+  public long merchantCount() {
+    return buckets.estimatedSize();
+  }
+
+  public long rejectedCount() {
+    return rejected.sum();
+  }
+}
@@ -0,0 +1,152 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.controller.AdmissionQueue.Priority;
+import com.checkout.payment.gateway.model.ErrorResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control for {@code POST /payments} and {@code POST /payments/bulk}, applied before
+ * the body is read. A merchant over its {@link MerchantRateLimiter} rate gets a 429, and a
+ * request the {@link AdmissionQueue} cannot admit within its wait gets a 503, both with a
+ * {@code Retry-After}; a 503 gives its rate permit back. Merchants are told apart by the
+ * authenticated principal when the container has one, and otherwise by client address alone. The
+ * unauthenticated {@code Merchant-Id} header is ignored, as a client could otherwise rotate it for
+ * a fresh bucket on every request or spend another merchant's permits.
+ *
+ * <p>Bulk uploads queue at {@link Priority#LOW}, and single payments at {@link Priority#HIGH} for
+ * the authenticated merchants in {@code payments.admission.priority-merchants} and
+ * {@link Priority#NORMAL} otherwise. An async request keeps its slot until the response
+ * completes.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "payments.admission.enabled", havingValue = "true")
+public class PaymentAdmissionFilter extends OncePerRequestFilter {
+
+  public static final String MERCHANT_ID = "Merchant-Id";
+
+  private static final String PAYMENTS = "/payments";
+  private static final String BULK_PAYMENTS = "/payments/bulk";
+  private static final long BUSY_RETRY_AFTER_SECONDS = 1;
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final MerchantRateLimiter rateLimiter;
+  private final AdmissionQueue admissionQueue;
+  private final Set<String> priorityMerchants;
+  private final byte[] tooManyRequests;
+  private final byte[] busy;
+
+  public PaymentAdmissionFilter(MerchantRateLimiter rateLimiter, AdmissionQueue admissionQueue,
+      @Value("${payments.admission.priority-merchants:}") Set<String> priorityMerchants,
+      ObjectMapper objectMapper) throws JsonProcessingException {
+    this.rateLimiter = rateLimiter;
+    this.admissionQueue = admissionQueue;
+    this.priorityMerchants = priorityMerchants;
+    this.tooManyRequests = objectMapper.writeValueAsBytes(
+        new ErrorResponse("Too many requests, please retry later"));
+    this.busy = objectMapper.writeValueAsBytes(
+        new ErrorResponse("Gateway is busy, please retry later"));
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!"POST".equals(request.getMethod())) {
+      return true;
+    }
+    String path = path(request);
+    return !PAYMENTS.equals(path) && !BULK_PAYMENTS.equals(path);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    Principal principal = request.getUserPrincipal();
+    String merchant = principal != null ? principal.getName() : request.getRemoteAddr();
+    long waitNanos = rateLimiter.tryAcquire(merchant);
+    if (waitNanos > 0) {
+      reject(response, HttpStatus.TOO_MANY_REQUESTS.value(),
+          (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND, tooManyRequests);
+      return;
+    }
+    Priority priority = BULK_PAYMENTS.equals(path(request)) ? Priority.LOW
+        : principal != null && priorityMerchants.contains(merchant) ? Priority.HIGH
+            : Priority.NORMAL;
+    if (!admissionQueue.acquire(priority)) {
+      rateLimiter.refund(merchant);
+      reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, BUSY_RETRY_AFTER_SECONDS,
+          busy);
+      return;
+    }
+
+    boolean async = false;
+    try {
+      filterChain.doFilter(request, response);
+      async = request.isAsyncStarted();
+      if (async) {
+        request.getAsyncContext().addListener(new ReleaseOnComplete());
+      }
+    } finally {
+      if (!async) {
+        admissionQueue.release();
+      }
+    }
+  }
+
+  private static String path(HttpServletRequest request) {
+    return request.getRequestURI().substring(request.getContextPath().length());
+  }
+
+  private static void reject(HttpServletResponse response, int status, long retryAfterSeconds,
+      byte[] body) throws IOException {
+    response.setStatus(status);
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  /**
+   * Gives the slot back once an async response is complete, which the container signals after
+   * a timeout or error too.
+   */
+  private final class ReleaseOnComplete implements AsyncListener {
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      admissionQueue.release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
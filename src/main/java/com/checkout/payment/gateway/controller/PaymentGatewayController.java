@@ -1,35 +1,66 @@
 package com.checkout.payment.gateway.controller;
 
-import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.model.PaymentView;
 import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.service.IdempotencyKey;
 import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentJsonCache.SerializedPayment;
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.Principal;
 import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController("api")
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "payments.async.enabled", havingValue = "false",
+    matchIfMissing = true)
 public class PaymentGatewayController {
 
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
   private final PaymentGatewayService paymentGatewayService;
+  private final RequestDeadlines requestDeadlines;
 
-  public PaymentGatewayController(PaymentGatewayService paymentGatewayService) {
+  public PaymentGatewayController(PaymentGatewayService paymentGatewayService,
+      RequestDeadlines requestDeadlines) {
     this.paymentGatewayService = paymentGatewayService;
+    this.requestDeadlines = requestDeadlines;
   }
 
+  /**
+   * Writes the payment's cached JSON bytes with their ETag. Spring answers 304 Not Modified
+   * without a body when the request's {@code If-None-Match} matches.
+   */
   @GetMapping("/payment/{id}")
-  public ResponseEntity<PaymentResponse> getPostPaymentEventById(@PathVariable UUID id) {
-    return new ResponseEntity<>(paymentGatewayService.getPaymentById(id), HttpStatus.OK);
+  public ResponseEntity<byte[]> getPostPaymentEventById(@PathVariable UUID id) {
+    SerializedPayment payment = paymentGatewayService.getSerializedPayment(id);
+    return ResponseEntity.ok()
+        .eTag(payment.etag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(payment.json());
   }
 
   @PostMapping("/payments")
   public ResponseEntity<PaymentResponse> processPayment(
-      @RequestBody PostPaymentRequest request) {
-    PaymentResponse response = paymentGatewayService.processPayment(request);
+      @RequestBody PaymentView payment,
+      @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+      @RequestHeader(name = RequestDeadlines.REQUEST_TIMEOUT, required = false)
+      String requestTimeout, Principal principal, HttpServletRequest request) {
+    Deadline deadline = requestDeadlines.start(requestTimeout);
+    PaymentResponse response = paymentGatewayService.processPayment(payment,
+        IdempotencyKey.of(principal, request.getRemoteAddr(), idempotencyKey), deadline);
     return new ResponseEntity<>(response, HttpStatus.CREATED);
   }
 }
@@ -0,0 +1,31 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.model.PaymentPage;
+import com.checkout.payment.gateway.model.PaymentSearchRequest;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Searches stored payments. The query is answered from in-memory indexes without blocking, so the
+ * same controller serves both the servlet and the reactive runtime.
+ */
+@RestController
+public class PaymentQueryController {
+
+  private final PaymentGatewayService paymentGatewayService;
+
+  public PaymentQueryController(PaymentGatewayService paymentGatewayService) {
+    this.paymentGatewayService = paymentGatewayService;
+  }
+
+  /**
+   * Filters by {@code status}, {@code currency}, {@code cardLastFour} and a {@code from}/{@code to}
+   * creation time range, returning {@code limit} payments per page and a {@code nextCursor} to
+   * pass as {@code cursor} for the next one.
+   */
+  @GetMapping("/payments")
+  public PaymentPage findPayments(PaymentSearchRequest search) {
+    return paymentGatewayService.findPayments(search);
+  }
+}
@@ -0,0 +1,103 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.exception.BadRequestException;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.metrics.PaymentMetrics.Stage;
+import com.checkout.payment.gateway.model.PaymentView;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads a payment body into the request thread's {@link PaymentView}, which is reused from one
+ * request to the next; {@link PaymentViewFilter} clears it when the request is done. Bodies
+ * the view cannot parse itself are read with Jackson as a {@link PostPaymentRequest} and copied
+ * in, so they are accepted or refused exactly as before. A body of more than
+ * {@code maxRequestSize} bytes is refused as a bad request without being read further. Read time
+ * is recorded as the {@code deserialize} payment stage.
+ */
+public class PaymentViewConverter extends AbstractHttpMessageConverter<PaymentView> {
+
+  private static final ThreadLocal<PaymentView> VIEWS = new ThreadLocal<>();
+
+  private final ObjectMapper objectMapper;
+  private final PaymentMetrics metrics;
+  private final int maxRequestSize;
+
+  public PaymentViewConverter(ObjectMapper objectMapper, PaymentMetrics metrics,
+      int maxRequestSize) {
+    super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    this.objectMapper = objectMapper;
+    this.metrics = metrics;
+    this.maxRequestSize = maxRequestSize;
+  }
+
+  /**
+   * Wipes the calling thread's view, if it has read one.
+   */
+  static void clearCurrent() {
+    PaymentView payment = VIEWS.get();
+    if (payment != null) {
+      payment.clear();
+    }
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == PaymentView.class;
+  }
+
+  @Override
+  protected boolean canWrite(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected PaymentView readInternal(Class<? extends PaymentView> clazz,
+      HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+    long startNanos = System.nanoTime();
+    try {
+      PaymentView payment = VIEWS.get();
+      if (payment == null) {
+        payment = new PaymentView();
+        VIEWS.set(payment);
+      }
+      if (!payment.read(inputMessage.getBody(), maxRequestSize)) {
+        throw new BadRequestException("Request body is larger than " + maxRequestSize + " bytes");
+      }
+      if (payment.parse()) {
+        return payment;
+      }
+      PostPaymentRequest request;
+      try {
+        request = objectMapper.readValue(payment.body(), 0, payment.length(),
+            PostPaymentRequest.class);
+      } catch (JsonProcessingException e) {
+        payment.clear();
+        throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(),
+            e, inputMessage);
+      }
+      if (request == null) {
+        payment.clear();
+        return null;
+      }
+      payment.copyFrom(request);
+      return payment;
+    } finally {
+      metrics.record(Stage.DESERIALIZE, startNanos);
+    }
+  }
+
+  @Override
+  protected void writeInternal(PaymentView payment, HttpOutputMessage outputMessage)
+      throws HttpMessageNotWritableException {
+    throw new HttpMessageNotWritableException("Payment views are only read");
+  }
+}
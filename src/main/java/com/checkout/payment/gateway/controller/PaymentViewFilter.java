@@ -0,0 +1,36 @@
+package com.checkout.payment.gateway.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Wipes the request thread's {@link PaymentViewConverter} view once a {@code POST} has left the
+ * servlet, however it left: answered, refused before the controller ran, or handed to an async
+ * thread. The card details it read do not stay on the thread until its next payment.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.SERVLET)
+public class PaymentViewFilter extends OncePerRequestFilter {
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !"POST".equals(request.getMethod());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain chain) throws ServletException, IOException {
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      PaymentViewConverter.clearCurrent();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.service.IdempotencyKey;
+import com.checkout.payment.gateway.service.ReactivePaymentGatewayService;
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * The payment API on WebFlux and Netty, active with the {@code reactive} profile. It serves the
+ * same endpoints, headers and error bodies as {@link PaymentGatewayController}, including the
+ * {@code Request-Timeout} budget for the bank call.
+ */
+@RestController("api")
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactivePaymentGatewayController {
+
+  private final ReactivePaymentGatewayService paymentGatewayService;
+  private final RequestDeadlines requestDeadlines;
+
+  public ReactivePaymentGatewayController(ReactivePaymentGatewayService paymentGatewayService,
+      RequestDeadlines requestDeadlines) {
+    this.paymentGatewayService = paymentGatewayService;
+    this.requestDeadlines = requestDeadlines;
+  }
+
+  /**
+   * A payment held on this node is read on the event loop; one that has to be fetched from other
+   * cluster nodes is read off it. WebFlux answers 304 Not Modified when {@code If-None-Match}
+   * matches, as Spring MVC does.
+   */
+  @GetMapping("/payment/{id}")
+  public Mono<ResponseEntity<byte[]>> getPostPaymentEventById(@PathVariable UUID id) {
+    return paymentGatewayService.getSerializedPayment(id)
+        .map(payment -> ResponseEntity.ok()
+            .eTag(payment.etag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(payment.json()));
+  }
+
+  @PostMapping("/payments")
+  public Mono<ResponseEntity<PaymentResponse>> processPayment(
+      @RequestBody PostPaymentRequest request,
+      @RequestHeader(name = PaymentGatewayController.IDEMPOTENCY_KEY, required = false)
+      String idempotencyKey,
+      @RequestHeader(name = RequestDeadlines.REQUEST_TIMEOUT, required = false)
+      String requestTimeout, Principal principal, ServerHttpRequest serverRequest) {
+    Deadline deadline = requestDeadlines.start(requestTimeout);
+    InetSocketAddress client = serverRequest.getRemoteAddress();
+    return paymentGatewayService.processPayment(request,
+            IdempotencyKey.of(principal, client == null ? null : client.getHostString(),
+                idempotencyKey), deadline)
+        .map(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
+  }
+}
@@ -0,0 +1,50 @@
+package com.checkout.payment.gateway.controller;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.exception.BadRequestException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts the {@link Deadline} a payment's bank call must meet as the request arrives. A caller
+ * can set its own budget in milliseconds with the {@code Request-Timeout} header, up to
+ * {@code payments.deadline.max}; otherwise {@code payments.deadline.default} applies. The default
+ * is zero, which leaves only the bank client's own timeouts; a non-zero default shorter than
+ * {@code bank.client.read-timeout} cuts every payment's bank call short.
+ */
+@Component
+public class RequestDeadlines {
+
+  public static final String REQUEST_TIMEOUT = "Request-Timeout";
+
+  private final Duration defaultBudget;
+  private final Duration maxBudget;
+
+  public RequestDeadlines(@Value("${payments.deadline.default:0s}") Duration defaultBudget,
+      @Value("${payments.deadline.max:30s}") Duration maxBudget) {
+    if (defaultBudget.isNegative() || maxBudget.compareTo(defaultBudget) < 0) {
+      throw new IllegalArgumentException(
+          "Deadline default must not be negative or exceed the maximum");
+    }
+    this.defaultBudget = defaultBudget;
+    this.maxBudget = maxBudget;
+  }
+
+  public Deadline start(String requestTimeout) {
+    if (requestTimeout == null) {
+      return defaultBudget.isZero() ? Deadline.none() : Deadline.after(defaultBudget);
+    }
+    long millis;
+    try {
+      millis = Long.parseLong(requestTimeout.trim());
+    } catch (NumberFormatException e) {
+      millis = 0;
+    }
+    if (millis <= 0) {
+      throw new BadRequestException(REQUEST_TIMEOUT + " must be a positive number of milliseconds");
+    }
+    Duration budget = Duration.ofMillis(millis);
+    return Deadline.after(budget.compareTo(maxBudget) > 0 ? maxBudget : budget);
+  }
+}
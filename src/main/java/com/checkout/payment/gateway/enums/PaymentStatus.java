@@ -17,4 +17,16 @@ public enum PaymentStatus {
   public String getName() {
     return this.name;
   }
+
+  /**
+   * The status written as {@code name}, ignoring case, or {@code null} if there is none.
+   */
+  public static PaymentStatus fromName(String name) {
+    for (PaymentStatus status : values()) {
+      if (status.name.equalsIgnoreCase(name)) {
+        return status;
+      }
+    }
+    return null;
+  }
 }
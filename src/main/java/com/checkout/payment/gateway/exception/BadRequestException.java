@@ -5,4 +5,7 @@ public class BadRequestException extends PaymentGatewayException {
     super(message, 400);
   }
 
+  protected BadRequestException(String message, boolean writableStackTrace) {
+    super(message, 400, writableStackTrace);
+  }
 }
@@ -1,9 +1,17 @@
 package com.checkout.payment.gateway.exception;
 
+import com.checkout.payment.gateway.logging.LogRateLimiter;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
 import com.checkout.payment.gateway.model.ErrorResponse;
+import com.checkout.payment.gateway.validator.ValidationError;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,23 +21,75 @@ public class CommonExceptionHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(CommonExceptionHandler.class);
 
+  private final PaymentMetrics metrics;
+  private final LogRateLimiter clientErrorLog;
+  private final ResponseEntity<byte[]>[] rejections;
+
+  @SuppressWarnings("unchecked")
+  public CommonExceptionHandler(PaymentMetrics metrics, ObjectMapper objectMapper,
+      @Value("${payments.logging.client-errors-per-second:10}") int clientErrorsPerSecond)
+      throws JsonProcessingException {
+    this.metrics = metrics;
+    this.clientErrorLog = new LogRateLimiter(clientErrorsPerSecond, Duration.ofSeconds(1));
+    this.rejections = new ResponseEntity[ValidationError.values().length];
+    for (ValidationError error : ValidationError.values()) {
+      byte[] body = objectMapper.writeValueAsBytes(
+          new ErrorResponse(PaymentRejectedException.of(error).getMessage()));
+      rejections[error.ordinal()] = ResponseEntity.badRequest()
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(body);
+    }
+  }
+
+  /**
+   * Rejections are answered with a response built once per {@link ValidationError}, so a flood
+   * of invalid requests is neither serialized nor logged line by line.
+   */
+  @ExceptionHandler(PaymentRejectedException.class)
+  public ResponseEntity<byte[]> handlePaymentRejectedException(PaymentRejectedException ex) {
+    logClientError("Bad Request", ex);
+    metrics.recordError(ex);
+    return rejections[ex.getError().ordinal()];
+  }
+
   @ExceptionHandler(BadRequestException.class)
   public ResponseEntity<ErrorResponse> handleBadRequestException(BadRequestException ex) {
-    LOG.error("Bad Request: {}", ex.getMessage());
+    logClientError("Bad Request", ex);
+    metrics.recordError(ex);
     return new ResponseEntity<>(new ErrorResponse(ex.getMessage()),
         HttpStatus.BAD_REQUEST);
   }
 
   @ExceptionHandler(NotFoundException.class)
   public ResponseEntity<ErrorResponse> handleNotFoundException(NotFoundException ex) {
-    LOG.error("Not Found: {}", ex.getMessage());
+    logClientError("Not Found", ex);
+    metrics.recordError(ex);
     return new ResponseEntity<>(new ErrorResponse(ex.getMessage()),
         HttpStatus.NOT_FOUND);
   }
 
+  @ExceptionHandler(UnprocessableEntityException.class)
+  public ResponseEntity<ErrorResponse> handleUnprocessableEntityException(
+      UnprocessableEntityException ex) {
+    logClientError("Unprocessable Entity", ex);
+    metrics.recordError(ex);
+    return new ResponseEntity<>(new ErrorResponse(ex.getMessage()),
+        HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<ErrorResponse> handleTooManyRequestsException(
+      TooManyRequestsException ex) {
+    logClientError("Too Many Requests", ex);
+    metrics.recordError(ex);
+    return new ResponseEntity<>(new ErrorResponse(ex.getMessage()),
+        HttpStatus.TOO_MANY_REQUESTS);
+  }
+
   @ExceptionHandler(InternalServerException.class)
   public ResponseEntity<ErrorResponse> handleInternalServerException(InternalServerException ex) {
     LOG.error("Internal Server Error: {}", ex.getMessage());
+    metrics.recordError(ex);
     return new ResponseEntity<>(new ErrorResponse("An unexpected error occurred"),
         HttpStatus.INTERNAL_SERVER_ERROR);
   }
@@ -39,6 +99,7 @@ public class CommonExceptionHandler {
   public ResponseEntity<ErrorResponse> handleServiceUnavailableException(
       ServiceUnavailableException ex) {
     LOG.error("Service Unavailable: {}", ex.getMessage());
+    metrics.recordError(ex);
     return new ResponseEntity<>(new ErrorResponse(ex.getMessage()),
         HttpStatus.SERVICE_UNAVAILABLE);
   }
@@ -46,7 +107,21 @@ public class CommonExceptionHandler {
   @ExceptionHandler(Exception.class)
   public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
     LOG.error("Unexpected Exception: {}", ex.getMessage());
+    metrics.recordError(ex);
     return new ResponseEntity<>(new ErrorResponse("An unexpected error occurred"),
         HttpStatus.INTERNAL_SERVER_ERROR);
   }
+
+  /**
+   * Client errors are the caller's problem and can arrive in floods, so they are logged at WARN
+   * and sampled to {@code payments.logging.client-errors-per-second}.
+   */
+  private void logClientError(String kind, PaymentGatewayException ex) {
+    long suppressed = clientErrorLog.tryAcquire();
+    if (suppressed == 0) {
+      LOG.warn("{}: {}", kind, ex.getMessage());
+    } else if (suppressed != LogRateLimiter.SUPPRESSED) {
+      LOG.warn("{}: {} ({} similar errors not logged)", kind, ex.getMessage(), suppressed);
+    }
+  }
 }
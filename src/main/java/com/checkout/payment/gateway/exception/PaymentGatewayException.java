@@ -8,6 +8,15 @@ public class PaymentGatewayException extends RuntimeException {
     this.statusCode = statusCode;
   }
 
+  /**
+   * For exceptions created once and rethrown: without a stack trace or suppressed exceptions the
+   * instance is immutable and can be shared between threads.
+   */
+  protected PaymentGatewayException(String message, int statusCode, boolean writableStackTrace) {
+    super(message, null, writableStackTrace, writableStackTrace);
+    this.statusCode = statusCode;
+  }
+
   public int getStatusCode() {
     return statusCode;
   }
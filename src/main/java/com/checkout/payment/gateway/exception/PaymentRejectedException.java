@@ -0,0 +1,35 @@
+package com.checkout.payment.gateway.exception;
+
+import com.checkout.payment.gateway.validator.ValidationError;
+
+/**
+ * A payment request that failed validation. There is one instance per {@link ValidationError},
+ * created up front without a stack trace, so rejecting a request allocates nothing however many
+ * invalid requests arrive. {@link CommonExceptionHandler} answers it with a pre-serialized body.
+ */
+public class PaymentRejectedException extends BadRequestException {
+
+  private static final PaymentRejectedException[] INSTANCES =
+      new PaymentRejectedException[ValidationError.values().length];
+
+  static {
+    for (ValidationError error : ValidationError.values()) {
+      INSTANCES[error.ordinal()] = new PaymentRejectedException(error);
+    }
+  }
+
+  private final ValidationError error;
+
+  private PaymentRejectedException(ValidationError error) {
+    super("Validation failed: " + error.getMessage(), false);
+    this.error = error;
+  }
+
+  public static PaymentRejectedException of(ValidationError error) {
+    return INSTANCES[error.ordinal()];
+  }
+
+  public ValidationError getError() {
+    return error;
+  }
+}
@@ -0,0 +1,8 @@
+package com.checkout.payment.gateway.exception;
+
+public class TooManyRequestsException extends PaymentGatewayException {
+
+  public TooManyRequestsException(String message) {
+    super(message, 429);
+  }
+}
@@ -0,0 +1,8 @@
+package com.checkout.payment.gateway.exception;
+
+public class UnprocessableEntityException extends PaymentGatewayException {
+
+  public UnprocessableEntityException(String message) {
+    super(message, 422);
+  }
+}
@@ -0,0 +1,55 @@
+package com.checkout.payment.gateway.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lets at most {@code permits} log lines through per {@code window} and counts the rest, so a
+ * flood of identical client errors costs one counter increment each instead of a log line. The
+ * next line that is let through reports how many were suppressed before it.
+ */
+public class LogRateLimiter {
+
+  public static final long SUPPRESSED = -1;
+
+  private final int permits;
+  private final long windowNanos;
+  private final LongSupplier nanoClock;
+  private final AtomicLong windowStart;
+  private final AtomicInteger used = new AtomicInteger();
+  private final LongAdder suppressed = new LongAdder();
+
+  public LogRateLimiter(int permits, Duration window) {
+    this(permits, window, System::nanoTime);
+  }
+
+  LogRateLimiter(int permits, Duration window, LongSupplier nanoClock) {
+    if (permits < 0 || window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("Permits must be non-negative and window positive");
+    }
+    this.permits = permits;
+    this.windowNanos = window.toNanos();
+    this.nanoClock = nanoClock;
+    this.windowStart = new AtomicLong(nanoClock.getAsLong());
+  }
+
+  /**
+   * Returns {@link #SUPPRESSED} if the caller should not log, otherwise the number of lines
+   * suppressed since the last one let through.
+   */
+  public long tryAcquire() {
+    long now = nanoClock.getAsLong();
+    long start = windowStart.get();
+    if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+      used.set(0);
+    }
+    if (used.incrementAndGet() > permits) {
+      suppressed.increment();
+      return SUPPRESSED;
+    }
+    return suppressed.sumThenReset();
+  }
+}
@@ -0,0 +1,45 @@
+package com.checkout.payment.gateway.logging;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.validator.ValidationError;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One structured line per payment event on the {@code payments.events} logger, written as
+ * {@code event key=value ...}. Each method checks the level before building its arguments, so
+ * with {@code logging.level.payments.events=OFF}, or the same change through
+ * {@code /actuator/loggers}, the hot path does no logging work at all. Card numbers and CVVs are
+ * never written.
+ */
+public final class PaymentEvents {
+
+  public static final String LOGGER = "payments.events";
+
+  private static final Logger EVENTS = LoggerFactory.getLogger(LOGGER);
+
+  private PaymentEvents() {
+  }
+
+  public static void processed(UUID paymentId, PaymentStatus status, String currency,
+      int amount) {
+    if (EVENTS.isInfoEnabled()) {
+      EVENTS.info("payment.processed id={} status={} currency={} amount={}", paymentId, status,
+          currency, amount);
+    }
+  }
+
+  public static void rejected(ValidationError reason) {
+    if (EVENTS.isInfoEnabled()) {
+      EVENTS.info("payment.rejected reason={}", reason);
+    }
+  }
+
+  public static void bankResponded(int statusCode, boolean authorized, long latencyNanos) {
+    if (EVENTS.isInfoEnabled()) {
+      EVENTS.info("bank.response status={} authorized={} latency_us={}", statusCode, authorized,
+          latencyNanos / 1_000);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.checkout.payment.gateway.metrics;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hot-path instrumentation for payments. Every meter is registered up front or on first use and
+ * then held in a field or array slot, so recording is a plain timer or counter update with no tag
+ * lookup or allocation.
+ *
+ * <ul>
+ *   <li>{@code payments.stage} timers tagged by {@code stage}: deserialize, validate, bank,
+ *   persist, serialize. Percentiles are configured with
+ *   {@code management.metrics.distribution.percentiles.payments.stage}.</li>
+ *   <li>{@code payments.outcome} counters tagged by the resulting {@code status}.</li>
+ *   <li>{@code payments.errors} counters tagged by the exception {@code type} returned to the
+ *   caller.</li>
+ *   <li>{@code bank.client.responses} counters tagged by the bank's HTTP {@code status}, or
+ *   {@code none} when no response arrived.</li>
+ *   <li>{@code bank.client.retries}, {@code bank.client.hedges} and {@code bank.client.hedges.won}
+ *   counters: bank attempts made again after a failure, hedged attempts sent, and hedged attempts
+ *   that answered first.</li>
+ * </ul>
+ */
+@Component
+public class PaymentMetrics {
+
+  public static final String STAGE = "payments.stage";
+  public static final String OUTCOME = "payments.outcome";
+  public static final String ERRORS = "payments.errors";
+  public static final String BANK_RESPONSES = "bank.client.responses";
+  public static final String BANK_RETRIES = "bank.client.retries";
+  public static final String BANK_HEDGES = "bank.client.hedges";
+  public static final String BANK_HEDGES_WON = "bank.client.hedges.won";
+
+  private static final int MAX_STATUS_CODE = 599;
+
+  public enum Stage {
+    DESERIALIZE, VALIDATE, BANK, PERSIST, SERIALIZE
+  }
+
+  private final MeterRegistry registry;
+  private final Timer[] stages;
+  private final Counter[] outcomes;
+  private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<Counter> bankResponses =
+      new AtomicReferenceArray<>(MAX_STATUS_CODE + 1);
+  private final Counter bankRetries;
+  private final Counter bankHedges;
+  private final Counter bankHedgesWon;
+
+  public PaymentMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.stages = new Timer[Stage.values().length];
+    for (Stage stage : Stage.values()) {
+      stages[stage.ordinal()] = Timer.builder(STAGE)
+          .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+          .description("Time spent in each step of a payment")
+          .register(registry);
+    }
+    this.outcomes = new Counter[PaymentStatus.values().length];
+    for (PaymentStatus status : PaymentStatus.values()) {
+      outcomes[status.ordinal()] = Counter.builder(OUTCOME)
+          .tag("status", status.name().toLowerCase(Locale.ROOT))
+          .description("Payments processed, by resulting status")
+          .register(registry);
+    }
+    this.bankRetries = Counter.builder(BANK_RETRIES)
+        .description("Bank attempts made again after a failed attempt")
+        .register(registry);
+    this.bankHedges = Counter.builder(BANK_HEDGES)
+        .description("Hedged bank attempts sent while the first was still waiting")
+        .register(registry);
+    this.bankHedgesWon = Counter.builder(BANK_HEDGES_WON)
+        .description("Hedged bank attempts that answered before the attempt they hedged")
+        .register(registry);
+  }
+
+  /**
+   * Records the time from {@code startNanos}, a {@link System#nanoTime()} reading, to now.
+   */
+  public void record(Stage stage, long startNanos) {
+    stages[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordOutcome(PaymentStatus status) {
+    outcomes[status.ordinal()].increment();
+  }
+
+  public void recordError(Throwable error) {
+    errors.computeIfAbsent(error.getClass(), type -> Counter.builder(ERRORS)
+            .tag("type", type.getSimpleName())
+            .description("Requests answered with an error, by exception type")
+            .register(registry))
+        .increment();
+  }
+
+  /**
+   * Records the HTTP status the bank answered with; {@code 0} or any value outside the HTTP range
+   * means no response was received.
+   */
+  public void recordBankResponse(int statusCode) {
+    int slot = statusCode < 100 || statusCode > MAX_STATUS_CODE ? 0 : statusCode;
+    Counter counter = bankResponses.get(slot);
+    if (counter == null) {
+      counter = Counter.builder(BANK_RESPONSES)
+          .tag("status", slot == 0 ? "none" : Integer.toString(slot))
+          .description("Bank calls, by the HTTP status the bank answered with")
+          .register(registry);
+      bankResponses.set(slot, counter);
+    }
+    counter.increment();
+  }
+
+  public void recordBankRetry() {
+    bankRetries.increment();
+  }
+
+  public void recordBankHedge() {
+    bankHedges.increment();
+  }
+
+  public void recordBankHedgeWon() {
+    bankHedgesWon.increment();
+  }
+}
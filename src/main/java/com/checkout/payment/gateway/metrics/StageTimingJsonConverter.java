@@ -0,0 +1,58 @@
+package com.checkout.payment.gateway.metrics;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics.Stage;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * The application's JSON converter, timing how long it takes to read a
+ * {@link PostPaymentRequest} and write a {@link PaymentResponse} as the {@code deserialize} and
+ * {@code serialize} payment stages. Other bodies, including the bank client's, are converted
+ * without being timed.
+ */
+public class StageTimingJsonConverter extends MappingJackson2HttpMessageConverter {
+
+  private final PaymentMetrics metrics;
+
+  public StageTimingJsonConverter(ObjectMapper objectMapper, PaymentMetrics metrics) {
+    super(objectMapper);
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+      throws IOException, HttpMessageNotReadableException {
+    if (type != PostPaymentRequest.class) {
+      return super.read(type, contextClass, inputMessage);
+    }
+    long startNanos = System.nanoTime();
+    try {
+      return super.read(type, contextClass, inputMessage);
+    } finally {
+      metrics.record(Stage.DESERIALIZE, startNanos);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+      throws IOException, HttpMessageNotWritableException {
+    if (!(object instanceof PaymentResponse)) {
+      super.writeInternal(object, type, outputMessage);
+      return;
+    }
+    long startNanos = System.nanoTime();
+    try {
+      super.writeInternal(object, type, outputMessage);
+    } finally {
+      metrics.record(Stage.SERIALIZE, startNanos);
+    }
+  }
+}
@@ -1,10 +1,21 @@
 package com.checkout.payment.gateway.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.nio.charset.StandardCharsets;
 import lombok.Data;
+import lombok.ToString;
 
 @Data
 public class BankRequest {
+
+  private static final byte[] CARD_NUMBER = ascii("{\"card_number\":\"");
+  private static final byte[] EXPIRY_DATE = ascii("\",\"expiry_date\":\"");
+  private static final byte[] CURRENCY = ascii("\",\"currency\":\"");
+  private static final byte[] AMOUNT = ascii("\",\"amount\":");
+  private static final byte[] CVV = ascii(",\"cvv\":\"");
+  private static final byte[] END = ascii("\"}");
+
   @JsonProperty(value = "card_number", required = true)
   private String cardNumber;
   @JsonProperty(value = "expiry_date", required = true)
@@ -15,4 +26,86 @@ public class BankRequest {
   private Integer amount;
   @JsonProperty(value = "cvv", required = true)
   private String cvv;
+  /**
+   * Sent to the bank as the {@code Idempotency-Key} header rather than in the body, when
+   * {@code bank.client.idempotent-keys} says the bank deduplicates on it. Only then may a request
+   * whose outcome is unknown be retried or hedged.
+   */
+  @JsonIgnore
+  private String idempotencyKey;
+  /**
+   * The request's JSON, already encoded from a {@link PaymentView}. When set it is sent as the
+   * body in place of the fields above, which are left empty.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  private byte[] json;
+  /**
+   * The card number encrypted by the card vault, set when {@link #json} was written with an empty
+   * card number and CVV. Both are put back only for the bank call itself.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  private byte[] encryptedCardNumber;
+  /**
+   * The CVV encrypted by the card vault, set with {@link #encryptedCardNumber}.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  private byte[] encryptedCvv;
+
+  /**
+   * The body Jackson would write for these values, written directly. The values must be those of
+   * a valid request, so every character is ASCII and none needs escaping.
+   */
+  public static byte[] toJson(CharSequence cardNumber, CharSequence expiryMonth,
+      CharSequence expiryYear, CharSequence currency, int amount, CharSequence cvv) {
+    int amountDigits = digits(amount);
+    byte[] json = new byte[CARD_NUMBER.length + cardNumber.length() + EXPIRY_DATE.length
+        + expiryMonth.length() + 1 + expiryYear.length() + CURRENCY.length + currency.length()
+        + AMOUNT.length + amountDigits + CVV.length + cvv.length() + END.length];
+    int p = put(CARD_NUMBER, json, 0);
+    p = put(cardNumber, json, p);
+    p = put(EXPIRY_DATE, json, p);
+    p = put(expiryMonth, json, p);
+    json[p++] = '/';
+    p = put(expiryYear, json, p);
+    p = put(CURRENCY, json, p);
+    p = put(currency, json, p);
+    p = put(AMOUNT, json, p);
+    int value = amount;
+    for (int i = p + amountDigits - 1; i >= p; i--) {
+      json[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    p = put(CVV, json, p + amountDigits);
+    p = put(cvv, json, p);
+    put(END, json, p);
+    return json;
+  }
+
+  private static int put(byte[] bytes, byte[] json, int p) {
+    System.arraycopy(bytes, 0, json, p, bytes.length);
+    return p + bytes.length;
+  }
+
+  private static int put(CharSequence value, byte[] json, int p) {
+    for (int i = 0; i < value.length(); i++) {
+      json[p++] = (byte) value.charAt(i);
+    }
+    return p;
+  }
+
+  private static int digits(int value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
 }
@@ -0,0 +1,21 @@
+package com.checkout.payment.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * One line of a bulk submission's response. {@code index} is the item's position in the upload
+ * and {@code status} is what {@code POST /payments} would have answered for it: 201 with the
+ * {@code payment}, or an error status with its {@code message}.
+ */
+@JsonInclude(Include.NON_NULL)
+public record BulkPaymentResult(long index, int status, PaymentResponse payment, String message) {
+
+  public static BulkPaymentResult processed(long index, PaymentResponse payment) {
+    return new BulkPaymentResult(index, 201, payment, null);
+  }
+
+  public static BulkPaymentResult failed(long index, int status, String message) {
+    return new BulkPaymentResult(index, status, null, message);
+  }
+}
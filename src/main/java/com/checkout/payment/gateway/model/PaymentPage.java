@@ -0,0 +1,12 @@
+package com.checkout.payment.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import java.util.List;
+
+/**
+ * One page of {@code GET /payments}, newest first. {@code nextCursor} is absent on the last page.
+ */
+@JsonInclude(Include.NON_NULL)
+public record PaymentPage(List<PaymentResponse> payments, String nextCursor) {
+}
@@ -2,6 +2,7 @@ package com.checkout.payment.gateway.model;
 
 import com.checkout.payment.gateway.enums.PaymentStatus;
 import lombok.Data;
+import java.time.Instant;
 import java.util.UUID;
 
 @Data
@@ -13,4 +14,5 @@ public class PaymentResponse {
   private String expiryYear;
   private String currency;
   private int amount;
+  private Instant createdAt;
 }
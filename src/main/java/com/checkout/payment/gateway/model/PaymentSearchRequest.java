@@ -0,0 +1,18 @@
+package com.checkout.payment.gateway.model;
+
+import lombok.Data;
+
+/**
+ * The query parameters of {@code GET /payments}, as sent. They are parsed and validated by the
+ * service.
+ */
+@Data
+public class PaymentSearchRequest {
+  private String status;
+  private String currency;
+  private String cardLastFour;
+  private String from;
+  private String to;
+  private String cursor;
+  private String limit;
+}
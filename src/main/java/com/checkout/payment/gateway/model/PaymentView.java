@@ -0,0 +1,474 @@
+package com.checkout.payment.gateway.model;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@code POST /payments} body kept as the bytes it arrived in, with each field exposed as a
+ * {@link CharSequence} over its slice of those bytes. The card number and CVV never become
+ * {@code String}s: the request is validated in place and the bank's JSON is written by copying
+ * the slices, so the only copies of them are the request body and the bank body.
+ *
+ * <p>{@link #parse()} handles the bodies clients actually send: one flat object whose string
+ * fields hold plain ASCII and whose amount is an integer. Anything else, such as escapes, nested
+ * values or an amount sent as a string, makes it return {@code false}, and the caller falls back
+ * to Jackson and {@link #copyFrom(PostPaymentRequest)}, so every body means what it always did.
+ *
+ * <p>A view is reused for one request after another on the same thread; {@link #clear()} wipes
+ * the body once a request is done with it, and gives back a buffer grown for a large one. A buffer
+ * that is outgrown or rewritten is zeroed first. It is not thread-safe.
+ */
+public final class PaymentView {
+
+  private static final int CARD_NUMBER = 0;
+  private static final int EXPIRY_MONTH = 1;
+  private static final int EXPIRY_YEAR = 2;
+  private static final int CURRENCY = 3;
+  private static final int CVV = 4;
+  private static final int AMOUNT = 5;
+  private static final int INITIAL_SIZE = 512;
+
+  private static final byte[][] NAMES = {
+      ascii("card_number"), ascii("expiry_month"), ascii("expiry_year"), ascii("currency"),
+      ascii("cvv"), ascii("amount")};
+  private static final byte[] NULL = ascii("null");
+  private static final byte[] TRUE = ascii("true");
+  private static final byte[] FALSE = ascii("false");
+
+  private static final CurrencyCodes[] CURRENCIES = CurrencyCodes.values();
+  private static final String[] MONTHS = new String[12];
+  private static final String[] PADDED_MONTHS = new String[12];
+  private static final String[] SHORT_YEARS = new String[100];
+  private static final String[] YEARS = new String[100];
+
+  static {
+    for (int i = 0; i < 12; i++) {
+      MONTHS[i] = String.valueOf(i + 1);
+      PADDED_MONTHS[i] = String.format("%02d", i + 1);
+    }
+    for (int i = 0; i < 100; i++) {
+      SHORT_YEARS[i] = String.format("%02d", i);
+      YEARS[i] = String.valueOf(2000 + i);
+    }
+  }
+
+  private final Field[] fields = {new Field(), new Field(), new Field(), new Field(), new Field()};
+
+  private byte[] body = new byte[INITIAL_SIZE];
+  private int length;
+  private boolean hasAmount;
+  private int amount;
+
+  /**
+   * Replaces the body with everything left in {@code in}. Fields are empty until it is parsed.
+   * Returns {@code false}, with the view cleared, if there are more than {@code maxLength} bytes.
+   */
+  public boolean read(InputStream in, int maxLength) throws IOException {
+    clear();
+    int read;
+    while ((read = in.read(body, length, body.length - length)) >= 0) {
+      length += read;
+      if (length > maxLength) {
+        clear();
+        return false;
+      }
+      if (length == body.length) {
+        grow(Math.min(body.length * 2, maxLength + 1));
+      }
+    }
+    return true;
+  }
+
+  public byte[] body() {
+    return body;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Points the fields at their values in the body. Returns {@code false}, with the fields in no
+   * particular state, if the body is not one this parser handles.
+   */
+  public boolean parse() {
+    resetFields();
+    int p = skipWhitespace(0);
+    if (p >= length || body[p] != '{') {
+      return false;
+    }
+    p = skipWhitespace(p + 1);
+    if (p < length && body[p] == '}') {
+      return skipWhitespace(p + 1) == length;
+    }
+    while (true) {
+      if (p >= length || body[p] != '"') {
+        return false;
+      }
+      int nameEnd = endOfString(p + 1, false);
+      if (nameEnd < 0) {
+        return false;
+      }
+      int name = fieldNamed(p + 1, nameEnd - p - 1);
+      p = skipWhitespace(nameEnd + 1);
+      if (p >= length || body[p] != ':') {
+        return false;
+      }
+      p = skipWhitespace(p + 1);
+      if (name == AMOUNT) {
+        p = parseAmount(p);
+      } else if (name >= 0) {
+        p = parseString(p, fields[name]);
+      } else {
+        p = skipValue(p);
+      }
+      if (p < 0) {
+        return false;
+      }
+      p = skipWhitespace(p);
+      if (p >= length) {
+        return false;
+      }
+      if (body[p] == '}') {
+        return skipWhitespace(p + 1) == length;
+      }
+      if (body[p] != ',') {
+        return false;
+      }
+      p = skipWhitespace(p + 1);
+    }
+  }
+
+  /**
+   * Takes the fields from a request Jackson has read. Characters are stored one byte each, and
+   * any above {@code U+00FF} as {@code ?}, so lengths and the validation outcome are unchanged.
+   */
+  public void copyFrom(PostPaymentRequest request) {
+    clear();
+    copy(request.getCardNumber(), fields[CARD_NUMBER]);
+    copy(request.getExpiryMonth(), fields[EXPIRY_MONTH]);
+    copy(request.getExpiryYear(), fields[EXPIRY_YEAR]);
+    copy(request.getCurrency(), fields[CURRENCY]);
+    copy(request.getCvv(), fields[CVV]);
+    hasAmount = request.getAmount() != null;
+    amount = hasAmount ? request.getAmount() : 0;
+  }
+
+  /**
+   * Zeroes the body, so the card details it held do not linger until the next request.
+   */
+  public void clear() {
+    Arrays.fill(body, 0, length, (byte) 0);
+    length = 0;
+    resetFields();
+    if (body.length > INITIAL_SIZE) {
+      body = new byte[INITIAL_SIZE];
+    }
+  }
+
+  public CharSequence cardNumber() {
+    return fields[CARD_NUMBER];
+  }
+
+  public CharSequence expiryMonth() {
+    return fields[EXPIRY_MONTH];
+  }
+
+  public CharSequence expiryYear() {
+    return fields[EXPIRY_YEAR];
+  }
+
+  public CharSequence currency() {
+    return fields[CURRENCY];
+  }
+
+  public CharSequence cvv() {
+    return fields[CVV];
+  }
+
+  public boolean hasAmount() {
+    return hasAmount;
+  }
+
+  public int amount() {
+    return amount;
+  }
+
+  /**
+   * The card number's digits as an unsigned 64-bit number, as
+   * {@link Long#parseUnsignedLong(String)} would read them. The request must be valid.
+   */
+  public long cardKey() {
+    Field card = fields[CARD_NUMBER];
+    long key = 0;
+    for (int i = card.offset; i < card.offset + card.length; i++) {
+      key = key * 10 + body[i] - '0';
+    }
+    return key;
+  }
+
+  /**
+   * The bank's JSON for this payment, written straight from the body. The request must be valid.
+   */
+  public byte[] toBankJson() {
+    return BankRequest.toJson(cardNumber(), expiryMonth(), expiryYear(), currency(), amount, cvv());
+  }
+
+  /**
+   * Sets the fields of {@code response} that echo the request, as the request wrote them. Month,
+   * year and currency usually come from shared constants, leaving the last four digits as the only
+   * new {@code String}. The request must be valid.
+   */
+  public void copyTo(PaymentResponse response) {
+    Field card = fields[CARD_NUMBER];
+    response.setCardNumberLastFour(
+        new String(body, card.offset + card.length - 4, 4, StandardCharsets.ISO_8859_1));
+    Field month = fields[EXPIRY_MONTH];
+    if (month.length == 1) {
+      response.setExpiryMonth(MONTHS[number(month) - 1]);
+    } else if (month.length == 2) {
+      response.setExpiryMonth(PADDED_MONTHS[number(month) - 1]);
+    } else {
+      response.setExpiryMonth(month.toString());
+    }
+    Field year = fields[EXPIRY_YEAR];
+    int yearNumber = number(year);
+    if (year.length == 2) {
+      response.setExpiryYear(SHORT_YEARS[yearNumber]);
+    } else if (year.length == 4 && yearNumber >= 2000 && yearNumber < 2100) {
+      response.setExpiryYear(YEARS[yearNumber - 2000]);
+    } else {
+      response.setExpiryYear(year.toString());
+    }
+    for (CurrencyCodes code : CURRENCIES) {
+      if (code.name().contentEquals(fields[CURRENCY])) {
+        response.setCurrency(code.name());
+      }
+    }
+    response.setAmount(amount);
+  }
+
+  private void resetFields() {
+    for (Field field : fields) {
+      field.offset = 0;
+      field.length = 0;
+    }
+    hasAmount = false;
+    amount = 0;
+  }
+
+  private void copy(String value, Field field) {
+    if (value == null) {
+      return;
+    }
+    if (length + value.length() > body.length) {
+      grow(Math.max(body.length * 2, length + value.length()));
+    }
+    field.offset = length;
+    field.length = value.length();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      body[length++] = (byte) (c > 0xff ? '?' : c);
+    }
+  }
+
+  private void grow(int size) {
+    byte[] grown = Arrays.copyOf(body, size);
+    Arrays.fill(body, (byte) 0);
+    body = grown;
+  }
+
+  private int skipWhitespace(int p) {
+    while (p < length && (body[p] == ' ' || body[p] == '\n' || body[p] == '\r'
+        || body[p] == '\t')) {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * The index of the quote closing the string that starts at {@code p}, or -1 if it has a control
+   * character, or an escape or non-ASCII byte where {@code escapes} is {@code false}.
+   */
+  private int endOfString(int p, boolean escapes) {
+    while (p < length) {
+      byte b = body[p];
+      if (b == '"') {
+        return p;
+      }
+      if (b >= 0 && b < 0x20) {
+        return -1;
+      }
+      if (b == '\\' || b < 0) {
+        if (!escapes) {
+          return -1;
+        }
+        if (b == '\\') {
+          p++;
+        }
+      }
+      p++;
+    }
+    return -1;
+  }
+
+  private int fieldNamed(int offset, int nameLength) {
+    for (int i = 0; i < NAMES.length; i++) {
+      if (NAMES[i].length == nameLength
+          && Arrays.equals(body, offset, offset + nameLength, NAMES[i], 0, nameLength)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int parseString(int p, Field field) {
+    if (matches(p, NULL)) {
+      field.offset = 0;
+      field.length = 0;
+      return p + NULL.length;
+    }
+    if (p >= length || body[p] != '"') {
+      return -1;
+    }
+    int end = endOfString(p + 1, false);
+    if (end < 0) {
+      return -1;
+    }
+    field.offset = p + 1;
+    field.length = end - p - 1;
+    return end + 1;
+  }
+
+  private int parseAmount(int p) {
+    if (matches(p, NULL)) {
+      hasAmount = false;
+      amount = 0;
+      return p + NULL.length;
+    }
+    boolean negative = p < length && body[p] == '-';
+    int start = negative ? p + 1 : p;
+    int end = endOfDigits(start);
+    if (end == start || end - start > 10 || body[start] == '0' && end - start > 1) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = value * 10 + body[i] - '0';
+    }
+    value = negative ? -value : value;
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      return -1;
+    }
+    hasAmount = true;
+    amount = (int) value;
+    return end;
+  }
+
+  /**
+   * Skips the value of a field this class does not read. Objects and arrays are not skipped, and
+   * neither is anything that is not valid JSON.
+   */
+  private int skipValue(int p) {
+    if (p >= length) {
+      return -1;
+    }
+    byte b = body[p];
+    if (b == '"') {
+      int end = endOfString(p + 1, true);
+      return end < 0 ? -1 : end + 1;
+    }
+    if (matches(p, NULL)) {
+      return p + NULL.length;
+    }
+    if (matches(p, TRUE)) {
+      return p + TRUE.length;
+    }
+    if (matches(p, FALSE)) {
+      return p + FALSE.length;
+    }
+    if (b == '-') {
+      p++;
+    }
+    int end = endOfDigits(p);
+    if (end == p || body[p] == '0' && end - p > 1) {
+      return -1;
+    }
+    p = end;
+    if (p < length && body[p] == '.') {
+      end = endOfDigits(p + 1);
+      if (end == p + 1) {
+        return -1;
+      }
+      p = end;
+    }
+    if (p < length && (body[p] == 'e' || body[p] == 'E')) {
+      p++;
+      if (p < length && (body[p] == '+' || body[p] == '-')) {
+        p++;
+      }
+      end = endOfDigits(p);
+      if (end == p) {
+        return -1;
+      }
+      p = end;
+    }
+    return p;
+  }
+
+  private int endOfDigits(int p) {
+    while (p < length && body[p] >= '0' && body[p] <= '9') {
+      p++;
+    }
+    return p;
+  }
+
+  private boolean matches(int p, byte[] literal) {
+    return p + literal.length <= length
+        && Arrays.equals(body, p, p + literal.length, literal, 0, literal.length);
+  }
+
+  private int number(Field field) {
+    int value = 0;
+    for (int i = field.offset; i < field.offset + field.length; i++) {
+      value = value * 10 + body[i] - '0';
+    }
+    return value;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * One field's slice of the body; empty when the field is missing or {@code null}.
+   */
+  private final class Field implements CharSequence {
+
+    int offset;
+    int length;
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (body[offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(body, offset, length, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk tier for payments evicted from the in-memory store, so they can still be read by id.
+ *
+ * <p>Spilled payments collect in memory until {@code segmentRecords} are pending or the oldest
+ * has waited {@code flushInterval}, then are written as one segment file of journal records
+ * sorted by id and memory-mapped read-only. While the newest segment holds fewer than
+ * {@code segmentRecords}, a flush rewrites it together with the pending payments instead of
+ * adding another file. A lookup checks the pending payments, then each segment newest first
+ * through an in-memory Bloom filter of about 10 bits per payment and a binary search of the
+ * mapping. Pending payments are written on {@link #close()}; until then the journal keeps its
+ * copy of them, see {@link #isDurable(UUID)}.
+ */
+public class ColdPaymentStore implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ColdPaymentStore.class);
+  private static final String SEGMENT_SUFFIX = ".cold";
+  private static final int RECORD_SIZE = PaymentJournal.RECORD_SIZE;
+  private static final Comparator<PaymentResponse> BY_ID =
+      Comparator.comparing(PaymentResponse::getId);
+
+  private final Path directory;
+  private final int segmentRecords;
+  private final long flushIntervalNanos;
+  private final ConcurrentHashMap<UUID, PaymentResponse> pending = new ConcurrentHashMap<>();
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+  private long pendingSince;
+  private long nextSegment;
+
+  public ColdPaymentStore(Path directory, int segmentRecords, Duration flushInterval) {
+    if (segmentRecords < 1) {
+      throw new IllegalArgumentException("Segment records must be greater than 0");
+    }
+    this.directory = directory;
+    this.segmentRecords = segmentRecords;
+    this.flushIntervalNanos = flushInterval.toNanos();
+    try {
+      Files.createDirectories(directory);
+      for (Path path : listSegments()) {
+        Segment segment = Segment.open(path);
+        if (segment != null) {
+          segments.add(segment);
+        }
+        nextSegment = segmentNumber(path) + 1;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open cold payment store in " + directory, e);
+    }
+    LOG.info("Opened {} cold payment segments holding {} payments", segments.size(), size());
+  }
+
+  /**
+   * Adds {@code payment}, which is readable from this store as soon as this returns. Callers are
+   * expected to spill from a single thread.
+   */
+  public synchronized void put(PaymentResponse payment) {
+    if (pending.isEmpty()) {
+      pendingSince = System.nanoTime();
+    }
+    pending.put(payment.getId(), payment);
+    if (pending.size() >= segmentRecords) {
+      flush();
+    }
+  }
+
+  public PaymentResponse get(UUID id) {
+    PaymentResponse payment = pending.get(id);
+    if (payment != null) {
+      return payment;
+    }
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      payment = segments.get(i).get(id);
+      if (payment != null) {
+        return payment;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Whether {@code id} is in a segment already forced to disk, so other copies of it may go. A
+   * flush adds its segment before clearing the pending payments, so this never answers
+   * {@code true} for a payment that is only in memory.
+   */
+  public boolean isDurable(UUID id) {
+    if (pending.containsKey(id)) {
+      return false;
+    }
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      if (segments.get(i).get(id) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public long size() {
+    long size = pending.size();
+    for (Segment segment : segments) {
+      size += segment.count;
+    }
+    return size;
+  }
+
+  /**
+   * Writes the pending payments if the oldest of them has waited {@code flushInterval}.
+   */
+  public synchronized void flushIfDue() {
+    if (!pending.isEmpty() && System.nanoTime() - pendingSince >= flushIntervalNanos) {
+      flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+  }
+
+  synchronized void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<PaymentResponse> payments = new ArrayList<>(pending.values());
+    int last = segments.size() - 1;
+    Segment merged = last >= 0 && segments.get(last).count < segmentRecords
+        ? segments.get(last) : null;
+    if (merged != null) {
+      merged.forEach(payments::add);
+    }
+    payments.sort(BY_ID);
+
+    try {
+      Segment segment = write(payments);
+      if (merged != null) {
+        segments.set(last, segment);
+        Files.deleteIfExists(merged.path);
+      } else {
+        segments.add(segment);
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to write cold payment segment, keeping {} payments pending",
+          pending.size(), e);
+      return;
+    }
+    pending.clear();
+  }
+
+  int segmentCount() {
+    return segments.size();
+  }
+
+  private Segment write(List<PaymentResponse> payments) throws IOException {
+    long number = nextSegment++;
+    Path path = directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * (payments.size() + 1));
+    PaymentJournal.writeHeader(buffer);
+    for (int i = 0; i < payments.size(); i++) {
+      PaymentJournal.writeRecord(buffer, RECORD_SIZE * (i + 1), payments.get(i));
+    }
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    return Segment.open(path);
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static long segmentNumber(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static final class Segment {
+
+    private static final int HASHES = 3;
+
+    final Path path;
+    final MappedByteBuffer buffer;
+    final int count;
+    private final long[] bloom;
+    private final int bloomMask;
+
+    private Segment(Path path, MappedByteBuffer buffer) {
+      this.path = path;
+      this.buffer = buffer;
+      this.count = buffer.capacity() / RECORD_SIZE - 1;
+      int bits = UuidHashing.powerOfTwoAtLeast(Math.max(64, count * 10));
+      this.bloom = new long[bits / 64];
+      this.bloomMask = bits - 1;
+      for (int i = 1; i <= count; i++) {
+        long msb = buffer.getLong(i * RECORD_SIZE);
+        long lsb = buffer.getLong(i * RECORD_SIZE + 8);
+        int first = UuidHashing.hash(msb, lsb);
+        int second = UuidHashing.hash(lsb, ~msb) | 1;
+        for (int h = 0; h < HASHES; h++) {
+          int bit = first + h * second & bloomMask;
+          bloom[bit >>> 6] |= 1L << bit;
+        }
+      }
+    }
+
+    static Segment open(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        if (PaymentJournal.version(buffer) != PaymentJournal.VERSION
+            || buffer.capacity() % RECORD_SIZE != 0) {
+          LOG.warn("Skipping cold payment segment {} with an unknown layout", path);
+          return null;
+        }
+        return new Segment(path, buffer);
+      }
+    }
+
+    PaymentResponse get(UUID id) {
+      long msb = id.getMostSignificantBits();
+      long lsb = id.getLeastSignificantBits();
+      int first = UuidHashing.hash(msb, lsb);
+      int second = UuidHashing.hash(lsb, ~msb) | 1;
+      for (int h = 0; h < HASHES; h++) {
+        int bit = first + h * second & bloomMask;
+        if ((bloom[bit >>> 6] & 1L << bit) == 0) {
+          return null;
+        }
+      }
+      int low = 1;
+      int high = count;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int offset = mid * RECORD_SIZE;
+        int order = compare(buffer.getLong(offset), buffer.getLong(offset + 8), msb, lsb);
+        if (order < 0) {
+          low = mid + 1;
+        } else if (order > 0) {
+          high = mid - 1;
+        } else {
+          return PaymentJournal.readRecord(buffer, offset, PaymentJournal.VERSION);
+        }
+      }
+      return null;
+    }
+
+    void forEach(Consumer<PaymentResponse> action) {
+      for (int i = 1; i <= count; i++) {
+        action.accept(PaymentJournal.readRecord(buffer, i * RECORD_SIZE, PaymentJournal.VERSION));
+      }
+    }
+
+    /**
+     * The same order as {@link UUID#compareTo(UUID)}, which the segment is sorted by.
+     */
+    private static int compare(long msb, long lsb, long otherMsb, long otherLsb) {
+      int order = Long.compare(msb, otherMsb);
+      return order != 0 ? order : Long.compare(lsb, otherLsb);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.checkout.payment.gateway.repository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Consistent hash ring over cluster nodes. Each node is placed at {@code virtualNodes} points, and
+ * a payment is owned by the first {@code replicationFactor} distinct nodes clockwise from its id's
+ * hash, so adding or removing a node moves only the payments next to its points. The owners of
+ * every point are worked out up front, so a lookup is a binary search and allocates nothing.
+ */
+final class HashRing {
+
+  private final int[] points;
+  private final int[][] owners;
+
+  /**
+   * @param nodes names of all nodes, the same list in the same order on every node
+   */
+  HashRing(List<String> nodes, int virtualNodes, int replicationFactor) {
+    int replicas = Math.min(replicationFactor, nodes.size());
+    long[] placed = new long[nodes.size() * virtualNodes];
+    for (int node = 0; node < nodes.size(); node++) {
+      long name = nodes.get(node).hashCode();
+      for (int i = 0; i < virtualNodes; i++) {
+        int point = UuidHashing.hash(name << 32 | i, 0x9E3779B97F4A7C15L);
+        placed[node * virtualNodes + i] = (long) point << 32 | node;
+      }
+    }
+    Arrays.sort(placed);
+    this.points = new int[placed.length];
+    this.owners = new int[placed.length][];
+    for (int p = 0; p < placed.length; p++) {
+      points[p] = (int) (placed[p] >> 32);
+      int[] pointOwners = new int[replicas];
+      int found = 0;
+      for (int next = p; found < replicas; next = (next + 1) % placed.length) {
+        int node = (int) placed[next];
+        if (!contains(pointOwners, found, node)) {
+          pointOwners[found++] = node;
+        }
+      }
+      owners[p] = pointOwners;
+    }
+  }
+
+  /**
+   * Indexes of the nodes owning {@code id}, the primary owner first. The array is shared and
+   * must not be modified.
+   */
+  int[] owners(UUID id) {
+    int hash = UuidHashing.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    int p = Arrays.binarySearch(points, hash);
+    if (p < 0) {
+      p = -p - 1;
+    }
+    return owners[p == points.length ? 0 : p];
+  }
+
+  private static boolean contains(int[] nodes, int count, int node) {
+    for (int i = 0; i < count; i++) {
+      if (nodes[i] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
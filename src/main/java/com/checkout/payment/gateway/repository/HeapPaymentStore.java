@@ -0,0 +1,74 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@link PaymentResponse} objects on the heap, split into a power-of-two number of
+ * {@link ConcurrentHashMap} shards. The shard is picked from the random bits of the payment id,
+ * so writers on different shards never contend and reads are lock-free. Each shard is pre-sized
+ * from the configured capacity so the maps do not rehash while the store fills up.
+ */
+public class HeapPaymentStore implements PaymentStore {
+
+  private final ConcurrentHashMap<UUID, PaymentResponse>[] shards;
+  private final int shardMask;
+
+  @SuppressWarnings("unchecked")
+  public HeapPaymentStore(int shardCount, int capacity) {
+    if (shardCount <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("Shard count and capacity must be greater than 0");
+    }
+    int size = UuidHashing.powerOfTwoAtLeast(shardCount);
+    int shardCapacity = Math.max(16, capacity / size);
+
+    this.shards = new ConcurrentHashMap[size];
+    this.shardMask = size - 1;
+    for (int i = 0; i < size; i++) {
+      shards[i] = new ConcurrentHashMap<>(shardCapacity, 0.75f, 1);
+    }
+  }
+
+  @Override
+  public boolean put(PaymentResponse payment) {
+    UUID id = payment.getId();
+    return shardFor(id).put(id, payment) == null;
+  }
+
+  @Override
+  public PaymentResponse get(UUID id) {
+    return shardFor(id).get(id);
+  }
+
+  @Override
+  public boolean remove(UUID id) {
+    return shardFor(id).remove(id) != null;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (ConcurrentHashMap<UUID, PaymentResponse> shard : shards) {
+      size += shard.size();
+    }
+    return size;
+  }
+
+  @Override
+  public void forEach(Consumer<PaymentResponse> action) {
+    for (ConcurrentHashMap<UUID, PaymentResponse> shard : shards) {
+      shard.values().forEach(action);
+    }
+  }
+
+  int shardCount() {
+    return shards.length;
+  }
+
+  private ConcurrentHashMap<UUID, PaymentResponse> shardFor(UUID id) {
+    int hash = UuidHashing.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    return shards[hash & shardMask];
+  }
+}
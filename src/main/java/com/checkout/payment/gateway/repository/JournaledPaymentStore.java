@@ -0,0 +1,61 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Serves reads from an in-memory store and records every write in a {@link PaymentJournal}. The
+ * in-memory store is rebuilt from the journal on construction. A payment is published to readers
+ * only once the journal has accepted its record, and with {@code awaitFlush} only once that record
+ * is forced to disk; if the append fails, {@link #put} throws and readers never see the payment,
+ * though a record that reached the disk is still replayed on restart. Removals are not journaled:
+ * a removed payment's record is kept, and replayed on restart, until the journal's archive reports
+ * the payment durably stored elsewhere and a compaction of its segment drops it.
+ */
+public class JournaledPaymentStore implements PaymentStore {
+
+  private final PaymentStore delegate;
+  private final PaymentJournal journal;
+
+  public JournaledPaymentStore(PaymentStore delegate, PaymentJournal journal) {
+    this.delegate = delegate;
+    this.journal = journal;
+    journal.open(delegate);
+  }
+
+  @Override
+  public boolean put(PaymentResponse payment) {
+    journal.append(payment);
+    boolean added = delegate.put(payment);
+    if (!added) {
+      journal.released(payment);
+    }
+    return added;
+  }
+
+  @Override
+  public PaymentResponse get(UUID id) {
+    return delegate.get(id);
+  }
+
+  @Override
+  public boolean remove(UUID id) {
+    PaymentResponse payment = delegate.get(id);
+    if (payment == null || !delegate.remove(id)) {
+      return false;
+    }
+    journal.released(payment);
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  @Override
+  public void forEach(Consumer<PaymentResponse> action) {
+    delegate.forEach(action);
+  }
+}
@@ -0,0 +1,275 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Stores each payment in a fixed-width slot of five longs inside open-addressed primitive arrays,
+ * so retained payments cost no objects on the heap. A {@link PaymentResponse} is only built when a
+ * record is read.
+ *
+ * <p>Slot layout: id most significant bits, id least significant bits, amount, creation time in
+ * epoch milliseconds ({@link #NO_TIME} when unset), and a metadata word packing status, currency,
+ * expiry and card last four. The metadata word is written last with
+ * release semantics and is never zero for an occupied slot, so readers probe without locking.
+ * Writers lock only the segment they hit. Payments are write-once; re-adding an id overwrites its
+ * slot in place.
+ *
+ * <p>A removed payment's slot keeps its id and gets a tombstone metadata word, so probes for
+ * other ids still walk past it and only the same id can reuse it. Tombstones are dropped when the
+ * segment is rehashed, at the same size if most of its used slots are tombstones.
+ */
+public class PackedPaymentStore implements PaymentStore {
+
+  static final int SLOT_LONGS = 5;
+  static final long NO_TIME = Long.MIN_VALUE;
+
+  private static final int MSB = 0;
+  private static final int LSB = 1;
+  private static final int AMOUNT = 2;
+  private static final int CREATED = 3;
+  private static final int META = 4;
+
+  private static final long PRESENT = 1L << 63;
+  private static final long TOMBSTONE = 1L;
+  private static final int STATUS_SHIFT = 0;
+  private static final int CURRENCY_SHIFT = 2;
+  private static final int MONTH_SHIFT = 6;
+  private static final int MONTH_WIDTH_SHIFT = 13;
+  private static final int YEAR_SHIFT = 14;
+  private static final int YEAR_WIDTH_SHIFT = 28;
+  private static final int LAST_FOUR_SHIFT = 30;
+
+  private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+  private static final CurrencyCodes[] CURRENCIES = CurrencyCodes.values();
+  private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final Segment[] segments;
+  private final int segmentShift;
+
+  public PackedPaymentStore(int segmentCount, int capacity) {
+    if (segmentCount <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("Segment count and capacity must be greater than 0");
+    }
+    int size = UuidHashing.powerOfTwoAtLeast(segmentCount);
+    int slotsPerSegment = UuidHashing.powerOfTwoAtLeast(
+        (int) Math.min(1 << 28, (long) Math.max(16, capacity / size) * 4 / 3 + 1));
+
+    this.segments = new Segment[size];
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      segments[i] = new Segment(slotsPerSegment);
+    }
+  }
+
+  @Override
+  public boolean put(PaymentResponse payment) {
+    UUID id = payment.getId();
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    long meta = pack(payment);
+    int hash = UuidHashing.hash(msb, lsb);
+
+    return segmentFor(hash).put(hash, msb, lsb, payment.getAmount(), createdMillis(payment),
+        meta);
+  }
+
+  @Override
+  public PaymentResponse get(UUID id) {
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    int hash = UuidHashing.hash(msb, lsb);
+
+    long[] table = segmentFor(hash).table;
+    int mask = table.length / SLOT_LONGS - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int base = slot * SLOT_LONGS;
+      long meta = (long) LONGS.getAcquire(table, base + META);
+      if (meta == 0) {
+        return null;
+      }
+      if (table[base + MSB] == msb && table[base + LSB] == lsb) {
+        return meta == TOMBSTONE ? null
+            : unpack(id, (int) table[base + AMOUNT], table[base + CREATED], meta);
+      }
+    }
+  }
+
+  @Override
+  public boolean remove(UUID id) {
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    int hash = UuidHashing.hash(msb, lsb);
+    return segmentFor(hash).remove(hash, msb, lsb);
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  @Override
+  public void forEach(Consumer<PaymentResponse> action) {
+    for (Segment segment : segments) {
+      long[] table = segment.table;
+      for (int base = 0; base < table.length; base += SLOT_LONGS) {
+        long meta = (long) LONGS.getAcquire(table, base + META);
+        if ((meta & PRESENT) != 0) {
+          action.accept(unpack(new UUID(table[base + MSB], table[base + LSB]),
+              (int) table[base + AMOUNT], table[base + CREATED], meta));
+        }
+      }
+    }
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  static long pack(PaymentResponse payment) {
+    if (payment.getStatus() == null || payment.getCurrency() == null) {
+      throw new IllegalArgumentException("Payment status and currency are required");
+    }
+    String month = payment.getExpiryMonth();
+    String year = payment.getExpiryYear();
+    String lastFour = payment.getCardNumberLastFour();
+
+    return PRESENT
+        | (long) payment.getStatus().ordinal() << STATUS_SHIFT
+        | (long) CurrencyCodes.valueOf(payment.getCurrency()).ordinal() << CURRENCY_SHIFT
+        | (long) parseDigits(month, 1, 2, "expiry month") << MONTH_SHIFT
+        | (long) (month.length() - 1) << MONTH_WIDTH_SHIFT
+        | (long) parseDigits(year, 1, 4, "expiry year") << YEAR_SHIFT
+        | (long) (year.length() - 1) << YEAR_WIDTH_SHIFT
+        | (long) parseDigits(lastFour, 4, 4, "card last four") << LAST_FOUR_SHIFT;
+  }
+
+  static long createdMillis(PaymentResponse payment) {
+    Instant createdAt = payment.getCreatedAt();
+    return createdAt == null ? NO_TIME : createdAt.toEpochMilli();
+  }
+
+  static PaymentResponse unpack(UUID id, int amount, long createdMillis, long meta) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(id);
+    payment.setStatus(STATUSES[(int) (meta >>> STATUS_SHIFT) & 0x3]);
+    payment.setCurrency(CURRENCIES[(int) (meta >>> CURRENCY_SHIFT) & 0xF].name());
+    payment.setExpiryMonth(formatDigits((int) (meta >>> MONTH_SHIFT) & 0x7F,
+        ((int) (meta >>> MONTH_WIDTH_SHIFT) & 0x1) + 1));
+    payment.setExpiryYear(formatDigits((int) (meta >>> YEAR_SHIFT) & 0x3FFF,
+        ((int) (meta >>> YEAR_WIDTH_SHIFT) & 0x3) + 1));
+    payment.setCardNumberLastFour(formatDigits((int) (meta >>> LAST_FOUR_SHIFT) & 0x3FFF, 4));
+    payment.setAmount(amount);
+    payment.setCreatedAt(createdMillis == NO_TIME ? null : Instant.ofEpochMilli(createdMillis));
+    return payment;
+  }
+
+  private static int parseDigits(String value, int minLength, int maxLength, String field) {
+    if (value == null || value.length() < minLength || value.length() > maxLength) {
+      throw new IllegalArgumentException("Cannot pack " + field + ": " + value);
+    }
+    int result = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IllegalArgumentException("Cannot pack " + field + ": " + value);
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static String formatDigits(int value, int width) {
+    char[] digits = new char[width];
+    for (int i = width - 1; i >= 0; i--) {
+      digits[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return new String(digits);
+  }
+
+  private static final class Segment {
+
+    volatile long[] table;
+    volatile int size;
+    private int used;
+    private int resizeThreshold;
+
+    Segment(int slots) {
+      this.table = new long[slots * SLOT_LONGS];
+      this.resizeThreshold = slots / 4 * 3;
+    }
+
+    synchronized boolean put(int hash, long msb, long lsb, int amount, long created,
+        long meta) {
+      if (used >= resizeThreshold) {
+        resize();
+      }
+      long[] current = table;
+      int base = findSlot(current, hash, msb, lsb);
+      long previous = current[base + META];
+      boolean replacing = (previous & PRESENT) != 0;
+      if (previous == 0) {
+        used++;
+      }
+
+      current[base + MSB] = msb;
+      current[base + LSB] = lsb;
+      current[base + AMOUNT] = amount;
+      current[base + CREATED] = created;
+      LONGS.setRelease(current, base + META, meta);
+      if (!replacing) {
+        size++;
+      }
+      return !replacing;
+    }
+
+    synchronized boolean remove(int hash, long msb, long lsb) {
+      long[] current = table;
+      int base = findSlot(current, hash, msb, lsb);
+      if ((current[base + META] & PRESENT) == 0) {
+        return false;
+      }
+      LONGS.setRelease(current, base + META, TOMBSTONE);
+      size--;
+      return true;
+    }
+
+    private void resize() {
+      long[] current = table;
+      long[] resized = new long[size < resizeThreshold / 2 ? current.length : current.length * 2];
+      for (int base = 0; base < current.length; base += SLOT_LONGS) {
+        if ((current[base + META] & PRESENT) != 0) {
+          long msb = current[base + MSB];
+          long lsb = current[base + LSB];
+          int target = findSlot(resized, UuidHashing.hash(msb, lsb), msb, lsb);
+          System.arraycopy(current, base, resized, target, SLOT_LONGS);
+        }
+      }
+      resizeThreshold = resized.length / SLOT_LONGS / 4 * 3;
+      used = size;
+      table = resized;
+    }
+
+    private static int findSlot(long[] table, int hash, long msb, long lsb) {
+      int mask = table.length / SLOT_LONGS - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        int base = slot * SLOT_LONGS;
+        if (table[base + META] == 0
+            || (table[base + MSB] == msb && table[base + LSB] == lsb)) {
+          return base;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,560 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares stored payments between gateway nodes so that any node can answer
+ * {@code GET /payment/{id}}. Every node is given the same list of node addresses and its own
+ * position in it; a {@link HashRing} over the list names the {@code replicationFactor} nodes that
+ * own each payment id.
+ *
+ * <p>A stored payment is queued for each owner other than this node, and one sender thread per
+ * peer writes the queue out in batches of up to {@code batchSize}, waiting at most
+ * {@code batchInterval} to fill one. The peer acknowledges each batch once it has stored it, and a
+ * batch not acknowledged within five seconds is sent again on a new connection, so a peer that
+ * stops reading cannot stall its sender: with one batch outstanding, writes fit in the socket's
+ * send buffer. A peer's queue holds {@code queueCapacity} payments; beyond that new payments are
+ * dropped for that peer and counted. Unreachable peers are retried with backoff, so replication
+ * carries on once they return.
+ *
+ * <p>A lookup this node cannot answer goes to the payment's owners in turn, each given
+ * {@code readTimeout} to reply, over connections pooled per peer.
+ *
+ * <p>The protocol is length-prefixed frames of a type byte and a payload, with payments in the
+ * journal's 40-byte record layout: a batch is a count of at most {@code batchSize} and that many
+ * records, answered by an empty acknowledgement, and a lookup is the id's two longs, answered by a
+ * found flag and, if found, the record.
+ *
+ * <p>Nodes listen only on their own address from the node list. Each connection starts with a
+ * handshake in which both ends swap random nonces and prove, with an HMAC-SHA256 over both
+ * nonces, that they hold the cluster's shared secret; a connection that fails it is closed before
+ * any frame is read. The secret authenticates peers but does not encrypt the traffic, so the
+ * cluster addresses belong on a private network.
+ */
+public class PaymentCluster implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PaymentCluster.class);
+  private static final int VIRTUAL_NODES = 128;
+  private static final int RECORD_SIZE = PaymentJournal.RECORD_SIZE;
+  private static final byte REPLICATE = 1;
+  private static final byte LOOKUP = 2;
+  private static final byte FOUND = 3;
+  private static final byte MISSING = 4;
+  private static final byte ACK = 5;
+  private static final int ACK_TIMEOUT_MILLIS = 5_000;
+  private static final int POOLED_CONNECTIONS = 8;
+  private static final int MAX_ACCEPTED_CONNECTIONS = 256;
+  private static final int NONCE_BYTES = 16;
+  private static final int PROOF_BYTES = 32;
+  private static final byte[] DIALER = "dialer".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] LISTENER = "listener".getBytes(StandardCharsets.US_ASCII);
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final List<InetSocketAddress> nodes;
+  private final int self;
+  private final HashRing ring;
+  private final int batchSize;
+  private final long batchIntervalNanos;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final SecretKeySpec secret;
+  private final SecureRandom random = new SecureRandom();
+  private final Peer[] peers;
+  private final ExecutorService connections = Executors.newCachedThreadPool(
+      runnable -> daemon(runnable, "payment-cluster-connection"));
+  private final Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+  private final LongAdder received = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder remoteLookups = new LongAdder();
+
+  private Consumer<PaymentResponse> replicas;
+  private Function<UUID, PaymentResponse> local;
+  private ServerSocket server;
+  private volatile boolean running;
+
+  /**
+   * @param secret at least 16 bytes shared by every node, which peers must prove they hold
+   */
+  public PaymentCluster(List<InetSocketAddress> nodes, int self, int replicationFactor,
+      int batchSize, Duration batchInterval, int queueCapacity, Duration connectTimeout,
+      Duration readTimeout, byte[] secret) {
+    if (self < 0 || self >= nodes.size()) {
+      throw new IllegalArgumentException("This node must be one of the cluster nodes");
+    }
+    if (secret.length < 16) {
+      throw new IllegalArgumentException("Payment cluster secret must be at least 16 bytes");
+    }
+    if (replicationFactor < 1 || batchSize < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(
+          "Replication factor, batch size and queue capacity must be positive");
+    }
+    this.nodes = List.copyOf(nodes);
+    this.self = self;
+    this.ring = new HashRing(nodes.stream().map(PaymentCluster::name).toList(), VIRTUAL_NODES,
+        replicationFactor);
+    this.batchSize = batchSize;
+    this.batchIntervalNanos = batchInterval.toNanos();
+    this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+    this.readTimeoutMillis = (int) readTimeout.toMillis();
+    this.secret = new SecretKeySpec(secret.clone(), "HmacSHA256");
+    this.peers = new Peer[nodes.size()];
+    for (int node = 0; node < nodes.size(); node++) {
+      if (node != self) {
+        peers[node] = new Peer(nodes.get(node), queueCapacity);
+      }
+    }
+  }
+
+  /**
+   * Starts serving peers and replicating to them. Payments replicated to this node are handed to
+   * {@code replicas}, and peers' lookups are answered from {@code local}, which must not go back
+   * to the cluster.
+   */
+  public synchronized void open(Consumer<PaymentResponse> replicas,
+      Function<UUID, PaymentResponse> local) {
+    if (running) {
+      throw new IllegalStateException("Payment cluster is already open");
+    }
+    this.replicas = replicas;
+    this.local = local;
+    try {
+      server = new ServerSocket();
+      server.setReuseAddress(true);
+      server.bind(nodes.get(self));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to listen on " + nodes.get(self), e);
+    }
+    running = true;
+    daemon(this::accept, "payment-cluster-acceptor").start();
+    for (Peer peer : peers) {
+      if (peer != null) {
+        peer.sender = daemon(peer::send, "payment-cluster-sender-" + name(peer.address));
+        peer.sender.start();
+      }
+    }
+    LOG.info("Payment cluster node {} of {} listening on {}", self + 1, nodes.size(),
+        nodes.get(self));
+  }
+
+  /**
+   * Queues {@code payment} for the peers that own it.
+   */
+  public void replicate(PaymentResponse payment) {
+    for (int owner : ring.owners(payment.getId())) {
+      if (owner != self && !peers[owner].outbound.offer(payment)) {
+        dropped.increment();
+      }
+    }
+  }
+
+  /**
+   * Asks the payment's owners other than this node for it, and returns the first answer or
+   * {@code null} if none has it or none answers in time.
+   */
+  public PaymentResponse fetch(UUID id) {
+    if (!running) {
+      return null;
+    }
+    for (int owner : ring.owners(id)) {
+      if (owner == self) {
+        continue;
+      }
+      remoteLookups.increment();
+      try {
+        PaymentResponse payment = peers[owner].lookup(id);
+        if (payment != null) {
+          return payment;
+        }
+      } catch (IOException e) {
+        LOG.debug("Lookup of payment {} on {} failed: {}", id, peers[owner].address,
+            e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  public long backlog() {
+    long backlog = 0;
+    for (Peer peer : peers) {
+      if (peer != null) {
+        backlog += peer.outbound.size();
+      }
+    }
+    return backlog;
+  }
+
+  public long receivedCount() {
+    return received.sum();
+  }
+
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  public long remoteLookupCount() {
+    return remoteLookups.sum();
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      running = false;
+    }
+    closeQuietly(server);
+    accepted.forEach(PaymentCluster::closeQuietly);
+    for (Peer peer : peers) {
+      if (peer != null) {
+        peer.sender.interrupt();
+        peer.close();
+      }
+    }
+    connections.shutdownNow();
+  }
+
+  int[] owners(UUID id) {
+    return ring.owners(id);
+  }
+
+  private void accept() {
+    while (running) {
+      try {
+        Socket socket = server.accept();
+        if (accepted.size() >= MAX_ACCEPTED_CONNECTIONS) {
+          closeQuietly(socket);
+          continue;
+        }
+        socket.setTcpNoDelay(true);
+        accepted.add(socket);
+        connections.execute(() -> serve(socket));
+      } catch (IOException e) {
+        if (running) {
+          LOG.warn("Payment cluster accept failed", e);
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(socket.getOutputStream()))) {
+      socket.setSoTimeout(readTimeoutMillis);
+      handshake(in, out, false);
+      socket.setSoTimeout(0);
+      ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * batchSize);
+      while (running) {
+        int length = in.readInt();
+        byte type = in.readByte();
+        if (type == REPLICATE) {
+          int count = in.readInt();
+          if (count < 0 || count > batchSize || length != 5 + count * RECORD_SIZE) {
+            throw new IOException("Malformed replication batch");
+          }
+          in.readFully(records.array(), 0, count * RECORD_SIZE);
+          for (int i = 0; i < count; i++) {
+            if (PaymentJournal.isValidRecord(records, i * RECORD_SIZE, PaymentJournal.VERSION)) {
+              replicas.accept(
+                  PaymentJournal.readRecord(records, i * RECORD_SIZE, PaymentJournal.VERSION));
+              received.increment();
+            }
+          }
+          out.writeInt(1);
+          out.writeByte(ACK);
+          out.flush();
+        } else if (type == LOOKUP && length == 17) {
+          PaymentResponse payment = local.apply(new UUID(in.readLong(), in.readLong()));
+          if (payment == null) {
+            out.writeInt(1);
+            out.writeByte(MISSING);
+          } else {
+            PaymentJournal.writeRecord(records, 0, payment);
+            out.writeInt(1 + RECORD_SIZE);
+            out.writeByte(FOUND);
+            out.write(records.array(), 0, RECORD_SIZE);
+          }
+          out.flush();
+        } else {
+          throw new IOException("Unknown payment cluster frame " + type);
+        }
+      }
+    } catch (IOException e) {
+      if (running && !(e instanceof EOFException)) {
+        LOG.debug("Payment cluster connection from {} closed: {}",
+            socket.getRemoteSocketAddress(), e.getMessage());
+      }
+    } finally {
+      accepted.remove(socket);
+    }
+  }
+
+  /**
+   * An authenticated connection to {@code address}, whose reads then time out after
+   * {@code soTimeoutMillis}, or never for 0.
+   */
+  private Connection connect(InetSocketAddress address, int soTimeoutMillis)
+      throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(readTimeoutMillis);
+      socket.connect(address, connectTimeoutMillis);
+      Connection connection = new Connection(socket);
+      handshake(connection.in, connection.out, true);
+      socket.setSoTimeout(soTimeoutMillis);
+      return connection;
+    } catch (IOException e) {
+      closeQuietly(socket);
+      throw e;
+    }
+  }
+
+  /**
+   * Swaps nonces with the other end, sends this end's proof of the secret and checks the other
+   * end's. The roles in the proofs stop one end's proof being echoed back as the other's.
+   */
+  private void handshake(DataInputStream in, DataOutputStream out, boolean dialing)
+      throws IOException {
+    byte[] nonce = new byte[NONCE_BYTES];
+    random.nextBytes(nonce);
+    out.write(nonce);
+    out.flush();
+    byte[] peerNonce = new byte[NONCE_BYTES];
+    in.readFully(peerNonce);
+    byte[] dialerNonce = dialing ? nonce : peerNonce;
+    byte[] listenerNonce = dialing ? peerNonce : nonce;
+    out.write(proof(dialing ? DIALER : LISTENER, dialerNonce, listenerNonce));
+    out.flush();
+    byte[] peerProof = new byte[PROOF_BYTES];
+    in.readFully(peerProof);
+    if (!MessageDigest.isEqual(peerProof,
+        proof(dialing ? LISTENER : DIALER, dialerNonce, listenerNonce))) {
+      throw new IOException("Payment cluster peer did not prove the shared secret");
+    }
+  }
+
+  private byte[] proof(byte[] role, byte[] dialerNonce, byte[] listenerNonce) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(secret);
+      mac.update(role);
+      mac.update(dialerNonce);
+      return mac.doFinal(listenerNonce);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 is not available", e);
+    }
+  }
+
+  private static String name(InetSocketAddress address) {
+    return address.getHostString() + ":" + address.getPort();
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // already closing
+    }
+  }
+
+  private static Thread daemon(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * A pooled request/response connection to a peer, used by one lookup at a time.
+   */
+  private static final class Connection implements Closeable {
+
+    final Socket socket;
+    final DataInputStream in;
+    final DataOutputStream out;
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public void close() {
+      closeQuietly(socket);
+    }
+  }
+
+  private final class Peer {
+
+    final InetSocketAddress address;
+    final BlockingQueue<PaymentResponse> outbound;
+    final BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(POOLED_CONNECTIONS);
+    final AtomicInteger failures = new AtomicInteger();
+    Thread sender;
+
+    Peer(InetSocketAddress address, int queueCapacity) {
+      this.address = address;
+      this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    PaymentResponse lookup(UUID id) throws IOException {
+      Connection connection = pool.poll();
+      if (connection == null) {
+        connection = connect(address, readTimeoutMillis);
+      }
+      try {
+        connection.out.writeInt(17);
+        connection.out.writeByte(LOOKUP);
+        connection.out.writeLong(id.getMostSignificantBits());
+        connection.out.writeLong(id.getLeastSignificantBits());
+        connection.out.flush();
+        int length = connection.in.readInt();
+        byte type = connection.in.readByte();
+        PaymentResponse payment = null;
+        if (type == FOUND && length == 1 + RECORD_SIZE) {
+          byte[] record = new byte[RECORD_SIZE];
+          connection.in.readFully(record);
+          ByteBuffer buffer = ByteBuffer.wrap(record);
+          if (PaymentJournal.isValidRecord(buffer, 0, PaymentJournal.VERSION)) {
+            payment = PaymentJournal.readRecord(buffer, 0, PaymentJournal.VERSION);
+          }
+        } else if (type != MISSING || length != 1) {
+          throw new IOException("Unexpected lookup reply " + type);
+        }
+        if (!pool.offer(connection)) {
+          connection.close();
+        }
+        return payment;
+      } catch (IOException e) {
+        connection.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Runs on the peer's sender thread until the cluster closes, resending a batch until the
+     * peer acknowledges it. A batch resent after a lost acknowledgement is stored only once.
+     */
+    void send() {
+      List<PaymentResponse> batch = new ArrayList<>(batchSize);
+      ByteBuffer frame = ByteBuffer.allocate(9 + RECORD_SIZE * batchSize);
+      Connection connection = null;
+      while (running) {
+        try {
+          if (batch.isEmpty() && !fill(batch)) {
+            continue;
+          }
+          if (connection == null) {
+            connection = connect(address, ACK_TIMEOUT_MILLIS);
+            failures.set(0);
+          }
+          frame.putInt(0, 5 + batch.size() * RECORD_SIZE);
+          frame.put(4, REPLICATE);
+          frame.putInt(5, batch.size());
+          for (int i = 0; i < batch.size(); i++) {
+            PaymentJournal.writeRecord(frame, 9 + i * RECORD_SIZE, batch.get(i));
+          }
+          connection.out.write(frame.array(), 0, 9 + batch.size() * RECORD_SIZE);
+          connection.out.flush();
+          if (connection.in.readInt() != 1 || connection.in.readByte() != ACK) {
+            throw new IOException("Unexpected replication reply");
+          }
+          batch.clear();
+        } catch (InterruptedException e) {
+          break;
+        } catch (IOException e) {
+          closeQuietly(connection);
+          connection = null;
+          backOff(e);
+        }
+      }
+      closeQuietly(connection);
+    }
+
+    /**
+     * Waits for a first payment, then up to the batch interval for the batch to fill.
+     */
+    private boolean fill(List<PaymentResponse> batch) throws InterruptedException {
+      PaymentResponse first = outbound.poll(100, TimeUnit.MILLISECONDS);
+      if (first == null) {
+        return false;
+      }
+      batch.add(first);
+      long deadline = System.nanoTime() + batchIntervalNanos;
+      while (batch.size() < batchSize) {
+        outbound.drainTo(batch, batchSize - batch.size());
+        long remaining = deadline - System.nanoTime();
+        if (batch.size() == batchSize || remaining <= 0) {
+          break;
+        }
+        PaymentResponse next = outbound.poll(remaining, TimeUnit.NANOSECONDS);
+        if (next == null) {
+          break;
+        }
+        batch.add(next);
+      }
+      return true;
+    }
+
+    private void backOff(IOException e) {
+      int failed = failures.incrementAndGet();
+      if (failed == 1) {
+        LOG.warn("Unable to replicate payments to {}, retrying: {}", address, e.getMessage());
+      }
+      long backoffNanos = Math.min(MAX_BACKOFF_NANOS,
+          TimeUnit.MILLISECONDS.toNanos(10) << Math.min(failed, 10));
+      try {
+        TimeUnit.NANOSECONDS.sleep(backoffNanos);
+      } catch (InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void close() {
+      Connection connection;
+      while ((connection = pool.poll()) != null) {
+        connection.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,375 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Secondary indexes over the payments in a {@link PaymentStore}, used by
+ * {@link PaymentsRepository#find(PaymentQuery)}.
+ *
+ * <p>Every added payment gets the next sequence number, and its id, creation time and packed
+ * status, currency and card last four are written into fixed-size column blocks at that position.
+ * Each block keeps the minimum and maximum creation time it holds, so a time range skips whole
+ * blocks outside it. Status, currency and card last four each have posting lists of the sequence
+ * numbers holding each value, in ascending order. A query walks the most selective posting list,
+ * or the blocks when it has no attribute filter, from the newest sequence number down, and checks
+ * the rest of its filters against the columns. That costs about 40 bytes per payment.
+ *
+ * <p>Writes are serialized on the index and publish the new size last, so readers never lock and
+ * never see a sequence number whose columns are not written yet.
+ *
+ * <p>Entries leave the index oldest first: {@link #evictBelow(int)} raises the floor below which
+ * sequence numbers are gone, releases the blocks wholly under it, and posting lists drop their
+ * evicted head the next time they grow.
+ */
+final class PaymentIndex {
+
+  private static final int BLOCK_SHIFT = 12;
+  private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  private static final int LAST_FOUR_VALUES = 10_000;
+
+  private static final int STATUS_SHIFT = 0;
+  private static final int STATUS_MASK = 0x3;
+  private static final int CURRENCY_SHIFT = 2;
+  private static final int CURRENCY_MASK = 0xF;
+  private static final int LAST_FOUR_SHIFT = 6;
+  private static final int LAST_FOUR_MASK = 0x3FFF;
+
+  private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+  private static final CurrencyCodes[] CURRENCIES = CurrencyCodes.values();
+  private static final Postings NONE = new Postings();
+
+  private final Postings[] byStatus = newPostings(STATUSES.length);
+  private final Postings[] byCurrency = newPostings(CURRENCIES.length);
+  // Created on first use, and published through the array for lock-free readers.
+  private final AtomicReferenceArray<Postings> byLastFour =
+      new AtomicReferenceArray<>(LAST_FOUR_VALUES);
+
+  private volatile Block[] blocks = new Block[16];
+  private volatile int size;
+  private volatile int floor;
+
+  /**
+   * Appends {@code payment} as the newest entry. Callers add each payment id once.
+   */
+  synchronized void add(PaymentResponse payment) {
+    int sequence = size;
+    if (sequence == Integer.MAX_VALUE) {
+      throw new IllegalStateException("Payment index is full");
+    }
+    int blockIndex = sequence >>> BLOCK_SHIFT;
+    Block[] current = blocks;
+    if (blockIndex == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+    if (current[blockIndex] == null) {
+      current[blockIndex] = new Block();
+      blocks = current;
+    }
+    Block block = current[blockIndex];
+    int offset = sequence & BLOCK_MASK;
+
+    UUID id = payment.getId();
+    long created = PackedPaymentStore.createdMillis(payment);
+    int status = code(payment.getStatus());
+    int currency = code(currencyOf(payment.getCurrency()));
+    int lastFour = lastFourOf(payment.getCardNumberLastFour());
+    block.msb[offset] = id.getMostSignificantBits();
+    block.lsb[offset] = id.getLeastSignificantBits();
+    block.created[offset] = created;
+    block.attributes[offset] = status << STATUS_SHIFT | currency << CURRENCY_SHIFT
+        | lastFour << LAST_FOUR_SHIFT;
+    block.include(created);
+
+    int floor = this.floor;
+    if (status != 0) {
+      byStatus[status - 1].add(sequence, floor);
+    }
+    if (currency != 0) {
+      byCurrency[currency - 1].add(sequence, floor);
+    }
+    if (lastFour != 0) {
+      Postings postings = byLastFour.get(lastFour - 1);
+      if (postings == null) {
+        postings = new Postings();
+        byLastFour.set(lastFour - 1, postings);
+      }
+      postings.add(sequence, floor);
+    }
+    size = sequence + 1;
+  }
+
+  /**
+   * One past the newest sequence number.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * The oldest sequence number not yet evicted.
+   */
+  int floor() {
+    return floor;
+  }
+
+  /**
+   * Returns the id at {@code sequence}, or {@code null} if it has been evicted.
+   */
+  UUID id(int sequence) {
+    Block block = blocks[sequence >>> BLOCK_SHIFT];
+    if (block == null || sequence < floor) {
+      return null;
+    }
+    int offset = sequence & BLOCK_MASK;
+    return new UUID(block.msb[offset], block.lsb[offset]);
+  }
+
+  /**
+   * Creation time in epoch milliseconds at a retained {@code sequence}, or
+   * {@link PackedPaymentStore#NO_TIME}.
+   */
+  long created(int sequence) {
+    return blocks[sequence >>> BLOCK_SHIFT].created[sequence & BLOCK_MASK];
+  }
+
+  /**
+   * Evicts every entry below {@code sequence}.
+   */
+  synchronized void evictBelow(int sequence) {
+    if (sequence <= floor) {
+      return;
+    }
+    floor = Math.min(sequence, size);
+    Block[] current = blocks;
+    for (int block = (floor >>> BLOCK_SHIFT) - 1; block >= 0 && current[block] != null; block--) {
+      current[block] = null;
+    }
+  }
+
+  /**
+   * Returns the highest sequence number below {@code before} whose indexed attributes match
+   * {@code query}, or -1 if there is none.
+   */
+  int previous(PaymentQuery query, int before) {
+    int upper = Math.min(before, size);
+    Block[] blocks = this.blocks;
+    int floor = this.floor;
+    Filter filter = new Filter(query);
+
+    Postings postings = filter.narrowest(this);
+    if (postings == null) {
+      for (int sequence = upper - 1; sequence >= floor; ) {
+        Block block = blocks[sequence >>> BLOCK_SHIFT];
+        if (block == null) {
+          return -1;
+        } else if (!filter.overlaps(block)) {
+          sequence = (sequence & ~BLOCK_MASK) - 1;
+        } else if (filter.matches(block, sequence & BLOCK_MASK)) {
+          return sequence;
+        } else {
+          sequence--;
+        }
+      }
+      return -1;
+    }
+
+    Chunk chunk = postings.chunk;
+    int[] sequences = chunk.sequences;
+    for (int i = search(sequences, chunk.size, upper) - 1; i >= 0; ) {
+      int sequence = sequences[i];
+      Block block = blocks[sequence >>> BLOCK_SHIFT];
+      if (sequence < floor || block == null) {
+        return -1;
+      } else if (!filter.overlaps(block)) {
+        i = search(sequences, i, sequence & ~BLOCK_MASK) - 1;
+      } else if (filter.matches(block, sequence & BLOCK_MASK)) {
+        return sequence;
+      } else {
+        i--;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of entries in {@code sequences[0, count)} below {@code key}.
+   */
+  private static int search(int[] sequences, int count, int key) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sequences[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int code(Enum<?> value) {
+    return value == null ? 0 : value.ordinal() + 1;
+  }
+
+  private static CurrencyCodes currencyOf(String currency) {
+    for (CurrencyCodes code : CURRENCIES) {
+      if (code.name().equals(currency)) {
+        return code;
+      }
+    }
+    return null;
+  }
+
+  private static int lastFourOf(String lastFour) {
+    if (lastFour == null || lastFour.length() != 4) {
+      return 0;
+    }
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      char c = lastFour.charAt(i);
+      if (c < '0' || c > '9') {
+        return 0;
+      }
+      value = value * 10 + c - '0';
+    }
+    return value + 1;
+  }
+
+  private static Postings[] newPostings(int count) {
+    Postings[] postings = new Postings[count];
+    Arrays.setAll(postings, i -> new Postings());
+    return postings;
+  }
+
+  private static final class Block {
+
+    final long[] msb = new long[BLOCK_SIZE];
+    final long[] lsb = new long[BLOCK_SIZE];
+    final long[] created = new long[BLOCK_SIZE];
+    final int[] attributes = new int[BLOCK_SIZE];
+    volatile long minCreated = Long.MAX_VALUE;
+    volatile long maxCreated = Long.MIN_VALUE;
+
+    void include(long created) {
+      if (created < minCreated) {
+        minCreated = created;
+      }
+      if (created > maxCreated) {
+        maxCreated = created;
+      }
+    }
+  }
+
+  /**
+   * Ascending sequence numbers for one attribute value. When the current chunk is full, its
+   * entries at or above the eviction floor move to a new chunk with room for as many again, and
+   * readers pick up whichever chunk they load along with its own size.
+   */
+  private static final class Postings {
+
+    volatile Chunk chunk = new Chunk(new int[16], 0);
+
+    void add(int sequence, int floor) {
+      Chunk current = chunk;
+      if (current.size == current.sequences.length) {
+        int from = search(current.sequences, current.size, floor);
+        int live = current.size - from;
+        int[] sequences = new int[Math.max(16, live * 2)];
+        System.arraycopy(current.sequences, from, sequences, 0, live);
+        current = new Chunk(sequences, live);
+        chunk = current;
+      }
+      current.sequences[current.size] = sequence;
+      current.size = current.size + 1;
+    }
+  }
+
+  private static final class Chunk {
+
+    final int[] sequences;
+    volatile int size;
+
+    Chunk(int[] sequences, int size) {
+      this.sequences = sequences;
+      this.size = size;
+    }
+  }
+
+  /**
+   * A query's filters as the packed attribute bits and creation-time bounds the columns hold.
+   */
+  private static final class Filter {
+
+    private final PaymentQuery query;
+    private final int mask;
+    private final int value;
+    private final boolean timed;
+    private final long from;
+    private final long to;
+
+    Filter(PaymentQuery query) {
+      this.query = query;
+      int mask = 0;
+      int value = 0;
+      if (query.status() != null) {
+        mask |= STATUS_MASK << STATUS_SHIFT;
+        value |= code(query.status()) << STATUS_SHIFT;
+      }
+      if (query.currency() != null) {
+        mask |= CURRENCY_MASK << CURRENCY_SHIFT;
+        value |= code(query.currency()) << CURRENCY_SHIFT;
+      }
+      if (query.cardLastFour() != null) {
+        mask |= LAST_FOUR_MASK << LAST_FOUR_SHIFT;
+        value |= (query.cardLastFour() + 1) << LAST_FOUR_SHIFT;
+      }
+      this.mask = mask;
+      this.value = value;
+      this.timed = query.from() != null || query.to() != null;
+      this.from = query.from() == null ? Long.MIN_VALUE + 1 : query.from().toEpochMilli();
+      this.to = query.to() == null ? Long.MAX_VALUE : query.to().toEpochMilli();
+    }
+
+    /**
+     * The shortest posting list among the filtered attributes, or {@code null} if the query
+     * filters none of them.
+     */
+    Postings narrowest(PaymentIndex index) {
+      Postings narrowest = null;
+      if (query.status() != null) {
+        narrowest = index.byStatus[query.status().ordinal()];
+      }
+      if (query.currency() != null) {
+        narrowest = shorter(narrowest, index.byCurrency[query.currency().ordinal()]);
+      }
+      if (query.cardLastFour() != null) {
+        Postings postings = index.byLastFour.get(query.cardLastFour());
+        narrowest = shorter(narrowest, postings == null ? NONE : postings);
+      }
+      return narrowest;
+    }
+
+    boolean overlaps(Block block) {
+      return !timed || block.maxCreated >= from && block.minCreated < to;
+    }
+
+    boolean matches(Block block, int offset) {
+      if ((block.attributes[offset] & mask) != value) {
+        return false;
+      }
+      long created = block.created[offset];
+      return !timed || created >= from && created < to;
+    }
+
+    private static Postings shorter(Postings current, Postings candidate) {
+      return current == null || candidate.chunk.size < current.chunk.size ? candidate : current;
+    }
+  }
+}
@@ -0,0 +1,577 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of stored payments kept in fixed-size, memory-mapped segment files.
+ *
+ * <p>Writers reserve a fixed-width record slot in the active segment with a single atomic add and
+ * copy the packed payment into the mapping, so appends never take a global lock. A flusher thread
+ * group-commits the mappings with {@code force()} once {@code flushBatchSize} records are pending
+ * or {@code flushInterval} has elapsed, and writers wait for the flush covering their record. A
+ * failed flush fails the writers waiting on it and is retried by the next one, so the journal
+ * recovers once the disk does. A full segment can be compacted only once a flush has forced it
+ * with no writer still copying into a slot it reserved there.
+ *
+ * <p>On {@link #open(PaymentStore)} every segment is replayed into the given store, which then
+ * serves as the index. Every {@code compactionInterval}, sealed segments whose share of live
+ * records has dropped below {@code compactionLiveRatio} are rewritten with only the live records.
+ * A record is live while the index holds its payment, and stays live after the payment leaves the
+ * index until {@code archived} reports it durably stored elsewhere, such as in a synced
+ * {@link ColdPaymentStore} segment. Without an archive, records of removed payments are kept and
+ * the payments come back on the next replay. Each sealed segment counts the records that may have
+ * died since it was last scanned, attributed by the range of creation times it holds, and a
+ * compaction skips the segments with none.
+ *
+ * <p>Version 2 records carry the payment's creation time. Version 1 segments, written before
+ * payments had one, are still replayed and are rewritten as version 2 when compacted.
+ */
+public class PaymentJournal implements Closeable {
+
+  static final int RECORD_SIZE = 40;
+  static final int LEGACY_RECORD_SIZE = 32;
+  static final int VERSION = 2;
+
+  private static final Logger LOG = LoggerFactory.getLogger(PaymentJournal.class);
+  private static final int MAGIC = 0x50474A31;
+  private static final int LEGACY_VERSION = 1;
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long flushIntervalNanos;
+  private final int flushBatchSize;
+  private final boolean awaitFlush;
+  private final long compactionIntervalNanos;
+  private final double compactionLiveRatio;
+  private final Predicate<UUID> archived;
+
+  private final Object flushLock = new Object();
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicLong flushesStarted = new AtomicLong();
+  private final List<Segment> dirty = new CopyOnWriteArrayList<>();
+  private final ConcurrentLinkedDeque<SealedSegment> sealed = new ConcurrentLinkedDeque<>();
+  private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(
+      runnable -> daemon(runnable, "payment-journal-compactor"));
+
+  private PaymentStore index;
+  private Thread flusher;
+  private volatile Segment active;
+  private volatile long flushesCompleted;
+  private volatile long flushesSucceeded;
+  private volatile IOException failure;
+  private volatile boolean running;
+
+  public PaymentJournal(Path directory, int segmentSize, Duration flushInterval,
+      int flushBatchSize, boolean awaitFlush, Duration compactionInterval,
+      double compactionLiveRatio) {
+    this(directory, segmentSize, flushInterval, flushBatchSize, awaitFlush, compactionInterval,
+        compactionLiveRatio, id -> false);
+  }
+
+  public PaymentJournal(Path directory, int segmentSize, Duration flushInterval,
+      int flushBatchSize, boolean awaitFlush, Duration compactionInterval,
+      double compactionLiveRatio, Predicate<UUID> archived) {
+    if (segmentSize < RECORD_SIZE * 2) {
+      throw new IllegalArgumentException("Segment size must hold at least one record");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize / RECORD_SIZE * RECORD_SIZE;
+    this.flushIntervalNanos = flushInterval.toNanos();
+    this.flushBatchSize = Math.max(1, flushBatchSize);
+    this.awaitFlush = awaitFlush;
+    this.compactionIntervalNanos = compactionInterval.toNanos();
+    this.compactionLiveRatio = compactionLiveRatio;
+    this.archived = archived;
+  }
+
+  /**
+   * Replays every segment into {@code index}, opens a fresh active segment and starts the
+   * flusher.
+   */
+  public synchronized void open(PaymentStore index) {
+    if (running) {
+      throw new IllegalStateException("Journal is already open");
+    }
+    this.index = index;
+    try {
+      Files.createDirectories(directory);
+      long started = System.nanoTime();
+      List<Path> segments = listSegments();
+      long recovered = 0;
+      for (Path segment : segments) {
+        recovered += replay(segment, index);
+        sealed.add(new SealedSegment(segment));
+      }
+      LOG.info("Recovered {} payments from {} journal segments in {} ms", recovered,
+          segments.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+      long next = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+      active = openSegment(next);
+      dirty.add(active);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open payment journal in " + directory, e);
+    }
+    running = true;
+    flusher = daemon(this::runFlusher, "payment-journal-flusher");
+    flusher.start();
+    compactor.scheduleWithFixedDelay(this::compact, compactionIntervalNanos,
+        compactionIntervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void append(PaymentResponse payment) {
+    if (!running) {
+      throw new IllegalStateException("Payment journal is not open");
+    }
+    UUID id = payment.getId();
+    long meta = PackedPaymentStore.pack(payment);
+    long created = PackedPaymentStore.createdMillis(payment);
+
+    while (true) {
+      Segment segment = active;
+      segment.writers.incrementAndGet();
+      int offset = segment.position.getAndAdd(RECORD_SIZE);
+      if (offset <= segmentSize - RECORD_SIZE) {
+        writeRecord(segment.buffer, offset, id.getMostSignificantBits(),
+            id.getLeastSignificantBits(), meta, created, payment.getAmount());
+        segment.writers.decrementAndGet();
+        break;
+      }
+      segment.writers.decrementAndGet();
+      roll(segment);
+    }
+
+    long requested = flushesStarted.get();
+    if (pending.incrementAndGet() >= flushBatchSize) {
+      synchronized (flushLock) {
+        flushLock.notifyAll();
+      }
+    }
+    if (awaitFlush) {
+      awaitFlush(requested);
+    }
+  }
+
+  /**
+   * Notes that the record last appended for {@code payment} may no longer be live, because the
+   * payment was replaced or left the index, so the segments that could hold it are scanned by the
+   * next compaction.
+   */
+  public void released(PaymentResponse payment) {
+    long created = PackedPaymentStore.createdMillis(payment);
+    for (SealedSegment segment : sealed) {
+      if (segment.mayHold(created)) {
+        segment.dead.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      running = false;
+    }
+    synchronized (flushLock) {
+      flushLock.notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    compactor.shutdownNow();
+  }
+
+  int sealedSegmentCount() {
+    return sealed.size();
+  }
+
+  private void awaitFlush(long requested) {
+    synchronized (flushLock) {
+      while (flushesCompleted <= requested && (running || flusher.isAlive())) {
+        try {
+          flushLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for payment journal flush");
+        }
+      }
+    }
+    if (flushesSucceeded <= requested) {
+      IOException flushFailure = failure;
+      if (flushFailure == null) {
+        throw new IllegalStateException("Payment journal closed before flushing");
+      }
+      throw new UncheckedIOException("Payment journal flush failed", flushFailure);
+    }
+  }
+
+  private synchronized void roll(Segment full) {
+    if (active != full) {
+      return;
+    }
+    try {
+      Segment next = openSegment(full.number + 1);
+      full.sealed = true;
+      dirty.add(next);
+      active = next;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to roll payment journal segment", e);
+    }
+  }
+
+  private void runFlusher() {
+    while (running) {
+      synchronized (flushLock) {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        long remaining = flushIntervalNanos;
+        while (running && pending.get() < flushBatchSize && remaining > 0) {
+          try {
+            TimeUnit.NANOSECONDS.timedWait(flushLock, remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          remaining = deadline - System.nanoTime();
+        }
+      }
+      if (pending.get() > 0) {
+        flush();
+      }
+    }
+    flush();
+  }
+
+  private void flush() {
+    long batch = pending.getAndSet(0);
+    long generation = flushesStarted.incrementAndGet();
+    boolean succeeded = true;
+    try {
+      for (Segment segment : dirty) {
+        boolean clean = segment.sealed && segment.writers.get() == 0;
+        force(segment.buffer);
+        if (clean) {
+          dirty.remove(segment);
+          sealed.add(new SealedSegment(segment.path));
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Payment journal flush failed", e);
+      failure = new IOException("Unable to flush payment journal", e);
+      succeeded = false;
+      // Leave the batch pending so the flusher forces the mappings again.
+      pending.addAndGet(Math.max(1, batch));
+    }
+    synchronized (flushLock) {
+      if (succeeded) {
+        flushesSucceeded = generation;
+      }
+      flushesCompleted = generation;
+      flushLock.notifyAll();
+    }
+  }
+
+  void force(MappedByteBuffer buffer) {
+    buffer.force();
+  }
+
+  void compact() {
+    for (SealedSegment segment : sealed) {
+      if (segment.dead.get() == 0) {
+        continue;
+      }
+      try {
+        compact(segment);
+      } catch (IOException | UncheckedIOException e) {
+        LOG.warn("Unable to compact payment journal segment {}", segment.path, e);
+      }
+    }
+  }
+
+  /**
+   * Rewrites the segment without its dead records when too few are live, then leaves it counting
+   * only the removed records still waiting on the archive, which a later compaction checks again.
+   */
+  private void compact(SealedSegment segment) throws IOException {
+    Path path = segment.path;
+    int released = segment.dead.get();
+    List<long[]> live = new ArrayList<>();
+    int total = 0;
+    int unarchived = 0;
+    long oldest = Long.MAX_VALUE;
+    long newest = Long.MIN_VALUE;
+    int version;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      version = version(buffer);
+      if (version == 0) {
+        segment.dead.addAndGet(-released);
+        return;
+      }
+      int recordSize = recordSize(version);
+      for (int offset = recordSize; offset <= buffer.capacity() - recordSize;
+          offset += recordSize) {
+        if (!isValidRecord(buffer, offset, version)) {
+          continue;
+        }
+        total++;
+        PaymentResponse record = readRecord(buffer, offset, version);
+        PaymentResponse current = index.get(record.getId());
+        long meta = PackedPaymentStore.pack(record);
+        long created = PackedPaymentStore.createdMillis(record);
+        boolean keep;
+        if (current == null) {
+          keep = !archived.test(record.getId());
+          unarchived += keep ? 1 : 0;
+        } else {
+          keep = current.getAmount() == record.getAmount()
+              && PackedPaymentStore.pack(current) == meta
+              && PackedPaymentStore.createdMillis(current) == created;
+        }
+        if (keep) {
+          live.add(new long[]{record.getId().getMostSignificantBits(),
+              record.getId().getLeastSignificantBits(), meta, created, record.getAmount()});
+          oldest = Math.min(oldest, created);
+          newest = Math.max(newest, created);
+        }
+      }
+    }
+    segment.narrow(oldest, newest);
+    segment.dead.addAndGet(unarchived - released);
+    if (version == VERSION && total > 0 && live.size() >= total * compactionLiveRatio) {
+      return;
+    }
+    if (live.isEmpty()) {
+      Files.deleteIfExists(path);
+      sealed.remove(segment);
+      LOG.info("Deleted payment journal segment {} with no live records", path);
+      return;
+    }
+
+    Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * (live.size() + 1));
+    writeHeader(buffer);
+    for (int i = 0; i < live.size(); i++) {
+      long[] record = live.get(i);
+      writeRecord(buffer, RECORD_SIZE * (i + 1), record[0], record[1], record[2], record[3],
+          (int) record[4]);
+    }
+    try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    LOG.info("Compacted payment journal segment {} from {} to {} records", path, total,
+        live.size());
+  }
+
+  private Segment openSegment(long number) throws IOException {
+    Path path = directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+      writeHeader(buffer);
+      return new Segment(number, path, buffer);
+    }
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static long replay(Path path, PaymentStore index) throws IOException {
+    long recovered = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      int version = version(buffer);
+      if (version == 0) {
+        LOG.warn("Skipping journal segment {} with an unknown header", path);
+        return 0;
+      }
+      int recordSize = recordSize(version);
+      for (int offset = recordSize; offset <= buffer.capacity() - recordSize;
+          offset += recordSize) {
+        if (isValidRecord(buffer, offset, version)) {
+          index.put(readRecord(buffer, offset, version));
+          recovered++;
+        }
+      }
+    }
+    return recovered;
+  }
+
+  static void writeHeader(ByteBuffer buffer) {
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+  }
+
+  /**
+   * Returns the segment's format version, or 0 if its header is not recognised.
+   */
+  static int version(ByteBuffer buffer) {
+    if (buffer.capacity() < LEGACY_RECORD_SIZE || buffer.getInt(0) != MAGIC) {
+      return 0;
+    }
+    int version = buffer.getInt(4);
+    return version == VERSION || version == LEGACY_VERSION ? version : 0;
+  }
+
+  private static int recordSize(int version) {
+    return version == LEGACY_VERSION ? LEGACY_RECORD_SIZE : RECORD_SIZE;
+  }
+
+  /**
+   * Version 2 layout: id msb, id lsb, metadata word, creation time, amount, checksum. Version 1
+   * has no creation time.
+   */
+  static void writeRecord(ByteBuffer buffer, int offset, PaymentResponse payment) {
+    UUID id = payment.getId();
+    writeRecord(buffer, offset, id.getMostSignificantBits(), id.getLeastSignificantBits(),
+        PackedPaymentStore.pack(payment), PackedPaymentStore.createdMillis(payment),
+        payment.getAmount());
+  }
+
+  private static void writeRecord(ByteBuffer buffer, int offset, long msb, long lsb, long meta,
+      long created, int amount) {
+    buffer.putLong(offset, msb);
+    buffer.putLong(offset + 8, lsb);
+    buffer.putLong(offset + 16, meta);
+    buffer.putLong(offset + 24, created);
+    buffer.putInt(offset + 32, amount);
+    buffer.putInt(offset + 36, checksum(msb, lsb, meta ^ mix(created), amount));
+  }
+
+  static PaymentResponse readRecord(ByteBuffer buffer, int offset, int version) {
+    UUID id = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+    long meta = buffer.getLong(offset + 16);
+    if (version == LEGACY_VERSION) {
+      return PackedPaymentStore.unpack(id, buffer.getInt(offset + 24), PackedPaymentStore.NO_TIME,
+          meta);
+    }
+    return PackedPaymentStore.unpack(id, buffer.getInt(offset + 32), buffer.getLong(offset + 24),
+        meta);
+  }
+
+  static boolean isValidRecord(ByteBuffer buffer, int offset, int version) {
+    long msb = buffer.getLong(offset);
+    long lsb = buffer.getLong(offset + 8);
+    long meta = buffer.getLong(offset + 16);
+    if (meta == 0) {
+      return false;
+    }
+    if (version == LEGACY_VERSION) {
+      return buffer.getInt(offset + 28) == checksum(msb, lsb, meta, buffer.getInt(offset + 24));
+    }
+    return buffer.getInt(offset + 36) == checksum(msb, lsb, meta ^ mix(buffer.getLong(offset + 24)),
+        buffer.getInt(offset + 32));
+  }
+
+  private static int checksum(long msb, long lsb, long meta, int amount) {
+    long hash = 0x9E3779B97F4A7C15L;
+    hash = mix(hash ^ msb);
+    hash = mix(hash ^ lsb);
+    hash = mix(hash ^ meta);
+    hash = mix(hash ^ amount);
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    return (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+  }
+
+  private static long segmentNumber(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static Thread daemon(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * A segment no longer written to. Until its first scan it may hold any creation time, and counts
+   * one possibly dead record so that the scan happens.
+   */
+  private static final class SealedSegment {
+
+    final Path path;
+    final AtomicInteger dead = new AtomicInteger(1);
+    volatile long oldest = Long.MIN_VALUE;
+    volatile long newest = Long.MAX_VALUE;
+
+    SealedSegment(Path path) {
+      this.path = path;
+    }
+
+    boolean mayHold(long created) {
+      return created >= oldest && created <= newest;
+    }
+
+    /**
+     * Live records only ever leave a segment, so the new range lies within the old one and a
+     * reader seeing either bound of either range never misses a record.
+     */
+    void narrow(long oldest, long newest) {
+      this.oldest = oldest;
+      this.newest = newest;
+    }
+  }
+
+  private static final class Segment {
+
+    final long number;
+    final Path path;
+    final MappedByteBuffer buffer;
+    final AtomicInteger position = new AtomicInteger(RECORD_SIZE);
+    final AtomicInteger writers = new AtomicInteger();
+    volatile boolean sealed;
+
+    Segment(long number, Path path, MappedByteBuffer buffer) {
+      this.number = number;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Instant;
+
+/**
+ * Filters for {@link PaymentsRepository#find(PaymentQuery)}. A {@code null} filter matches every
+ * payment; {@code from} is inclusive and {@code to} exclusive. {@code cursor} is the
+ * {@code nextCursor} of the previous page, or {@code null} for the newest payments.
+ */
+public record PaymentQuery(PaymentStatus status, CurrencyCodes currency, Integer cardLastFour,
+    Instant from, Instant to, Integer cursor, int limit) {
+
+  boolean matches(PaymentResponse payment) {
+    if (status != null && status != payment.getStatus()) {
+      return false;
+    }
+    if (currency != null && !currency.name().equals(payment.getCurrency())) {
+      return false;
+    }
+    if (cardLastFour != null && !isLastFour(payment.getCardNumberLastFour(), cardLastFour)) {
+      return false;
+    }
+    Instant createdAt = payment.getCreatedAt();
+    if (from != null && (createdAt == null || createdAt.isBefore(from))) {
+      return false;
+    }
+    return to == null || createdAt != null && createdAt.isBefore(to);
+  }
+
+  /**
+   * Whether {@code lastFour} spells {@code value} in four digits, compared without formatting.
+   */
+  private static boolean isLastFour(String lastFour, int value) {
+    if (lastFour == null || lastFour.length() != 4) {
+      return false;
+    }
+    for (int i = 3; i >= 0; i--) {
+      if (lastFour.charAt(i) != '0' + value % 10) {
+        return false;
+      }
+      value /= 10;
+    }
+    return value == 0;
+  }
+}
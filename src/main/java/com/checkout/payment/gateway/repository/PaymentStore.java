@@ -0,0 +1,33 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage backing {@link PaymentsRepository}. Implementations must be safe for concurrent
+ * readers and writers.
+ */
+public interface PaymentStore {
+
+  /**
+   * Stores {@code payment}, replacing any payment with the same id, and returns whether its id was
+   * new to the store.
+   */
+  boolean put(PaymentResponse payment);
+
+  PaymentResponse get(UUID id);
+
+  /**
+   * Removes the payment stored under {@code id} and returns whether there was one.
+   */
+  boolean remove(UUID id);
+
+  int size();
+
+  /**
+   * Visits every stored payment once, in no particular order. Payments stored concurrently may or
+   * may not be visited.
+   */
+  void forEach(Consumer<PaymentResponse> action);
+}
@@ -1,22 +1,173 @@
 package com.checkout.payment.gateway.repository;
 
+import com.checkout.payment.gateway.model.PaymentPage;
 import com.checkout.payment.gateway.model.PaymentResponse;
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import org.springframework.stereotype.Repository;
 
-@Repository
 public class PaymentsRepository {
 
-  private final HashMap<UUID, PaymentResponse> payments = new HashMap<>();
+  /**
+   * Told about each payment {@link #evict} removes from memory, and whether it went because it
+   * was too old rather than because the repository was full.
+   */
+  public interface EvictionListener {
+
+    void evicted(UUID id, boolean expired);
+  }
+
+  private static final Comparator<PaymentResponse> OLDEST_FIRST = Comparator.comparing(
+      PaymentResponse::getCreatedAt, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()));
+
+  private final PaymentStore store;
+  private final ColdPaymentStore coldStore;
+  private final PaymentCluster cluster;
+  private final PaymentIndex index = new PaymentIndex();
+
+  /**
+   * Indexes the payments already in {@code store}, such as those replayed from the journal, oldest
+   * first. Evicted payments are spilled to {@code coldStore} when it is not {@code null}. With a
+   * {@code cluster}, added payments are replicated to the nodes owning them, payments replicated
+   * from other nodes are added here without being sent on, and reads this node cannot answer are
+   * passed to the owners.
+   */
+  public PaymentsRepository(PaymentStore store, ColdPaymentStore coldStore,
+      PaymentCluster cluster) {
+    this.store = store;
+    this.coldStore = coldStore;
+    this.cluster = cluster;
+    List<PaymentResponse> existing = new ArrayList<>(store.size());
+    store.forEach(existing::add);
+    existing.sort(OLDEST_FIRST);
+    existing.forEach(index::add);
+    if (cluster != null) {
+      cluster.open(this::addReplica, this::getLocal);
+    }
+  }
 
   public void add(PaymentResponse payment) {
-    payments.put(payment.getId(), payment);
+    addReplica(payment);
+    if (cluster != null) {
+      cluster.replicate(payment);
+    }
   }
 
   public Optional<PaymentResponse> get(UUID id) {
-    return Optional.ofNullable(payments.get(id));
+    PaymentResponse payment = getLocal(id);
+    if (payment == null && cluster != null) {
+      payment = cluster.fetch(id);
+    }
+    return Optional.ofNullable(payment);
+  }
+
+  /**
+   * The payment if this node holds it, in memory or in the cold store, without asking the
+   * cluster.
+   */
+  public PaymentResponse getLocal(UUID id) {
+    PaymentResponse payment = store.get(id);
+    if (payment == null && coldStore != null) {
+      payment = coldStore.get(id);
+    }
+    return payment;
+  }
+
+  /**
+   * The payment if this node holds it in memory, which never blocks.
+   */
+  public PaymentResponse getInMemory(UUID id) {
+    return store.get(id);
+  }
+
+  private void addReplica(PaymentResponse payment) {
+    if (store.put(payment)) {
+      index.add(payment);
+    }
+  }
+
+  /**
+   * Whether {@link #get} may block for a payment not in memory, reading the cold store from disk
+   * or asking other nodes over the network.
+   */
+  public boolean readsBlock() {
+    return coldStore != null || cluster != null;
+  }
+
+  public int size() {
+    return store.size();
+  }
+
+  /**
+   * Payments added and not yet evicted, including any removed from the store by other means.
+   */
+  public int retained() {
+    return index.size() - index.floor();
+  }
+
+  /**
+   * Removes up to {@code limit} of the oldest payments from memory while more than
+   * {@code maxEntries} are retained, or the oldest was created before {@code cutoff}, and returns
+   * how many went. A non-positive {@code maxEntries} or a {@code null} cutoff disables that bound.
+   * Payments without a creation time are only evicted by count, and hold back age eviction of the
+   * payments behind them until then. Each payment is written to the
+   * cold store before it leaves memory, so reads by id never miss it. Callers evict from a single
+   * thread.
+   */
+  public int evict(int maxEntries, Instant cutoff, int limit, EvictionListener listener) {
+    long cutoffMillis = cutoff == null ? PackedPaymentStore.NO_TIME : cutoff.toEpochMilli();
+    int floor = index.floor();
+    int end = index.size();
+    int sequence = floor;
+    while (sequence < end && sequence - floor < limit) {
+      boolean oversized = maxEntries > 0 && end - sequence > maxEntries;
+      long created = index.created(sequence);
+      if (!oversized && (created == PackedPaymentStore.NO_TIME || created >= cutoffMillis)) {
+        break;
+      }
+      UUID id = index.id(sequence);
+      PaymentResponse payment = store.get(id);
+      if (payment != null) {
+        if (coldStore != null) {
+          coldStore.put(payment);
+        }
+        store.remove(id);
+        listener.evicted(id, !oversized);
+      }
+      sequence++;
+    }
+    index.evictBelow(sequence);
+    return sequence - floor;
+  }
+
+  /**
+   * Returns up to {@code query.limit()} matching payments in the order they were added, newest
+   * first, and the cursor for the next page if there may be more. Cursors are only meaningful to
+   * the process that issued them. Payments evicted to the cold store are not searched.
+   */
+  public PaymentPage find(PaymentQuery query) {
+    List<PaymentResponse> payments = new ArrayList<>(Math.min(query.limit(), 64));
+    int last = query.cursor() == null ? Integer.MAX_VALUE : query.cursor();
+    for (int sequence = index.previous(query, last); sequence >= 0;
+        sequence = index.previous(query, sequence)) {
+      UUID id = index.id(sequence);
+      if (id == null) {
+        break;
+      }
+      PaymentResponse payment = store.get(id);
+      if (payment == null || !query.matches(payment)) {
+        continue;
+      }
+      if (payments.size() == query.limit()) {
+        return new PaymentPage(payments, Integer.toString(last));
+      }
+      payments.add(payment);
+      last = sequence;
+    }
+    return new PaymentPage(payments, null);
   }
 
 }
@@ -0,0 +1,13 @@
+package com.checkout.payment.gateway.repository;
+
+public enum StorageMode {
+  HEAP,
+  PACKED;
+
+  public PaymentStore create(int shardCount, int capacity) {
+    return switch (this) {
+      case HEAP -> new HeapPaymentStore(shardCount, capacity);
+      case PACKED -> new PackedPaymentStore(shardCount, capacity);
+    };
+  }
+}
@@ -0,0 +1,18 @@
+package com.checkout.payment.gateway.repository;
+
+final class UuidHashing {
+
+  private UuidHashing() {
+  }
+
+  static int hash(long mostSignificantBits, long leastSignificantBits) {
+    long bits = mostSignificantBits ^ leastSignificantBits;
+    bits = (bits ^ (bits >>> 33)) * 0xff51afd7ed558ccdL;
+    bits = (bits ^ (bits >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (int) (bits ^ (bits >>> 33));
+  }
+
+  static int powerOfTwoAtLeast(int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+}
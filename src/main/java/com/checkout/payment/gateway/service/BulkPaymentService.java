@@ -0,0 +1,173 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.exception.PaymentGatewayException;
+import com.checkout.payment.gateway.exception.PaymentRejectedException;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BulkPaymentResult;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Processes a stream of payment requests, either NDJSON or one JSON array, and writes one
+ * {@link BulkPaymentResult} line per item as NDJSON in the order the items finish.
+ *
+ * <p>Items are read one at a time with Jackson's streaming parser. Each is validated like a single
+ * payment, and valid ones are authorized through the non-blocking bank path with at most
+ * {@code maxInFlight} waiting on the bank; reading pauses while that many are outstanding. All
+ * writing happens on the calling thread, so a slow reader of the response slows the upload down
+ * rather than holding bank threads. Memory is bounded by {@code maxInFlight}, not by the size of
+ * the upload.
+ */
+@Service
+public class BulkPaymentService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BulkPaymentService.class);
+
+  private final PaymentGatewayService paymentGatewayService;
+  private final PaymentMetrics metrics;
+  private final ObjectMapper objectMapper;
+  private final ObjectReader requestReader;
+  private final ObjectWriter resultWriter;
+  private final int maxInFlight;
+
+  public BulkPaymentService(PaymentGatewayService paymentGatewayService, PaymentMetrics metrics,
+      ObjectMapper objectMapper,
+      @Value("${payments.bulk.max-in-flight:16}") int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight must be at least 1");
+    }
+    this.paymentGatewayService = paymentGatewayService;
+    this.metrics = metrics;
+    this.objectMapper = objectMapper;
+    this.requestReader = objectMapper.readerFor(PostPaymentRequest.class);
+    this.resultWriter = objectMapper.writerFor(BulkPaymentResult.class)
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Reads payments from {@code in} until it ends and writes their results to {@code out}. An item
+   * that is {@code null} or not a JSON object is skipped with status 400. An object that is not a
+   * well-formed payment ends the upload, as the rest of the stream cannot be framed reliably; it
+   * is reported with status 400 after the results of the items before it.
+   */
+  public void process(InputStream in, OutputStream out) throws IOException {
+    BlockingQueue<BulkPaymentResult> finished = new ArrayBlockingQueue<>(maxInFlight);
+    int inFlight = 0;
+    long index = 0;
+
+    try (JsonParser parser = objectMapper.getFactory().createParser(in);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      generator.setRootValueSeparator(null);
+      JsonToken token = parser.nextToken();
+      boolean array = token == JsonToken.START_ARRAY;
+      if (array) {
+        token = parser.nextToken();
+      }
+
+      while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+        long itemIndex = index++;
+        if (token != JsonToken.START_OBJECT) {
+          parser.skipChildren();
+          write(generator, BulkPaymentResult.failed(itemIndex, 400,
+              "Payment must be a JSON object"));
+          token = parser.nextToken();
+          continue;
+        }
+        PostPaymentRequest request;
+        try {
+          request = requestReader.readValue(parser);
+        } catch (JsonProcessingException e) {
+          write(generator, BulkPaymentResult.failed(itemIndex, 400,
+              "Malformed payment: " + e.getOriginalMessage()));
+          break;
+        }
+
+        try {
+          paymentGatewayService.validate(request);
+        } catch (PaymentRejectedException e) {
+          metrics.recordError(e);
+          write(generator, BulkPaymentResult.failed(itemIndex, e.getStatusCode(), e.getMessage()));
+          token = parser.nextToken();
+          continue;
+        }
+
+        while (inFlight >= maxInFlight) {
+          generator.flush();
+          write(generator, take(finished));
+          inFlight--;
+        }
+        for (BulkPaymentResult result = finished.poll(); result != null;
+            result = finished.poll()) {
+          write(generator, result);
+          inFlight--;
+        }
+
+        paymentGatewayService.authorizeAsync(request, Deadline.none())
+            .whenComplete((payment, e) -> finished.add(e == null
+                ? BulkPaymentResult.processed(itemIndex, payment)
+                : failure(itemIndex, e)));
+        inFlight++;
+        token = parser.nextToken();
+      }
+
+      for (; inFlight > 0; inFlight--) {
+        if (finished.isEmpty()) {
+          generator.flush();
+        }
+        write(generator, take(finished));
+      }
+    } finally {
+      // An upload cut short still has its in-flight payments complete and stored.
+      if (inFlight > 0) {
+        LOG.warn("Bulk upload ended with {} payments still being authorized", inFlight);
+      }
+    }
+  }
+
+  private void write(JsonGenerator generator, BulkPaymentResult result) throws IOException {
+    resultWriter.writeValue(generator, result);
+    generator.writeRaw('\n');
+  }
+
+  private BulkPaymentResult failure(long index, Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null
+        ? e.getCause()
+        : e;
+    metrics.recordError(cause);
+    if (cause instanceof PaymentGatewayException failure) {
+      return BulkPaymentResult.failed(index, failure.getStatusCode(), failure.getMessage());
+    }
+    LOG.error("Unexpected error processing bulk payment {}: {}", index, cause.getMessage());
+    return BulkPaymentResult.failed(index, 500, "An unexpected error occurred");
+  }
+
+  private static BulkPaymentResult take(BlockingQueue<BulkPaymentResult> finished)
+      throws InterruptedIOException {
+    try {
+      return finished.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for bulk payments");
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package com.checkout.payment.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Swaps card numbers for tokens as payments come in. A token is an HMAC-SHA256 of the card number
+ * under the vault's key, so one card always gets the same token and a token says nothing about
+ * its card. The card number is kept only as AES-GCM ciphertext, which travels with the payment in
+ * its {@link CardToken}. A cache from token to ciphertext, holding at most {@code maximumSize}
+ * cards each for {@code expireAfterAccess} after its last use, only saves encrypting a card seen
+ * recently again; a card it has dropped is still carried by the payments in flight.
+ *
+ * <p>Card numbers pass through the vault as byte arrays that are zeroed once used, and a payment's
+ * CVV is encrypted the same way with {@link #encryptCvv(CharSequence)}. The bank is the one place
+ * either is needed again, and {@link #withCardDetails(byte[], byte[], byte[])} puts them straight
+ * into the bank's request body.
+ *
+ * <p>The cache is recorded as the {@code card-vault} cache in the {@code cache.*} meters.
+ */
+public class CardVault {
+
+  /**
+   * A tokenized card: the token, a 64-bit key taken from the same digest to order and count the
+   * card's payments by, and the encrypted card number. Tokens of one card share the ciphertext
+   * while the vault's cache holds it, so must not change it.
+   */
+  public record CardToken(String value, long key, byte[] cardNumber) {
+  }
+
+  private static final String TOKEN_PREFIX = "tok_";
+  private static final int TOKEN_DIGEST_BYTES = 18;
+  private static final int IV_BYTES = 12;
+  private static final int TAG_BITS = 128;
+  private static final byte[] CARD_NUMBER_FIELD =
+      "{\"card_number\":\"".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] CVV_FIELD = ",\"cvv\":\"\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private final SecretKeySpec macKey;
+  private final SecretKeySpec encryptionKey;
+  private final ThreadLocal<Mac> macs;
+  private final ThreadLocal<Cipher> ciphers;
+  private final SecureRandom random = new SecureRandom();
+  private final Cache<String, byte[]> tokens;
+
+  /**
+   * @param key 32 bytes from which the token and encryption keys are derived
+   */
+  public CardVault(byte[] key, long maximumSize, Duration expireAfterAccess,
+      MeterRegistry registry) {
+    if (key.length != 32) {
+      throw new IllegalArgumentException("Card vault key must be 32 bytes");
+    }
+    this.macKey = new SecretKeySpec(derive(key, "card-token"), "HmacSHA256");
+    this.encryptionKey = new SecretKeySpec(derive(key, "card-encryption"), "AES");
+    this.macs = ThreadLocal.withInitial(() -> newMac(macKey));
+    this.ciphers = ThreadLocal.withInitial(CardVault::newCipher);
+    this.tokens = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterAccess(expireAfterAccess)
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(registry, tokens, "card-vault");
+  }
+
+  /**
+   * A new random key, for a vault whose tokens need not outlive the process.
+   */
+  public static byte[] randomKey() {
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    return key;
+  }
+
+  /**
+   * Returns the token for {@code cardNumber}, encrypting and storing the card number unless it is
+   * already held. The card number must be ASCII, as a validated one is.
+   */
+  public CardToken tokenize(CharSequence cardNumber) {
+    byte[] pan = new byte[cardNumber.length()];
+    try {
+      for (int i = 0; i < pan.length; i++) {
+        pan[i] = (byte) cardNumber.charAt(i);
+      }
+      byte[] digest = macs.get().doFinal(pan);
+      String token = TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(Arrays.copyOf(digest, TOKEN_DIGEST_BYTES));
+      byte[] ciphertext = tokens.get(token, unused -> encrypt(pan));
+      return new CardToken(token, ByteBuffer.wrap(digest).getLong(), ciphertext);
+    } finally {
+      Arrays.fill(pan, (byte) 0);
+    }
+  }
+
+  /**
+   * {@code cvv} encrypted for the one payment it came with. CVVs are never cached. It must be
+   * ASCII, as a validated one is.
+   */
+  public byte[] encryptCvv(CharSequence cvv) {
+    byte[] plaintext = new byte[cvv.length()];
+    try {
+      for (int i = 0; i < plaintext.length; i++) {
+        plaintext[i] = (byte) cvv.charAt(i);
+      }
+      return encrypt(plaintext);
+    } finally {
+      Arrays.fill(plaintext, (byte) 0);
+    }
+  }
+
+  /**
+   * The card number or CVV in {@code ciphertext} as ASCII digits, in an array the caller zeroes
+   * once done with it.
+   */
+  public byte[] decrypt(byte[] ciphertext) {
+    try {
+      Cipher cipher = ciphers.get();
+      cipher.init(Cipher.DECRYPT_MODE, encryptionKey,
+          new GCMParameterSpec(TAG_BITS, ciphertext, 0, IV_BYTES));
+      return cipher.doFinal(ciphertext, IV_BYTES, ciphertext.length - IV_BYTES);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to decrypt card details", e);
+    }
+  }
+
+  /**
+   * A copy of {@code json} with the encrypted {@code cardNumber} and {@code cvv} written into its
+   * empty leading {@code card_number} and trailing {@code cvv}, for a bank body built without
+   * them. The caller zeroes it once the bank call is over.
+   */
+  public byte[] withCardDetails(byte[] json, byte[] cardNumber, byte[] cvv) {
+    int at = CARD_NUMBER_FIELD.length;
+    int cvvAt = json.length - 2;
+    if (json.length <= at + CVV_FIELD.length || json[at] != '"'
+        || !Arrays.equals(json, 0, at, CARD_NUMBER_FIELD, 0, at)
+        || !Arrays.equals(json, json.length - CVV_FIELD.length, json.length, CVV_FIELD, 0,
+            CVV_FIELD.length)) {
+      throw new IllegalArgumentException("Bank body does not have an empty card number and CVV");
+    }
+    byte[] pan = decrypt(cardNumber);
+    byte[] code = new byte[0];
+    try {
+      code = decrypt(cvv);
+      byte[] body = new byte[json.length + pan.length + code.length];
+      System.arraycopy(json, 0, body, 0, at);
+      System.arraycopy(pan, 0, body, at, pan.length);
+      System.arraycopy(json, at, body, at + pan.length, cvvAt - at);
+      System.arraycopy(code, 0, body, cvvAt + pan.length, code.length);
+      System.arraycopy(json, cvvAt, body, cvvAt + pan.length + code.length, 2);
+      return body;
+    } finally {
+      Arrays.fill(pan, (byte) 0);
+      Arrays.fill(code, (byte) 0);
+    }
+  }
+
+  long size() {
+    return tokens.estimatedSize();
+  }
+
+  CacheStats stats() {
+    return tokens.stats();
+  }
+
+  private byte[] encrypt(byte[] pan) {
+    byte[] iv = new byte[IV_BYTES];
+    random.nextBytes(iv);
+    try {
+      Cipher cipher = ciphers.get();
+      cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+      byte[] ciphertext = Arrays.copyOf(iv, IV_BYTES + cipher.getOutputSize(pan.length));
+      cipher.doFinal(pan, 0, pan.length, ciphertext, IV_BYTES);
+      return ciphertext;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to encrypt card details", e);
+    }
+  }
+
+  private static byte[] derive(byte[] key, String purpose) {
+    return newMac(new SecretKeySpec(key, "HmacSHA256"))
+        .doFinal(purpose.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static Mac newMac(SecretKeySpec key) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 is not available", e);
+    }
+  }
+
+  private static Cipher newCipher() {
+    try {
+      return Cipher.getInstance("AES/GCM/NoPadding");
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("AES/GCM is not available", e);
+    }
+  }
+}
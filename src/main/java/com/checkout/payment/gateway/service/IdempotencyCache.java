@@ -0,0 +1,141 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.exception.BadRequestException;
+import com.checkout.payment.gateway.exception.UnprocessableEntityException;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the outcome of a payment by its {@link IdempotencyKey} for {@code ttl}, keeping at
+ * most {@code maximumSize} keys. The first request for a key starts the payment and stores its
+ * future; duplicates arriving while it is in flight wait on that same future instead of calling
+ * the bank again. Failed payments are dropped from the cache so a retry can try again.
+ *
+ * <p>Each key is stored with a {@link #fingerprint(int, CharSequence...)} of its request, and a
+ * request reusing the key with a different fingerprint is refused with a 422 rather than handed
+ * the first payment. The fingerprint is an HMAC under a key drawn when the cache is created, so
+ * the card details it covers cannot be recovered from it.
+ */
+@Component
+public class IdempotencyCache {
+
+  static final int MAX_KEY_LENGTH = 255;
+
+  private record Entry(byte[] fingerprint, CompletableFuture<PaymentResponse> response) {
+  }
+
+  private final Cache<IdempotencyKey, Entry> responses;
+  private final ThreadLocal<Mac> macs;
+
+  public IdempotencyCache(
+      @Value("${payments.idempotency.maximum-size:1000000}") long maximumSize,
+      @Value("${payments.idempotency.ttl:24h}") Duration ttl) {
+    this.responses = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .build();
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    SecretKeySpec fingerprintKey = new SecretKeySpec(key, "HmacSHA256");
+    this.macs = ThreadLocal.withInitial(() -> newMac(fingerprintKey));
+  }
+
+  /**
+   * A digest of a request's {@code amount} and {@code fields}, taken one byte per character as
+   * they are ASCII in a valid request.
+   */
+  public byte[] fingerprint(int amount, CharSequence... fields) {
+    Mac mac = macs.get();
+    mac.update((byte) (amount >>> 24));
+    mac.update((byte) (amount >>> 16));
+    mac.update((byte) (amount >>> 8));
+    mac.update((byte) amount);
+    for (CharSequence field : fields) {
+      if (field != null) {
+        for (int i = 0; i < field.length(); i++) {
+          mac.update((byte) field.charAt(i));
+        }
+      }
+      mac.update((byte) 0);
+    }
+    return mac.doFinal();
+  }
+
+  /**
+   * Returns the stored or in-flight payment for {@code key}, or starts one with {@code payment}.
+   * The returned future completes exceptionally with the payment's own exception, unwrapped. A
+   * {@code fingerprint} other than the one stored with the key is an
+   * {@link UnprocessableEntityException}.
+   */
+  public CompletableFuture<PaymentResponse> getOrProcess(IdempotencyKey key, byte[] fingerprint,
+      Supplier<CompletableFuture<PaymentResponse>> payment) {
+    if (key.key().isBlank() || key.key().length() > MAX_KEY_LENGTH) {
+      throw new BadRequestException(
+          "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+    }
+
+    Entry existing = responses.getIfPresent(key);
+    if (existing != null) {
+      return matching(existing, fingerprint);
+    }
+    Entry created = new Entry(fingerprint, new CompletableFuture<>());
+    existing = responses.asMap().putIfAbsent(key, created);
+    if (existing != null) {
+      return matching(existing, fingerprint);
+    }
+
+    try {
+      payment.get().whenComplete((response, e) -> {
+        if (e == null) {
+          created.response().complete(response);
+        } else {
+          fail(key, created, e instanceof CompletionException && e.getCause() != null
+              ? e.getCause() : e);
+        }
+      });
+    } catch (Throwable e) {
+      // Even an Error must release the key, or duplicates would wait on it until it expires.
+      fail(key, created, e);
+    }
+    return created.response();
+  }
+
+  private static CompletableFuture<PaymentResponse> matching(Entry entry, byte[] fingerprint) {
+    if (!MessageDigest.isEqual(entry.fingerprint(), fingerprint)) {
+      throw new UnprocessableEntityException(
+          "Idempotency-Key was already used with a different request");
+    }
+    return entry.response();
+  }
+
+  private void fail(IdempotencyKey key, Entry created, Throwable e) {
+    responses.asMap().remove(key, created);
+    created.response().completeExceptionally(e);
+  }
+
+  long size() {
+    return responses.estimatedSize();
+  }
+
+  private static Mac newMac(SecretKeySpec key) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 is not available", e);
+    }
+  }
+}
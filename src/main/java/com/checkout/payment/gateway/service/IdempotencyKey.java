@@ -0,0 +1,23 @@
+package com.checkout.payment.gateway.service;
+
+import java.security.Principal;
+
+/**
+ * An {@code Idempotency-Key} as sent by one merchant. Two merchants picking the same key get
+ * separate payments.
+ */
+public record IdempotencyKey(String merchant, String key) {
+
+  /**
+   * The key {@code key} from the authenticated {@code principal}, or else from the client at
+   * {@code clientAddress}, or {@code null} without a key. As with admission, the unauthenticated
+   * {@code Merchant-Id} header is not used, so a client cannot claim another merchant's keys.
+   */
+  public static IdempotencyKey of(Principal principal, String clientAddress, String key) {
+    if (key == null) {
+      return null;
+    }
+    String merchant = principal != null ? principal.getName() : clientAddress;
+    return new IdempotencyKey(merchant == null ? "" : merchant, key);
+  }
+}
@@ -0,0 +1,418 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.exception.ServiceUnavailableException;
+import com.checkout.payment.gateway.exception.TooManyRequestsException;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes payments on {@code shardCount} single-threaded shards, each payment on the shard its
+ * card number maps to. A shard owns everything it knows about its cards, so it keeps that state
+ * in plain fields and collections and never takes a lock:
+ *
+ * <ul>
+ *   <li>payments on one card reach the bank one at a time, in the order they arrived; later ones
+ *   wait on the shard until the card's current bank call has been answered and persisted;</li>
+ *   <li>with {@code maxPaymentsPerCard} above zero, a card gets at most that many payments per
+ *   {@code velocityWindow}, and the rest are refused with a
+ *   {@link TooManyRequestsException}.</li>
+ * </ul>
+ *
+ * <p>Payments and bank answers reach a shard through its {@link PaymentRing}. The shard thread
+ * starts a bank call and moves on; whichever thread completes the call, or the common pool if the
+ * bank answered at once, persists the answer and publishes it back onto the ring. Bank calls and
+ * journal writes for different cards therefore overlap, and a shard is never blocked on the bank
+ * or the disk.
+ *
+ * <p>A shard holds at most {@code ringSize} unfinished payments, so the answers to its payments
+ * always fit on its ring. Payments beyond that, and payments after {@link #close()}, are refused
+ * with a {@link ServiceUnavailableException} rather than queued. Admission and shutdown share the
+ * shard's {@code state}, so a payment is either refused or finished before the shard exits. A
+ * shard that dies on an {@link Error} fails every payment it still holds.
+ */
+public class PaymentEngine implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PaymentEngine.class);
+  private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final int STOPPING = Integer.MIN_VALUE;
+  // A shard whose ring never empties still sweeps after this many entries.
+  private static final int SWEEP_EVERY = 1024;
+
+  private final Shard[] shards;
+  private final int maxPaymentsPerCard;
+  private final long velocityWindowNanos;
+
+  public PaymentEngine(int shardCount, int ringSize, int maxPaymentsPerCard,
+      Duration velocityWindow) {
+    if (shardCount < 1 || Integer.bitCount(shardCount) != 1
+        || ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+      throw new IllegalArgumentException("Shard count and ring size must be powers of two");
+    }
+    if (maxPaymentsPerCard < 0 || velocityWindow.isNegative()
+        || maxPaymentsPerCard > 0 && velocityWindow.isZero()) {
+      throw new IllegalArgumentException(
+          "Card velocity limit must not be negative and needs a positive window");
+    }
+    this.maxPaymentsPerCard = maxPaymentsPerCard;
+    this.velocityWindowNanos = velocityWindow.toNanos();
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i, ringSize);
+    }
+    for (Shard shard : shards) {
+      shard.thread.start();
+    }
+  }
+
+  /**
+   * Queues a payment on its card's shard. When the card has no other payment in flight the shard
+   * starts {@code bankCall}, and once the bank has answered, {@code complete} runs on the answer
+   * off the shard thread and persists the payment. The returned future completes on the shard
+   * thread with the result of {@code complete}, or exceptionally with what either step threw.
+   */
+  CompletableFuture<PaymentResponse> submit(String cardNumber,
+      Supplier<CompletableFuture<BankResponse>> bankCall,
+      Function<BankResponse, PaymentResponse> complete) {
+    return submit(cardKey(cardNumber), bankCall, complete);
+  }
+
+  /**
+   * {@link #submit(String, Supplier, Function)} for a card already reduced to its
+   * {@link #cardKey(String) key}.
+   */
+  CompletableFuture<PaymentResponse> submit(long card,
+      Supplier<CompletableFuture<BankResponse>> bankCall,
+      Function<BankResponse, PaymentResponse> complete) {
+    Shard shard = shards[spread(card) & (shards.length - 1)];
+    Job job = new Job(card, bankCall, complete);
+    shard.admit(job);
+    return job.result;
+  }
+
+  int shardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Payments accepted but not yet finished, across all shards.
+   */
+  int unfinished() {
+    int unfinished = 0;
+    for (Shard shard : shards) {
+      unfinished += shard.unfinished();
+    }
+    return unfinished;
+  }
+
+  /**
+   * Stops accepting payments and waits for those already accepted to finish.
+   */
+  @Override
+  public void close() {
+    long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+    for (Shard shard : shards) {
+      shard.stop();
+    }
+    for (Shard shard : shards) {
+      try {
+        TimeUnit.NANOSECONDS.timedJoin(shard.thread, Math.max(1, deadline - System.nanoTime()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (shard.thread.isAlive()) {
+        LOG.warn("Payment engine shard {} did not finish {} payments before shutdown",
+            shard.index, shard.unfinished());
+      }
+    }
+  }
+
+  /**
+   * The card number itself, read as an unsigned decimal. Validated numbers have 14 to 19 digits,
+   * which always fit, so two cards share a key only if one is the other with leading zeros.
+   */
+  static long cardKey(String cardNumber) {
+    try {
+      return Long.parseUnsignedLong(cardNumber);
+    } catch (NumberFormatException e) {
+      return cardNumber.hashCode();
+    }
+  }
+
+  private static ServiceUnavailableException unavailable() {
+    return new ServiceUnavailableException("Payment engine shard stopped");
+  }
+
+  private static int spread(long key) {
+    key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+    key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (int) (key ^ (key >>> 33));
+  }
+
+  /**
+   * One payment, published onto its shard's ring twice: once when submitted, and again, with
+   * {@code answered} set, when the bank call completes and the answer has been persisted.
+   */
+  private static final class Job {
+
+    final long card;
+    final Supplier<CompletableFuture<BankResponse>> bankCall;
+    final Function<BankResponse, PaymentResponse> complete;
+    final CompletableFuture<PaymentResponse> result = new CompletableFuture<>();
+
+    // Written before each publication and read by the shard after it; the ring orders the two.
+    boolean answered;
+    PaymentResponse response;
+    Throwable failure;
+    Job next;
+
+    Job(long card, Supplier<CompletableFuture<BankResponse>> bankCall,
+        Function<BankResponse, PaymentResponse> complete) {
+      this.card = card;
+      this.bankCall = bankCall;
+      this.complete = complete;
+    }
+  }
+
+  /**
+   * What a shard knows about one card: the payment at the bank, the payments queued behind it,
+   * and the card's count in the current velocity window.
+   */
+  private static final class CardState {
+
+    Job current;
+    Job head;
+    Job tail;
+    long windowStart;
+    int windowCount;
+  }
+
+  private final class Shard implements Runnable {
+
+    final int index;
+    final PaymentRing<Job> ring;
+    // Unfinished payments, with the STOPPING bit set once the shard takes no more.
+    final AtomicInteger state = new AtomicInteger();
+    final Thread thread;
+    final Map<Long, CardState> cards = new HashMap<>();
+
+    volatile boolean dead;
+    long lastSweep = System.nanoTime();
+    int sinceSweep;
+
+    Shard(int index, int ringSize) {
+      this.index = index;
+      this.ring = new PaymentRing<>(ringSize);
+      this.thread = new Thread(this, "payment-engine-" + index);
+      thread.setDaemon(true);
+    }
+
+    int unfinished() {
+      return state.get() & ~STOPPING;
+    }
+
+    void admit(Job job) {
+      int current;
+      do {
+        current = state.get();
+        if ((current & STOPPING) != 0) {
+          throw new ServiceUnavailableException("Payment engine is closed");
+        }
+        if (current >= ring.capacity()) {
+          throw new ServiceUnavailableException("Payment engine is at capacity");
+        }
+      } while (!state.compareAndSet(current, current + 1));
+      // Cannot fail: each unfinished payment has at most one entry on the ring at a time.
+      ring.offer(job);
+      if (dead) {
+        // The shard may have drained its ring before this job reached it.
+        job.result.completeExceptionally(unavailable());
+      }
+    }
+
+    void stop() {
+      state.getAndUpdate(current -> current | STOPPING);
+      LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+      Job job = null;
+      try {
+        while (state.get() != STOPPING) {
+          job = ring.poll();
+          if (job == null || ++sinceSweep == SWEEP_EVERY) {
+            sinceSweep = 0;
+            sweep();
+          }
+          if (job == null) {
+            ring.awaitEntry();
+          } else if (job.answered) {
+            finish(job);
+          } else {
+            accept(job);
+          }
+        }
+      } catch (Error e) {
+        LOG.error("Payment engine shard {} stopped with {} payments unfinished",
+            index, unfinished(), e);
+        abandon(job);
+        throw e;
+      }
+    }
+
+    /**
+     * Refuses further payments and fails {@code last} and every payment still on the ring, queued
+     * behind a card or at the bank.
+     */
+    private void abandon(Job last) {
+      stop();
+      dead = true;
+      ServiceUnavailableException e = unavailable();
+      if (last != null) {
+        last.result.completeExceptionally(e);
+      }
+      for (Job job = ring.poll(); job != null; job = ring.poll()) {
+        job.result.completeExceptionally(e);
+      }
+      for (CardState card : cards.values()) {
+        if (card.current != null) {
+          card.current.result.completeExceptionally(e);
+        }
+        for (Job job = card.head; job != null; job = job.next) {
+          job.result.completeExceptionally(e);
+        }
+      }
+      cards.clear();
+      state.set(STOPPING);
+    }
+
+    private void accept(Job job) {
+      CardState card = cards.get(job.card);
+      if (card == null) {
+        card = new CardState();
+        cards.put(job.card, card);
+      }
+      if (maxPaymentsPerCard > 0 && !withinVelocity(card)) {
+        done(job, card);
+        job.result.completeExceptionally(
+            new TooManyRequestsException("Too many payments with this card, try again later"));
+        return;
+      }
+      if (card.current != null) {
+        if (card.tail == null) {
+          card.head = job;
+        } else {
+          card.tail.next = job;
+        }
+        card.tail = job;
+      } else {
+        start(job, card);
+      }
+    }
+
+    private boolean withinVelocity(CardState card) {
+      long now = System.nanoTime();
+      if (card.windowCount == 0 || now - card.windowStart >= velocityWindowNanos) {
+        card.windowStart = now;
+        card.windowCount = 0;
+      }
+      return ++card.windowCount <= maxPaymentsPerCard;
+    }
+
+    private void start(Job job, CardState card) {
+      card.current = job;
+      CompletableFuture<BankResponse> call;
+      try {
+        call = job.bankCall.get();
+      } catch (RuntimeException e) {
+        call = CompletableFuture.failedFuture(e);
+      }
+      call.whenComplete((bankResponse, e) -> {
+        if (Thread.currentThread() == thread) {
+          // Already answered, so persisting here would hold up the shard.
+          CompletableFuture.runAsync(() -> answer(job, bankResponse, e));
+        } else {
+          answer(job, bankResponse, e);
+        }
+      });
+    }
+
+    /**
+     * Persists the bank's answer to {@code job} and publishes it back onto the ring.
+     */
+    private void answer(Job job, BankResponse bankResponse, Throwable e) {
+      job.failure = e;
+      if (e == null) {
+        try {
+          job.response = job.complete.apply(bankResponse);
+        } catch (RuntimeException | Error failure) {
+          job.failure = failure;
+        }
+      }
+      job.answered = true;
+      ring.offer(job);
+    }
+
+    private void finish(Job job) {
+      CardState card = cards.get(job.card);
+      Job next = card.head;
+      card.current = null;
+      if (next != null) {
+        card.head = next.next;
+        if (card.head == null) {
+          card.tail = null;
+        }
+        next.next = null;
+        start(next, card);
+      }
+      done(job, card);
+
+      if (job.failure == null) {
+        job.result.complete(job.response);
+      } else {
+        job.result.completeExceptionally(job.failure);
+      }
+    }
+
+    private void done(Job job, CardState card) {
+      state.decrementAndGet();
+      if (maxPaymentsPerCard == 0 && card.current == null && card.head == null) {
+        cards.remove(job.card);
+      }
+    }
+
+    /**
+     * Forgets idle cards whose velocity window has passed, at most once per window. Runs when the
+     * ring is empty and every {@link #SWEEP_EVERY} entries, so the cards a busy shard tracks are
+     * bounded by those seen in about two windows.
+     */
+    private void sweep() {
+      long now = System.nanoTime();
+      if (maxPaymentsPerCard == 0 || now - lastSweep < velocityWindowNanos) {
+        return;
+      }
+      lastSweep = now;
+      Iterator<CardState> states = cards.values().iterator();
+      while (states.hasNext()) {
+        CardState card = states.next();
+        if (card.current == null && card.head == null
+            && now - card.windowStart >= velocityWindowNanos) {
+          states.remove();
+        }
+      }
+    }
+  }
+}
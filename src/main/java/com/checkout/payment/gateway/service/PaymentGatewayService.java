@@ -1,32 +1,78 @@
 package com.checkout.payment.gateway.service;
 
 import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.BankRequestBatcher;
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.enums.CurrencyCodes;
 import com.checkout.payment.gateway.exception.BadRequestException;
 import com.checkout.payment.gateway.exception.NotFoundException;
+import com.checkout.payment.gateway.exception.PaymentRejectedException;
 import com.checkout.payment.gateway.exception.ServiceUnavailableException;
+import com.checkout.payment.gateway.logging.PaymentEvents;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.metrics.PaymentMetrics.Stage;
 import com.checkout.payment.gateway.model.BankRequest;
 import com.checkout.payment.gateway.model.BankResponse;
 import com.checkout.payment.gateway.enums.PaymentStatus;
 import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.model.PaymentPage;
 import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PaymentView;
+import com.checkout.payment.gateway.model.PaymentSearchRequest;
+import com.checkout.payment.gateway.repository.PaymentQuery;
 import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.service.CardVault.CardToken;
+import com.checkout.payment.gateway.service.PaymentJsonCache.SerializedPayment;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import com.checkout.payment.gateway.validator.RequestValidator;
+import com.checkout.payment.gateway.validator.ValidationError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 @Service
 public class PaymentGatewayService {
 
   private static final Logger LOG = LoggerFactory.getLogger(PaymentGatewayService.class);
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int MAX_PAGE_SIZE = 500;
 
   private final PaymentsRepository paymentsRepository;
   private final BankClient bankClient;
+  private final IdempotencyCache idempotencyCache;
+  private final BankRequestBatcher bankRequestBatcher;
+  private final PaymentMetrics metrics;
+  private final PaymentJsonCache paymentJsonCache;
+  private final PaymentEngine paymentEngine;
+  private final CardVault cardVault;
+  private final Function<UUID, PaymentResponse> findPayment;
+  private final Function<UUID, PaymentResponse> findPaymentInMemory;
 
-  public PaymentGatewayService(PaymentsRepository paymentsRepository, BankClient bankClient) {
+  /**
+   * The batcher, engine and vault are optional; each is used only when its bean exists.
+   */
+  public PaymentGatewayService(PaymentsRepository paymentsRepository, BankClient bankClient,
+      IdempotencyCache idempotencyCache, ObjectProvider<BankRequestBatcher> bankRequestBatcher,
+      PaymentMetrics metrics, PaymentJsonCache paymentJsonCache,
+      ObjectProvider<PaymentEngine> paymentEngine, ObjectProvider<CardVault> cardVault) {
     this.paymentsRepository = paymentsRepository;
     this.bankClient = bankClient;
+    this.idempotencyCache = idempotencyCache;
+    this.bankRequestBatcher = bankRequestBatcher.getIfAvailable();
+    this.metrics = metrics;
+    this.paymentJsonCache = paymentJsonCache;
+    this.paymentEngine = paymentEngine.getIfAvailable();
+    this.cardVault = cardVault.getIfAvailable();
+    this.findPayment = id -> paymentsRepository.get(id).orElse(null);
+    this.findPaymentInMemory = paymentsRepository::getInMemory;
   }
 
   public PaymentResponse getPaymentById(UUID id) {
@@ -34,31 +80,402 @@ public class PaymentGatewayService {
     return paymentsRepository.get(id).orElseThrow(() -> new NotFoundException("No payment found for ID " + id));
   }
 
+  /**
+   * The stored payment as the JSON written to clients, serialized on its first read and served
+   * from {@link PaymentJsonCache} after that.
+   */
+  public SerializedPayment getSerializedPayment(UUID id) {
+    SerializedPayment payment = paymentJsonCache.get(id, findPayment);
+    if (payment == null) {
+      throw new NotFoundException("No payment found for ID " + id);
+    }
+    return payment;
+  }
+
+  /**
+   * {@link #getSerializedPayment} for a payment this node holds in memory, or {@code null} if it
+   * would have to be read from the cold store or asked of other nodes, or does not exist.
+   */
+  SerializedPayment getInMemorySerializedPayment(UUID id) {
+    return paymentJsonCache.get(id, findPaymentInMemory);
+  }
+
+  /**
+   * Whether a payment not in memory may be read from disk or fetched from other nodes, which
+   * blocks.
+   */
+  boolean readsBlock() {
+    return paymentsRepository.readsBlock();
+  }
+
+  /**
+   * Stored payments matching the search's filters, newest first, one page at a time. Timestamps
+   * are ISO-8601 instants; an unparseable filter is a {@link BadRequestException}.
+   */
+  public PaymentPage findPayments(PaymentSearchRequest search) {
+    PaymentStatus status = null;
+    if (search.getStatus() != null) {
+      status = PaymentStatus.fromName(search.getStatus());
+      if (status == null) {
+        throw new BadRequestException("Unknown status " + search.getStatus());
+      }
+    }
+    CurrencyCodes currency = null;
+    if (search.getCurrency() != null) {
+      try {
+        currency = CurrencyCodes.valueOf(search.getCurrency());
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException("Unsupported currency " + search.getCurrency());
+      }
+    }
+    Integer cardLastFour = null;
+    if (search.getCardLastFour() != null) {
+      cardLastFour = parseLastFour(search.getCardLastFour());
+    }
+    Instant from = parseInstant("from", search.getFrom());
+    Instant to = parseInstant("to", search.getTo());
+    if (from != null && to != null && !from.isBefore(to)) {
+      throw new BadRequestException("from must be before to");
+    }
+    Integer cursor = search.getCursor() == null ? null : parseInt(search.getCursor(), 0,
+        Integer.MAX_VALUE, "Invalid cursor");
+    int limit = search.getLimit() == null ? DEFAULT_PAGE_SIZE : parseInt(search.getLimit(), 1,
+        MAX_PAGE_SIZE, "limit must be between 1 and " + MAX_PAGE_SIZE);
+    return paymentsRepository.find(
+        new PaymentQuery(status, currency, cardLastFour, from, to, cursor, limit));
+  }
+
   public PaymentResponse processPayment(PostPaymentRequest paymentRequest) {
+    validate(paymentRequest);
+    return authorize(authorization(paymentRequest), Deadline.none());
+  }
+
+  public PaymentResponse processPayment(PostPaymentRequest paymentRequest,
+      IdempotencyKey idempotencyKey) {
+    return processPayment(paymentRequest, idempotencyKey, Deadline.none());
+  }
+
+  /**
+   * Processes the payment once per {@code idempotencyKey}: a retry with the same key and request
+   * gets the stored response, and a duplicate arriving while the first is in flight waits for it.
+   * Reusing the key for a different request is refused. A {@code null} key processes the payment
+   * unconditionally. Invalid requests are rejected before the key is looked up. The bank call,
+   * with any retries, must answer within {@code deadline}.
+   */
+  public PaymentResponse processPayment(PostPaymentRequest paymentRequest,
+      IdempotencyKey idempotencyKey, Deadline deadline) {
+    validate(paymentRequest);
+    if (idempotencyKey == null) {
+      return authorize(authorization(paymentRequest), deadline);
+    }
+    return join(idempotencyCache.getOrProcess(idempotencyKey, fingerprint(paymentRequest),
+        () -> CompletableFuture.completedFuture(
+            authorize(authorization(paymentRequest), deadline))));
+  }
+
+  /**
+   * {@link #processPayment(PostPaymentRequest, IdempotencyKey, Deadline)} for a request still in
+   * its body bytes. Everything needed from {@code payment} is taken before this returns, so the
+   * caller may reuse it straight after.
+   */
+  public PaymentResponse processPayment(PaymentView payment, IdempotencyKey idempotencyKey,
+      Deadline deadline) {
+    validate(payment);
+    if (idempotencyKey == null) {
+      return authorize(authorization(payment), deadline);
+    }
+    return join(idempotencyCache.getOrProcess(idempotencyKey, fingerprint(payment),
+        () -> CompletableFuture.completedFuture(
+            authorize(authorization(payment), deadline))));
+  }
+
+  /**
+   * Validates on the calling thread, then completes once the bank has answered without holding a
+   * thread while the bank call is in flight. Validation failures are thrown directly; bank
+   * failures complete the future exceptionally with {@link ServiceUnavailableException}.
+   */
+  public CompletableFuture<PaymentResponse> processPaymentAsync(
+      PostPaymentRequest paymentRequest) {
+    validate(paymentRequest);
+    return authorizeAsync(authorization(paymentRequest), Deadline.none());
+  }
 
+  public CompletableFuture<PaymentResponse> processPaymentAsync(PostPaymentRequest paymentRequest,
+      IdempotencyKey idempotencyKey) {
+    return processPaymentAsync(paymentRequest, idempotencyKey, Deadline.none());
+  }
+
+  /**
+   * Async variant of {@link #processPayment(PostPaymentRequest, IdempotencyKey, Deadline)}.
+   */
+  public CompletableFuture<PaymentResponse> processPaymentAsync(PostPaymentRequest paymentRequest,
+      IdempotencyKey idempotencyKey, Deadline deadline) {
+    validate(paymentRequest);
+    if (idempotencyKey == null) {
+      return authorizeAsync(authorization(paymentRequest), deadline);
+    }
+    return idempotencyCache.getOrProcess(idempotencyKey, fingerprint(paymentRequest),
+        () -> authorizeAsync(authorization(paymentRequest), deadline));
+  }
+
+  /**
+   * Async variant of {@link #processPayment(PaymentView, IdempotencyKey, Deadline)}.
+   */
+  public CompletableFuture<PaymentResponse> processPaymentAsync(PaymentView payment,
+      IdempotencyKey idempotencyKey, Deadline deadline) {
+    validate(payment);
+    if (idempotencyKey == null) {
+      return authorizeAsync(authorization(payment), deadline);
+    }
+    return idempotencyCache.getOrProcess(idempotencyKey, fingerprint(payment),
+        () -> authorizeAsync(authorization(payment), deadline));
+  }
+
+  byte[] fingerprint(PostPaymentRequest paymentRequest) {
+    return idempotencyCache.fingerprint(paymentRequest.getAmount(),
+        paymentRequest.getCardNumber(), paymentRequest.getExpiryMonth(),
+        paymentRequest.getExpiryYear(), paymentRequest.getCurrency(), paymentRequest.getCvv());
+  }
+
+  private byte[] fingerprint(PaymentView payment) {
+    return idempotencyCache.fingerprint(payment.amount(), payment.cardNumber(),
+        payment.expiryMonth(), payment.expiryYear(), payment.currency(), payment.cvv());
+  }
+
+  /**
+   * A validated payment ready for the bank: the bank request, the key of the card it is ordered
+   * by, and the stored payment with the fields that echo the request already set.
+   */
+  private record Authorization(BankRequest bankRequest, long cardKey, PaymentResponse payment) {
+  }
+
+  /**
+   * The payment ID doubles as the bank's idempotency key, which {@link BankClient} sends, and
+   * retries and hedges on, only for a bank known to deduplicate on it. With the {@link CardVault}
+   * enabled the card number is swapped for its token here, and the token's key stands in for the
+   * card from then on. The card number and CVV travel encrypted with the bank request.
+   */
+  private Authorization authorization(PostPaymentRequest paymentRequest) {
+    UUID paymentId = UUID.randomUUID();
+    if (cardVault != null) {
+      CardToken token = cardVault.tokenize(paymentRequest.getCardNumber());
+      BankRequest bankRequest = tokenized(token, paymentRequest.getCvv(), paymentId,
+          BankRequest.toJson("", paymentRequest.getExpiryMonth(), paymentRequest.getExpiryYear(),
+              paymentRequest.getCurrency(), paymentRequest.getAmount(), ""));
+      return new Authorization(bankRequest, token.key(), echoRequest(paymentId, paymentRequest));
+    }
+    BankRequest bankRequest = populateBankRequest(paymentRequest);
+    bankRequest.setIdempotencyKey(paymentId.toString());
+    return new Authorization(bankRequest, PaymentEngine.cardKey(paymentRequest.getCardNumber()),
+        echoRequest(paymentId, paymentRequest));
+  }
+
+  private Authorization authorization(PaymentView payment) {
     UUID paymentId = UUID.randomUUID();
+    PaymentResponse response = new PaymentResponse();
+    response.setId(paymentId);
+    payment.copyTo(response);
+    if (cardVault != null) {
+      CardToken token = cardVault.tokenize(payment.cardNumber());
+      BankRequest bankRequest = tokenized(token, payment.cvv(), paymentId, BankRequest.toJson("",
+          payment.expiryMonth(), payment.expiryYear(), payment.currency(), payment.amount(), ""));
+      return new Authorization(bankRequest, token.key(), response);
+    }
+    BankRequest bankRequest = new BankRequest();
+    bankRequest.setJson(payment.toBankJson());
+    bankRequest.setIdempotencyKey(paymentId.toString());
+    return new Authorization(bankRequest, payment.cardKey(), response);
+  }
 
+  private BankRequest tokenized(CardToken token, CharSequence cvv, UUID paymentId,
+      byte[] json) {
+    BankRequest bankRequest = new BankRequest();
+    bankRequest.setJson(json);
+    bankRequest.setEncryptedCardNumber(token.cardNumber());
+    bankRequest.setEncryptedCvv(cardVault.encryptCvv(cvv));
+    bankRequest.setIdempotencyKey(paymentId.toString());
+    return bankRequest;
+  }
+
+  /**
+   * The request to send for {@code bankRequest}: itself, or for a tokenized card a copy whose body
+   * has the card number and CVV back in it, which {@link #forget} zeroes once the call is over.
+   */
+  private BankRequest withCardNumber(BankRequest bankRequest) {
+    if (bankRequest.getEncryptedCardNumber() == null) {
+      return bankRequest;
+    }
+    BankRequest withCardNumber = new BankRequest();
+    withCardNumber.setJson(cardVault.withCardDetails(bankRequest.getJson(),
+        bankRequest.getEncryptedCardNumber(), bankRequest.getEncryptedCvv()));
+    withCardNumber.setIdempotencyKey(bankRequest.getIdempotencyKey());
+    return withCardNumber;
+  }
+
+  private static void forget(BankRequest sent, BankRequest bankRequest) {
+    if (sent != bankRequest) {
+      Arrays.fill(sent.getJson(), (byte) 0);
+    }
+  }
+
+  /**
+   * With the {@link PaymentEngine} enabled the payment is handed to its card's shard, and this
+   * thread waits for the shard to finish it.
+   */
+  private PaymentResponse authorize(Authorization authorization, Deadline deadline) {
+    if (paymentEngine != null) {
+      return join(authorizeAsync(authorization, deadline));
+    }
+    long bankStart = System.nanoTime();
+    BankRequest sent = withCardNumber(authorization.bankRequest());
+    BankResponse bankResponse;
     try {
-      RequestValidator.validateRequest(paymentRequest);
-    } catch (IllegalArgumentException e) {
-      LOG.error("Payment request validation failed for ID {}: {}", paymentId, e.getMessage());
-      throw new BadRequestException("Validation failed: " + e.getMessage());
+      bankResponse = bankRequestBatcher == null
+          ? bankClient.processPayment(sent, deadline)
+          : bankRequestBatcher.submit(sent, deadline).join();
+    } finally {
+      forget(sent, authorization.bankRequest());
     }
+    metrics.record(Stage.BANK, bankStart);
+
+    return completePayment(bankResponse, authorization.payment());
+  }
+
+  CompletableFuture<PaymentResponse> authorizeAsync(PostPaymentRequest paymentRequest,
+      Deadline deadline) {
+    return authorizeAsync(authorization(paymentRequest), deadline);
+  }
 
-    BankResponse bankResponse = bankClient.processPayment(populateBankRequest(paymentRequest));
+  private CompletableFuture<PaymentResponse> authorizeAsync(Authorization authorization,
+      Deadline deadline) {
+    if (paymentEngine != null) {
+      return paymentEngine.submit(authorization.cardKey(),
+          () -> callBank(authorization.bankRequest(), deadline),
+          bankResponse -> completePayment(bankResponse, authorization.payment()));
+    }
+    return callBank(authorization.bankRequest(), deadline)
+        .thenApply(bankResponse -> completePayment(bankResponse, authorization.payment()));
+  }
+
+  private CompletableFuture<BankResponse> callBank(BankRequest bankRequest, Deadline deadline) {
+    long bankStart = System.nanoTime();
+    BankRequest sent = withCardNumber(bankRequest);
+    CompletableFuture<BankResponse> bankCall = bankRequestBatcher == null
+        ? bankClient.processPaymentAsync(sent, deadline)
+        : bankRequestBatcher.submit(sent, deadline);
+    return bankCall.whenComplete((bankResponse, e) -> {
+      forget(sent, bankRequest);
+      metrics.record(Stage.BANK, bankStart);
+    });
+  }
+
+  /**
+   * Rejects an invalid request with the shared {@link PaymentRejectedException} for its error,
+   * before a payment ID is generated or anything else is allocated.
+   */
+  void validate(PostPaymentRequest paymentRequest) {
+    long startNanos = System.nanoTime();
+    ValidationError error = RequestValidator.validate(paymentRequest);
+    metrics.record(Stage.VALIDATE, startNanos);
+    if (error != null) {
+      reject(error);
+    }
+  }
+
+  private void validate(PaymentView payment) {
+    long startNanos = System.nanoTime();
+    ValidationError error = RequestValidator.validate(payment);
+    metrics.record(Stage.VALIDATE, startNanos);
+    if (error != null) {
+      reject(error);
+    }
+  }
+
+  private void reject(ValidationError error) {
+    metrics.recordOutcome(PaymentStatus.REJECTED);
+    PaymentEvents.rejected(error);
+    throw PaymentRejectedException.of(error);
+  }
 
+  PaymentResponse completePayment(UUID paymentId, BankResponse bankResponse,
+      PostPaymentRequest paymentRequest) {
+    return completePayment(bankResponse, echoRequest(paymentId, paymentRequest));
+  }
+
+  /**
+   * Settles {@code response}, which already echoes the request, with the bank's answer and stores
+   * it.
+   */
+  private PaymentResponse completePayment(BankResponse bankResponse, PaymentResponse response) {
     if (bankResponse.getHttpStatusCode() == 503) {
       throw new ServiceUnavailableException("Bank service unavailable");
     }
 
-    PaymentResponse response = populatePaymentResponse(paymentId, bankResponse, paymentRequest);
+    settle(response, bankResponse);
+    long startNanos = System.nanoTime();
     paymentsRepository.add(response);
+    metrics.record(Stage.PERSIST, startNanos);
+    metrics.recordOutcome(response.getStatus());
+    PaymentEvents.processed(response.getId(), response.getStatus(), response.getCurrency(),
+        response.getAmount());
 
     return response;
   }
 
 
-  private BankRequest populateBankRequest(PostPaymentRequest paymentRequest) {
+  private static Instant parseInstant(String name, String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Instant.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new BadRequestException(name + " must be an ISO-8601 instant");
+    }
+  }
+
+  /**
+   * Four decimal digits as their value, checked a character at a time rather than by regex.
+   */
+  private static int parseLastFour(String lastFour) {
+    int value = lastFour.length() == 4 ? 0 : -1;
+    for (int i = 0; i < lastFour.length() && value >= 0; i++) {
+      char c = lastFour.charAt(i);
+      value = c >= '0' && c <= '9' ? value * 10 + c - '0' : -1;
+    }
+    if (value < 0) {
+      throw new BadRequestException("Card last four must be 4 digits");
+    }
+    return value;
+  }
+
+  private static int parseInt(String value, int min, int max, String error) {
+    try {
+      int parsed = Integer.parseInt(value);
+      if (parsed >= min && parsed <= max) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new BadRequestException(error);
+  }
+
+  /**
+   * Waits for {@code payment}, rethrowing its own exception rather than the wrapper.
+   */
+  private static PaymentResponse join(CompletableFuture<PaymentResponse> payment) {
+    try {
+      return payment.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  static BankRequest populateBankRequest(PostPaymentRequest paymentRequest) {
     BankRequest bankRequest = new BankRequest();
     bankRequest.setCardNumber(paymentRequest.getCardNumber());
     bankRequest.setExpiryDate(paymentRequest.getExpiryMonth() + "/" + paymentRequest.getExpiryYear());
@@ -68,9 +485,14 @@ public class PaymentGatewayService {
     return bankRequest;
   }
 
-  private PaymentResponse populatePaymentResponse(UUID paymentId, BankResponse bankResponse,
+  static PaymentResponse populatePaymentResponse(UUID paymentId, BankResponse bankResponse,
       PostPaymentRequest paymentRequest) {
+    PaymentResponse response = echoRequest(paymentId, paymentRequest);
+    settle(response, bankResponse);
+    return response;
+  }
 
+  private static PaymentResponse echoRequest(UUID paymentId, PostPaymentRequest paymentRequest) {
     PaymentResponse response = new PaymentResponse();
 
     String cardNumber = paymentRequest.getCardNumber();
@@ -78,12 +500,16 @@ public class PaymentGatewayService {
 
     response.setCardNumberLastFour(lastFourDigits);
     response.setId(paymentId);
-    response.setStatus(bankResponse.isAuthorized() ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
     response.setExpiryMonth(paymentRequest.getExpiryMonth());
     response.setExpiryYear(paymentRequest.getExpiryYear());
     response.setCurrency(paymentRequest.getCurrency());
     response.setAmount(paymentRequest.getAmount());
-    
     return response;
   }
+
+  private static void settle(PaymentResponse response, BankResponse bankResponse) {
+    response.setStatus(
+        bankResponse.isAuthorized() ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    response.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+  }
 }
@@ -0,0 +1,74 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.exception.InternalServerException;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized JSON for recently read payments, keyed by payment ID and bounded to
+ * {@code maximumSize} entries. A payment never changes once stored, so its bytes are built on the
+ * first read and then written as they are for every later read. Each entry carries a strong ETag
+ * computed from the bytes, so a client polling with {@code If-None-Match} can be answered 304.
+ */
+@Component
+public class PaymentJsonCache {
+
+  /**
+   * A payment as it is written to the client, and its quoted ETag.
+   */
+  public record SerializedPayment(byte[] json, String etag) {
+  }
+
+  private final ObjectMapper objectMapper;
+  private final Cache<UUID, SerializedPayment> payments;
+
+  public PaymentJsonCache(ObjectMapper objectMapper,
+      @Value("${payments.json-cache.maximum-size:100000}") long maximumSize) {
+    this.objectMapper = objectMapper;
+    this.payments = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /**
+   * Returns the cached bytes for {@code id}, serializing the payment found by {@code lookup} on a
+   * miss, or {@code null} if there is no such payment.
+   */
+  public SerializedPayment get(UUID id, Function<UUID, PaymentResponse> lookup) {
+    return payments.get(id, key -> {
+      PaymentResponse payment = lookup.apply(key);
+      return payment == null ? null : serialize(payment);
+    });
+  }
+
+  /**
+   * Forgets {@code id}, for when the payment it was built from is removed.
+   */
+  public void invalidate(UUID id) {
+    payments.invalidate(id);
+  }
+
+  private SerializedPayment serialize(PaymentResponse payment) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(payment);
+    } catch (JsonProcessingException e) {
+      throw new InternalServerException("Unable to serialize payment " + payment.getId());
+    }
+    CRC32C checksum = new CRC32C();
+    checksum.update(json);
+    return new SerializedPayment(json, String.format("\"%08x\"", checksum.getValue()));
+  }
+
+  long size() {
+    return payments.estimatedSize();
+  }
+}
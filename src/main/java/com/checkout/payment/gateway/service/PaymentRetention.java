@@ -0,0 +1,132 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.repository.ColdPaymentStore;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the payments held in memory to {@code maxEntries} and {@code maxAge}. A sweeper thread
+ * wakes every {@code sweepInterval} and evicts at most {@code sweepBatch} of the oldest payments,
+ * so a backlog is worked off in short steps that never hold the repository for long. A zero bound
+ * is disabled, and with both disabled no sweeper runs.
+ *
+ * <ul>
+ *   <li>{@code payments.retention.evictions} counters tagged by {@code reason}: {@code size} or
+ *   {@code age}.</li>
+ *   <li>{@code payments.retention.sweep} timer for each sweep that evicted something.</li>
+ *   <li>{@code payments.retention.retained} and {@code payments.retention.cold.size} gauges.</li>
+ * </ul>
+ *
+ * <p>Heap use is covered by the JVM meters, {@code jvm.memory.used} and
+ * {@code jvm.gc.live.data.size}.
+ */
+public class PaymentRetention implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PaymentRetention.class);
+
+  private final PaymentsRepository paymentsRepository;
+  private final PaymentJsonCache paymentJsonCache;
+  private final ColdPaymentStore coldStore;
+  private final int maxEntries;
+  private final Duration maxAge;
+  private final int sweepBatch;
+  private final Counter evictedBySize;
+  private final Counter evictedByAge;
+  private final Timer sweeps;
+  private final ScheduledExecutorService sweeper;
+
+  public PaymentRetention(PaymentsRepository paymentsRepository,
+      PaymentJsonCache paymentJsonCache, ColdPaymentStore coldStore, MeterRegistry registry,
+      int maxEntries, Duration maxAge, Duration sweepInterval, int sweepBatch) {
+    if (maxEntries < 0 || maxAge.isNegative() || sweepBatch < 1) {
+      throw new IllegalArgumentException("Retention bounds must not be negative");
+    }
+    this.paymentsRepository = paymentsRepository;
+    this.paymentJsonCache = paymentJsonCache;
+    this.coldStore = coldStore;
+    this.maxEntries = maxEntries;
+    this.maxAge = maxAge.isZero() ? null : maxAge;
+    this.sweepBatch = sweepBatch;
+    this.evictedBySize = eviction(registry, "size");
+    this.evictedByAge = eviction(registry, "age");
+    this.sweeps = Timer.builder("payments.retention.sweep")
+        .description("Time spent in each sweep that evicted payments")
+        .register(registry);
+    Gauge.builder("payments.retention.retained", paymentsRepository,
+            PaymentsRepository::retained)
+        .description("Payments held in memory and subject to retention")
+        .register(registry);
+    if (coldStore != null) {
+      Gauge.builder("payments.retention.cold.size", coldStore, ColdPaymentStore::size)
+          .description("Payments evicted to the cold store")
+          .register(registry);
+    }
+
+    if (maxEntries == 0 && this.maxAge == null) {
+      this.sweeper = null;
+      return;
+    }
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "payment-retention");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalNanos = sweepInterval.toNanos();
+    sweeper.scheduleWithFixedDelay(this::sweepSafely, intervalNanos, intervalNanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Evicts one batch and returns how many payments left memory.
+   */
+  int sweep() {
+    long startNanos = System.nanoTime();
+    Instant cutoff = maxAge == null ? null : Instant.now().minus(maxAge);
+    int evicted = paymentsRepository.evict(maxEntries, cutoff, sweepBatch, this::evicted);
+    if (coldStore != null) {
+      coldStore.flushIfDue();
+    }
+    if (evicted > 0) {
+      sweeps.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    return evicted;
+  }
+
+  @Override
+  public void close() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+    }
+  }
+
+  private void sweepSafely() {
+    try {
+      sweep();
+    } catch (RuntimeException e) {
+      LOG.warn("Payment retention sweep failed", e);
+    }
+  }
+
+  private void evicted(UUID id, boolean expired) {
+    paymentJsonCache.invalidate(id);
+    (expired ? evictedByAge : evictedBySize).increment();
+  }
+
+  private static Counter eviction(MeterRegistry registry, String reason) {
+    return Counter.builder("payments.retention.evictions")
+        .tag("reason", reason)
+        .description("Payments evicted from memory, by the bound they exceeded")
+        .register(registry);
+  }
+}
@@ -0,0 +1,158 @@
+package com.checkout.payment.gateway.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free ring of entries for one consumer thread and any number of producers, laid
+ * out the way the LMAX Disruptor lays out its multi-producer ring. Producers claim a sequence with
+ * a CAS on {@code claimed}, write the entry into its preallocated slot and then publish it by
+ * storing the sequence's lap in that slot's {@code available} flag, so a slow producer holds back
+ * only the slots after its own. The consumer reads slots in sequence order and frees each one by
+ * advancing {@code consumed}, which producers check to avoid lapping it.
+ *
+ * <p>The consumer parks when the ring is empty; a producer unparks it after publishing.
+ */
+final class PaymentRing<E> {
+
+  private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+  private final Object[] entries;
+  private final int[] available;
+  private final int mask;
+  private final int lapShift;
+  private final Sequence claimed = new Sequence();
+  private final Sequence consumed = new Sequence();
+
+  private volatile Thread parkedConsumer;
+
+  PaymentRing(int capacity) {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two");
+    }
+    this.entries = new Object[capacity];
+    this.available = new int[capacity];
+    Arrays.fill(available, -1);
+    this.mask = capacity - 1;
+    this.lapShift = Integer.numberOfTrailingZeros(capacity);
+  }
+
+  int capacity() {
+    return entries.length;
+  }
+
+  /**
+   * Publishes {@code entry}, or returns {@code false} without waiting if every slot is taken.
+   */
+  boolean offer(E entry) {
+    long sequence;
+    long current;
+    do {
+      current = claimed.get();
+      sequence = current + 1;
+      if (sequence - entries.length > consumed.get()) {
+        return false;
+      }
+    } while (!claimed.compareAndSet(current, sequence));
+
+    int index = (int) sequence & mask;
+    entries[index] = entry;
+    // A volatile store, so it is ordered before the read of parkedConsumer below; the consumer
+    // does the same in reverse, and one of the two always sees the other.
+    AVAILABLE.setVolatile(available, index, lap(sequence));
+    Thread consumer = parkedConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+    return true;
+  }
+
+  /**
+   * The next entry in sequence order, or {@code null} if it has not been published yet. Only the
+   * consumer thread may call this.
+   */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    long next = consumed.get() + 1;
+    int index = (int) next & mask;
+    if ((int) AVAILABLE.getAcquire(available, index) != lap(next)) {
+      return null;
+    }
+    E entry = (E) entries[index];
+    entries[index] = null;
+    consumed.setRelease(next);
+    return entry;
+  }
+
+  /**
+   * Parks the consumer thread until an entry is published or it is unparked for another reason.
+   * Returns at once if an entry is already waiting.
+   */
+  void awaitEntry() {
+    parkedConsumer = Thread.currentThread();
+    long next = consumed.get() + 1;
+    if ((int) AVAILABLE.getVolatile(available, (int) next & mask) != lap(next)) {
+      LockSupport.park(this);
+    }
+    parkedConsumer = null;
+  }
+
+  private int lap(long sequence) {
+    return (int) (sequence >>> lapShift);
+  }
+
+  /**
+   * A sequence counter padded to a cache line on each side, so the producers' CAS on
+   * {@code claimed} does not keep invalidating the line the consumer's {@code consumed} sits on.
+   */
+  private static class LeftPadding {
+
+    long p01;
+    long p02;
+    long p03;
+    long p04;
+    long p05;
+    long p06;
+    long p07;
+  }
+
+  private static class SequenceValue extends LeftPadding {
+
+    volatile long value = -1;
+  }
+
+  private static final class Sequence extends SequenceValue {
+
+    private static final VarHandle VALUE;
+
+    static {
+      try {
+        VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    long p11;
+    long p12;
+    long p13;
+    long p14;
+    long p15;
+    long p16;
+    long p17;
+
+    long get() {
+      return value;
+    }
+
+    void setRelease(long newValue) {
+      VALUE.setRelease(this, newValue);
+    }
+
+    boolean compareAndSet(long expected, long newValue) {
+      return VALUE.compareAndSet(this, expected, newValue);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.client.ReactiveBankClient;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.metrics.PaymentMetrics.Stage;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.model.PostPaymentRequest;
+import com.checkout.payment.gateway.repository.PaymentJournal;
+import com.checkout.payment.gateway.service.PaymentJsonCache.SerializedPayment;
+import java.util.UUID;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link PaymentGatewayService} for the reactive runtime. Validation, mapping, persistence,
+ * metrics and events are the blocking service's own; only the bank call is swapped for
+ * {@link ReactiveBankClient}, so a payment never holds a thread while the bank is answering.
+ */
+@Service
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactivePaymentGatewayService {
+
+  private final PaymentGatewayService paymentGatewayService;
+  private final ReactiveBankClient bankClient;
+  private final IdempotencyCache idempotencyCache;
+  private final PaymentMetrics metrics;
+  private final Scheduler persistScheduler;
+
+  public ReactivePaymentGatewayService(PaymentGatewayService paymentGatewayService,
+      ReactiveBankClient bankClient, IdempotencyCache idempotencyCache, PaymentMetrics metrics,
+      ObjectProvider<PaymentJournal> journal) {
+    this.paymentGatewayService = paymentGatewayService;
+    this.bankClient = bankClient;
+    this.idempotencyCache = idempotencyCache;
+    this.metrics = metrics;
+    // A journaled write can wait for its flush, which must not happen on the event loop.
+    this.persistScheduler = journal.getIfAvailable() == null
+        ? Schedulers.immediate()
+        : Schedulers.boundedElastic();
+  }
+
+  /**
+   * The stored payment's JSON. A payment held in memory is found on the calling thread; one that
+   * has to be read from the cold store or asked of other cluster nodes, including one that does
+   * not exist, is looked up on {@link Schedulers#boundedElastic()}, as the lookup blocks on the
+   * disk or the network.
+   */
+  public Mono<SerializedPayment> getSerializedPayment(UUID id) {
+    return Mono.defer(() -> {
+      if (!paymentGatewayService.readsBlock()) {
+        return Mono.just(paymentGatewayService.getSerializedPayment(id));
+      }
+      SerializedPayment payment = paymentGatewayService.getInMemorySerializedPayment(id);
+      if (payment != null) {
+        return Mono.just(payment);
+      }
+      return Mono.fromCallable(() -> paymentGatewayService.getSerializedPayment(id))
+          .subscribeOn(Schedulers.boundedElastic());
+    });
+  }
+
+  /**
+   * Reactive variant of
+   * {@link PaymentGatewayService#processPayment(PostPaymentRequest, IdempotencyKey, Deadline)}.
+   * Invalid requests are rejected when the returned {@link Mono} is subscribed, before the key is
+   * looked up or the bank is called.
+   */
+  public Mono<PaymentResponse> processPayment(PostPaymentRequest paymentRequest,
+      IdempotencyKey idempotencyKey, Deadline deadline) {
+    return Mono.defer(() -> {
+      paymentGatewayService.validate(paymentRequest);
+      if (idempotencyKey == null) {
+        return authorize(paymentRequest, deadline);
+      }
+      // Duplicates share the first request's future, so one cancelling must not cancel it.
+      return Mono.fromFuture(idempotencyCache.getOrProcess(idempotencyKey,
+          paymentGatewayService.fingerprint(paymentRequest),
+          () -> authorize(paymentRequest, deadline).toFuture()), true);
+    });
+  }
+
+  private Mono<PaymentResponse> authorize(PostPaymentRequest paymentRequest,
+      Deadline deadline) {
+    UUID paymentId = UUID.randomUUID();
+    BankRequest bankRequest = PaymentGatewayService.populateBankRequest(paymentRequest);
+    long bankStart = System.nanoTime();
+    return bankClient.processPayment(bankRequest, deadline)
+        .doOnNext(bankResponse -> metrics.record(Stage.BANK, bankStart))
+        .publishOn(persistScheduler)
+        .map(bankResponse -> paymentGatewayService.completePayment(paymentId, bankResponse,
+            paymentRequest));
+  }
+}
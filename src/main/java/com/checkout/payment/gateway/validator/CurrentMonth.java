@@ -0,0 +1,43 @@
+package com.checkout.payment.gateway.validator;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+
+/**
+ * The current month as a single {@code year * 12 + month - 1} index, recomputed only when the
+ * clock passes the start of the next month. Reading it costs one clock read and no allocation.
+ */
+class CurrentMonth {
+
+  private record Snapshot(int index, long rolloverMillis) {
+  }
+
+  private final Clock clock;
+  private volatile Snapshot snapshot;
+
+  CurrentMonth(Clock clock) {
+    this.clock = clock;
+    this.snapshot = snapshot();
+  }
+
+  int index() {
+    Snapshot current = snapshot;
+    if (clock.millis() >= current.rolloverMillis()) {
+      current = snapshot();
+      snapshot = current;
+    }
+    return current.index();
+  }
+
+  static int index(int year, int month) {
+    return year * 12 + month - 1;
+  }
+
+  private Snapshot snapshot() {
+    YearMonth now = YearMonth.now(clock);
+    long rollover = ZonedDateTime.of(now.plusMonths(1).atDay(1).atStartOfDay(), clock.getZone())
+        .toInstant().toEpochMilli();
+    return new Snapshot(index(now.getYear(), now.getMonthValue()), rollover);
+  }
+}
@@ -1,97 +1,192 @@
 package com.checkout.payment.gateway.validator;
 
 import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.model.PaymentView;
 import com.checkout.payment.gateway.model.PostPaymentRequest;
-
+import java.time.Clock;
+
+/**
+ * Checks a payment request field by field with plain character scans. A valid request is checked
+ * without allocating; the first failure is returned as a {@link ValidationError} rather than
+ * thrown. Fields are read as {@link CharSequence}s, so a {@link PaymentView} is checked in place
+ * over its request bytes with the same rules as a {@link PostPaymentRequest}.
+ */
 public class RequestValidator {
 
 
   public static final int MAX_CARD_LENGTH = 19;
   public static final int MIN_CARD_LENGTH = 14;
 
+  private static final CurrencyCodes[] CURRENCIES = CurrencyCodes.values();
+  private static final CurrentMonth CURRENT_MONTH = new CurrentMonth(Clock.systemDefaultZone());
+
+  /**
+   * Returns the first problem with {@code request}, or {@code null} if it is valid.
+   */
+  public static ValidationError validate(PostPaymentRequest request) {
+    return validate(request, CURRENT_MONTH.index());
+  }
+
+  /**
+   * Returns the first problem with the request in {@code payment}, or {@code null} if it is valid.
+   */
+  public static ValidationError validate(PaymentView payment) {
+    return validate(payment, CURRENT_MONTH.index());
+  }
+
+  /**
+   * Throwing variant of {@link #validate(PostPaymentRequest)}.
+   *
+   * @throws IllegalArgumentException with the {@link ValidationError} message
+   */
   public static void validateRequest(PostPaymentRequest request) {
-    validateCardNumber(request.getCardNumber());
-    validateExpiryDate(request.getExpiryMonth(), request.getExpiryYear());
-    validateCurrency(request.getCurrency());
-    validateAmount(request.getAmount());
-    validateCvv(request.getCvv());
+    ValidationError error = validate(request);
+    if (error != null) {
+      throw new IllegalArgumentException(error.getMessage());
+    }
+  }
+
+  static ValidationError validate(PostPaymentRequest request, int currentMonth) {
+    Integer amount = request.getAmount();
+    return validate(request.getCardNumber(), request.getExpiryMonth(), request.getExpiryYear(),
+        request.getCurrency(), amount != null, amount == null ? 0 : amount, request.getCvv(),
+        currentMonth);
+  }
+
+  static ValidationError validate(PaymentView payment, int currentMonth) {
+    return validate(payment.cardNumber(), payment.expiryMonth(), payment.expiryYear(),
+        payment.currency(), payment.hasAmount(), payment.amount(), payment.cvv(), currentMonth);
   }
 
-  private static void validateCardNumber(String cardNumber) {
+  private static ValidationError validate(CharSequence cardNumber, CharSequence expiryMonth,
+      CharSequence expiryYear, CharSequence currency, boolean hasAmount, int amount,
+      CharSequence cvv, int currentMonth) {
+    ValidationError error = validateCardNumber(cardNumber);
+    if (error == null) {
+      error = validateExpiryDate(expiryMonth, expiryYear, currentMonth);
+    }
+    if (error == null) {
+      error = validateCurrency(currency);
+    }
+    if (error == null) {
+      error = validateAmount(hasAmount, amount);
+    }
+    if (error == null) {
+      error = validateCvv(cvv);
+    }
+    return error;
+  }
+
+  private static ValidationError validateCardNumber(CharSequence cardNumber) {
     if (cardNumber == null || cardNumber.isEmpty()) {
-      throw new IllegalArgumentException("Card number is required");
+      return ValidationError.CARD_NUMBER_REQUIRED;
     }
 
-    if (!cardNumber.matches("\\d+")) {
-      throw new IllegalArgumentException("Card number must contain only numeric characters");
+    if (!isDigits(cardNumber)) {
+      return ValidationError.CARD_NUMBER_NOT_NUMERIC;
     }
 
     if (cardNumber.length() < MIN_CARD_LENGTH || cardNumber.length() > MAX_CARD_LENGTH) {
-      throw new IllegalArgumentException("Card number must be at least " + MIN_CARD_LENGTH + " digits long and at most " + MAX_CARD_LENGTH + " digits long");
+      return ValidationError.CARD_NUMBER_LENGTH;
     }
+    return null;
   }
 
-  private static void validateExpiryDate(String expiryMonth, String expiryYear) {
-    String expiryDate = expiryMonth + "/" + expiryYear;
-
-    if (expiryDate.equals("/")) {
-      throw new IllegalArgumentException("Expiry date is required");
+  private static ValidationError validateExpiryDate(CharSequence expiryMonth,
+      CharSequence expiryYear, int currentMonth) {
+    // Absent, null or empty, in both fields is a missing date; absent in one is a bad format
+    if (isEmpty(expiryMonth) && isEmpty(expiryYear)) {
+      return ValidationError.EXPIRY_DATE_REQUIRED;
     }
 
-    if (!expiryDate.matches("^(0[1-9]|1[0-2])/\\d{2,4}$")) {
-      throw new IllegalArgumentException("Expiry date must be in format MM/YYYY");
+    // MM is 01-12 and the year 2-4 digits, where a 2-digit year means 20YY
+    if (expiryMonth == null || expiryMonth.length() != 2 || expiryYear == null
+        || expiryYear.length() < 2 || expiryYear.length() > 4 || !isDigits(expiryMonth)
+        || !isDigits(expiryYear)) {
+      return ValidationError.EXPIRY_DATE_FORMAT;
     }
-
-    String[] parts = expiryDate.split("/");
-    int month = Integer.parseInt(parts[0]);
-    int year = Integer.parseInt(parts[1].length() == 2 ? "20" + parts[1] : parts[1]);
-
+    int month = parseDigits(expiryMonth);
     if (month < 1 || month > 12) {
-      throw new IllegalArgumentException("Expiry month must be between 1 and 12");
+      return ValidationError.EXPIRY_DATE_FORMAT;
+    }
+    int year = parseDigits(expiryYear);
+    if (expiryYear.length() == 2) {
+      year += 2000;
     }
 
-    java.time.YearMonth now = java.time.YearMonth.now();
-    java.time.YearMonth exp = java.time.YearMonth.of(year, month);
-
-    if (exp.isBefore(now)) {
-      throw new IllegalArgumentException("Expiry date must be in the future");
+    if (CurrentMonth.index(year, month) < currentMonth) {
+      return ValidationError.EXPIRY_DATE_IN_PAST;
     }
+    return null;
   }
 
-  private static void validateCurrency(String currency) {
+  private static ValidationError validateCurrency(CharSequence currency) {
     if (currency == null || currency.isEmpty()) {
-      throw new IllegalArgumentException("Currency is required");
+      return ValidationError.CURRENCY_REQUIRED;
     }
 
-    if (!currency.matches("[A-Z]{3}")) {
-      throw new IllegalArgumentException("Currency must be a 3-letter uppercase code");
+    if (currency.length() != 3) {
+      return ValidationError.CURRENCY_FORMAT;
+    }
+    for (int i = 0; i < 3; i++) {
+      char c = currency.charAt(i);
+      if (c < 'A' || c > 'Z') {
+        return ValidationError.CURRENCY_FORMAT;
+      }
     }
 
-    try {
-      CurrencyCodes.valueOf(currency);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException("Currency code is not supported. Supported currencies: " + java.util.Arrays.toString(CurrencyCodes.values()));
+    for (CurrencyCodes supported : CURRENCIES) {
+      if (supported.name().contentEquals(currency)) {
+        return null;
+      }
     }
+    return ValidationError.CURRENCY_NOT_SUPPORTED;
   }
 
-  private static void validateAmount(int amount) {
+  private static ValidationError validateAmount(boolean hasAmount, int amount) {
+    if (!hasAmount) {
+      return ValidationError.AMOUNT_REQUIRED;
+    }
     if (amount <= 0) {
-      throw new IllegalArgumentException("Amount must be greater than 0");
+      return ValidationError.AMOUNT_NOT_POSITIVE;
     }
+    return null;
   }
 
-  private static void validateCvv(String cvv) {
+  private static ValidationError validateCvv(CharSequence cvv) {
     if (cvv == null || cvv.isEmpty()) {
-      throw new IllegalArgumentException("CVV is required");
+      return ValidationError.CVV_REQUIRED;
     }
 
-    if (!cvv.matches("\\d+")) {
-      throw new IllegalArgumentException("CVV must contain only numeric characters");
+    if (!isDigits(cvv)) {
+      return ValidationError.CVV_NOT_NUMERIC;
     }
 
     if (cvv.length() != 3 && cvv.length() != 4) {
-      throw new IllegalArgumentException("CVV must be 3 or 4 digits long");
+      return ValidationError.CVV_LENGTH;
     }
+    return null;
   }
 
+  private static boolean isEmpty(CharSequence value) {
+    return value == null || value.isEmpty();
+  }
+
+  private static boolean isDigits(CharSequence value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int parseDigits(CharSequence digits) {
+    int value = 0;
+    for (int i = 0; i < digits.length(); i++) {
+      value = value * 10 + digits.charAt(i) - '0';
+    }
+    return value;
+  }
 }
@@ -0,0 +1,38 @@
+package com.checkout.payment.gateway.validator;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import java.util.Arrays;
+
+/**
+ * Reasons a {@link com.checkout.payment.gateway.model.PostPaymentRequest} can be rejected, with
+ * the message reported to the client.
+ */
+public enum ValidationError {
+
+  CARD_NUMBER_REQUIRED("Card number is required"),
+  CARD_NUMBER_NOT_NUMERIC("Card number must contain only numeric characters"),
+  CARD_NUMBER_LENGTH("Card number must be at least " + RequestValidator.MIN_CARD_LENGTH
+      + " digits long and at most " + RequestValidator.MAX_CARD_LENGTH + " digits long"),
+  EXPIRY_DATE_REQUIRED("Expiry date is required"),
+  EXPIRY_DATE_FORMAT("Expiry date must be in format MM/YYYY"),
+  EXPIRY_DATE_IN_PAST("Expiry date must be in the future"),
+  CURRENCY_REQUIRED("Currency is required"),
+  CURRENCY_FORMAT("Currency must be a 3-letter uppercase code"),
+  CURRENCY_NOT_SUPPORTED("Currency code is not supported. Supported currencies: "
+      + Arrays.toString(CurrencyCodes.values())),
+  AMOUNT_REQUIRED("Amount is required"),
+  AMOUNT_NOT_POSITIVE("Amount must be greater than 0"),
+  CVV_REQUIRED("CVV is required"),
+  CVV_NOT_NUMERIC("CVV must contain only numeric characters"),
+  CVV_LENGTH("CVV must be 3 or 4 digits long");
+
+  private final String message;
+
+  ValidationError(String message) {
+    this.message = message;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
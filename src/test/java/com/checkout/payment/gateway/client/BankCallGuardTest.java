@@ -0,0 +1,98 @@
+package com.checkout.payment.gateway.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.client.BankCircuitBreaker.State;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class BankCallGuardTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  void whenFailureRateIsBelowThresholdThenCircuitStaysClosed() {
+    BankCircuitBreaker circuitBreaker = circuitBreaker();
+
+    for (int i = 0; i < 20; i++) {
+      assertTrue(circuitBreaker.tryAcquire());
+      if (i % 3 == 2) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+    }
+
+    assertEquals(State.CLOSED, circuitBreaker.state());
+  }
+
+  @Test
+  void whenOpenDurationElapsesThenSuccessfulTrialCallsCloseCircuit() {
+    BankCircuitBreaker circuitBreaker = circuitBreaker();
+    failTimes(circuitBreaker, 4);
+    assertEquals(State.OPEN, circuitBreaker.state());
+    assertFalse(circuitBreaker.tryAcquire());
+
+    now.addAndGet(Duration.ofSeconds(5).toNanos());
+
+    assertTrue(circuitBreaker.tryAcquire());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertFalse(circuitBreaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, circuitBreaker.state());
+    circuitBreaker.onSuccess();
+    circuitBreaker.onSuccess();
+    assertEquals(State.CLOSED, circuitBreaker.state());
+  }
+
+  @Test
+  void whenTrialCallFailsThenCircuitReopens() {
+    BankCircuitBreaker circuitBreaker = circuitBreaker();
+    failTimes(circuitBreaker, 4);
+    now.addAndGet(Duration.ofSeconds(5).toNanos());
+
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+
+    assertEquals(State.OPEN, circuitBreaker.state());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void whenCallsAreFastAndBusyThenLimitGrowsAndFailuresShrinkIt() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 8, 0.5,
+        Duration.ofMillis(100));
+
+    for (int round = 0; round < 20; round++) {
+      while (limiter.tryAcquire()) {
+        // fill the current limit
+      }
+      int inFlight = limiter.inFlight();
+      for (int i = 0; i < inFlight; i++) {
+        limiter.onSuccess(Duration.ofMillis(1).toNanos());
+      }
+    }
+    assertEquals(8, limiter.limit());
+
+    assertTrue(limiter.tryAcquire());
+    limiter.onFailure();
+    assertEquals(4, limiter.limit());
+
+    assertTrue(limiter.tryAcquire());
+    limiter.onSuccess(Duration.ofSeconds(1).toNanos());
+    assertEquals(2, limiter.limit());
+  }
+
+  private BankCircuitBreaker circuitBreaker() {
+    return new BankCircuitBreaker(0.5, 10, 4, Duration.ofSeconds(5), 2, now::get);
+  }
+
+  private static void failTimes(BankCircuitBreaker circuitBreaker, int failures) {
+    for (int i = 0; i < failures; i++) {
+      assertTrue(circuitBreaker.tryAcquire());
+      circuitBreaker.onFailure();
+    }
+  }
+}
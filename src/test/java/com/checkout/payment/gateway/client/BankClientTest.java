@@ -0,0 +1,323 @@
+package com.checkout.payment.gateway.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+class BankClientTest {
+
+  private StubBankServer bank;
+  private BankClient bankClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    bank = new StubBankServer();
+    bankClient = bankClient(bank.url());
+  }
+
+  @AfterEach
+  void tearDown() {
+    bank.close();
+  }
+
+  @Test
+  void whenCardNumberIsOddThenAsyncPaymentIsAuthorized() throws Exception {
+    BankResponse response = bankClient.processPaymentAsync(bankRequest("2222405343248113"))
+        .get(5, TimeUnit.SECONDS);
+
+    assertTrue(response.isAuthorized());
+    assertEquals(200, response.getHttpStatusCode());
+  }
+
+  @Test
+  void whenCardNumberIsEvenThenAsyncPaymentIsDeclined() throws Exception {
+    BankResponse response = bankClient.processPaymentAsync(bankRequest("2222405343248114"))
+        .get(5, TimeUnit.SECONDS);
+
+    assertFalse(response.isAuthorized());
+    assertEquals(200, response.getHttpStatusCode());
+  }
+
+  @Test
+  void whenBankReturns503ThenAsyncResponseIsUnavailable() throws Exception {
+    BankResponse response = bankClient.processPaymentAsync(bankRequest("2222405343248110"))
+        .get(5, TimeUnit.SECONDS);
+
+    assertFalse(response.isAuthorized());
+    assertEquals(503, response.getHttpStatusCode());
+  }
+
+  @Test
+  void whenBankIsUnreachableThenAsyncResponseIsUnavailable() throws Exception {
+    String url = bank.url();
+    bank.close();
+
+    BankResponse response = bankClient(url).processPaymentAsync(bankRequest("2222405343248113"))
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals(503, response.getHttpStatusCode());
+  }
+
+  @Test
+  void whenManyPaymentsAreInFlightThenCallerIsNotBlocked() throws Exception {
+    bank.holdResponses();
+    List<CompletableFuture<BankResponse>> responses = new ArrayList<>();
+
+    for (int i = 0; i < 500; i++) {
+      responses.add(bankClient.processPaymentAsync(bankRequest("2222405343248113")));
+    }
+    assertTrue(responses.stream().noneMatch(CompletableFuture::isDone));
+
+    bank.releaseResponses();
+    CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+    assertTrue(responses.stream().allMatch(response -> response.join().isAuthorized()));
+  }
+
+  @Test
+  void whenPaymentsRepeatOnPooledClientThenConnectionIsKeptAlive() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    try (PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder
+        .create().setMaxConnPerRoute(4).build();
+        CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(pool).build()) {
+      new BankConnectionPoolMetrics(pool).bindTo(registry);
+      RestTemplate restTemplate = new RestTemplate(
+          new HttpComponentsClientHttpRequestFactory(httpClient));
+      BankClient pooledClient = new BankClient(restTemplate, HttpClient.newHttpClient(),
+          Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(10),
+          circuitBreaker(), new AdaptiveConcurrencyLimiter(10, 1, 10, 0.9, Duration.ofSeconds(1)),
+          BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+          new PaymentMetrics(new SimpleMeterRegistry()));
+
+      for (int i = 0; i < 20; i++) {
+        assertTrue(pooledClient.processPayment(bankRequest("2222405343248113")).isAuthorized());
+      }
+
+      assertEquals(1, connections(registry, "idle"));
+      assertEquals(0, connections(registry, "leased"));
+      assertEquals(0, connections(registry, "pending"));
+    }
+  }
+
+  private static double connections(SimpleMeterRegistry registry, String state) {
+    return registry.get(BankConnectionPoolMetrics.CONNECTIONS).tag("state", state).gauge().value();
+  }
+
+  @Test
+  void whenBankKeepsFailingThenCircuitOpensAndCallsFailFast() {
+    bank.setDelay(() -> Duration.ofMillis(100));
+    BankCircuitBreaker circuitBreaker = new BankCircuitBreaker(0.5, 10, 5, Duration.ofMinutes(1),
+        1);
+    BankClient guardedClient = bankClient(bank.url(), circuitBreaker,
+        new AdaptiveConcurrencyLimiter(10, 1, 10, 0.9, Duration.ofSeconds(1)));
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(503, guardedClient.processPayment(bankRequest("2222405343248110"))
+          .getHttpStatusCode());
+    }
+    assertEquals(BankCircuitBreaker.State.OPEN, circuitBreaker.state());
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(503, guardedClient.processPayment(bankRequest("2222405343248113"))
+          .getHttpStatusCode());
+    }
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    assertEquals(5, bank.requestCount());
+    assertEquals(100, circuitBreaker.rejectedCount());
+  }
+
+  @Test
+  void whenBankStallsThenConcurrencyLimitBoundsBlockedThreads() throws Exception {
+    bank.holdResponses();
+    AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(10, 2, 100,
+        0.9, Duration.ofSeconds(5));
+    BankClient guardedClient = bankClient(bank.url(), circuitBreaker(), concurrencyLimiter);
+    ExecutorService requestThreads = Executors.newFixedThreadPool(50);
+
+    try {
+      List<Future<BankResponse>> responses = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        responses.add(requestThreads.submit(
+            () -> guardedClient.processPayment(bankRequest("2222405343248113"))));
+      }
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (responses.stream().filter(Future::isDone).count() < 40
+          && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(40, responses.stream().filter(Future::isDone).count());
+      assertEquals(10, concurrencyLimiter.inFlight());
+      assertEquals(40, concurrencyLimiter.rejectedCount());
+
+      bank.releaseResponses();
+      long authorized = 0;
+      for (Future<BankResponse> response : responses) {
+        if (response.get(10, TimeUnit.SECONDS).isAuthorized()) {
+          authorized++;
+        }
+      }
+      assertEquals(10, authorized);
+      assertEquals(0, concurrencyLimiter.inFlight());
+    } finally {
+      bank.releaseResponses();
+      requestThreads.shutdownNow();
+    }
+  }
+
+  @Test
+  void whenBankAnswersTransient503sThenCallIsRetriedUntilAuthorized() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    BankClient retryingClient = bankClient(new RestTemplate(),
+        new BankRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5)),
+        BankHedgingPolicy.disabled(), false, registry);
+    bank.failNext(2);
+
+    BankResponse response = retryingClient.processPayment(bankRequest("2222405343248113"),
+        Deadline.after(Duration.ofSeconds(5)));
+
+    assertTrue(response.isAuthorized());
+    assertEquals(3, bank.requestCount());
+    assertEquals(2, registry.get(PaymentMetrics.BANK_RETRIES).counter().count());
+  }
+
+  @Test
+  void whenBankIsSlowerThanTheDeadlineThenBlockingCallGivesUpAtTheDeadline() throws Exception {
+    bank.setDelay(() -> Duration.ofSeconds(2));
+    try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+      RestTemplate restTemplate = new RestTemplate(new DeadlineRequestFactory(httpClient,
+          Duration.ofSeconds(2), Duration.ofSeconds(10)));
+      BankClient deadlineClient = bankClient(restTemplate,
+          new BankRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5)),
+          BankHedgingPolicy.disabled(), false, new SimpleMeterRegistry());
+
+      long start = System.nanoTime();
+      BankResponse response = deadlineClient.processPayment(bankRequest("2222405343248113"),
+          Deadline.after(Duration.ofMillis(200)));
+
+      assertEquals(503, response.getHttpStatusCode());
+      assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+  }
+
+  @Test
+  void whenEveryOtherBankCallIsSlowThenHedgedRequestsAnswerFirst() throws Exception {
+    BankHedgingPolicy hedgingPolicy = new BankHedgingPolicy(0.95, Duration.ofMillis(10), 16);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    BankClient hedgingClient = bankClient(new RestTemplate(), BankRetryPolicy.none(),
+        hedgingPolicy, true, registry);
+    // A first call on a cold client can take longer than the hedge delay to reach the bank,
+    // letting the hedge arrive first and take the slow answer. The policy has no samples yet,
+    // so this call is not hedged.
+    hedgingClient.processPaymentAsync(bankRequest("2222405343248113"),
+        Deadline.after(Duration.ofSeconds(10))).get(5, TimeUnit.SECONDS);
+    int warmUpRequests = bank.requestCount();
+    // Hedge late enough that each primary reaches the bank, and takes the slow answer, first.
+    for (int i = 0; i < 16; i++) {
+      hedgingPolicy.record(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    AtomicInteger calls = new AtomicInteger();
+    bank.setDelay(() -> calls.incrementAndGet() % 2 == 1 ? Duration.ofSeconds(5) : Duration.ZERO);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(hedgingClient.processPaymentAsync(bankRequest("2222405343248113"),
+          Deadline.after(Duration.ofSeconds(10))).get(5, TimeUnit.SECONDS).isAuthorized());
+    }
+
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(4)) < 0);
+    assertEquals(20, bank.requestCount() - warmUpRequests);
+    assertEquals(10, registry.get(PaymentMetrics.BANK_HEDGES).counter().count());
+    assertEquals(10, registry.get(PaymentMetrics.BANK_HEDGES_WON).counter().count());
+  }
+
+  @Test
+  void whenBankIsNotKnownToDeduplicateThenUnansweredCallsAreNeitherRetriedNorHedged()
+      throws Exception {
+    bank.setDelay(() -> Duration.ofMillis(300));
+    BankHedgingPolicy hedgingPolicy = new BankHedgingPolicy(0.95, Duration.ofMillis(10), 16);
+    for (int i = 0; i < 16; i++) {
+      hedgingPolicy.record(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    BankClient client = new BankClient(new RestTemplate(), HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofMillis(100),
+        circuitBreaker(), new AdaptiveConcurrencyLimiter(100, 1, 100, 0.9, Duration.ofSeconds(5)),
+        new BankRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5)), hedgingPolicy, false,
+        new PaymentMetrics(registry));
+
+    BankResponse response = client.processPaymentAsync(bankRequest("2222405343248113"),
+        Deadline.after(Duration.ofSeconds(5))).get(5, TimeUnit.SECONDS);
+
+    assertEquals(503, response.getHttpStatusCode());
+    assertEquals(1, bank.requestCount());
+    assertEquals(0, registry.get(PaymentMetrics.BANK_HEDGES).counter().count());
+    assertEquals(0, registry.get(PaymentMetrics.BANK_RETRIES).counter().count());
+  }
+
+  private BankClient bankClient(RestTemplate restTemplate, BankRetryPolicy retryPolicy,
+      BankHedgingPolicy hedgingPolicy, boolean idempotentKeys, SimpleMeterRegistry registry) {
+    return new BankClient(restTemplate, HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(10),
+        circuitBreaker(), new AdaptiveConcurrencyLimiter(100, 1, 100, 0.9, Duration.ofSeconds(5)),
+        retryPolicy, hedgingPolicy, idempotentKeys, new PaymentMetrics(registry));
+  }
+
+  private static BankClient bankClient(String url) {
+    return bankClient(url, circuitBreaker(),
+        new AdaptiveConcurrencyLimiter(1000, 1, 1000, 0.9, Duration.ofSeconds(5)));
+  }
+
+  private static BankClient bankClient(String url, BankCircuitBreaker circuitBreaker,
+      AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(2))
+        .build();
+    return new BankClient(new RestTemplate(), httpClient,
+        Jackson2ObjectMapperBuilder.json().build(), url, Duration.ofSeconds(10), circuitBreaker,
+        concurrencyLimiter, BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+        new PaymentMetrics(new SimpleMeterRegistry()));
+  }
+
+  private static BankCircuitBreaker circuitBreaker() {
+    return new BankCircuitBreaker(0.5, 20, 10, Duration.ofSeconds(5), 3);
+  }
+
+  private static BankRequest bankRequest(String cardNumber) {
+    BankRequest request = new BankRequest();
+    request.setIdempotencyKey(UUID.randomUUID().toString());
+    request.setCardNumber(cardNumber);
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+    return request;
+  }
+}
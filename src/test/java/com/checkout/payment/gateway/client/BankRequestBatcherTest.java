@@ -0,0 +1,127 @@
+package com.checkout.payment.gateway.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+
+class BankRequestBatcherTest {
+
+  private StubBankServer bank;
+  private BankClient bankClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    bank = new StubBankServer();
+    bankClient = new BankClient(new RestTemplate(), HttpClient.newHttpClient(),
+        Jackson2ObjectMapperBuilder.json().build(), bank.url(), Duration.ofSeconds(10),
+        new BankCircuitBreaker(0.5, 20, 10, Duration.ofSeconds(5), 3),
+        new AdaptiveConcurrencyLimiter(100, 1, 100, 0.9, Duration.ofSeconds(5)),
+        BankRetryPolicy.none(), BankHedgingPolicy.disabled(), false,
+        new PaymentMetrics(new SimpleMeterRegistry()));
+  }
+
+  @AfterEach
+  void tearDown() {
+    bank.close();
+  }
+
+  @Test
+  void whenBatchIsFullThenItIsSentWithoutWaitingForWindow() throws Exception {
+    try (BankRequestBatcher batcher = new BankRequestBatcher(bankClient, 3, Duration.ofHours(1))) {
+      CompletableFuture<BankResponse> authorized = batcher.submit(bankRequest("2222405343248113"));
+      CompletableFuture<BankResponse> declined = batcher.submit(bankRequest("2222405343248114"));
+      CompletableFuture<BankResponse> unavailable = batcher.submit(bankRequest("2222405343248110"));
+
+      assertTrue(authorized.get(5, TimeUnit.SECONDS).isAuthorized());
+      assertFalse(declined.get(5, TimeUnit.SECONDS).isAuthorized());
+      assertEquals(200, declined.join().getHttpStatusCode());
+      assertEquals(503, unavailable.get(5, TimeUnit.SECONDS).getHttpStatusCode());
+    }
+  }
+
+  @Test
+  void whenWindowExpiresThenPartialBatchIsSent() throws Exception {
+    try (BankRequestBatcher batcher = new BankRequestBatcher(bankClient, 100,
+        Duration.ofMillis(200))) {
+      List<CompletableFuture<BankResponse>> responses = List.of(
+          batcher.submit(bankRequest("2222405343248113")),
+          batcher.submit(bankRequest("2222405343248115")));
+      assertEquals(0, bank.requestCount());
+
+      CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+      assertEquals(2, bank.requestCount());
+      assertTrue(responses.stream().allMatch(response -> response.join().isAuthorized()));
+    }
+  }
+
+  @Test
+  void whenBatcherIsClosedThenWaitingRequestsAreSentAndNewOnesRefused() throws Exception {
+    BankRequestBatcher batcher = new BankRequestBatcher(bankClient, 100, Duration.ofHours(1));
+    CompletableFuture<BankResponse> response = batcher.submit(bankRequest("2222405343248113"));
+
+    batcher.close();
+
+    assertTrue(response.get(5, TimeUnit.SECONDS).isAuthorized());
+    assertThrows(IllegalStateException.class,
+        () -> batcher.submit(bankRequest("2222405343248113")));
+  }
+
+  @Test
+  void whenBankCallThrowsThenItsRequestIsUnavailableAndTheRestOfTheBatchIsSent()
+      throws Exception {
+    BankRequest failing = bankRequest("2222405343248113");
+    BankClient throwing = spy(bankClient);
+    doThrow(new IllegalStateException("boom")).when(throwing)
+        .processPaymentAsync(same(failing), any());
+    try (BankRequestBatcher batcher = new BankRequestBatcher(throwing, 2, Duration.ofHours(1))) {
+      CompletableFuture<BankResponse> failed = batcher.submit(failing);
+      CompletableFuture<BankResponse> sent = batcher.submit(bankRequest("2222405343248115"));
+
+      assertEquals(503, failed.get(5, TimeUnit.SECONDS).getHttpStatusCode());
+      assertTrue(sent.get(5, TimeUnit.SECONDS).isAuthorized());
+    }
+  }
+
+  @Test
+  void whenDeadlinePassesBeforeTheBatchIsSentThenTheRequestIsUnavailable() throws Exception {
+    try (BankRequestBatcher batcher = new BankRequestBatcher(bankClient, 100,
+        Duration.ofHours(1))) {
+      CompletableFuture<BankResponse> response = batcher.submit(bankRequest("2222405343248113"),
+          Deadline.after(Duration.ofMillis(50)));
+
+      assertEquals(503, response.get(5, TimeUnit.SECONDS).getHttpStatusCode());
+      assertEquals(0, bank.requestCount());
+    }
+  }
+
+  private static BankRequest bankRequest(String cardNumber) {
+    BankRequest request = new BankRequest();
+    request.setCardNumber(cardNumber);
+    request.setExpiryDate("12/2030");
+    request.setCurrency("GBP");
+    request.setAmount(100);
+    request.setCvv("123");
+    return request;
+  }
+}
@@ -0,0 +1,131 @@
+package com.checkout.payment.gateway.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for the Mountebank bank simulator in {@code imposters/bank_simulator.ejs}:
+ * odd card endings are authorized, even endings declined and a trailing zero answers 503.
+ * Responses can be delayed or held back without holding a server thread, so thousands of calls
+ * can be in flight at once, and the next few calls can be made to fail with a 503.
+ */
+public class StubBankServer implements AutoCloseable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static {
+    // Without TCP_NODELAY the JDK server's small writes stall on delayed ACKs (~40ms per call).
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final Queue<Runnable> held = new ConcurrentLinkedQueue<>();
+  private volatile Supplier<Duration> delay = () -> Duration.ZERO;
+  private volatile boolean holding;
+
+  public StubBankServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16384);
+    server.setExecutor(executor);
+    server.createContext("/payments", this::handle);
+    server.start();
+  }
+
+  public String url() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  public void setDelay(Supplier<Duration> delay) {
+    this.delay = delay;
+  }
+
+  /**
+   * Answers the next {@code count} requests with a 503, whatever their card number.
+   */
+  public void failNext(int count) {
+    failures.set(count);
+  }
+
+  public void holdResponses() {
+    holding = true;
+  }
+
+  public void releaseResponses() {
+    holding = false;
+    for (Runnable response = held.poll(); response != null; response = held.poll()) {
+      response.run();
+    }
+  }
+
+  public int requestCount() {
+    return requests.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+    long delayMillis = delay.get().toMillis();
+    if (holding) {
+      held.add(() -> respond(exchange, body));
+      if (!holding) {
+        releaseResponses();
+      }
+    } else if (delayMillis <= 0) {
+      respond(exchange, body);
+    } else {
+      scheduler.schedule(() -> respond(exchange, body), delayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void respond(HttpExchange exchange, JsonNode body) {
+    String cardNumber = body.path("card_number").asText("");
+    try {
+      if (failures.getAndUpdate(remaining -> Math.max(remaining - 1, 0)) > 0) {
+        send(exchange, 503, "{}");
+      } else if (cardNumber.isEmpty()) {
+        send(exchange, 400, "{\"error_message\":\"Not all required properties were sent\"}");
+      } else if (cardNumber.endsWith("0")) {
+        send(exchange, 503, "{}");
+      } else if ((cardNumber.charAt(cardNumber.length() - 1) - '0') % 2 == 1) {
+        send(exchange, 200, "{\"authorized\":true,\"authorization_code\":\"0bb07405\"}");
+      } else {
+        send(exchange, 200, "{\"authorized\":false,\"authorization_code\":\"\"}");
+      }
+    } catch (IOException e) {
+      exchange.close();
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+}
@@ -0,0 +1,65 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.controller.AdmissionQueue.Priority;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdmissionQueueTest {
+
+  @Test
+  void whenFullThenRequestIsRefusedAfterMaxWait() {
+    AdmissionQueue queue = new AdmissionQueue(1, Duration.ofMillis(50));
+    assertTrue(queue.acquire(Priority.NORMAL));
+
+    long start = System.nanoTime();
+    assertFalse(queue.acquire(Priority.NORMAL));
+
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+    assertEquals(1, queue.timedOutCount());
+    assertEquals(0, queue.queued());
+    assertEquals(1, queue.inFlight());
+  }
+
+  @Test
+  void whenSlotIsReleasedThenHighestPriorityWaiterIsAdmittedFirst() throws Exception {
+    AdmissionQueue queue = new AdmissionQueue(1, Duration.ofSeconds(10));
+    assertTrue(queue.acquire(Priority.NORMAL));
+    List<Priority> admitted = new CopyOnWriteArrayList<>();
+
+    CompletableFuture<Void> low = waitFor(queue, Priority.LOW, admitted);
+    awaitQueued(queue, 1);
+    CompletableFuture<Void> high = waitFor(queue, Priority.HIGH, admitted);
+    awaitQueued(queue, 2);
+
+    queue.release();
+    high.get(10, TimeUnit.SECONDS);
+    queue.release();
+    low.get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of(Priority.HIGH, Priority.LOW), admitted);
+    queue.release();
+    assertEquals(0, queue.inFlight());
+  }
+
+  private static CompletableFuture<Void> waitFor(AdmissionQueue queue, Priority priority,
+      List<Priority> admitted) {
+    return CompletableFuture.runAsync(() -> {
+      assertTrue(queue.acquire(priority));
+      admitted.add(priority);
+    });
+  }
+
+  private static void awaitQueued(AdmissionQueue queue, int queued) throws InterruptedException {
+    while (queue.queued() < queued) {
+      Thread.sleep(1);
+    }
+  }
+}
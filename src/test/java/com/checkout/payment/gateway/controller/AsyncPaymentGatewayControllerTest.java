@@ -0,0 +1,115 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.jayway.jsonpath.JsonPath;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+@SpringBootTest(properties = "payments.async.enabled=true")
+@AutoConfigureMockMvc
+class AsyncPaymentGatewayControllerTest {
+
+  @Autowired
+  private MockMvc mvc;
+  @MockBean
+  BankClient bankClient;
+
+  @BeforeEach
+  void setUp() {
+    when(bankClient.processPaymentAsync(any(), any())).thenAnswer(invocation -> {
+      var request = invocation.getArgument(0, BankRequest.class);
+      String cardNumber = request.getJson() == null ? request.getCardNumber()
+          : JsonPath.read(new String(request.getJson(), StandardCharsets.US_ASCII), "$.card_number");
+      int lastDigit = Character.getNumericValue(cardNumber.charAt(cardNumber.length() - 1));
+
+      BankResponse response = new BankResponse();
+      response.setHttpStatusCode(lastDigit == 0 ? 503 : 200);
+      response.setAuthorized(lastDigit % 2 == 1);
+      return CompletableFuture.supplyAsync(() -> response);
+    });
+  }
+
+  @Test
+  void whenValidPaymentRequestThenAuthorizedAsynchronously() throws Exception {
+    MvcResult result = mvc.perform(post("/payments")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest("2222405343248113")))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.status").value("Authorized"))
+        .andExpect(jsonPath("$.cardNumberLastFour").value("8113"));
+  }
+
+  @Test
+  void whenAsyncPaymentIsStoredThenItCanBeRetrieved() throws Exception {
+    MvcResult result = mvc.perform(post("/payments")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest("2222405343248114")))
+        .andReturn();
+    String id = com.jayway.jsonpath.JsonPath.read(
+        mvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString(), "$.id");
+
+    mvc.perform(MockMvcRequestBuilders.get("/payment/" + id))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("Declined"));
+  }
+
+  @Test
+  void whenBankReturns503ThenServiceUnavailable() throws Exception {
+    MvcResult result = mvc.perform(post("/payments")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest("2222405343248110")))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(jsonPath("$.message").value(matchesPattern(".*Bank service unavailable.*")));
+  }
+
+  @Test
+  void whenInvalidRequestThenRejectedWithoutAsyncProcessing() throws Exception {
+    mvc.perform(post("/payments")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest("123")))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value(matchesPattern(".*Card number must be.*")));
+  }
+
+  private static String paymentRequest(String cardNumber) {
+    return """
+        {
+          "card_number": "%s",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """.formatted(cardNumber);
+  }
+}
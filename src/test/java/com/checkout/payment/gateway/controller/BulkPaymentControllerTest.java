@@ -0,0 +1,128 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BulkPaymentControllerTest {
+
+  @Autowired
+  private MockMvc mvc;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @MockBean
+  BankClient bankClient;
+
+  @BeforeEach
+  void setUp() {
+    when(bankClient.processPaymentAsync(any(), any())).thenAnswer(invocation -> {
+      var request = invocation.getArgument(0, BankRequest.class);
+      String cardNumber = request.getCardNumber();
+      int lastDigit = Character.getNumericValue(cardNumber.charAt(cardNumber.length() - 1));
+
+      BankResponse response = new BankResponse();
+      response.setHttpStatusCode(lastDigit == 0 ? 503 : 200);
+      response.setAuthorized(lastDigit % 2 == 1);
+      return CompletableFuture.supplyAsync(() -> response);
+    });
+  }
+
+  @Test
+  void whenNdjsonUploadThenEachItemHasItsOwnResult() throws Exception {
+    String upload = payment("2222405343248113") + "\n"
+        + payment("123") + "\n"
+        + payment("2222405343248114") + "\n"
+        + payment("2222405343248110") + "\n";
+
+    Map<Long, JsonNode> results = results(MediaType.APPLICATION_NDJSON, upload);
+
+    assertEquals(4, results.size());
+    assertEquals(201, results.get(0L).get("status").asInt());
+    assertEquals("Authorized", results.get(0L).at("/payment/status").asText());
+    assertEquals(400, results.get(1L).get("status").asInt());
+    assertEquals("Declined", results.get(2L).at("/payment/status").asText());
+    assertEquals(503, results.get(3L).get("status").asInt());
+  }
+
+  @Test
+  void whenJsonArrayUploadThenEveryItemIsProcessed() throws Exception {
+    StringBuilder upload = new StringBuilder("[");
+    for (int i = 0; i < 100; i++) {
+      upload.append(i == 0 ? "" : ",").append(payment("2222405343248113"));
+    }
+    upload.append("]");
+
+    Map<Long, JsonNode> results = results(MediaType.APPLICATION_JSON, upload.toString());
+
+    assertEquals(100, results.size());
+    results.values().forEach(result -> assertEquals(201, result.get("status").asInt()));
+  }
+
+  @Test
+  void whenItemIsMalformedThenUploadStopsThere() throws Exception {
+    String upload = payment("2222405343248113") + "\n{\"amount\": \"many\"}\n"
+        + payment("2222405343248113");
+
+    Map<Long, JsonNode> results = results(MediaType.APPLICATION_NDJSON, upload);
+
+    assertEquals(2, results.size());
+    assertEquals(201, results.get(0L).get("status").asInt());
+    assertEquals(400, results.get(1L).get("status").asInt());
+  }
+
+  @Test
+  void whenItemIsNotAnObjectThenOnlyThatItemIsRejected() throws Exception {
+    String upload = "[null," + payment("2222405343248113") + ",42,[1,{}],\"payment\","
+        + payment("2222405343248113") + "]";
+
+    Map<Long, JsonNode> results = results(MediaType.APPLICATION_JSON, upload);
+
+    assertEquals(6, results.size());
+    for (long index : new long[] {0, 2, 3, 4}) {
+      assertEquals(400, results.get(index).get("status").asInt());
+    }
+    assertEquals(201, results.get(1L).get("status").asInt());
+    assertEquals(201, results.get(5L).get("status").asInt());
+  }
+
+  private Map<Long, JsonNode> results(MediaType contentType, String upload) throws Exception {
+    String body = mvc.perform(post("/payments/bulk").contentType(contentType).content(upload))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+        .andReturn().getResponse().getContentAsString();
+    Map<Long, JsonNode> results = new TreeMap<>();
+    for (String line : body.split("\n")) {
+      JsonNode result = objectMapper.readTree(line);
+      results.put(result.get("index").asLong(), result);
+    }
+    return results;
+  }
+
+  private static String payment(String cardNumber) {
+    return """
+        {"card_number":"%s","expiry_month":"12","expiry_year":"2030","currency":"GBP",\
+        "amount":100,"cvv":"123"}""".formatted(cardNumber);
+  }
+}
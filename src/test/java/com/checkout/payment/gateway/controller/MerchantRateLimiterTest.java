@@ -0,0 +1,62 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class MerchantRateLimiterTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final MerchantRateLimiter limiter =
+      new MerchantRateLimiter(10, 3, 1_000, Duration.ofMinutes(1), clock::get);
+
+  @Test
+  void whenBurstIsUsedUpThenRequestsWaitForRefill() {
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertEquals(Duration.ofMillis(100).toNanos(), limiter.tryAcquire("merchant"));
+
+    clock.addAndGet(Duration.ofMillis(100).toNanos());
+
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertTrue(limiter.tryAcquire("merchant") > 0);
+    assertEquals(2, limiter.rejectedCount());
+  }
+
+  @Test
+  void whenOneMerchantIsLimitedThenOthersAreNot() {
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("noisy");
+    }
+
+    assertTrue(limiter.tryAcquire("noisy") > 0);
+    assertEquals(0, limiter.tryAcquire("quiet"));
+  }
+
+  @Test
+  void whenPermitIsRefundedThenItCanBeTakenAgain() {
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("merchant");
+    }
+
+    limiter.refund("merchant");
+
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertTrue(limiter.tryAcquire("merchant") > 0);
+  }
+
+  @Test
+  void whenIdleForLongThenBucketHoldsNoMoreThanBurst() {
+    limiter.tryAcquire("merchant");
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertEquals(0, limiter.tryAcquire("merchant"));
+    assertTrue(limiter.tryAcquire("merchant") > 0);
+  }
+}
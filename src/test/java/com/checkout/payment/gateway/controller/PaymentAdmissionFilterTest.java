@@ -0,0 +1,115 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.model.BankResponse;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+@SpringBootTest(properties = {"payments.admission.enabled=true",
+    "payments.admission.rate-limit.permits-per-second=0.001",
+    "payments.admission.rate-limit.burst=1"})
+@AutoConfigureMockMvc
+class PaymentAdmissionFilterTest {
+
+  private static final String PAYMENT = """
+      {"card_number":"2222405343248877","expiry_month":"12","expiry_year":"2099",
+       "currency":"GBP","amount":100,"cvv":"123"}""";
+
+  @Autowired
+  private MockMvc mvc;
+  @MockBean
+  BankClient bankClient;
+
+  @BeforeEach
+  void setUp() {
+    BankResponse response = new BankResponse();
+    response.setHttpStatusCode(200);
+    response.setAuthorized(true);
+    when(bankClient.processPayment(any(), any())).thenReturn(response);
+  }
+
+  @Test
+  void whenMerchantExceedsRateThenRequestIsRefusedBeforeItsBodyIsRead() throws Exception {
+    mvc.perform(post("/payments").principal(() -> "noisy")
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isCreated());
+
+    mvc.perform(post("/payments").principal(() -> "noisy")
+            .contentType(MediaType.APPLICATION_JSON).content("not json"))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"))
+        .andExpect(jsonPath("$.message").value("Too many requests, please retry later"));
+
+    mvc.perform(post("/payments").principal(() -> "quiet")
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isCreated());
+  }
+
+  @Test
+  void whenUnauthenticatedClientRotatesMerchantIdThenItIsStillLimited() throws Exception {
+    mvc.perform(post("/payments").header(PaymentAdmissionFilter.MERCHANT_ID, "first")
+            .with(from("10.0.0.3"))
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isCreated());
+
+    for (int i = 0; i < 3; i++) {
+      mvc.perform(post("/payments").header(PaymentAdmissionFilter.MERCHANT_ID, "rotated-" + i)
+              .with(from("10.0.0.3"))
+              .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+          .andExpect(status().isTooManyRequests());
+    }
+  }
+
+  @Test
+  void whenAnotherClientClaimsTheMerchantIdThenItDoesNotSpendTheMerchantsPermits()
+      throws Exception {
+    mvc.perform(post("/payments").header(PaymentAdmissionFilter.MERCHANT_ID, "victim")
+            .with(from("10.0.0.1"))
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isCreated());
+    mvc.perform(post("/payments").header(PaymentAdmissionFilter.MERCHANT_ID, "victim")
+            .with(from("10.0.0.1"))
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isTooManyRequests());
+
+    mvc.perform(post("/payments").header(PaymentAdmissionFilter.MERCHANT_ID, "victim")
+            .with(from("10.0.0.2"))
+            .contentType(MediaType.APPLICATION_JSON).content(PAYMENT))
+        .andExpect(status().isCreated());
+  }
+
+  @Test
+  void whenRequestIsNotAPaymentSubmissionThenItIsNotLimited() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      mvc.perform(get("/payment/" + UUID.randomUUID())
+              .header(PaymentAdmissionFilter.MERCHANT_ID, "reader"))
+          .andExpect(status().isNotFound());
+    }
+    verify(bankClient, never()).processPayment(any(), any());
+  }
+
+  private static RequestPostProcessor from(String address) {
+    return request -> {
+      request.setRemoteAddr(address);
+      return request;
+    };
+  }
+}
@@ -1,25 +1,41 @@
 package com.checkout.payment.gateway.controller;
 
 
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.checkout.payment.gateway.client.BankClient;
+import com.checkout.payment.gateway.client.Deadline;
 import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
 import com.checkout.payment.gateway.model.BankRequest;
 import com.checkout.payment.gateway.model.BankResponse;
 import com.checkout.payment.gateway.model.PaymentResponse;
 import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -33,15 +49,18 @@ class PaymentGatewayControllerTest {
   private MockMvc mvc;
   @Autowired
   PaymentsRepository paymentsRepository;
+  @Autowired
+  MeterRegistry meterRegistry;
   @MockBean
   BankClient bankClient;
 
   @BeforeEach
   void setUp() {
-    when(bankClient.processPayment(any())).thenAnswer(invocation -> {
+    when(bankClient.processPayment(any(), any())).thenAnswer(invocation -> {
       var request = invocation.getArgument(0, BankRequest.class);
 
-      String cardNumber = request.getCardNumber();
+      String cardNumber = request.getJson() == null ? request.getCardNumber()
+          : JsonPath.read(new String(request.getJson(), StandardCharsets.US_ASCII), "$.card_number");
       int lastDigit = Character.getNumericValue(cardNumber.charAt(cardNumber.length() - 1));
       
       com.checkout.payment.gateway.model.BankResponse response = new BankResponse();
@@ -243,4 +262,244 @@ class PaymentGatewayControllerTest {
         .andExpect(status().isServiceUnavailable())
         .andExpect(jsonPath("$.message").value(matchesPattern(".*Bank service unavailable.*")));
   }
+
+  @Test
+  void whenRequestIsRetriedWithSameIdempotencyKeyThenBankIsCalledOnce() throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+    String idempotencyKey = UUID.randomUUID().toString();
+
+    String first = mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated())
+        .andReturn().getResponse().getContentAsString();
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.id").value((String) JsonPath.read(first, "$.id")));
+
+    verify(bankClient, times(1)).processPayment(any(), any());
+  }
+
+  @Test
+  void whenUnauthenticatedClientsClaimTheSameMerchantAndKeyThenTheirPaymentsAreSeparate()
+      throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+    String idempotencyKey = UUID.randomUUID().toString();
+
+    String first = mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .header(PaymentAdmissionFilter.MERCHANT_ID, "shared")
+            .with(request -> {
+              request.setRemoteAddr("10.0.0.1");
+              return request;
+            })
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated())
+        .andReturn().getResponse().getContentAsString();
+    String second = mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .header(PaymentAdmissionFilter.MERCHANT_ID, "shared")
+            .with(request -> {
+              request.setRemoteAddr("10.0.0.2");
+              return request;
+            })
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated())
+        .andReturn().getResponse().getContentAsString();
+
+    assertNotEquals(JsonPath.<String>read(first, "$.id"), JsonPath.<String>read(second, "$.id"));
+    verify(bankClient, times(2)).processPayment(any(), any());
+  }
+
+  @Test
+  void whenIdempotencyKeyIsReusedWithDifferentRequestThenUnprocessableEntity() throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": %d,
+          "cvv": "123"
+        }
+        """;
+    String idempotencyKey = UUID.randomUUID().toString();
+
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest.formatted(100)))
+        .andExpect(status().isCreated());
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest.formatted(200)))
+        .andExpect(status().isUnprocessableEntity());
+
+    verify(bankClient, times(1)).processPayment(any(), any());
+  }
+
+  @Test
+  void whenPaymentIsProcessedThenEachStageAndTheOutcomeAreRecorded() throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248114",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+    long[] stagesBefore = stageCounts();
+    double declinedBefore = outcomeCount("declined");
+
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated());
+
+    long[] stagesAfter = stageCounts();
+    for (PaymentMetrics.Stage stage : PaymentMetrics.Stage.values()) {
+      assertEquals(stagesBefore[stage.ordinal()] + 1, stagesAfter[stage.ordinal()],
+          stage.name());
+    }
+    assertEquals(declinedBefore + 1, outcomeCount("declined"));
+  }
+
+  private long[] stageCounts() {
+    long[] counts = new long[PaymentMetrics.Stage.values().length];
+    for (PaymentMetrics.Stage stage : PaymentMetrics.Stage.values()) {
+      counts[stage.ordinal()] = meterRegistry.get(PaymentMetrics.STAGE)
+          .tag("stage", stage.name().toLowerCase()).timer().count();
+    }
+    return counts;
+  }
+
+  private double outcomeCount(String status) {
+    return meterRegistry.get(PaymentMetrics.OUTCOME).tag("status", status).counter().count();
+  }
+
+  @Test
+  void whenRequestIsInvalidThenRejectionIsRecordedWithoutCallingBank() throws Exception {
+    String invalidPaymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 0,
+          "cvv": "123"
+        }
+        """;
+    double rejectedBefore = outcomeCount("rejected");
+
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(PaymentGatewayController.IDEMPOTENCY_KEY, UUID.randomUUID().toString())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(invalidPaymentRequest))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.message").value("Validation failed: Amount must be greater than 0"));
+
+    assertEquals(rejectedBefore + 1, outcomeCount("rejected"));
+    verify(bankClient, never()).processPayment(any(), any());
+  }
+
+  @Test
+  void whenRequestTimeoutIsSentThenBankCallMustAnswerWithinIt() throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(RequestDeadlines.REQUEST_TIMEOUT, "250")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isCreated());
+
+    ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+    verify(bankClient).processPayment(any(), deadline.capture());
+    assertTrue(deadline.getValue().isBounded());
+    assertTrue(deadline.getValue().remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(250));
+  }
+
+  @Test
+  void whenRequestTimeoutIsNotANumberThenBadRequestIsReturned() throws Exception {
+    String paymentRequest = """
+        {
+          "card_number": "2222405343248113",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+
+    mvc.perform(MockMvcRequestBuilders.post("/payments")
+            .header(RequestDeadlines.REQUEST_TIMEOUT, "soon")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(paymentRequest))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message")
+            .value("Request-Timeout must be a positive number of milliseconds"));
+
+    verify(bankClient, never()).processPayment(any(), any());
+  }
+
+  @Test
+  void whenPaymentIsPolledWithItsETagThen304IsReturnedWithoutBody() throws Exception {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setAmount(10);
+    payment.setCurrency("USD");
+    payment.setStatus(PaymentStatus.AUTHORIZED);
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCardNumberLastFour("4321");
+    paymentsRepository.add(payment);
+
+    String etag = mvc.perform(MockMvcRequestBuilders.get("/payment/" + payment.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    mvc.perform(MockMvcRequestBuilders.get("/payment/" + payment.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, etag))
+        .andExpect(content().bytes(new byte[0]));
+  }
 }
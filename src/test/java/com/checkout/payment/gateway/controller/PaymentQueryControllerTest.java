@@ -0,0 +1,109 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.jayway.jsonpath.JsonPath;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PaymentQueryControllerTest {
+
+  @Autowired
+  private MockMvc mvc;
+  @Autowired
+  PaymentsRepository paymentsRepository;
+
+  @Test
+  void whenPaymentsAreSearchedThenMatchingPagesAreReturned() throws Exception {
+    Instant createdAt = Instant.parse("2031-05-01T10:00:00Z");
+    for (int i = 0; i < 3; i++) {
+      paymentsRepository.add(payment(PaymentStatus.DECLINED, "EUR", "9898",
+          createdAt.plusSeconds(i)));
+    }
+    paymentsRepository.add(payment(PaymentStatus.AUTHORIZED, "EUR", "9898", createdAt));
+    paymentsRepository.add(payment(PaymentStatus.DECLINED, "USD", "9898", createdAt));
+
+    String first = mvc.perform(get("/payments")
+            .param("status", "declined")
+            .param("currency", "EUR")
+            .param("cardLastFour", "9898")
+            .param("from", "2031-05-01T09:00:00Z")
+            .param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.payments", hasSize(2)))
+        .andExpect(jsonPath("$.payments[0].createdAt").value("2031-05-01T10:00:02Z"))
+        .andExpect(jsonPath("$.payments[*].status", everyItem(is("Declined"))))
+        .andReturn().getResponse().getContentAsString();
+
+    mvc.perform(get("/payments")
+            .param("status", "declined")
+            .param("currency", "EUR")
+            .param("cardLastFour", "9898")
+            .param("from", "2031-05-01T09:00:00Z")
+            .param("limit", "2")
+            .param("cursor", JsonPath.<String>read(first, "$.nextCursor")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.payments", hasSize(1)))
+        .andExpect(jsonPath("$.payments[0].createdAt").value("2031-05-01T10:00:00Z"))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  void whenCardLastFourHasLeadingZerosThenItStillMatches() throws Exception {
+    Instant createdAt = Instant.parse("2032-03-01T10:00:00Z");
+    paymentsRepository.add(payment(PaymentStatus.AUTHORIZED, "GBP", "0042", createdAt));
+    paymentsRepository.add(payment(PaymentStatus.AUTHORIZED, "GBP", "0420", createdAt));
+
+    mvc.perform(get("/payments")
+            .param("cardLastFour", "0042")
+            .param("from", "2032-03-01T00:00:00Z"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.payments", hasSize(1)))
+        .andExpect(jsonPath("$.payments[0].cardNumberLastFour").value("0042"));
+  }
+
+  @Test
+  void whenSearchFilterIsInvalidThen400IsReturned() throws Exception {
+    mvc.perform(get("/payments").param("currency", "AUD"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Unsupported currency AUD"));
+    mvc.perform(get("/payments").param("from", "yesterday"))
+        .andExpect(status().isBadRequest());
+    mvc.perform(get("/payments").param("limit", "501"))
+        .andExpect(status().isBadRequest());
+    for (String lastFour : new String[] {"989", "98a8", "98989"}) {
+      mvc.perform(get("/payments").param("cardLastFour", lastFour))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.message").value("Card last four must be 4 digits"));
+    }
+  }
+
+  private static PaymentResponse payment(PaymentStatus status, String currency, String lastFour,
+      Instant createdAt) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(status);
+    payment.setCardNumberLastFour(lastFour);
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2031");
+    payment.setCurrency(currency);
+    payment.setAmount(100);
+    payment.setCreatedAt(createdAt);
+    return payment;
+  }
+}
@@ -0,0 +1,44 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.metrics.PaymentMetrics;
+import com.checkout.payment.gateway.model.PaymentView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class PaymentViewFilterTest {
+
+  private static final String PAYMENT = """
+      {"card_number":"2222405343248877","expiry_month":"12","expiry_year":"2030",\
+      "currency":"GBP","amount":100,"cvv":"123"}""";
+
+  private final PaymentViewConverter converter = new PaymentViewConverter(
+      Jackson2ObjectMapperBuilder.json().build(), new PaymentMetrics(new SimpleMeterRegistry()),
+      16 * 1024);
+
+  @Test
+  void whenRequestFailsAfterTheBodyIsReadThenTheViewIsStillCleared() {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/payments");
+    PaymentView[] read = new PaymentView[1];
+
+    assertThrows(ServletException.class, () -> new PaymentViewFilter().doFilter(request,
+        new MockHttpServletResponse(), (req, res) -> {
+          read[0] = converter.read(PaymentView.class,
+              new MockHttpInputMessage(PAYMENT.getBytes(StandardCharsets.US_ASCII)));
+          assertTrue(read[0].length() > 0);
+          throw new ServletException("Refused before the controller ran");
+        }));
+
+    assertEquals(0, read[0].length());
+    assertEquals(0, read[0].cardNumber().length());
+  }
+}
@@ -0,0 +1,167 @@
+package com.checkout.payment.gateway.controller;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.checkout.payment.gateway.client.Deadline;
+import com.checkout.payment.gateway.client.ReactiveBankClient;
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.jayway.jsonpath.JsonPath;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+class ReactivePaymentGatewayControllerTest {
+
+  @Autowired
+  private WebTestClient client;
+  @MockBean
+  ReactiveBankClient bankClient;
+
+  @BeforeEach
+  void setUp() {
+    when(bankClient.processPayment(any(), any())).thenAnswer(invocation -> {
+      var request = invocation.getArgument(0, BankRequest.class);
+      String cardNumber = request.getCardNumber();
+      int lastDigit = Character.getNumericValue(cardNumber.charAt(cardNumber.length() - 1));
+
+      BankResponse response = new BankResponse();
+      response.setHttpStatusCode(lastDigit == 0 ? 503 : 200);
+      response.setAuthorized(lastDigit % 2 == 1);
+      return Mono.just(response).delayElement(Duration.ofMillis(5));
+    });
+  }
+
+  @Test
+  void whenValidPaymentRequestThenAuthorizedAndRetrievable() {
+    byte[] created = client.post().uri("/payments")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(paymentRequest("2222405343248113"))
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody()
+        .jsonPath("$.status").isEqualTo("Authorized")
+        .jsonPath("$.cardNumberLastFour").isEqualTo("8113")
+        .returnResult().getResponseBody();
+    String id = JsonPath.read(new String(created), "$.id");
+
+    String etag = client.get().uri("/payment/" + id)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.status").isEqualTo("Authorized")
+        .returnResult().getResponseHeaders().getETag();
+
+    client.get().uri("/payment/" + id)
+        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        .exchange()
+        .expectStatus().isNotModified();
+  }
+
+  @Test
+  void whenSameIdempotencyKeyIsRetriedThenBankIsCalledOnce() {
+    for (int i = 0; i < 2; i++) {
+      client.post().uri("/payments")
+          .contentType(MediaType.APPLICATION_JSON)
+          .header(PaymentGatewayController.IDEMPOTENCY_KEY, "reactive-retry")
+          .bodyValue(paymentRequest("2222405343248117"))
+          .exchange()
+          .expectStatus().isCreated();
+    }
+
+    verify(bankClient, times(1)).processPayment(any(), any());
+  }
+
+  @Test
+  void whenBankReturns503ThenServiceUnavailable() {
+    client.post().uri("/payments")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(paymentRequest("2222405343248110"))
+        .exchange()
+        .expectStatus().isEqualTo(503)
+        .expectBody()
+        .jsonPath("$.message").value(matchesPattern(".*Bank service unavailable.*"));
+  }
+
+  @Test
+  void whenInvalidRequestThenRejectedWithoutBankCall() {
+    client.post().uri("/payments")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(paymentRequest("123"))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("$.message").value(matchesPattern(".*Card number must be.*"));
+
+    verify(bankClient, never()).processPayment(any(), any());
+  }
+
+  @Test
+  void whenRequestTimeoutIsSentThenBankCallGetsThatDeadline() {
+    client.post().uri("/payments")
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(RequestDeadlines.REQUEST_TIMEOUT, "250")
+        .bodyValue(paymentRequest("2222405343248113"))
+        .exchange()
+        .expectStatus().isCreated();
+
+    ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+    verify(bankClient).processPayment(any(), deadline.capture());
+    assertTrue(deadline.getValue().isBounded());
+    assertTrue(deadline.getValue().remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(250));
+  }
+
+  @Test
+  void whenRequestTimeoutIsNotANumberThenBadRequestIsReturned() {
+    client.post().uri("/payments")
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(RequestDeadlines.REQUEST_TIMEOUT, "soon")
+        .bodyValue(paymentRequest("2222405343248113"))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("$.message")
+        .isEqualTo("Request-Timeout must be a positive number of milliseconds");
+
+    verify(bankClient, never()).processPayment(any(), any());
+  }
+
+  @Test
+  void whenPaymentDoesNotExistThenNotFound() {
+    client.get().uri("/payment/00000000-0000-0000-0000-000000000000")
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  private static String paymentRequest(String cardNumber) {
+    return """
+        {
+          "card_number": "%s",
+          "expiry_month": "12",
+          "expiry_year": "2030",
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """.formatted(cardNumber);
+  }
+}
@@ -0,0 +1,27 @@
+package com.checkout.payment.gateway.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LogRateLimiterTest {
+
+  @Test
+  void whenPermitsAreUsedUpThenLinesAreSuppressedUntilNextWindow() {
+    AtomicLong clock = new AtomicLong();
+    LogRateLimiter limiter = new LogRateLimiter(2, Duration.ofSeconds(1), clock::get);
+
+    assertEquals(0, limiter.tryAcquire());
+    assertEquals(0, limiter.tryAcquire());
+    assertEquals(LogRateLimiter.SUPPRESSED, limiter.tryAcquire());
+    assertEquals(LogRateLimiter.SUPPRESSED, limiter.tryAcquire());
+
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+    assertEquals(2, limiter.tryAcquire());
+    assertEquals(0, limiter.tryAcquire());
+    assertEquals(LogRateLimiter.SUPPRESSED, limiter.tryAcquire());
+  }
+}
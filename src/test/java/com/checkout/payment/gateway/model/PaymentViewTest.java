@@ -0,0 +1,117 @@
+package com.checkout.payment.gateway.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class PaymentViewTest {
+
+  private static final String BODY = """
+      {"card_number": "2222405343248877", "expiry_month": 4, "expiry_year": 2030,
+       "currency": "GBP", "amount": 100, "cvv": "123"}""";
+
+  private final PaymentView view = new PaymentView();
+
+  @Test
+  void whenBodyIsPlainThenFieldsAreReadInPlaceAndBankJsonMatchesJackson() throws Exception {
+    read("""
+        {"card_number": "2222405343248877", "expiry_month": "4", "expiry_year": "2030",
+         "currency": "GBP", "amount": 100, "cvv": "123", "reference": "order-1", "gift": false}""");
+
+    assertTrue(view.parse());
+    assertEquals("2222405343248877", view.cardNumber().toString());
+    assertEquals("4", view.expiryMonth().toString());
+    assertEquals(100, view.amount());
+    assertEquals(2222405343248877L, view.cardKey());
+
+    BankRequest bankRequest = new BankRequest();
+    bankRequest.setCardNumber("2222405343248877");
+    bankRequest.setExpiryDate("4/2030");
+    bankRequest.setCurrency("GBP");
+    bankRequest.setAmount(100);
+    bankRequest.setCvv("123");
+    assertEquals(Jackson2ObjectMapperBuilder.json().build().writeValueAsString(bankRequest),
+        new String(view.toBankJson(), StandardCharsets.US_ASCII));
+
+    PaymentResponse response = new PaymentResponse();
+    view.copyTo(response);
+    assertEquals("8877", response.getCardNumberLastFour());
+    assertEquals("4", response.getExpiryMonth());
+    assertEquals("2030", response.getExpiryYear());
+    assertEquals("GBP", response.getCurrency());
+  }
+
+  @Test
+  void whenBodyNeedsJacksonThenParseDeclines() throws Exception {
+    read(BODY);
+    assertFalse(view.parse());
+    read("{\"card_number\": \"2222405343248877\", \"amount\": \"100\"}");
+    assertFalse(view.parse());
+    read("{\"card_number\": \"2222\\u0034\", \"amount\": 100}");
+    assertFalse(view.parse());
+    read("{\"metadata\": {}, \"amount\": 100}");
+    assertFalse(view.parse());
+    read("{\"amount\": 100,}");
+    assertFalse(view.parse());
+  }
+
+  @Test
+  void whenCopiedFromJacksonThenFieldsMatchTheRequest() throws Exception {
+    read(BODY);
+    PostPaymentRequest request = Jackson2ObjectMapperBuilder.json().build()
+        .readValue(view.body(), 0, view.length(), PostPaymentRequest.class);
+
+    view.copyFrom(request);
+
+    assertEquals("2222405343248877", view.cardNumber().toString());
+    assertEquals("4", view.expiryMonth().toString());
+    assertEquals("2030", view.expiryYear().toString());
+    assertTrue(view.hasAmount());
+    view.clear();
+    assertEquals(0, view.cardNumber().length());
+    assertFalse(view.hasAmount());
+  }
+
+  @Test
+  void whenCopiedFromJacksonThenTheRawBodyIsZeroed() throws Exception {
+    read(BODY);
+    int rawLength = view.length();
+    PostPaymentRequest request = Jackson2ObjectMapperBuilder.json().build()
+        .readValue(view.body(), 0, rawLength, PostPaymentRequest.class);
+
+    view.copyFrom(request);
+
+    assertTrue(view.length() < rawLength);
+    for (int i = view.length(); i < view.body().length; i++) {
+      assertEquals(0, view.body()[i]);
+    }
+    view.clear();
+    for (byte b : view.body()) {
+      assertEquals(0, b);
+    }
+  }
+
+  @Test
+  void whenBodyIsLargerThanTheLimitThenItIsRefusedAndCleared() throws Exception {
+    byte[] large = (BODY + " ".repeat(2_000)).getBytes(StandardCharsets.UTF_8);
+
+    assertFalse(view.read(new ByteArrayInputStream(large), 1_024));
+    assertEquals(0, view.length());
+    assertTrue(view.body().length <= 1_024);
+    for (byte b : view.body()) {
+      assertEquals(0, b);
+    }
+    assertTrue(view.read(new ByteArrayInputStream(large), large.length));
+    assertEquals(large.length, view.length());
+  }
+
+  private void read(String body) throws IOException {
+    assertTrue(view.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 4_096));
+  }
+}
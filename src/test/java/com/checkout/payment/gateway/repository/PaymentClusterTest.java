@@ -0,0 +1,178 @@
+package com.checkout.payment.gateway.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PaymentClusterTest {
+
+  private static final byte[] SECRET = "payment-cluster-test-secret".getBytes(
+      StandardCharsets.US_ASCII);
+
+  private final List<PaymentCluster> clusters = new ArrayList<>();
+  private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    clusters.forEach(PaymentCluster::close);
+  }
+
+  @Test
+  void whenRingIsBuiltOnEachNodeThenNodesAgreeOnOwners() {
+    List<String> nodes = List.of("a:1", "b:2", "c:3");
+    HashRing ring = new HashRing(nodes, 128, 2);
+    HashRing sameRing = new HashRing(nodes, 128, 2);
+    int[] primaries = new int[nodes.size()];
+
+    for (int i = 0; i < 10_000; i++) {
+      UUID id = UUID.randomUUID();
+      int[] owners = ring.owners(id);
+      assertArrayEquals(owners, sameRing.owners(id));
+      assertEquals(2, owners.length);
+      assertTrue(owners[0] != owners[1]);
+      primaries[owners[0]]++;
+    }
+    for (int primary : primaries) {
+      assertTrue(primary > 2_000, "Payments are spread unevenly");
+    }
+  }
+
+  @Test
+  void whenPaymentIsAddedOnOneNodeThenEveryNodeCanReadIt() throws Exception {
+    List<PaymentsRepository> repositories = start(3, 2, Duration.ofMillis(1));
+    List<PaymentResponse> payments = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      PaymentResponse payment = payment(i);
+      payments.add(payment);
+      repositories.get(i % 3).add(payment);
+    }
+
+    for (PaymentResponse payment : payments) {
+      int[] owners = clusters.get(0).owners(payment.getId());
+      for (int owner : owners) {
+        awaitLocal(repositories.get(owner), payment.getId());
+      }
+      for (PaymentsRepository repository : repositories) {
+        assertEquals(payment.getAmount(),
+            repository.get(payment.getId()).orElseThrow().getAmount());
+      }
+    }
+  }
+
+  @Test
+  void whenPaymentHasNotReachedThisNodeThenOwnerIsAsked() throws Exception {
+    List<PaymentsRepository> repositories = start(3, 1, Duration.ofHours(1));
+    PaymentResponse payment = payment(1);
+    while (clusters.get(0).owners(payment.getId())[0] != 0) {
+      payment.setId(UUID.randomUUID());
+    }
+
+    repositories.get(0).add(payment);
+
+    assertNull(repositories.get(1).getLocal(payment.getId()));
+    PaymentResponse fetched = repositories.get(1).get(payment.getId()).orElseThrow();
+    assertEquals(payment.getId(), fetched.getId());
+    assertEquals(PaymentStatus.AUTHORIZED, fetched.getStatus());
+    assertEquals(payment.getCreatedAt(), fetched.getCreatedAt());
+    assertTrue(repositories.get(2).get(UUID.randomUUID()).isEmpty());
+  }
+
+  @Test
+  void whenOwnerIsDownThenReadReturnsNothing() throws Exception {
+    List<PaymentsRepository> repositories = start(2, 1, Duration.ofMillis(1));
+    clusters.get(1).close();
+    UUID id = UUID.randomUUID();
+    while (clusters.get(0).owners(id)[0] != 1) {
+      id = UUID.randomUUID();
+    }
+
+    assertTrue(repositories.get(0).get(id).isEmpty());
+  }
+
+  @Test
+  void whenPeerDoesNotHoldTheSecretThenItCanNeitherReplicateNorLookUp() throws Exception {
+    List<PaymentsRepository> repositories = start(2, 1, Duration.ofMillis(1));
+    PaymentCluster impostor = new PaymentCluster(
+        List.of(new InetSocketAddress("localhost", freePort()), addresses.get(1)), 0, 1, 64,
+        Duration.ofMillis(1), 1024, Duration.ofMillis(500), Duration.ofMillis(500),
+        "not-the-cluster-secret".getBytes(StandardCharsets.US_ASCII));
+    clusters.add(impostor);
+    impostor.open(payment -> { }, id -> null);
+    PaymentResponse forged = payment(1);
+    while (impostor.owners(forged.getId())[0] != 1) {
+      forged.setId(UUID.randomUUID());
+    }
+    PaymentResponse stored = payment(2);
+    while (impostor.owners(stored.getId())[0] != 1) {
+      stored.setId(UUID.randomUUID());
+    }
+    repositories.get(1).add(stored);
+
+    impostor.replicate(forged);
+    Thread.sleep(200);
+
+    assertNull(repositories.get(1).getLocal(forged.getId()));
+    assertEquals(0, clusters.get(1).receivedCount());
+    assertNull(impostor.fetch(stored.getId()));
+  }
+
+  private List<PaymentsRepository> start(int nodes, int replicationFactor,
+      Duration batchInterval) throws IOException {
+    for (int i = 0; i < nodes; i++) {
+      addresses.add(new InetSocketAddress("localhost", freePort()));
+    }
+    List<PaymentsRepository> repositories = new ArrayList<>();
+    for (int i = 0; i < nodes; i++) {
+      PaymentCluster cluster = new PaymentCluster(addresses, i, replicationFactor, 64,
+          batchInterval, 1024, Duration.ofMillis(500), Duration.ofMillis(500), SECRET);
+      clusters.add(cluster);
+      repositories.add(
+          new PaymentsRepository(StorageMode.HEAP.create(4, 1024), null, cluster));
+    }
+    return repositories;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void awaitLocal(PaymentsRepository repository, UUID id)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (repository.getLocal(id) == null && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertNotNull(repository.getLocal(id), "Payment was not replicated to its owner");
+  }
+
+  private static PaymentResponse payment(int i) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(i % 2 == 1 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(i + 1);
+    payment.setCreatedAt(Instant.ofEpochMilli(1_700_000_000_000L + i));
+    return payment;
+  }
+}
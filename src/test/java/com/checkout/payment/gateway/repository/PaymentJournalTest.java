@@ -0,0 +1,298 @@
+package com.checkout.payment.gateway.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PaymentJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void whenJournalIsReopenedThenPaymentsAreRecovered() {
+    List<PaymentResponse> payments = new ArrayList<>();
+    try (PaymentJournal journal = journal(1024)) {
+      PaymentStore store = new JournaledPaymentStore(new HeapPaymentStore(4, 64), journal);
+      for (int i = 0; i < 100; i++) {
+        PaymentResponse payment = createPayment(i);
+        store.put(payment);
+        payments.add(payment);
+      }
+    }
+
+    PaymentStore recovered = new HeapPaymentStore(4, 64);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(recovered);
+    }
+
+    assertEquals(100, recovered.size());
+    payments.forEach(payment -> assertEquals(payment, recovered.get(payment.getId())));
+  }
+
+  @Test
+  void whenWritersAppendConcurrentlyThenEveryAcknowledgedPaymentIsRecovered() throws Exception {
+    List<UUID> ids = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (PaymentJournal journal = journal(4096)) {
+      PaymentStore store = new JournaledPaymentStore(new PackedPaymentStore(4, 64), journal);
+      List<Future<List<UUID>>> written = new ArrayList<>();
+      for (int w = 0; w < 8; w++) {
+        int writer = w;
+        written.add(executor.submit(() -> {
+          List<UUID> writerIds = new ArrayList<>();
+          for (int i = 0; i < 500; i++) {
+            PaymentResponse payment = createPayment(writer * 1000 + i);
+            store.put(payment);
+            writerIds.add(payment.getId());
+          }
+          return writerIds;
+        }));
+      }
+      for (Future<List<UUID>> writerIds : written) {
+        ids.addAll(writerIds.get(30, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    PaymentStore recovered = new PackedPaymentStore(4, 64);
+    try (PaymentJournal journal = journal(4096)) {
+      journal.open(recovered);
+      assertEquals(4000, recovered.size());
+      ids.forEach(id -> assertEquals(id, recovered.get(id).getId()));
+    }
+  }
+
+  @Test
+  void whenRecordIsCorruptThenItIsSkippedOnReplay() throws IOException {
+    PaymentResponse first = createPayment(1);
+    PaymentResponse second = createPayment(2);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(new HeapPaymentStore(1, 16));
+      journal.append(first);
+      journal.append(second);
+    }
+
+    try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{42}), PaymentJournal.RECORD_SIZE + 20);
+    }
+
+    PaymentStore recovered = new HeapPaymentStore(1, 16);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(recovered);
+    }
+    assertNull(recovered.get(first.getId()));
+    assertEquals(second, recovered.get(second.getId()));
+  }
+
+  @Test
+  void whenSealedSegmentHasNoLiveRecordsThenCompactionDeletesIt() throws IOException {
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3)) {
+      journal.open(new HeapPaymentStore(1, 16));
+      journal.append(createPayment(1));
+      journal.append(createPayment(2));
+      journal.append(createPayment(3));
+    }
+    assertEquals(2, segments().size());
+
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3, id -> true)) {
+      journal.open(new HeapPaymentStore(1, 16) {
+        @Override
+        public PaymentResponse get(UUID id) {
+          return null;
+        }
+      });
+      assertEquals(2, journal.sealedSegmentCount());
+
+      journal.compact();
+
+      assertEquals(0, journal.sealedSegmentCount());
+      assertEquals(1, segments().size());
+    }
+  }
+
+  @Test
+  void whenFlushFailsThenPaymentIsNotStoredAndLaterWritesSucceed() {
+    AtomicBoolean failNextFlush = new AtomicBoolean();
+    PaymentResponse first = createPayment(1);
+    PaymentResponse second = createPayment(2);
+    try (PaymentJournal journal = new PaymentJournal(directory, 1024, Duration.ofMillis(1), 16,
+        true, Duration.ofHours(1), 0.5) {
+      @Override
+      void force(MappedByteBuffer buffer) {
+        if (failNextFlush.getAndSet(false)) {
+          throw new UncheckedIOException(new IOException("Disk unavailable"));
+        }
+        super.force(buffer);
+      }
+    }) {
+      PaymentStore store = new JournaledPaymentStore(new HeapPaymentStore(1, 16), journal);
+      failNextFlush.set(true);
+
+      assertThrows(UncheckedIOException.class, () -> store.put(first));
+      assertNull(store.get(first.getId()));
+      assertEquals(0, store.size());
+
+      assertTrue(store.put(second));
+      assertEquals(second, store.get(second.getId()));
+    }
+
+    PaymentStore recovered = new HeapPaymentStore(1, 16);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(recovered);
+    }
+    assertEquals(second, recovered.get(second.getId()));
+  }
+
+  @Test
+  void whenNoRecordHasDiedSinceTheLastScanThenCompactionSkipsTheSegment() throws IOException {
+    List<PaymentResponse> payments = List.of(createPayment(1), createPayment(2),
+        createPayment(3));
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3)) {
+      journal.open(new HeapPaymentStore(1, 16));
+      payments.forEach(journal::append);
+    }
+
+    AtomicInteger lookups = new AtomicInteger();
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3, id -> true)) {
+      PaymentStore store = new JournaledPaymentStore(new HeapPaymentStore(1, 16) {
+        @Override
+        public PaymentResponse get(UUID id) {
+          lookups.incrementAndGet();
+          return super.get(id);
+        }
+      }, journal);
+      journal.compact();
+      assertEquals(3, lookups.getAndSet(0));
+
+      journal.compact();
+      assertEquals(0, lookups.get());
+
+      store.remove(payments.get(0).getId());
+      store.remove(payments.get(1).getId());
+      lookups.set(0);
+      journal.compact();
+      // Only the first segment holds records of the removed payments, and it is deleted.
+      assertEquals(2, lookups.get());
+      assertEquals(1, journal.sealedSegmentCount());
+    }
+
+    PaymentStore recovered = new HeapPaymentStore(1, 16);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(recovered);
+    }
+    assertEquals(1, recovered.size());
+    assertEquals(payments.get(2), recovered.get(payments.get(2).getId()));
+  }
+
+  @Test
+  void whenSegmentIsFullThenItIsNotCompactedUntilFlushed() {
+    PaymentJournal journal = new PaymentJournal(directory, PaymentJournal.RECORD_SIZE * 3,
+        Duration.ofHours(1), 16, false, Duration.ofHours(1), 0.5);
+    journal.open(new HeapPaymentStore(1, 16));
+    journal.append(createPayment(1));
+    journal.append(createPayment(2));
+    journal.append(createPayment(3));
+
+    assertEquals(0, journal.sealedSegmentCount());
+
+    journal.close();
+
+    assertEquals(1, journal.sealedSegmentCount());
+  }
+
+  @Test
+  void whenRemovedPaymentIsNotArchivedThenCompactionKeepsItsRecord() throws IOException {
+    List<PaymentResponse> archived = List.of(createPayment(1), createPayment(2));
+    PaymentResponse removed = createPayment(3);
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3)) {
+      journal.open(new HeapPaymentStore(1, 16));
+      archived.forEach(journal::append);
+      journal.append(removed);
+    }
+
+    try (PaymentJournal journal = journal(PaymentJournal.RECORD_SIZE * 3,
+        id -> archived.stream().anyMatch(payment -> payment.getId().equals(id)))) {
+      journal.open(new HeapPaymentStore(1, 16) {
+        @Override
+        public PaymentResponse get(UUID id) {
+          return null;
+        }
+      });
+      journal.compact();
+    }
+
+    HeapPaymentStore recovered = new HeapPaymentStore(1, 16);
+    try (PaymentJournal journal = journal(1024)) {
+      journal.open(recovered);
+    }
+    assertNull(recovered.get(archived.get(0).getId()));
+    assertNull(recovered.get(archived.get(1).getId()));
+    assertEquals(removed.getAmount(), recovered.get(removed.getId()).getAmount());
+  }
+
+  @Test
+  void whenJournalIsClosedThenAppendFails() {
+    PaymentJournal journal = journal(1024);
+    journal.open(new HeapPaymentStore(1, 16));
+    journal.close();
+
+    assertThrows(IllegalStateException.class, () -> journal.append(createPayment(1)));
+  }
+
+  private PaymentJournal journal(int segmentSize) {
+    return journal(segmentSize, id -> false);
+  }
+
+  private PaymentJournal journal(int segmentSize, Predicate<UUID> archived) {
+    return new PaymentJournal(directory, segmentSize, Duration.ofMillis(1), 16, true,
+        Duration.ofHours(1), 0.5, archived);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+
+  private static PaymentResponse createPayment(int i) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(i % 2 == 0 ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour(String.format("%04d", i % 10_000));
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(i + 1);
+    payment.setCreatedAt(Instant.ofEpochMilli(1_700_000_000_000L + i));
+    return payment;
+  }
+}
@@ -0,0 +1,308 @@
+package com.checkout.payment.gateway.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.enums.CurrencyCodes;
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentPage;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class PaymentsRepositoryTest {
+
+  private static final int PAYMENTS_PER_WRITER = 20_000;
+
+  @Test
+  void whenShardCountIsNotPowerOfTwoThenItIsRoundedUp() {
+    assertEquals(1, new HeapPaymentStore(1, 1024).shardCount());
+    assertEquals(8, new HeapPaymentStore(5, 1024).shardCount());
+    assertEquals(16, new HeapPaymentStore(16, 1024).shardCount());
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageMode.class)
+  void whenPaymentIsAddedThenItCanBeRetrieved(StorageMode storageMode) {
+    PaymentsRepository repository = new PaymentsRepository(storageMode.create(4, 1024), null, null);
+    PaymentResponse payment = createPayment(UUID.randomUUID());
+
+    repository.add(payment);
+
+    assertEquals(payment, repository.get(payment.getId()).orElseThrow());
+    assertTrue(repository.get(UUID.randomUUID()).isEmpty());
+  }
+
+  @Test
+  void whenPackedStoreHoldsPaymentThenAllFieldsRoundTrip() {
+    PaymentsRepository repository = new PaymentsRepository(StorageMode.PACKED.create(1, 16), null,
+        null);
+    PaymentResponse payment = createPayment(UUID.randomUUID());
+    payment.setStatus(PaymentStatus.DECLINED);
+    payment.setCardNumberLastFour("0042");
+    payment.setExpiryMonth("01");
+    payment.setExpiryYear("27");
+    payment.setCurrency("EUR");
+    payment.setAmount(Integer.MAX_VALUE);
+
+    repository.add(payment);
+
+    assertEquals(payment, repository.get(payment.getId()).orElseThrow());
+  }
+
+  @Test
+  void whenPackedStoreGrowsPastCapacityThenPaymentsAreKept() {
+    PaymentsRepository repository = new PaymentsRepository(StorageMode.PACKED.create(2, 16), null,
+        null);
+    List<UUID> ids = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      PaymentResponse payment = createPayment(UUID.randomUUID());
+      repository.add(payment);
+      ids.add(payment.getId());
+    }
+
+    assertEquals(1_000, repository.size());
+    ids.forEach(id -> assertTrue(repository.get(id).isPresent()));
+  }
+
+  @Test
+  void whenPaymentCannotBePackedThenItIsRejected() {
+    PackedPaymentStore store = new PackedPaymentStore(1, 16);
+    PaymentResponse payment = createPayment(UUID.randomUUID());
+    payment.setCurrency("AUD");
+
+    assertThrows(IllegalArgumentException.class, () -> store.put(payment));
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageMode.class)
+  void whenManyThreadsWriteConcurrentlyThenNoWritesAreLost(StorageMode storageMode)
+      throws Exception {
+    int writers = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    PaymentsRepository repository = new PaymentsRepository(
+        storageMode.create(16, PAYMENTS_PER_WRITER), null, null);
+    ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicLong readerMisses = new AtomicLong();
+
+    try {
+      List<Future<List<UUID>>> written = new ArrayList<>();
+      for (int w = 0; w < writers; w++) {
+        written.add(executor.submit(() -> {
+          List<UUID> ids = new ArrayList<>(PAYMENTS_PER_WRITER);
+          start.await();
+          for (int i = 0; i < PAYMENTS_PER_WRITER; i++) {
+            PaymentResponse payment = createPayment(UUID.randomUUID());
+            repository.add(payment);
+            if (repository.get(payment.getId()).isEmpty()) {
+              readerMisses.incrementAndGet();
+            }
+            ids.add(payment.getId());
+          }
+          return ids;
+        }));
+      }
+      Future<?> reader = executor.submit(() -> {
+        start.await();
+        while (writing.get()) {
+          repository.get(UUID.randomUUID());
+          repository.size();
+        }
+        return null;
+      });
+
+      start.countDown();
+      List<UUID> allIds = new ArrayList<>();
+      for (Future<List<UUID>> ids : written) {
+        allIds.addAll(ids.get(60, TimeUnit.SECONDS));
+      }
+      writing.set(false);
+      reader.get(10, TimeUnit.SECONDS);
+
+      assertEquals(0, readerMisses.get());
+      assertEquals(writers * PAYMENTS_PER_WRITER, repository.size());
+      for (UUID id : allIds) {
+        assertTrue(repository.get(id).isPresent(), "Lost write for payment " + id);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageMode.class)
+  void whenPaymentsAreQueriedThenMatchesArePagedNewestFirst(StorageMode storageMode) {
+    PaymentsRepository repository = new PaymentsRepository(storageMode.create(4, 1024), null, null);
+    Instant start = Instant.parse("2024-01-01T00:00:00Z");
+    List<PaymentResponse> declinedGbp4242 = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      PaymentResponse payment = createPayment(UUID.randomUUID());
+      payment.setStatus(i % 3 == 0 ? PaymentStatus.DECLINED : PaymentStatus.AUTHORIZED);
+      payment.setCurrency(i % 2 == 0 ? "GBP" : "USD");
+      payment.setCardNumberLastFour(i % 5 == 0 ? "4242" : "4321");
+      payment.setCreatedAt(start.plusSeconds(i));
+      repository.add(payment);
+      if (i >= 6_000 && i % 30 == 0) {
+        declinedGbp4242.add(0, payment);
+      }
+    }
+
+    List<PaymentResponse> found = new ArrayList<>();
+    Integer cursor = null;
+    do {
+      PaymentPage page = repository.find(new PaymentQuery(PaymentStatus.DECLINED,
+          CurrencyCodes.GBP, 4242, start.plusSeconds(6_000), null, cursor, 25));
+      found.addAll(page.payments());
+      cursor = page.nextCursor() == null ? null : Integer.valueOf(page.nextCursor());
+    } while (cursor != null);
+
+    assertEquals(declinedGbp4242, found);
+    assertEquals(10, repository.find(new PaymentQuery(null, null, null, start,
+        start.plusSeconds(10), null, 50)).payments().size());
+    assertTrue(repository.find(new PaymentQuery(null, null, 9999, null, null, null, 50))
+        .payments().isEmpty());
+  }
+
+  @Test
+  void whenStoreAlreadyHoldsPaymentsThenTheyAreIndexedOldestFirst() {
+    PaymentStore store = StorageMode.HEAP.create(4, 64);
+    Instant start = Instant.parse("2024-01-01T00:00:00Z");
+    List<UUID> newestFirst = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      PaymentResponse payment = createPayment(UUID.randomUUID());
+      payment.setCreatedAt(start.plusMillis(i));
+      store.put(payment);
+      newestFirst.add(0, payment.getId());
+    }
+
+    PaymentPage page = new PaymentsRepository(store, null, null)
+        .find(new PaymentQuery(PaymentStatus.AUTHORIZED, null, null, null, null, null, 100));
+
+    assertEquals(newestFirst, page.payments().stream().map(PaymentResponse::getId).toList());
+    assertNull(page.nextCursor());
+  }
+
+  @ParameterizedTest
+  @EnumSource(StorageMode.class)
+  void whenRepositoryExceedsMaxEntriesThenOldestAreEvictedInBatches(StorageMode storageMode) {
+    PaymentsRepository repository = new PaymentsRepository(storageMode.create(4, 64), null, null);
+    List<UUID> ids = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      PaymentResponse payment = createPayment(UUID.randomUUID());
+      repository.add(payment);
+      ids.add(payment.getId());
+    }
+
+    List<UUID> evicted = new ArrayList<>();
+    assertEquals(1_000, repository.evict(6_000, null, 1_000, (id, expired) -> evicted.add(id)));
+    while (repository.evict(6_000, null, 1_000, (id, expired) -> evicted.add(id)) > 0) {
+      assertTrue(evicted.size() <= 4_000);
+    }
+
+    assertEquals(ids.subList(0, 4_000), evicted);
+    assertEquals(6_000, repository.size());
+    assertEquals(6_000, repository.retained());
+    assertTrue(repository.get(ids.get(3_999)).isEmpty());
+    assertTrue(repository.get(ids.get(4_000)).isPresent());
+    PaymentPage page = repository.find(
+        new PaymentQuery(PaymentStatus.AUTHORIZED, null, 4321, null, null, 4_400, 500));
+    assertEquals(400, page.payments().size());
+    assertEquals(ids.get(4_399), page.payments().get(0).getId());
+    assertEquals(ids.get(4_000), page.payments().get(page.payments().size() - 1).getId());
+    assertNull(page.nextCursor());
+    for (int i = 0; i < 20_000; i++) {
+      repository.add(createPayment(UUID.randomUUID()));
+    }
+    assertEquals(26_000, repository.size());
+  }
+
+  @Test
+  void whenExpiredPaymentsAreEvictedThenTheyAreStillReadFromTheColdStore(@TempDir Path directory) {
+    Instant start = Instant.parse("2024-01-01T00:00:00Z");
+    List<UUID> ids = new ArrayList<>();
+    try (ColdPaymentStore coldStore = new ColdPaymentStore(directory, 64, Duration.ofHours(1))) {
+      PaymentsRepository repository = new PaymentsRepository(StorageMode.PACKED.create(4, 64),
+          coldStore, null);
+      for (int i = 0; i < 300; i++) {
+        PaymentResponse payment = createPayment(UUID.randomUUID());
+        payment.setCreatedAt(start.plusSeconds(i));
+        repository.add(payment);
+        ids.add(payment.getId());
+      }
+
+      List<Boolean> expired = new ArrayList<>();
+      assertEquals(200, repository.evict(0, start.plusSeconds(200), 1_000,
+          (id, byAge) -> expired.add(byAge)));
+
+      assertEquals(List.of(true), expired.stream().distinct().toList());
+      assertEquals(100, repository.size());
+      assertEquals(200, coldStore.size());
+      assertEquals(3, coldStore.segmentCount());
+      ids.forEach(id -> assertEquals(id, repository.get(id).orElseThrow().getId()));
+      assertEquals(start, repository.get(ids.get(0)).orElseThrow().getCreatedAt());
+      assertTrue(repository.readsBlock());
+      assertNull(repository.getInMemory(ids.get(0)));
+      assertEquals(ids.get(299), repository.getInMemory(ids.get(299)).getId());
+    }
+
+    try (ColdPaymentStore reopened = new ColdPaymentStore(directory, 64, Duration.ofHours(1))) {
+      assertEquals(200, reopened.size());
+      ids.subList(0, 200).forEach(id -> assertEquals(id, reopened.get(id).getId()));
+      assertNull(reopened.get(ids.get(200)));
+    }
+  }
+
+  @Test
+  void whenPackedPaymentsAreRemovedThenTheirSlotsAreReclaimed() {
+    PackedPaymentStore store = new PackedPaymentStore(1, 16);
+    List<UUID> kept = new ArrayList<>();
+    for (int round = 0; round < 100; round++) {
+      List<UUID> removed = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        PaymentResponse payment = createPayment(UUID.randomUUID());
+        assertTrue(store.put(payment));
+        (i == 0 ? kept : removed).add(payment.getId());
+      }
+      removed.forEach(id -> assertTrue(store.remove(id)));
+      removed.forEach(id -> assertNull(store.get(id)));
+      assertFalse(store.remove(removed.get(0)));
+    }
+
+    assertEquals(100, store.size());
+    kept.forEach(id -> assertEquals(id, store.get(id).getId()));
+    List<UUID> visited = new ArrayList<>();
+    store.forEach(payment -> visited.add(payment.getId()));
+    assertEquals(100, visited.size());
+  }
+
+  private static PaymentResponse createPayment(UUID id) {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(id);
+    payment.setStatus(PaymentStatus.AUTHORIZED);
+    payment.setCardNumberLastFour("4321");
+    payment.setExpiryMonth("12");
+    payment.setExpiryYear("2030");
+    payment.setCurrency("GBP");
+    payment.setAmount(100);
+    return payment;
+  }
+}
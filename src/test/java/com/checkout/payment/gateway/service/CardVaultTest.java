@@ -0,0 +1,95 @@
+package com.checkout.payment.gateway.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.model.BankRequest;
+import com.checkout.payment.gateway.service.CardVault.CardToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CardVaultTest {
+
+  private static final String CARD = "2222405343248877";
+
+  private final byte[] key = CardVault.randomKey();
+  private final CardVault vault =
+      new CardVault(key, 1_000, Duration.ofHours(1), new SimpleMeterRegistry());
+
+  @Test
+  void whenCardIsTokenizedTwiceThenItGetsTheSameTokenAndIsEncryptedOnce() {
+    CardToken first = vault.tokenize(CARD);
+    CardToken second = vault.tokenize(new StringBuilder(CARD));
+
+    assertEquals(first, second);
+    assertTrue(first.value().startsWith("tok_"));
+    assertFalse(first.value().contains("8877"));
+    assertEquals(1, vault.size());
+    assertEquals(1, vault.stats().hitCount());
+  }
+
+  @Test
+  void whenCardsDifferThenTokensDiffer() {
+    assertNotEquals(vault.tokenize(CARD).value(), vault.tokenize("2222405343248878").value());
+  }
+
+  @Test
+  void whenVaultKeyDiffersThenTokensDiffer() {
+    CardVault other =
+        new CardVault(CardVault.randomKey(), 1_000, Duration.ofHours(1), new SimpleMeterRegistry());
+
+    assertNotEquals(vault.tokenize(CARD).value(), other.tokenize(CARD).value());
+  }
+
+  @Test
+  void whenTokenIsDecryptedThenCardNumberIsReturned() {
+    CardToken token = vault.tokenize(CARD);
+
+    assertArrayEquals(CARD.getBytes(StandardCharsets.US_ASCII), vault.decrypt(token.cardNumber()));
+  }
+
+  @Test
+  void whenBankBodyHasEmptyCardNumberAndCvvThenBothAreWrittenIntoIt() {
+    CardToken token = vault.tokenize(CARD);
+    byte[] json = BankRequest.toJson("", "04", "2027", "GBP", 100, "");
+
+    byte[] body = vault.withCardDetails(json, token.cardNumber(), vault.encryptCvv("123"));
+
+    assertArrayEquals(BankRequest.toJson(CARD, "04", "2027", "GBP", 100, "123"), body);
+  }
+
+  @Test
+  void whenBankBodyAlreadyHasCardDetailsThenItIsRejected() {
+    CardToken token = vault.tokenize(CARD);
+    byte[] cvv = vault.encryptCvv("123");
+    byte[] withCardNumber = BankRequest.toJson(CARD, "04", "2027", "GBP", 100, "");
+    byte[] withCvv = BankRequest.toJson("", "04", "2027", "GBP", 100, "123");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> vault.withCardDetails(withCardNumber, token.cardNumber(), cvv));
+    assertThrows(IllegalArgumentException.class,
+        () -> vault.withCardDetails(withCvv, token.cardNumber(), cvv));
+  }
+
+  @Test
+  void whenCacheNoLongerHoldsTheCardThenTheCarriedCiphertextStillDecrypts() {
+    CardToken token = new CardVault(key, 1_000, Duration.ofHours(1), new SimpleMeterRegistry())
+        .tokenize(CARD);
+    CardVault empty = new CardVault(key, 1_000, Duration.ofHours(1), new SimpleMeterRegistry());
+
+    assertEquals(0, empty.size());
+    assertArrayEquals(CARD.getBytes(StandardCharsets.US_ASCII), empty.decrypt(token.cardNumber()));
+  }
+
+  @Test
+  void whenKeyIsNotThirtyTwoBytesThenVaultIsRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new CardVault(new byte[16], 1_000, Duration.ofHours(1), new SimpleMeterRegistry()));
+  }
+}
@@ -0,0 +1,128 @@
+package com.checkout.payment.gateway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.checkout.payment.gateway.exception.BadRequestException;
+import com.checkout.payment.gateway.exception.ServiceUnavailableException;
+import com.checkout.payment.gateway.exception.UnprocessableEntityException;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyCacheTest {
+
+  private static final IdempotencyKey KEY = new IdempotencyKey("merchant", "key");
+
+  private final IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofHours(1));
+  private final byte[] fingerprint =
+      cache.fingerprint(100, "2222405343248877", "12", "2030", "GBP", "123");
+
+  @Test
+  void whenDuplicatesArriveWhileFirstIsInFlightThenTheyWaitOnIt() throws Exception {
+    CompletableFuture<PaymentResponse> bank = new CompletableFuture<>();
+    AtomicInteger bankCalls = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+
+    try {
+      List<Future<PaymentResponse>> responses = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        responses.add(executor.submit(() -> {
+          start.await();
+          return cache.getOrProcess(KEY, fingerprint, () -> {
+            bankCalls.incrementAndGet();
+            return bank;
+          }).get(10, TimeUnit.SECONDS);
+        }));
+      }
+      start.countDown();
+      Thread.sleep(100);
+      assertTrue(responses.stream().noneMatch(Future::isDone));
+
+      PaymentResponse payment = new PaymentResponse();
+      payment.setId(UUID.randomUUID());
+      bank.complete(payment);
+
+      for (Future<PaymentResponse> response : responses) {
+        assertSame(payment, response.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, bankCalls.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void whenPaymentFailsThenRetryWithSameKeyProcessesAgain() {
+    CompletableFuture<PaymentResponse> failed = cache.getOrProcess(KEY, fingerprint,
+        () -> CompletableFuture.failedFuture(new ServiceUnavailableException("Bank down")));
+    assertTrue(failed.isCompletedExceptionally());
+
+    PaymentResponse payment = new PaymentResponse();
+    CompletableFuture<PaymentResponse> retried = cache.getOrProcess(KEY, fingerprint,
+        () -> CompletableFuture.completedFuture(payment));
+
+    assertFalse(retried.isCompletedExceptionally());
+    assertSame(payment, retried.join());
+  }
+
+  @Test
+  void whenPaymentThrowsAnErrorThenTheKeyIsReleased() {
+    CompletableFuture<PaymentResponse> failed = cache.getOrProcess(KEY, fingerprint, () -> {
+      throw new StackOverflowError();
+    });
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals(0, cache.size());
+
+    PaymentResponse payment = new PaymentResponse();
+    assertSame(payment, cache.getOrProcess(KEY, fingerprint,
+        () -> CompletableFuture.completedFuture(payment)).join());
+  }
+
+  @Test
+  void whenKeyIsReusedForADifferentRequestThenItIsUnprocessable() {
+    PaymentResponse payment = new PaymentResponse();
+    cache.getOrProcess(KEY, fingerprint, () -> CompletableFuture.completedFuture(payment));
+    byte[] otherAmount = cache.fingerprint(200, "2222405343248877", "12", "2030", "GBP", "123");
+
+    assertThrows(UnprocessableEntityException.class, () -> cache.getOrProcess(KEY, otherAmount,
+        () -> CompletableFuture.completedFuture(new PaymentResponse())));
+    assertSame(payment, cache.getOrProcess(KEY, cache.fingerprint(100, "2222405343248877", "12",
+        "2030", "GBP", "123"), () -> CompletableFuture.completedFuture(null)).join());
+  }
+
+  @Test
+  void whenMerchantsUseTheSameKeyThenTheirPaymentsAreSeparate() {
+    PaymentResponse first = new PaymentResponse();
+    PaymentResponse second = new PaymentResponse();
+
+    cache.getOrProcess(KEY, fingerprint, () -> CompletableFuture.completedFuture(first));
+
+    assertSame(second, cache.getOrProcess(new IdempotencyKey("other", KEY.key()), fingerprint,
+        () -> CompletableFuture.completedFuture(second)).join());
+  }
+
+  @Test
+  void whenKeyIsBlankOrTooLongThenItIsRejected() {
+    assertThrows(BadRequestException.class,
+        () -> cache.getOrProcess(new IdempotencyKey("merchant", " "), fingerprint,
+            () -> CompletableFuture.completedFuture(new PaymentResponse())));
+    assertThrows(BadRequestException.class, () -> cache.getOrProcess(
+        new IdempotencyKey("merchant", "k".repeat(IdempotencyCache.MAX_KEY_LENGTH + 1)),
+        fingerprint, () -> CompletableFuture.completedFuture(new PaymentResponse())));
+  }
+}
@@ -0,0 +1,209 @@
+package com.checkout.payment.gateway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.checkout.payment.gateway.exception.ServiceUnavailableException;
+import com.checkout.payment.gateway.exception.TooManyRequestsException;
+import com.checkout.payment.gateway.model.BankResponse;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PaymentEngineTest {
+
+  private static final String CARD = "2222405343248877";
+  private static final String OTHER_CARD = "2222405343248112";
+
+  @Test
+  void whenPaymentsShareACardThenTheyReachTheBankOneAtATimeInOrder() throws Exception {
+    List<CompletableFuture<BankResponse>> cardCalls = new ArrayList<>();
+    List<CompletableFuture<BankResponse>> otherCalls = new ArrayList<>();
+    List<String> persisted = new ArrayList<>();
+
+    try (PaymentEngine engine = new PaymentEngine(2, 16, 0, Duration.ZERO)) {
+      List<CompletableFuture<PaymentResponse>> payments = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        String name = "payment-" + i;
+        payments.add(engine.submit(CARD, () -> call(cardCalls),
+            bankResponse -> persist(persisted, name)));
+      }
+      CompletableFuture<PaymentResponse> other = engine.submit(OTHER_CARD,
+          () -> call(otherCalls), bankResponse -> new PaymentResponse());
+
+      awaitCalls(otherCalls, 1);
+      awaitCalls(cardCalls, 1);
+      Thread.sleep(50);
+      assertEquals(1, callCount(cardCalls));
+
+      for (int i = 0; i < 3; i++) {
+        answer(cardCalls, i);
+        payments.get(i).get(10, TimeUnit.SECONDS);
+        if (i < 2) {
+          awaitCalls(cardCalls, i + 2);
+        }
+      }
+      assertEquals(List.of("payment-0", "payment-1", "payment-2"), persisted);
+      assertFalse(other.isDone());
+
+      answer(otherCalls, 0);
+      other.get(10, TimeUnit.SECONDS);
+      assertEquals(0, engine.unfinished());
+    }
+  }
+
+  @Test
+  void whenACardExceedsItsVelocityLimitThenFurtherPaymentsAreRejected() throws Exception {
+    try (PaymentEngine engine = new PaymentEngine(1, 16, 2, Duration.ofMinutes(1))) {
+      List<CompletableFuture<PaymentResponse>> payments = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        payments.add(engine.submit(CARD, PaymentEngineTest::answered,
+            bankResponse -> new PaymentResponse()));
+      }
+      CompletableFuture<PaymentResponse> other = engine.submit(OTHER_CARD,
+          PaymentEngineTest::answered, bankResponse -> new PaymentResponse());
+
+      payments.get(0).get(10, TimeUnit.SECONDS);
+      payments.get(1).get(10, TimeUnit.SECONDS);
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> payments.get(2).get(10, TimeUnit.SECONDS));
+      assertInstanceOf(TooManyRequestsException.class, e.getCause());
+      other.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void whenAShardIsFullThenFurtherPaymentsAreRefused() throws Exception {
+    CompletableFuture<BankResponse> bank = new CompletableFuture<>();
+
+    try (PaymentEngine engine = new PaymentEngine(1, 2, 0, Duration.ZERO)) {
+      CompletableFuture<PaymentResponse> first = engine.submit(CARD, () -> bank,
+          bankResponse -> new PaymentResponse());
+      CompletableFuture<PaymentResponse> second = engine.submit(CARD, () -> bank,
+          bankResponse -> new PaymentResponse());
+
+      assertThrows(ServiceUnavailableException.class, () -> engine.submit(OTHER_CARD,
+          () -> bank, bankResponse -> new PaymentResponse()));
+      assertFalse(first.isDone());
+
+      bank.complete(new BankResponse());
+      first.get(10, TimeUnit.SECONDS);
+      second.get(10, TimeUnit.SECONDS);
+      engine.submit(OTHER_CARD, () -> bank, bankResponse -> new PaymentResponse())
+          .get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void whenTheBankAnswersThenThePaymentIsPersistedOffTheShardThread() throws Exception {
+    List<String> persistedOn = new ArrayList<>();
+
+    try (PaymentEngine engine = new PaymentEngine(1, 16, 0, Duration.ZERO)) {
+      engine.submit(CARD, PaymentEngineTest::answered,
+              bankResponse -> persist(persistedOn, Thread.currentThread().getName()))
+          .get(10, TimeUnit.SECONDS);
+    }
+    assertEquals(1, persistedOn.size());
+    assertFalse(persistedOn.get(0).startsWith("payment-engine-"));
+  }
+
+  @Test
+  void whenTheEngineIsClosedThenEveryAdmittedPaymentFinishes() throws Exception {
+    PaymentEngine engine = new PaymentEngine(1, 1024, 0, Duration.ZERO);
+    List<CompletableFuture<PaymentResponse>> payments = new ArrayList<>();
+    Thread producer = new Thread(() -> {
+      for (int i = 0; ; i++) {
+        try {
+          CompletableFuture<PaymentResponse> payment = engine.submit(Integer.toString(i),
+              PaymentEngineTest::answered, bankResponse -> new PaymentResponse());
+          synchronized (payments) {
+            payments.add(payment);
+          }
+        } catch (ServiceUnavailableException e) {
+          if (e.getMessage().contains("closed")) {
+            return;
+          }
+        }
+      }
+    });
+    producer.start();
+    Thread.sleep(20);
+    engine.close();
+    producer.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertFalse(producer.isAlive());
+    synchronized (payments) {
+      for (CompletableFuture<PaymentResponse> payment : payments) {
+        payment.get(10, TimeUnit.SECONDS);
+      }
+    }
+    assertEquals(0, engine.unfinished());
+  }
+
+  @Test
+  void whenAShardDiesThenItsPaymentsFailAndFurtherPaymentsAreRefused() throws Exception {
+    try (PaymentEngine engine = new PaymentEngine(1, 16, 0, Duration.ZERO)) {
+      CompletableFuture<PaymentResponse> atTheBank = engine.submit(CARD,
+          CompletableFuture::new, bankResponse -> new PaymentResponse());
+      CompletableFuture<PaymentResponse> queued = engine.submit(CARD,
+          CompletableFuture::new, bankResponse -> new PaymentResponse());
+      CompletableFuture<PaymentResponse> broken = engine.submit(OTHER_CARD, () -> {
+        throw new InternalError("Shard failure");
+      }, bankResponse -> new PaymentResponse());
+
+      for (CompletableFuture<PaymentResponse> payment : List.of(atTheBank, queued, broken)) {
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> payment.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, e.getCause());
+      }
+      assertThrows(ServiceUnavailableException.class, () -> engine.submit(CARD,
+          PaymentEngineTest::answered, bankResponse -> new PaymentResponse()));
+    }
+  }
+
+  private static CompletableFuture<BankResponse> call(
+      List<CompletableFuture<BankResponse>> bankCalls) {
+    CompletableFuture<BankResponse> call = new CompletableFuture<>();
+    synchronized (bankCalls) {
+      bankCalls.add(call);
+    }
+    return call;
+  }
+
+  private static CompletableFuture<BankResponse> answered() {
+    return CompletableFuture.completedFuture(new BankResponse());
+  }
+
+  private static PaymentResponse persist(List<String> persisted, String name) {
+    persisted.add(name);
+    return new PaymentResponse();
+  }
+
+  private static int callCount(List<CompletableFuture<BankResponse>> bankCalls) {
+    synchronized (bankCalls) {
+      return bankCalls.size();
+    }
+  }
+
+  private static void answer(List<CompletableFuture<BankResponse>> bankCalls, int index) {
+    synchronized (bankCalls) {
+      bankCalls.get(index).complete(new BankResponse());
+    }
+  }
+
+  private static void awaitCalls(List<CompletableFuture<BankResponse>> bankCalls, int count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (callCount(bankCalls) < count && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, callCount(bankCalls));
+  }
+}
@@ -0,0 +1,47 @@
+package com.checkout.payment.gateway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.checkout.payment.gateway.enums.PaymentStatus;
+import com.checkout.payment.gateway.model.PaymentResponse;
+import com.checkout.payment.gateway.service.PaymentJsonCache.SerializedPayment;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class PaymentJsonCacheTest {
+
+  private final PaymentJsonCache cache =
+      new PaymentJsonCache(Jackson2ObjectMapperBuilder.json().build(), 100);
+
+  @Test
+  void whenPaymentIsReadTwiceThenItIsSerializedOnce() {
+    PaymentResponse payment = new PaymentResponse();
+    payment.setId(UUID.randomUUID());
+    payment.setStatus(PaymentStatus.AUTHORIZED);
+    payment.setAmount(100);
+    AtomicInteger lookups = new AtomicInteger();
+
+    SerializedPayment first = cache.get(payment.getId(), id -> {
+      lookups.incrementAndGet();
+      return payment;
+    });
+    SerializedPayment second = cache.get(payment.getId(), id -> {
+      lookups.incrementAndGet();
+      return payment;
+    });
+
+    assertSame(first, second);
+    assertEquals(1, lookups.get());
+    assertEquals('"', first.etag().charAt(0));
+  }
+
+  @Test
+  void whenPaymentDoesNotExistThenNothingIsCached() {
+    assertNull(cache.get(UUID.randomUUID(), id -> null));
+    assertEquals(0, cache.size());
+  }
+}
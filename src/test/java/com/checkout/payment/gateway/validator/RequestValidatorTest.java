@@ -1,9 +1,16 @@
 package com.checkout.payment.gateway.validator;
 
 import com.checkout.payment.gateway.model.PostPaymentRequest;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -91,6 +98,45 @@ class RequestValidatorTest {
     assertDoesNotThrow(() -> RequestValidator.validateRequest(request));
   }
 
+  @Test
+  void whenExpiryMonthAndYearAreMissingThenExpiryDateIsRequired() {
+    PostPaymentRequest request = createValidRequest();
+    request.setExpiryMonth(null);
+    request.setExpiryYear(null);
+
+    assertEquals(ValidationError.EXPIRY_DATE_REQUIRED, RequestValidator.validate(request));
+
+    request.setExpiryYear("");
+
+    assertEquals(ValidationError.EXPIRY_DATE_REQUIRED, RequestValidator.validate(request));
+  }
+
+  @Test
+  void whenOnlyExpiryMonthOrYearIsMissingThenExpiryDateFormatIsRejected() {
+    PostPaymentRequest request = createValidRequest();
+    request.setExpiryMonth(null);
+
+    assertEquals(ValidationError.EXPIRY_DATE_FORMAT, RequestValidator.validate(request));
+
+    request = createValidRequest();
+    request.setExpiryYear(null);
+
+    assertEquals(ValidationError.EXPIRY_DATE_FORMAT, RequestValidator.validate(request));
+  }
+
+  @Test
+  void whenAmountIsMissingThenAmountIsRequired() {
+    PostPaymentRequest request = createValidRequest();
+    request.setAmount(null);
+
+    assertEquals(ValidationError.AMOUNT_REQUIRED, RequestValidator.validate(request));
+    IllegalArgumentException exception = assertThrows(
+        IllegalArgumentException.class,
+        () -> RequestValidator.validateRequest(request)
+    );
+    assertEquals("Amount is required", exception.getMessage());
+  }
+
   @Test
   void whenCurrencyInvalidThenValidationFails() {
     PostPaymentRequest request = createValidRequest();
@@ -134,6 +180,48 @@ class RequestValidatorTest {
     assertDoesNotThrow(() -> RequestValidator.validateRequest(request));
   }
 
+  @Test
+  void whenRequestIsInvalidThenFirstErrorCodeIsReturned() {
+    PostPaymentRequest request = createValidRequest();
+    request.setCurrency("gbp");
+    request.setCvv("12");
+
+    assertEquals(ValidationError.CURRENCY_FORMAT, RequestValidator.validate(request));
+    assertNull(RequestValidator.validate(createValidRequest()));
+  }
+
+  @Test
+  void whenClockPassesMonthEndThenCurrentMonthRollsOver() {
+    AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2030-01-31T23:59:59Z"));
+    Clock clock = new Clock() {
+      @Override
+      public ZoneId getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return now.get();
+      }
+    };
+    CurrentMonth currentMonth = new CurrentMonth(clock);
+    PostPaymentRequest request = createValidRequest();
+    request.setExpiryMonth("01");
+    request.setExpiryYear("2030");
+
+    assertNull(RequestValidator.validate(request, currentMonth.index()));
+
+    now.set(Instant.parse("2030-02-01T00:00:00Z"));
+
+    assertEquals(ValidationError.EXPIRY_DATE_IN_PAST,
+        RequestValidator.validate(request, currentMonth.index()));
+  }
+
   private PostPaymentRequest createValidRequest() {
     PostPaymentRequest request = new PostPaymentRequest();
     request.setCardNumber("2222405343248113");